@@ -0,0 +1,68 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.strategy.carbon.BuildVersion;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * compares a single comparison of two build versions by the legacy, string splitting and date parsing
+ * comparison with the comparison of parsed BuildVersion values
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BuildVersionComparisonBenchmark {
+    private String buildIdentifierOne = "tenant/wso2carbon:5.0.0-2015-9-1-43200000";
+    private String buildIdentifierTwo = "tenant/wso2carbon:5.0.0-2015-9-1-43200001";
+    private BuildVersion buildVersionOne;
+    private BuildVersion buildVersionTwo;
+
+    @Setup
+    public void setUp() throws Exception {
+        buildVersionOne = BuildVersion.parse(buildIdentifierOne);
+        buildVersionTwo = BuildVersion.parse(buildIdentifierTwo);
+    }
+
+    @Benchmark
+    public int legacyCompare() throws Exception {
+        return LegacyBuildVersions.compareBuildVersions(buildIdentifierOne, buildIdentifierTwo);
+    }
+
+    @Benchmark
+    public int parseAndCompare() throws Exception {
+        return BuildVersion.parse(buildIdentifierOne).compareTo(BuildVersion.parse(buildIdentifierTwo));
+    }
+
+    @Benchmark
+    public int compareParsed() {
+        return buildVersionOne.compareTo(buildVersionTwo);
+    }
+}
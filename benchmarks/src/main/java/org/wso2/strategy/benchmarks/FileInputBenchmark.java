@@ -0,0 +1,77 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.strategy.miscellaneous.io.FileInputKeyValueDataThread;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * measures reading a key/value state file, such as the build cache or the shard placements, for growing numbers
+ * of entries. The file is read on the benchmark thread.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FileInputBenchmark {
+    @Param({ "100", "10000" })
+    private int entryCount;
+
+    private Path keyValueFile;
+
+    @Setup
+    public void setUp() throws Exception {
+        keyValueFile = Files.createTempFile("key-value-benchmark", ".txt");
+        List<String> lines = new ArrayList<>(entryCount);
+        for (int entry = 0; entry < entryCount; entry++) {
+            lines.add(String.format("%064x=%064x", entry, entry * 31L));
+        }
+        Files.write(keyValueFile, lines, StandardCharsets.UTF_8);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(keyValueFile);
+    }
+
+    @Benchmark
+    public Map<String, String> readKeyValueData() {
+        FileInputKeyValueDataThread input = new FileInputKeyValueDataThread(keyValueFile.toString());
+        input.run();
+        return input.getFileContent();
+    }
+}
@@ -0,0 +1,56 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.strategy.miscellaneous.helper.CarbonKernelHandlerHelper;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * measures the generation of the Docker image and Kubernetes component identifiers, which every operation on a
+ * tenant performs
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IdentifierBenchmark {
+    // not final, so that the identifiers are not constant folded
+    private String tenant = "tenant";
+    private String artifactName = "wso2carbon";
+    private String version = "5.0.0-2015-9-1-43200000";
+
+    @Benchmark
+    public String generateImageIdentifier() {
+        return CarbonKernelHandlerHelper.generateImageIdentifier(tenant, artifactName, version);
+    }
+
+    @Benchmark
+    public String generateKubernetesComponentIdentifier() {
+        return CarbonKernelHandlerHelper.generateKubernetesComponentIdentifier(tenant, artifactName);
+    }
+}
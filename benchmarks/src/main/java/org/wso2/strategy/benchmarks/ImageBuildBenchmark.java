@@ -0,0 +1,156 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.benchmarks;
+
+import com.spotify.docker.client.DefaultDockerClient;
+import com.spotify.docker.client.DockerClient;
+import org.wso2.strategy.docker.DaemonlessDockerImageHandler;
+import org.wso2.strategy.docker.JavaDockerImageHandler;
+import org.wso2.strategy.docker.context.BuildContext;
+import org.wso2.strategy.docker.interfaces.IDockerImageHandler;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * compares the time taken to build a Carbon kernel image through the Dockerfile path, i.e. ADD of the kernel zip
+ * followed by a RUN which unzips it, against the daemonless image assembly of the layered kernel
+ * <p>
+ * Usage: ImageBuildBenchmark kernel-zip docker-url registry-url [iterations]
+ * <p>
+ * The first build of each path is reported separately as the cold build, the remaining builds re-use whatever the
+ * Docker daemon and the registry cached from the previous ones, as consecutive deployments of a kernel do.
+ */
+public class ImageBuildBenchmark {
+    private static final String CREATOR = "benchmark";
+    private static final String ARTIFACT_NAME = "carbon";
+    private static final String STABLE_LAYER = "stable";
+    private static final int DEFAULT_ITERATIONS = 5;
+    private static final long IMAGE_READINESS_TIMEOUT_IN_MILLISECONDS = 60000;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Usage: ImageBuildBenchmark kernel-zip docker-url registry-url [iterations]");
+            System.exit(1);
+        }
+        Path kernel = Paths.get(args[0]);
+        String dockerURL = args[1];
+        String registryURL = args[2];
+        int iterations = (args.length > 3) ? Integer.parseInt(args[3]) : DEFAULT_ITERATIONS;
+
+        DockerClient dockerClient = DefaultDockerClient.builder().uri(dockerURL).build();
+        IDockerImageHandler dockerfileHandler = new JavaDockerImageHandler(dockerClient, dockerURL);
+        IDockerImageHandler daemonlessHandler = new DaemonlessDockerImageHandler(dockerClient, dockerURL,
+                registryURL);
+
+        String kernelArtifact = kernel.getFileName().toString();
+        report("dockerfile", run(dockerfileHandler, kernel, getDockerFileContent(kernelArtifact), false, iterations,
+                "dockerfile"));
+        report("daemonless", run(daemonlessHandler, kernel, getLayeredDockerFileContent(kernelArtifact), true,
+                iterations, "daemonless"));
+    }
+
+    private static List<Long> run(IDockerImageHandler handler, Path kernel, List<String> dockerFileContent,
+            boolean layered, int iterations, String versionPrefix) throws Exception {
+        List<Long> buildTimes = new ArrayList<>();
+        List<String> versions = new ArrayList<>();
+        try {
+            for (int iteration = 0; iteration <= iterations; iteration++) {
+                String version = versionPrefix + "-" + System.currentTimeMillis();
+                versions.add(version);
+                long startTime = System.nanoTime();
+                BuildContext context;
+                if (layered) {
+                    context = BuildContext.stageLayers(kernel, STABLE_LAYER, getVolatileKernelLayers(),
+                            dockerFileContent);
+                } else {
+                    context = BuildContext.stage(kernel, dockerFileContent);
+                }
+                try {
+                    String dockerImageName = handler
+                            .buildImage(CREATOR, ARTIFACT_NAME, version, context.getDockerFilePath());
+                    handler.waitForImage(dockerImageName, IMAGE_READINESS_TIMEOUT_IN_MILLISECONDS);
+                } finally {
+                    context.close();
+                }
+                buildTimes.add((System.nanoTime() - startTime) / 1000000);
+            }
+        } finally {
+            for (String version : versions) {
+                handler.removeImage(CREATOR, ARTIFACT_NAME, version);
+            }
+        }
+        return buildTimes;
+    }
+
+    private static void report(String path, List<Long> buildTimes) {
+        long coldBuildTime = buildTimes.get(0);
+        List<Long> warmBuildTimes = new ArrayList<>(buildTimes.subList(1, buildTimes.size()));
+        Collections.sort(warmBuildTimes);
+        long total = 0;
+        for (long buildTime : warmBuildTimes) {
+            total += buildTime;
+        }
+        System.out.println(String.format("%-10s [cold] %6d ms [min] %6d ms [median] %6d ms [mean] %6d ms [max] %6d ms",
+                path, coldBuildTime, warmBuildTimes.get(0), warmBuildTimes.get(warmBuildTimes.size() / 2),
+                total / warmBuildTimes.size(), warmBuildTimes.get(warmBuildTimes.size() - 1)));
+    }
+
+    /**
+     * mirrors the Dockerfile generated by CarbonKernelHandler for the default image mode
+     */
+    private static List<String> getDockerFileContent(String kernelArtifact) {
+        return Arrays.asList("FROM java:openjdk-8", "MAINTAINER dev@wso2.org", "ADD " + kernelArtifact + " /opt/",
+                "RUN  \\\n\tmkdir -p /opt && \\\nunzip /opt/" + kernelArtifact + " -d /opt && \\\nrm /opt/"
+                        + kernelArtifact, "EXPOSE 9443", "ENV JAVA_HOME=/usr",
+                "ENTRYPOINT [\"/opt/" + getKernelDirectory(kernelArtifact) + "/bin/wso2server.sh\"]");
+    }
+
+    /**
+     * mirrors the Dockerfile generated by CarbonKernelHandler for the layered image mode
+     */
+    private static List<String> getLayeredDockerFileContent(String kernelArtifact) {
+        List<String> dockerFileContent = new ArrayList<>();
+        dockerFileContent.add("FROM java:openjdk-8");
+        dockerFileContent.add("MAINTAINER dev@wso2.org");
+        dockerFileContent.add("ADD " + BuildContext.getLayerDirectory(STABLE_LAYER) + " /opt/");
+        for (String layer : getVolatileKernelLayers().keySet()) {
+            dockerFileContent.add("ADD " + BuildContext.getLayerDirectory(layer) + " /opt/");
+        }
+        dockerFileContent.add("EXPOSE 9443");
+        dockerFileContent.add("ENV JAVA_HOME=/usr");
+        dockerFileContent.add("ENTRYPOINT [\"/opt/" + getKernelDirectory(kernelArtifact) + "/bin/wso2server.sh\"]");
+        return dockerFileContent;
+    }
+
+    private static Map<String, List<String>> getVolatileKernelLayers() {
+        Map<String, List<String>> volatileLayers = new LinkedHashMap<>();
+        volatileLayers.put("conf", Arrays.asList("conf/", "repository/conf/"));
+        volatileLayers.put("dropins", Arrays.asList("osgi/dropins/", "repository/components/dropins/"));
+        volatileLayers.put("deployment", Arrays.asList("deployment/", "repository/deployment/"));
+        return volatileLayers;
+    }
+
+    private static String getKernelDirectory(String kernelArtifact) {
+        return kernelArtifact.substring(0, kernelArtifact.length() - 4);
+    }
+}
@@ -0,0 +1,99 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.benchmarks;
+
+import com.spotify.docker.client.messages.Image;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.strategy.docker.JavaDockerImageHandler;
+import org.wso2.strategy.docker.constants.DockerConstants;
+import org.wso2.strategy.miscellaneous.helper.CarbonKernelHandlerHelper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * measures the lookup of the images of a tenant's build version among all the images of a Docker daemon
+ * <p>
+ * linearScan is the tag filtering loop JavaDockerImageHandler.getExistingImages ran over every image listing
+ * before the images were indexed, getExistingImages and getExistingImageTags look the images up through the
+ * Docker image index of the handler.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ImageTagFilterBenchmark {
+    private static final String ARTIFACT_NAME = "wso2carbon";
+    private static final String RELEASE = "5.0.0";
+    private static final int TENANT_COUNT = 100;
+
+    @Param({ "10000", "100000" })
+    private int imageCount;
+
+    private List<Image> images;
+    private JavaDockerImageHandler imageHandler;
+    private String tenant;
+
+    @Setup
+    public void setUp() throws Exception {
+        images = SyntheticDockerImages.createImages(imageCount, TENANT_COUNT, ARTIFACT_NAME, RELEASE);
+        tenant = SyntheticDockerImages.getTenant(TENANT_COUNT / 2);
+        // keeps the periodic re-synchronization of the image index out of the measurements
+        System.setProperty(DockerConstants.IMAGE_INDEX_RESYNC_INTERVAL_PROPERTY, String.valueOf(Long.MAX_VALUE));
+        imageHandler = new JavaDockerImageHandler(SyntheticDockerImages.createDockerClient(images));
+        // loads the image index
+        imageHandler.getExistingImages(tenant, ARTIFACT_NAME, RELEASE);
+    }
+
+    @Benchmark
+    public List<Image> linearScan() {
+        List<Image> matchingImageList = new ArrayList<>();
+        String imageIdentifier = CarbonKernelHandlerHelper.generateImageIdentifier(tenant, ARTIFACT_NAME, RELEASE);
+        for (Image image : images) {
+            for (String tag : image.repoTags()) {
+                if (tag.contains(imageIdentifier)) {
+                    if (!matchingImageList.contains(image)) {
+                        matchingImageList.add(image);
+                    }
+                }
+            }
+        }
+        return matchingImageList;
+    }
+
+    @Benchmark
+    public List<Image> getExistingImages() throws Exception {
+        return imageHandler.getExistingImages(tenant, ARTIFACT_NAME, RELEASE);
+    }
+
+    @Benchmark
+    public List<String> getExistingImageTags() throws Exception {
+        return imageHandler.getExistingImageTags(tenant, ARTIFACT_NAME, RELEASE);
+    }
+}
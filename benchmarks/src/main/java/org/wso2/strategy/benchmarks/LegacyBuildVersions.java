@@ -0,0 +1,74 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.benchmarks;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * the build version comparison CarbonKernelHandler used before build versions were parsed into BuildVersion
+ * values, kept as the baseline of the build version benchmarks
+ */
+final class LegacyBuildVersions {
+    private LegacyBuildVersions() {
+    }
+
+    static int compareBuildVersions(String buildIdentifierOne, String buildIdentifierTwo) throws ParseException {
+        final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+        int result;
+        String[] buildIdentifierOneSplit = buildIdentifierOne.split("-");
+        String[] buildIdentifierTwoSplit = buildIdentifierTwo.split("-");
+        final int artifactIndex = 0;
+        final int yearIndex = 1;
+        final int monthIndex = 2;
+        final int dayIndex = 3;
+        final int timeIndex = 4;
+
+        String identifierOne = buildIdentifierOneSplit[artifactIndex];
+        Date identifierOneDate = dateFormat
+                .parse(buildIdentifierOneSplit[yearIndex] + "-" + buildIdentifierOneSplit[monthIndex] + "-"
+                        + buildIdentifierOneSplit[dayIndex]);
+
+        String identifierTwo = buildIdentifierTwoSplit[artifactIndex];
+        Date identifierTwoDate = dateFormat
+                .parse(buildIdentifierTwoSplit[yearIndex] + "-" + buildIdentifierTwoSplit[monthIndex] + "-"
+                        + buildIdentifierTwoSplit[dayIndex]);
+
+        if (identifierOne.compareTo(identifierTwo) < 0) {
+            result = -1;
+        } else if (identifierOne.compareTo(identifierTwo) > 0) {
+            result = 1;
+        } else {
+            if (identifierOneDate.before(identifierTwoDate)) {
+                result = -1;
+            } else if (identifierOneDate.after(identifierTwoDate)) {
+                result = 1;
+            } else {
+                long identifierOneTime = Long.parseLong(buildIdentifierOneSplit[timeIndex]);
+                long identifierTwoTime = Long.parseLong(buildIdentifierTwoSplit[timeIndex]);
+                if (identifierOneTime < identifierTwoTime) {
+                    result = -1;
+                } else if (identifierOneTime > identifierTwoTime) {
+                    result = 1;
+                } else {
+                    result = 0;
+                }
+            }
+        }
+        return result;
+    }
+}
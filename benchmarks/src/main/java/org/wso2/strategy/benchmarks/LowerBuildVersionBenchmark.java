@@ -0,0 +1,113 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.strategy.carbon.BuildVersion;
+import org.wso2.strategy.carbon.BuildVersionIndex;
+import org.wso2.strategy.miscellaneous.helper.CarbonKernelHandlerHelper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * measures the selection of the builds of a tenant lower than the running one, as done by
+ * CarbonKernelHandler.listLowerBuildArtifactVersions, for growing numbers of builds of the tenant
+ * <p>
+ * legacyFilter compares every build with the running one by the legacy comparison, indexedFilter reconciles
+ * the build version index with the image tags and walks its head set, as the handler does, and
+ * indexedLookup walks the head set of an index which is already up to date.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LowerBuildVersionBenchmark {
+    private static final String TENANT = "tenant";
+    private static final String ARTIFACT_NAME = "wso2carbon";
+    private static final String RELEASE = "5.0.0";
+    private static final int BUILDS_PER_DAY = 24;
+    private static final int DAYS_PER_MONTH = 28;
+    private static final int MILLIS_PER_HOUR = 60 * 60 * 1000;
+
+    @Param({ "100", "1000", "10000" })
+    private int buildCount;
+
+    private List<String> dockerImageNames;
+    private String runningDockerImageName;
+    private BuildVersionIndex buildVersionIndex;
+
+    @Setup
+    public void setUp() {
+        dockerImageNames = new ArrayList<>();
+        for (int build = 0; build < buildCount; build++) {
+            int day = build / BUILDS_PER_DAY;
+            String version = String.format("%s-%d-%d-%d-%d", RELEASE, 2015 + day / (12 * DAYS_PER_MONTH),
+                    (day / DAYS_PER_MONTH) % 12 + 1, day % DAYS_PER_MONTH + 1,
+                    (build % BUILDS_PER_DAY) * MILLIS_PER_HOUR);
+            dockerImageNames.add(CarbonKernelHandlerHelper.generateImageIdentifier(TENANT, ARTIFACT_NAME, version));
+        }
+        // the image index returns the tags in string order, which differs from the build order
+        Collections.sort(dockerImageNames);
+        runningDockerImageName = dockerImageNames.get(dockerImageNames.size() / 2);
+        buildVersionIndex = new BuildVersionIndex();
+        buildVersionIndex.synchronize(TENANT, RELEASE, dockerImageNames);
+    }
+
+    @Benchmark
+    public List<String> legacyFilter() throws Exception {
+        List<String> lowerDockerImageNames = new ArrayList<>();
+        for (String dockerImageName : dockerImageNames) {
+            if (LegacyBuildVersions.compareBuildVersions(runningDockerImageName, dockerImageName) > 0) {
+                lowerDockerImageNames.add(dockerImageName);
+            }
+        }
+        return lowerDockerImageNames;
+    }
+
+    @Benchmark
+    public List<String> indexedFilter() throws Exception {
+        buildVersionIndex.synchronize(TENANT, RELEASE, dockerImageNames);
+        return indexedLookup();
+    }
+
+    @Benchmark
+    public List<String> indexedLookup() throws Exception {
+        List<String> lowerDockerImageNames = new ArrayList<>();
+        BuildVersion upperLimit = buildVersionIndex.getBuildVersion(TENANT, runningDockerImageName);
+        for (BuildVersion buildVersion : buildVersionIndex.getLowerBuildVersions(TENANT, upperLimit)) {
+            if (buildVersion.getTag().startsWith(RELEASE)) {
+                lowerDockerImageNames.add(CarbonKernelHandlerHelper
+                        .generateImageIdentifier(TENANT, ARTIFACT_NAME, buildVersion.getTag()));
+            }
+        }
+        return lowerDockerImageNames;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.benchmarks;
+
+import com.google.common.collect.ImmutableList;
+import com.spotify.docker.client.DockerClient;
+import com.spotify.docker.client.messages.Image;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * creates synthetic Docker images and a DockerClient which lists them, so that the image lookups can be
+ * measured without a Docker daemon. Any other Docker client operation is unsupported.
+ */
+final class SyntheticDockerImages {
+    private SyntheticDockerImages() {
+    }
+
+    /**
+     * creates the specified number of images, spread over the specified number of tenants, each image holding
+     * a single build tag of the form tenant-N/artifact:release-year-month-day-millisOfDay
+     *
+     * @param imageCount   number of images
+     * @param tenantCount  number of tenants
+     * @param artifactName name of the artifact of the images
+     * @param release      release of the images
+     * @return the synthetic images
+     * @throws ReflectiveOperationException
+     */
+    static List<Image> createImages(int imageCount, int tenantCount, String artifactName, String release)
+            throws ReflectiveOperationException {
+        // the image fields are only set by the JSON deserialization of the Docker daemon responses
+        Field idField = Image.class.getDeclaredField("id");
+        Field repoTagsField = Image.class.getDeclaredField("repoTags");
+        idField.setAccessible(true);
+        repoTagsField.setAccessible(true);
+        List<Image> images = new ArrayList<>(imageCount);
+        for (int imageIndex = 0; imageIndex < imageCount; imageIndex++) {
+            int build = imageIndex / tenantCount;
+            String tag = String.format("%s/%s:%s-2015-%d-%d-%d", getTenant(imageIndex % tenantCount), artifactName,
+                    release, build / (28 * 24) % 12 + 1, build / 24 % 28 + 1, build % 24);
+            Image image = new Image();
+            idField.set(image, String.format("%064x", imageIndex));
+            repoTagsField.set(image, ImmutableList.of(tag));
+            images.add(image);
+        }
+        return images;
+    }
+
+    static String getTenant(int tenantIndex) {
+        return "tenant-" + tenantIndex;
+    }
+
+    /**
+     * @param images images listed by the Docker client
+     * @return a Docker client which lists the specified images, whatever the listing parameters
+     */
+    static DockerClient createDockerClient(final List<Image> images) {
+        return (DockerClient) Proxy.newProxyInstance(DockerClient.class.getClassLoader(),
+                new Class<?>[] { DockerClient.class }, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        switch (method.getName()) {
+                        case "listImages":
+                            return images;
+                        case "toString":
+                            return "SyntheticDockerClient [images] " + images.size();
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                    }
+                });
+    }
+}
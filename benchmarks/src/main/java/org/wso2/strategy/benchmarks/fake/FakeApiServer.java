@@ -0,0 +1,299 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.benchmarks.fake;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * an embedded HTTP server on the loopback interface, standing in for a remote API server. Each call is mapped to
+ * a named route, whose response profile delays it or fails it before it is served.
+ */
+public abstract class FakeApiServer {
+    private final String propertyPrefix;
+    private final ConcurrentMap<String, ResponseProfile> profiles = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicLong> callCounts = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicLong> injectedFailureCounts = new ConcurrentHashMap<>();
+    private HttpServer server;
+    private ExecutorService executor;
+
+    protected static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    protected static final String CHARSET = "UTF-8";
+    protected static final int HTTP_OK = 200;
+    protected static final int HTTP_CREATED = 201;
+    protected static final int HTTP_NOT_FOUND = 404;
+    protected static final int HTTP_CONFLICT = 409;
+    protected static final int HTTP_INTERNAL_SERVER_ERROR = 500;
+    private static final int CONNECTION_BACKLOG = 256;
+    private static final Random RANDOM = new Random();
+
+    /**
+     * @param propertyPrefix prefix of the system properties holding the response profiles of the routes
+     */
+    protected FakeApiServer(String propertyPrefix) {
+        this.propertyPrefix = propertyPrefix;
+    }
+
+    /**
+     * starts serving on an ephemeral port of the loopback interface
+     *
+     * @throws IOException
+     */
+    public synchronized void start() throws IOException {
+        if (server != null) {
+            return;
+        }
+        final String threadNamePrefix = propertyPrefix.replace('.', '-') + "-";
+        final AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newCachedThreadPool(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, threadNamePrefix + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), CONNECTION_BACKLOG);
+        server.setExecutor(executor);
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                dispatch(exchange);
+            }
+        });
+        server.start();
+    }
+
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+        }
+    }
+
+    /**
+     * @return the base URL of the server, e.g. http://127.0.0.1:41234
+     */
+    public synchronized String getURL() {
+        if (server == null) {
+            throw new IllegalStateException("The server has not been started.");
+        }
+        return "http://" + server.getAddress().getAddress().getHostAddress() + ":" + server.getAddress().getPort();
+    }
+
+    /**
+     * sets the response profile of a route, overriding the one read from the system properties
+     *
+     * @param route   name of the route
+     * @param profile response profile of the route
+     */
+    public void setResponseProfile(String route, ResponseProfile profile) {
+        profiles.put(route, profile);
+    }
+
+    /**
+     * @return the number of calls per route, including the failed ones
+     */
+    public Map<String, Long> getCallCounts() {
+        return snapshot(callCounts);
+    }
+
+    /**
+     * @return the number of injected failures per route
+     */
+    public Map<String, Long> getInjectedFailureCounts() {
+        return snapshot(injectedFailureCounts);
+    }
+
+    /**
+     * returns the route of a call, which names its response profile, or null if no route matches the call
+     *
+     * @param method HTTP method of the call
+     * @param path   decoded request path
+     * @return the route of the call, null if none
+     */
+    protected abstract String getRoute(String method, String path);
+
+    /**
+     * serves a call of the specified route
+     *
+     * @param exchange HTTP exchange of the call
+     * @param route    route of the call
+     * @param path     decoded request path
+     * @throws IOException
+     */
+    protected abstract void serve(HttpExchange exchange, String route, String path) throws IOException;
+
+    /**
+     * writes the response to an unmatched or failed call
+     *
+     * @param exchange HTTP exchange of the call
+     * @param status   HTTP status
+     * @param message  error message
+     * @throws IOException
+     */
+    protected abstract void sendError(HttpExchange exchange, int status, String message) throws IOException;
+
+    private void dispatch(HttpExchange exchange) throws IOException {
+        try {
+            String path = URLDecoder.decode(exchange.getRequestURI().getRawPath(), CHARSET);
+            String route = getRoute(exchange.getRequestMethod(), path);
+            if (route == null) {
+                drain(exchange);
+                sendError(exchange, HTTP_NOT_FOUND, String.format("No such route: %s %s", exchange.getRequestMethod(), path));
+                return;
+            }
+            increment(callCounts, route);
+            ResponseProfile profile = getResponseProfile(route);
+            long delay = profile.nextDelay(RANDOM);
+            if (delay > 0) {
+                Thread.sleep(delay);
+            }
+            if (profile.nextFailure(RANDOM)) {
+                increment(injectedFailureCounts, route);
+                drain(exchange);
+                sendError(exchange, HTTP_INTERNAL_SERVER_ERROR, "Injected failure of " + route);
+                return;
+            }
+            serve(exchange, route, path);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException exception) {
+            // the status can no longer be changed once the response headers have been sent
+            if (exchange.getResponseCode() < 0) {
+                sendError(exchange, HTTP_INTERNAL_SERVER_ERROR, String.valueOf(exception));
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private ResponseProfile getResponseProfile(String route) {
+        ResponseProfile profile = profiles.get(route);
+        if (profile == null) {
+            profile = ResponseProfile.fromSystemProperties(propertyPrefix, route);
+            ResponseProfile existingProfile = profiles.putIfAbsent(route, profile);
+            if (existingProfile != null) {
+                profile = existingProfile;
+            }
+        }
+        return profile;
+    }
+
+    /**
+     * returns the decoded query parameters of a call
+     */
+    protected static Map<String, String> getQueryParameters(HttpExchange exchange) throws IOException {
+        Map<String, String> parameters = new TreeMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                int separator = parameter.indexOf('=');
+                if (separator < 0) {
+                    parameters.put(URLDecoder.decode(parameter, CHARSET), "");
+                } else {
+                    parameters.put(URLDecoder.decode(parameter.substring(0, separator), CHARSET),
+                            URLDecoder.decode(parameter.substring(separator + 1), CHARSET));
+                }
+            }
+        }
+        return parameters;
+    }
+
+    protected static byte[] readBody(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream input = exchange.getRequestBody()) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+            }
+        }
+        return body.toByteArray();
+    }
+
+    /**
+     * reads and discards the request body, returning its length
+     */
+    protected static long drain(HttpExchange exchange) throws IOException {
+        long length = 0;
+        try (InputStream input = exchange.getRequestBody()) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                length += read;
+            }
+        }
+        return length;
+    }
+
+    protected static void sendJson(HttpExchange exchange, int status, JsonNode entity) throws IOException {
+        send(exchange, status, "application/json", OBJECT_MAPPER.writeValueAsBytes(entity));
+    }
+
+    protected static void send(HttpExchange exchange, int status, String contentType, byte[] content)
+            throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        if (content.length == 0) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, content.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(content);
+        }
+    }
+
+    private static void increment(ConcurrentMap<String, AtomicLong> counts, String route) {
+        AtomicLong count = counts.get(route);
+        if (count == null) {
+            AtomicLong newCount = new AtomicLong();
+            count = counts.putIfAbsent(route, newCount);
+            if (count == null) {
+                count = newCount;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    private static Map<String, Long> snapshot(ConcurrentMap<String, AtomicLong> counts) {
+        Map<String, Long> snapshot = new TreeMap<>();
+        for (Map.Entry<String, AtomicLong> count : counts.entrySet()) {
+            snapshot.put(count.getKey(), count.getValue().get());
+        }
+        return snapshot;
+    }
+}
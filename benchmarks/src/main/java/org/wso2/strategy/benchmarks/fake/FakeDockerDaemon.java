@@ -0,0 +1,359 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.benchmarks.fake;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * an in-process stand-in for the Docker Engine remote API, serving the calls made by JavaDockerImageHandler,
+ * StreamingImageBuilder, DockerImageIndex, ImageReadinessWaiter and ContainerStatusChecker
+ * <p>
+ * Builds consume the build context and create an image tagged with the requested name, without running the
+ * Dockerfile. The containers of a single node Kubernetes cluster are always listed as running, so that the
+ * startup preflight of CarbonKernelHandler succeeds. The routes are ping, version, listContainers, listImages,
+ * build, tagImage, inspectImage and removeImage, whose response profiles are read from the fake.docker system
+ * properties.
+ */
+public class FakeDockerDaemon extends FakeApiServer {
+    // image identifier to image
+    private final Map<String, FakeImage> images = new LinkedHashMap<>();
+    // repo tag to image identifier
+    private final Map<String, String> tags = new HashMap<>();
+    private final Random random = new Random();
+    private final ArrayNode containers = JsonNodeFactory.instance.arrayNode();
+
+    public static final String PROPERTY_PREFIX = "fake.docker";
+    private static final Pattern API_VERSION_PATTERN = Pattern.compile("^/v[0-9]+\\.[0-9]+(/.*)$");
+    private static final int SHORT_IMAGE_ID_LENGTH = 12;
+    private static final String LATEST_TAG = "latest";
+    // command and image of the containers expected by the startup preflight of CarbonKernelHandler
+    private static final String[][] KUBERNETES_CONTAINERS = {
+            { "/hyperkube scheduler --master=127.0.0.1:8080", "gcr.io/google_containers/hyperkube:v1.0.1" },
+            { "/hyperkube apiserver --portal-net=10.0.0.1/24", "gcr.io/google_containers/hyperkube:v1.0.1" },
+            { "/hyperkube controller-manager --master=127.0.0.1:8080",
+                    "gcr.io/google_containers/hyperkube:v1.0.1" },
+            { "/pause", "gcr.io/google_containers/pause:0.8.0" },
+            { "/usr/bin/cadvisor", "google/cadvisor:latest" },
+            { "/hyperkube proxy --master=http://127.0.0.1:8080", "gcr.io/google_containers/hyperkube:v1.0.1" },
+            { "/hyperkube kubelet --api_servers=http://localhost:8080", "gcr.io/google_containers/hyperkube:v1.0.1" },
+            { "/usr/local/bin/etcd --addr=127.0.0.1:4001", "gcr.io/google_containers/etcd:2.0.9" } };
+
+    public FakeDockerDaemon() {
+        super(PROPERTY_PREFIX);
+        long created = System.currentTimeMillis() / 1000;
+        for (int index = 0; index < KUBERNETES_CONTAINERS.length; index++) {
+            String[] container = KUBERNETES_CONTAINERS[index];
+            ObjectNode containerNode = containers.addObject();
+            containerNode.put("Id", newImageId());
+            containerNode.putArray("Names").add("/kubernetes-" + index);
+            containerNode.put("Image", container[1]);
+            containerNode.put("Command", container[0]);
+            containerNode.put("Created", created);
+            containerNode.put("Status", "Up");
+            containerNode.putArray("Ports");
+        }
+    }
+
+    /**
+     * @return the number of images held by the daemon
+     */
+    public synchronized int getImageCount() {
+        return images.size();
+    }
+
+    protected String getRoute(String method, String path) {
+        String resourcePath = stripAPIVersion(path);
+        if ("GET".equals(method)) {
+            if ("/_ping".equals(resourcePath)) {
+                return "ping";
+            } else if ("/version".equals(resourcePath)) {
+                return "version";
+            } else if ("/containers/json".equals(resourcePath)) {
+                return "listContainers";
+            } else if ("/images/json".equals(resourcePath)) {
+                return "listImages";
+            } else if (resourcePath.startsWith("/images/") && resourcePath.endsWith("/json")) {
+                return "inspectImage";
+            }
+        } else if ("POST".equals(method)) {
+            if ("/build".equals(resourcePath)) {
+                return "build";
+            } else if (resourcePath.startsWith("/images/") && resourcePath.endsWith("/tag")) {
+                return "tagImage";
+            }
+        } else if ("DELETE".equals(method) && resourcePath.startsWith("/images/")) {
+            return "removeImage";
+        }
+        return null;
+    }
+
+    protected void serve(HttpExchange exchange, String route, String path) throws IOException {
+        String resourcePath = stripAPIVersion(path);
+        switch (route) {
+        case "ping":
+            send(exchange, HTTP_OK, "text/plain", "OK".getBytes(CHARSET));
+            break;
+        case "version":
+            ObjectNode version = JsonNodeFactory.instance.objectNode();
+            version.put("Version", "1.8.2");
+            version.put("ApiVersion", "1.20");
+            version.put("Os", "linux");
+            version.put("Arch", "amd64");
+            sendJson(exchange, HTTP_OK, version);
+            break;
+        case "listContainers":
+            synchronized (containers) {
+                sendJson(exchange, HTTP_OK, containers);
+            }
+            break;
+        case "listImages":
+            sendJson(exchange, HTTP_OK, listImages(getQueryParameters(exchange).get("filter")));
+            break;
+        case "build":
+            build(exchange);
+            break;
+        case "tagImage":
+            tagImage(exchange, getImageName(resourcePath, "/tag"));
+            break;
+        case "inspectImage":
+            inspectImage(exchange, getImageName(resourcePath, "/json"));
+            break;
+        case "removeImage":
+            removeImage(exchange, getImageName(resourcePath, ""));
+            break;
+        default:
+            sendError(exchange, HTTP_NOT_FOUND, "No such route: " + route);
+        }
+    }
+
+    protected void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        send(exchange, status, "text/plain", message.getBytes(CHARSET));
+    }
+
+    private synchronized ArrayNode listImages(String repositoryFilter) {
+        ArrayNode imageList = JsonNodeFactory.instance.arrayNode();
+        for (FakeImage image : images.values()) {
+            if ((repositoryFilter == null) || (image.hasRepository(repositoryFilter))) {
+                imageList.add(image.toJson());
+            }
+        }
+        return imageList;
+    }
+
+    private void build(HttpExchange exchange) throws IOException {
+        String dockerImageName = getQueryParameters(exchange).get("t");
+        long contextSize = drain(exchange);
+        String imageId;
+        synchronized (this) {
+            imageId = newImageId();
+            images.put(imageId, new FakeImage(imageId, contextSize));
+            if (dockerImageName != null) {
+                addTag(imageId, normalizeTag(dockerImageName));
+            }
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(HTTP_OK, 0);
+        try (OutputStream output = exchange.getResponseBody()) {
+            writeProgress(output, String.format("Sending build context to Docker daemon %d B\n", contextSize));
+            writeProgress(output, "Step 0 : FROM java:openjdk-8\n");
+            writeProgress(output, "Successfully built " + imageId.substring(0, SHORT_IMAGE_ID_LENGTH) + "\n");
+        }
+    }
+
+    private void tagImage(HttpExchange exchange, String imageName) throws IOException {
+        Map<String, String> parameters = getQueryParameters(exchange);
+        drain(exchange);
+        String repository = parameters.get("repo");
+        String tag = parameters.get("tag");
+        synchronized (this) {
+            String imageId = resolveImage(imageName);
+            if ((imageId == null) || (repository == null)) {
+                sendError(exchange, HTTP_NOT_FOUND, "No such image: " + imageName);
+                return;
+            }
+            addTag(imageId, repository + ":" + (((tag == null) || (tag.isEmpty())) ? LATEST_TAG : tag));
+        }
+        send(exchange, HTTP_CREATED, "text/plain", new byte[0]);
+    }
+
+    private void inspectImage(HttpExchange exchange, String imageName) throws IOException {
+        ObjectNode imageInfo;
+        synchronized (this) {
+            String imageId = resolveImage(imageName);
+            if (imageId == null) {
+                sendError(exchange, HTTP_NOT_FOUND, "No such image: " + imageName);
+                return;
+            }
+            FakeImage image = images.get(imageId);
+            imageInfo = JsonNodeFactory.instance.objectNode();
+            imageInfo.put("Id", image.id);
+            imageInfo.put("Parent", "");
+            imageInfo.put("Os", "linux");
+            imageInfo.put("Architecture", "amd64");
+            imageInfo.put("Size", image.size);
+        }
+        sendJson(exchange, HTTP_OK, imageInfo);
+    }
+
+    private void removeImage(HttpExchange exchange, String imageName) throws IOException {
+        ArrayNode removed = JsonNodeFactory.instance.arrayNode();
+        synchronized (this) {
+            String tag = normalizeTag(imageName);
+            String imageId = tags.get(tag);
+            if (imageId != null) {
+                // removing a tag removes the image once it has no other tag
+                FakeImage image = images.get(imageId);
+                tags.remove(tag);
+                image.tags.remove(tag);
+                removed.addObject().put("Untagged", tag);
+                if (image.tags.isEmpty()) {
+                    images.remove(imageId);
+                    removed.addObject().put("Deleted", imageId);
+                }
+            } else {
+                imageId = resolveImage(imageName);
+                if (imageId == null) {
+                    sendError(exchange, HTTP_NOT_FOUND, "No such image: " + imageName);
+                    return;
+                }
+                FakeImage image = images.remove(imageId);
+                for (String imageTag : image.tags) {
+                    tags.remove(imageTag);
+                    removed.addObject().put("Untagged", imageTag);
+                }
+                removed.addObject().put("Deleted", imageId);
+            }
+        }
+        sendJson(exchange, HTTP_OK, removed);
+    }
+
+    /**
+     * returns the identifier of the image with the specified tag, identifier or identifier prefix
+     */
+    private String resolveImage(String imageName) {
+        String imageId = tags.get(normalizeTag(imageName));
+        if (imageId != null) {
+            return imageId;
+        }
+        if (images.containsKey(imageName)) {
+            return imageName;
+        }
+        for (String id : images.keySet()) {
+            if (id.startsWith(imageName)) {
+                return id;
+            }
+        }
+        return null;
+    }
+
+    private void addTag(String imageId, String tag) {
+        String previousImageId = tags.put(tag, imageId);
+        if ((previousImageId != null) && (!previousImageId.equals(imageId))) {
+            // the tag moves to the new image, which leaves the previous image untagged rather than removed
+            images.get(previousImageId).tags.remove(tag);
+        }
+        images.get(imageId).tags.add(tag);
+    }
+
+    private String newImageId() {
+        StringBuilder imageId = new StringBuilder();
+        synchronized (random) {
+            for (int part = 0; part < 4; part++) {
+                imageId.append(String.format("%016x", random.nextLong()));
+            }
+        }
+        return imageId.toString();
+    }
+
+    private static void writeProgress(OutputStream output, String stream) throws IOException {
+        ObjectNode progress = JsonNodeFactory.instance.objectNode();
+        progress.put("stream", stream);
+        output.write(OBJECT_MAPPER.writeValueAsBytes(progress));
+        output.write('\n');
+        output.flush();
+    }
+
+    private static String stripAPIVersion(String path) {
+        Matcher matcher = API_VERSION_PATTERN.matcher(path);
+        return matcher.matches() ? matcher.group(1) : path;
+    }
+
+    private static String getImageName(String resourcePath, String suffix) {
+        return resourcePath.substring("/images/".length(), resourcePath.length() - suffix.length());
+    }
+
+    /**
+     * appends the latest tag to an image name without a tag
+     */
+    private static String normalizeTag(String imageName) {
+        if (imageName.lastIndexOf(':') > imageName.lastIndexOf('/')) {
+            return imageName;
+        }
+        return imageName + ":" + LATEST_TAG;
+    }
+
+    private static class FakeImage {
+        private final String id;
+        private final long size;
+        private final long created = System.currentTimeMillis() / 1000;
+        private final Set<String> tags = new LinkedHashSet<>();
+
+        FakeImage(String id, long size) {
+            this.id = id;
+            this.size = size;
+        }
+
+        boolean hasRepository(String repository) {
+            for (String tag : tags) {
+                if (tag.substring(0, tag.lastIndexOf(':')).equals(repository)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        ObjectNode toJson() {
+            ObjectNode image = JsonNodeFactory.instance.objectNode();
+            image.put("Id", id);
+            image.put("ParentId", "");
+            ArrayNode repoTags = image.putArray("RepoTags");
+            if (tags.isEmpty()) {
+                repoTags.add("<none>:<none>");
+            }
+            for (String tag : tags) {
+                repoTags.add(tag);
+            }
+            image.put("Created", String.valueOf(created));
+            image.put("Size", size);
+            image.put("VirtualSize", size);
+            return image;
+        }
+    }
+}
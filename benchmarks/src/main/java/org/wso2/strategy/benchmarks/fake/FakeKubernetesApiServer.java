@@ -0,0 +1,599 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.benchmarks.fake;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.UUID;
+
+/**
+ * an in-process stand-in for the Kubernetes v1 API server, serving the replication controller, service and pod
+ * calls made by ReplicationControllerHandler, RollingUpdater, ReplicationControllerPatcher, ServiceHandler and
+ * PodHandler, both through the fabric8 client and through KubernetesRestClient
+ * <p>
+ * The server keeps the entities in memory and stands in for the replication manager as well: after every change
+ * to a replication controller or a pod, pods are created from the template of each replication controller, or
+ * deleted, until the number of pods matching its selector equals its replicas. A pod becomes running and ready
+ * once the pod startup delay has elapsed after its creation. Conditional updates and patches holding a stale
+ * resource version are rejected, as are services requesting an allocated NodePort. Watches are not supported,
+ * hence the cluster state cache falls back to reading from the server.
+ * <p>
+ * The routes are named verb.resource, e.g. list.pods or patch.replicationcontrollers, whose response profiles are
+ * read from the fake.kubernetes system properties. The pod startup delay is read from
+ * fake.kubernetes.pod-startup-delay, in milliseconds.
+ */
+public class FakeKubernetesApiServer extends FakeApiServer {
+    // resource to the entities of the resource, keyed by namespace/name
+    private final Map<String, Map<String, ObjectNode>> entities = new HashMap<>();
+    // namespace/name of each pod to the time it was created at, in nanoseconds
+    private final Map<String, Long> podCreationTimes = new HashMap<>();
+    private final Set<Integer> allocatedNodePorts = new HashSet<>();
+    private final long podStartupDelayInNanoseconds;
+    private final Random random = new Random();
+    private long resourceVersion;
+    private int clusterIPCount;
+
+    public static final String PROPERTY_PREFIX = "fake.kubernetes";
+    public static final String POD_STARTUP_DELAY_PROPERTY = PROPERTY_PREFIX + ".pod-startup-delay";
+    private static final String API_PATH = "/api/v1/";
+    private static final String NAMESPACES = "namespaces";
+    private static final String REPLICATION_CONTROLLERS = "replicationcontrollers";
+    private static final String SERVICES = "services";
+    private static final String PODS = "pods";
+    private static final List<String> RESOURCES = Arrays.asList(REPLICATION_CONTROLLERS, SERVICES, PODS);
+    private static final Map<String, String> KINDS = new HashMap<>();
+    private static final int HTTP_UNPROCESSABLE_ENTITY = 422;
+    private static final int NODE_PORT_LOWER_LIMIT = 30000;
+    private static final int NODE_PORT_UPPER_LIMIT = 32767;
+    private static final int POD_NAME_SUFFIX_LENGTH = 5;
+    private static final String POD_NAME_CHARACTERS = "bcdfghjklmnpqrstvwxz0123456789";
+
+    static {
+        KINDS.put(REPLICATION_CONTROLLERS, "ReplicationController");
+        KINDS.put(SERVICES, "Service");
+        KINDS.put(PODS, "Pod");
+    }
+
+    public FakeKubernetesApiServer() {
+        this(Long.getLong(POD_STARTUP_DELAY_PROPERTY, 0));
+    }
+
+    /**
+     * @param podStartupDelayInMilliseconds time after which a created pod is running and ready
+     */
+    public FakeKubernetesApiServer(long podStartupDelayInMilliseconds) {
+        super(PROPERTY_PREFIX);
+        podStartupDelayInNanoseconds = Math.max(0, podStartupDelayInMilliseconds) * 1000000;
+        for (String resource : RESOURCES) {
+            entities.put(resource, new LinkedHashMap<String, ObjectNode>());
+        }
+    }
+
+    /**
+     * @param resource plural resource name, e.g. pods
+     * @return the number of entities of the resource held by the server
+     */
+    public synchronized int getEntityCount(String resource) {
+        Map<String, ObjectNode> resourceEntities = entities.get(resource);
+        return (resourceEntities != null) ? resourceEntities.size() : 0;
+    }
+
+    protected String getRoute(String method, String path) {
+        ResourcePath resourcePath = ResourcePath.parse(path);
+        if (resourcePath == null) {
+            return null;
+        }
+        String verb;
+        switch (method) {
+        case "GET":
+            verb = (resourcePath.name == null) ? "list" : "get";
+            break;
+        case "POST":
+            verb = (resourcePath.name == null) ? "create" : null;
+            break;
+        case "PUT":
+            verb = (resourcePath.name != null) ? "update" : null;
+            break;
+        case "PATCH":
+            verb = (resourcePath.name != null) ? "patch" : null;
+            break;
+        case "DELETE":
+            verb = (resourcePath.name != null) ? "delete" : null;
+            break;
+        default:
+            verb = null;
+        }
+        return (verb != null) ? verb + "." + resourcePath.resource : null;
+    }
+
+    protected void serve(HttpExchange exchange, String route, String path) throws IOException {
+        ResourcePath resourcePath = ResourcePath.parse(path);
+        Map<String, String> parameters = getQueryParameters(exchange);
+        if (Boolean.parseBoolean(parameters.get("watch"))) {
+            sendError(exchange, HTTP_NOT_FOUND, "Watches are not supported.");
+            return;
+        }
+        String verb = route.substring(0, route.indexOf('.'));
+        JsonNode body = null;
+        if ("create".equals(verb) || "update".equals(verb) || "patch".equals(verb)) {
+            byte[] content = readBody(exchange);
+            body = OBJECT_MAPPER.readTree(content);
+            if ((body == null) || (!body.isObject())) {
+                sendError(exchange, HTTP_UNPROCESSABLE_ENTITY, "The request body is not a JSON object.");
+                return;
+            }
+        } else {
+            drain(exchange);
+        }
+        Response response;
+        synchronized (this) {
+            switch (verb) {
+            case "list":
+                response = list(resourcePath, parameters.get("labelSelector"));
+                break;
+            case "get":
+                response = get(resourcePath);
+                break;
+            case "create":
+                response = create(resourcePath, (ObjectNode) body);
+                break;
+            case "update":
+                response = update(resourcePath, (ObjectNode) body);
+                break;
+            case "patch":
+                response = patch(resourcePath, (ObjectNode) body);
+                break;
+            default:
+                response = delete(resourcePath);
+            }
+        }
+        sendJson(exchange, response.status, response.entity);
+    }
+
+    protected void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        sendJson(exchange, status, toStatus(status, message));
+    }
+
+    private Response list(ResourcePath resourcePath, String labelSelector) {
+        Map<String, String> selector = parseLabelSelector(labelSelector);
+        ObjectNode list = JsonNodeFactory.instance.objectNode();
+        list.put("kind", KINDS.get(resourcePath.resource) + "List");
+        list.put("apiVersion", "v1");
+        list.with("metadata").put("resourceVersion", String.valueOf(resourceVersion));
+        ArrayNode items = list.putArray("items");
+        for (Map.Entry<String, ObjectNode> entity : entities.get(resourcePath.resource).entrySet()) {
+            if (((resourcePath.namespace == null) || (entity.getKey().startsWith(resourcePath.namespace + "/")))
+                    && (matches(selector, entity.getValue().path("metadata").path("labels")))) {
+                items.add(render(resourcePath.resource, entity.getKey(), entity.getValue()));
+            }
+        }
+        return new Response(HTTP_OK, list);
+    }
+
+    private Response get(ResourcePath resourcePath) {
+        ObjectNode entity = entities.get(resourcePath.resource).get(resourcePath.getKey());
+        if (entity == null) {
+            return notFound(resourcePath);
+        }
+        return new Response(HTTP_OK, render(resourcePath.resource, resourcePath.getKey(), entity));
+    }
+
+    private Response create(ResourcePath resourcePath, ObjectNode entity) {
+        String name = entity.path("metadata").path("name").asText();
+        if (name.isEmpty()) {
+            return new Response(HTTP_UNPROCESSABLE_ENTITY,
+                    toStatus(HTTP_UNPROCESSABLE_ENTITY, "metadata.name is required."));
+        }
+        String namespace = (resourcePath.namespace != null) ? resourcePath.namespace : "default";
+        String key = namespace + "/" + name;
+        if (entities.get(resourcePath.resource).containsKey(key)) {
+            return new Response(HTTP_CONFLICT, toStatus(HTTP_CONFLICT,
+                    String.format("%s \"%s\" already exists", resourcePath.resource, name)));
+        }
+        if (SERVICES.equals(resourcePath.resource)) {
+            String error = allocateServiceAddresses(entity);
+            if (error != null) {
+                return new Response(HTTP_UNPROCESSABLE_ENTITY, toStatus(HTTP_UNPROCESSABLE_ENTITY, error));
+            }
+        }
+        ObjectNode metadata = entity.with("metadata");
+        metadata.put("namespace", namespace);
+        metadata.put("uid", UUID.randomUUID().toString());
+        metadata.put("creationTimestamp", getTimestamp());
+        entity.put("kind", KINDS.get(resourcePath.resource));
+        entity.put("apiVersion", "v1");
+        store(resourcePath.resource, key, entity);
+        if (PODS.equals(resourcePath.resource)) {
+            podCreationTimes.put(key, System.nanoTime());
+        }
+        reconcile(resourcePath.resource);
+        return new Response(HTTP_CREATED, render(resourcePath.resource, key, entity));
+    }
+
+    private Response update(ResourcePath resourcePath, ObjectNode entity) {
+        ObjectNode current = entities.get(resourcePath.resource).get(resourcePath.getKey());
+        if (current == null) {
+            return notFound(resourcePath);
+        }
+        if (isStale(current, entity)) {
+            return conflict(resourcePath);
+        }
+        // the server owned metadata and the service addresses are kept
+        ObjectNode metadata = entity.with("metadata");
+        for (String field : Arrays.asList("name", "namespace", "uid", "creationTimestamp")) {
+            metadata.put(field, current.path("metadata").path(field).asText());
+        }
+        if (SERVICES.equals(resourcePath.resource)) {
+            entity.with("spec").put("clusterIP", current.path("spec").path("clusterIP").asText());
+            entity.with("spec").put("ports", current.path("spec").path("ports"));
+        }
+        entity.remove("status");
+        store(resourcePath.resource, resourcePath.getKey(), entity);
+        reconcile(resourcePath.resource);
+        return new Response(HTTP_OK, render(resourcePath.resource, resourcePath.getKey(), entity));
+    }
+
+    private Response patch(ResourcePath resourcePath, ObjectNode patch) {
+        ObjectNode current = entities.get(resourcePath.resource).get(resourcePath.getKey());
+        if (current == null) {
+            return notFound(resourcePath);
+        }
+        if (isStale(current, patch)) {
+            return conflict(resourcePath);
+        }
+        ObjectNode patched = current.deepCopy();
+        if (patch.has("metadata")) {
+            ((ObjectNode) patch.get("metadata")).remove("resourceVersion");
+        }
+        merge(patched, patch);
+        store(resourcePath.resource, resourcePath.getKey(), patched);
+        reconcile(resourcePath.resource);
+        return new Response(HTTP_OK, render(resourcePath.resource, resourcePath.getKey(), patched));
+    }
+
+    private Response delete(ResourcePath resourcePath) {
+        ObjectNode removed = entities.get(resourcePath.resource).remove(resourcePath.getKey());
+        if (removed == null) {
+            return notFound(resourcePath);
+        }
+        if (SERVICES.equals(resourcePath.resource)) {
+            for (JsonNode port : removed.path("spec").path("ports")) {
+                allocatedNodePorts.remove(port.path("nodePort").asInt());
+            }
+        } else if (PODS.equals(resourcePath.resource)) {
+            podCreationTimes.remove(resourcePath.getKey());
+        }
+        // as with the API server, deleting a replication controller leaves its pods running
+        reconcile(resourcePath.resource);
+        ObjectNode status = toStatus(HTTP_OK, null);
+        status.put("status", "Success");
+        return new Response(HTTP_OK, status);
+    }
+
+    /**
+     * creates or deletes pods until the number of pods matching the selector of each replication controller
+     * equals its replicas
+     */
+    private void reconcile(String changedResource) {
+        if (SERVICES.equals(changedResource)) {
+            return;
+        }
+        Map<String, ObjectNode> pods = entities.get(PODS);
+        for (Map.Entry<String, ObjectNode> controllerEntry : entities.get(REPLICATION_CONTROLLERS).entrySet()) {
+            ObjectNode controller = controllerEntry.getValue();
+            String namespace = controllerEntry.getKey().substring(0, controllerEntry.getKey().indexOf('/'));
+            Map<String, String> selector = toMap(controller.path("spec").path("selector"));
+            int replicas = controller.path("spec").path("replicas").asInt();
+            List<String> matchingPods = new ArrayList<>();
+            for (Map.Entry<String, ObjectNode> pod : pods.entrySet()) {
+                if (pod.getKey().startsWith(namespace + "/") && (!selector.isEmpty()) && matches(selector,
+                        pod.getValue().path("metadata").path("labels"))) {
+                    matchingPods.add(pod.getKey());
+                }
+            }
+            // the most recently created pods are the first to go
+            for (int index = matchingPods.size() - 1; index >= replicas; index--) {
+                pods.remove(matchingPods.get(index));
+                podCreationTimes.remove(matchingPods.get(index));
+            }
+            for (int count = matchingPods.size(); count < replicas; count++) {
+                createPod(namespace, controller);
+            }
+            controller.with("status").put("replicas", replicas);
+        }
+    }
+
+    private void createPod(String namespace, ObjectNode controller) {
+        JsonNode template = controller.path("spec").path("template");
+        String name;
+        do {
+            StringBuilder suffix = new StringBuilder();
+            for (int index = 0; index < POD_NAME_SUFFIX_LENGTH; index++) {
+                suffix.append(POD_NAME_CHARACTERS.charAt(random.nextInt(POD_NAME_CHARACTERS.length())));
+            }
+            name = controller.path("metadata").path("name").asText() + "-" + suffix;
+        } while (entities.get(PODS).containsKey(namespace + "/" + name));
+        ObjectNode pod = JsonNodeFactory.instance.objectNode();
+        pod.put("kind", KINDS.get(PODS));
+        pod.put("apiVersion", "v1");
+        ObjectNode metadata = pod.with("metadata");
+        metadata.put("name", name);
+        metadata.put("namespace", namespace);
+        metadata.put("uid", UUID.randomUUID().toString());
+        metadata.put("creationTimestamp", getTimestamp());
+        metadata.put("generateName", controller.path("metadata").path("name").asText() + "-");
+        if (template.path("metadata").has("labels")) {
+            metadata.put("labels", template.path("metadata").path("labels").deepCopy());
+        }
+        if (template.has("spec")) {
+            pod.put("spec", template.path("spec").deepCopy());
+        }
+        String key = namespace + "/" + name;
+        store(PODS, key, pod);
+        podCreationTimes.put(key, System.nanoTime());
+    }
+
+    /**
+     * assigns the cluster IP of a service and allocates its NodePorts
+     *
+     * @return an error message if a requested NodePort is allocated, else null
+     */
+    private String allocateServiceAddresses(ObjectNode service) {
+        ObjectNode spec = service.with("spec");
+        boolean nodePortService = "NodePort".equals(spec.path("type").asText());
+        List<Integer> requestedNodePorts = new ArrayList<>();
+        for (JsonNode port : spec.path("ports")) {
+            int nodePort = port.path("nodePort").asInt();
+            if (nodePort != 0) {
+                if (allocatedNodePorts.contains(nodePort) || requestedNodePorts.contains(nodePort)) {
+                    return String.format("spec.ports[].nodePort: Invalid value: %d: provided port is already "
+                            + "allocated", nodePort);
+                }
+                requestedNodePorts.add(nodePort);
+            }
+        }
+        allocatedNodePorts.addAll(requestedNodePorts);
+        if (nodePortService) {
+            for (JsonNode port : spec.path("ports")) {
+                if (port.path("nodePort").asInt() == 0) {
+                    int nodePort = NODE_PORT_LOWER_LIMIT;
+                    while (allocatedNodePorts.contains(nodePort) && (nodePort < NODE_PORT_UPPER_LIMIT)) {
+                        nodePort++;
+                    }
+                    allocatedNodePorts.add(nodePort);
+                    ((ObjectNode) port).put("nodePort", nodePort);
+                }
+            }
+        }
+        clusterIPCount++;
+        spec.put("clusterIP", String.format("10.0.%d.%d", (clusterIPCount / 254) % 256, clusterIPCount % 254 + 1));
+        return null;
+    }
+
+    private void store(String resource, String key, ObjectNode entity) {
+        entity.with("metadata").put("resourceVersion", String.valueOf(++resourceVersion));
+        entities.get(resource).put(key, entity);
+    }
+
+    /**
+     * returns a copy of the entity as served, i.e. with the current status of a pod
+     */
+    private ObjectNode render(String resource, String key, ObjectNode entity) {
+        ObjectNode rendered = entity.deepCopy();
+        if (PODS.equals(resource)) {
+            Long creationTime = podCreationTimes.get(key);
+            boolean running = (creationTime == null)
+                    || (System.nanoTime() - creationTime >= podStartupDelayInNanoseconds);
+            ObjectNode status = rendered.putObject("status");
+            status.put("phase", running ? "Running" : "Pending");
+            ObjectNode readyCondition = status.putArray("conditions").addObject();
+            readyCondition.put("type", "Ready");
+            readyCondition.put("status", running ? "True" : "False");
+            status.put("hostIP", "127.0.0.1");
+            if (running) {
+                status.put("podIP", String.format("10.1.%d.%d", (key.hashCode() >>> 8) % 256,
+                        (key.hashCode() & 0xff) % 254 + 1));
+            }
+        }
+        return rendered;
+    }
+
+    private static boolean isStale(ObjectNode current, ObjectNode change) {
+        String expectedVersion = change.path("metadata").path("resourceVersion").asText();
+        return (!expectedVersion.isEmpty()) && (!expectedVersion
+                .equals(current.path("metadata").path("resourceVersion").asText()));
+    }
+
+    /**
+     * merges a patch into an entity. Objects are merged field by field and null fields are removed. Lists of
+     * named objects, such as containers and ports, are merged by name, any other value is replaced.
+     */
+    private static void merge(ObjectNode target, ObjectNode patch) {
+        Iterator<Map.Entry<String, JsonNode>> fields = patch.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            JsonNode current = target.get(field.getKey());
+            JsonNode value = field.getValue();
+            if (value.isNull()) {
+                target.remove(field.getKey());
+            } else if ((current != null) && current.isObject() && value.isObject()) {
+                merge((ObjectNode) current, (ObjectNode) value);
+            } else if ((current != null) && isNamedList(current) && isNamedList(value)) {
+                for (JsonNode element : value) {
+                    ObjectNode currentElement = findByName((ArrayNode) current, element.path("name").asText());
+                    if (currentElement != null) {
+                        merge(currentElement, (ObjectNode) element);
+                    } else {
+                        ((ArrayNode) current).add(element.deepCopy());
+                    }
+                }
+            } else {
+                target.put(field.getKey(), value.deepCopy());
+            }
+        }
+    }
+
+    private static boolean isNamedList(JsonNode node) {
+        if ((!node.isArray()) || (node.size() == 0)) {
+            return false;
+        }
+        for (JsonNode element : node) {
+            if ((!element.isObject()) || (!element.has("name"))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static ObjectNode findByName(ArrayNode list, String name) {
+        for (JsonNode element : list) {
+            if (name.equals(element.path("name").asText())) {
+                return (ObjectNode) element;
+            }
+        }
+        return null;
+    }
+
+    private static boolean matches(Map<String, String> selector, JsonNode labels) {
+        for (Map.Entry<String, String> requirement : selector.entrySet()) {
+            JsonNode label = labels.get(requirement.getKey());
+            if ((label == null) || (!requirement.getValue().equals(label.asText()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Map<String, String> parseLabelSelector(String labelSelector) {
+        Map<String, String> selector = new HashMap<>();
+        if ((labelSelector != null) && (!labelSelector.isEmpty())) {
+            for (String requirement : labelSelector.split(",")) {
+                String[] keyValue = requirement.split("==?", 2);
+                selector.put(keyValue[0].trim(), (keyValue.length > 1) ? keyValue[1].trim() : "");
+            }
+        }
+        return selector;
+    }
+
+    private static Map<String, String> toMap(JsonNode node) {
+        Map<String, String> map = new HashMap<>();
+        Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            map.put(field.getKey(), field.getValue().asText());
+        }
+        return map;
+    }
+
+    private static Response notFound(ResourcePath resourcePath) {
+        return new Response(HTTP_NOT_FOUND, toStatus(HTTP_NOT_FOUND,
+                String.format("%s \"%s\" not found", resourcePath.resource, resourcePath.name)));
+    }
+
+    private static Response conflict(ResourcePath resourcePath) {
+        return new Response(HTTP_CONFLICT, toStatus(HTTP_CONFLICT, String.format(
+                "Operation cannot be fulfilled on %s \"%s\": the object has been modified", resourcePath.resource,
+                resourcePath.name)));
+    }
+
+    private static ObjectNode toStatus(int code, String message) {
+        ObjectNode status = JsonNodeFactory.instance.objectNode();
+        status.put("kind", "Status");
+        status.put("apiVersion", "v1");
+        status.put("status", "Failure");
+        if (message != null) {
+            status.put("message", message);
+        }
+        status.put("code", code);
+        return status;
+    }
+
+    private static String getTimestamp() {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return dateFormat.format(new Date());
+    }
+
+    /**
+     * the resource, namespace and name addressed by an API path of the form
+     * /api/v1/[namespaces/namespace/]resource[/name]
+     */
+    private static class ResourcePath {
+        private final String namespace;
+        private final String resource;
+        private final String name;
+
+        ResourcePath(String namespace, String resource, String name) {
+            this.namespace = namespace;
+            this.resource = resource;
+            this.name = name;
+        }
+
+        static ResourcePath parse(String path) {
+            if (!path.startsWith(API_PATH)) {
+                return null;
+            }
+            String[] segments = path.substring(API_PATH.length()).split("/");
+            int index = 0;
+            String namespace = null;
+            if ((segments.length >= 3) && NAMESPACES.equals(segments[0])) {
+                namespace = segments[1];
+                index = 2;
+            }
+            int remaining = segments.length - index;
+            if ((remaining < 1) || (remaining > 2) || (!RESOURCES.contains(segments[index]))) {
+                return null;
+            }
+            String name = (remaining == 2) ? segments[index + 1] : null;
+            if ((name != null) && (namespace == null)) {
+                return null;
+            }
+            return new ResourcePath(namespace, segments[index], name);
+        }
+
+        String getKey() {
+            return namespace + "/" + name;
+        }
+    }
+
+    private static class Response {
+        private final int status;
+        private final JsonNode entity;
+
+        Response(int status, JsonNode entity) {
+            this.status = status;
+            this.entity = entity;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.benchmarks.fake;
+
+import java.util.Random;
+
+/**
+ * the latency, jitter and failure rate with which a fake API server answers the calls of one of its routes
+ * <p>
+ * A profile is read from the system properties prefix.route.latency, prefix.route.jitter and
+ * prefix.route.error-rate, falling back to prefix.latency, prefix.jitter and prefix.error-rate, e.g.
+ * fake.docker.build.latency=2000 and fake.docker.latency=5. Latency and jitter are in milliseconds, each call
+ * being delayed by the latency plus a uniformly distributed share of the jitter. The error rate is the
+ * probability, between 0 and 1, of a call failing with an HTTP 500 response before it is served.
+ */
+public class ResponseProfile {
+    private final long latencyInMilliseconds;
+    private final long jitterInMilliseconds;
+    private final double errorRate;
+
+    public ResponseProfile(long latencyInMilliseconds, long jitterInMilliseconds, double errorRate) {
+        this.latencyInMilliseconds = Math.max(0, latencyInMilliseconds);
+        this.jitterInMilliseconds = Math.max(0, jitterInMilliseconds);
+        this.errorRate = Math.min(1, Math.max(0, errorRate));
+    }
+
+    /**
+     * reads the profile of a route from the system properties
+     *
+     * @param prefix prefix of the properties of the fake API server
+     * @param route  name of the route
+     * @return the profile of the route
+     */
+    public static ResponseProfile fromSystemProperties(String prefix, String route) {
+        return new ResponseProfile(
+                Long.getLong(prefix + "." + route + ".latency", Long.getLong(prefix + ".latency", 0)),
+                Long.getLong(prefix + "." + route + ".jitter", Long.getLong(prefix + ".jitter", 0)),
+                Double.parseDouble(System.getProperty(prefix + "." + route + ".error-rate",
+                        System.getProperty(prefix + ".error-rate", "0"))));
+    }
+
+    /**
+     * @param random source of the jitter
+     * @return the delay of the next call in milliseconds
+     */
+    public long nextDelay(Random random) {
+        if (jitterInMilliseconds == 0) {
+            return latencyInMilliseconds;
+        }
+        return latencyInMilliseconds + (long) (random.nextDouble() * jitterInMilliseconds);
+    }
+
+    /**
+     * @param random source of the failures
+     * @return true if the next call is to fail, else false
+     */
+    public boolean nextFailure(Random random) {
+        return (errorRate > 0) && (random.nextDouble() < errorRate);
+    }
+
+    public String toString() {
+        return String.format("[latency] %d ms [jitter] %d ms [error-rate] %.4f", latencyInMilliseconds,
+                jitterInMilliseconds, errorRate);
+    }
+}
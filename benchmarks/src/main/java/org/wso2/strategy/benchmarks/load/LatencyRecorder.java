@@ -0,0 +1,85 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.benchmarks.load;
+
+import java.util.Arrays;
+
+/**
+ * records the latencies of the calls of an operation, from which the throughput and the latency percentiles of
+ * the operation are reported
+ */
+public class LatencyRecorder {
+    private final String operation;
+    private long[] latencies = new long[INITIAL_CAPACITY];
+    private int count;
+    private int failures;
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final double NANOSECONDS_PER_MILLISECOND = 1000000.0;
+
+    public LatencyRecorder(String operation) {
+        this.operation = operation;
+    }
+
+    /**
+     * @param latencyInNanoseconds time taken by the call
+     * @param succeeded            true if the call succeeded, else false
+     */
+    public synchronized void record(long latencyInNanoseconds, boolean succeeded) {
+        if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, count * 2);
+        }
+        latencies[count++] = latencyInNanoseconds;
+        if (!succeeded) {
+            failures++;
+        }
+    }
+
+    /**
+     * @param elapsedTimeInNanoseconds time taken by the run in which the calls were made
+     * @return a one line summary of the calls, i.e. the throughput, the latency percentiles and the failures
+     */
+    public synchronized String summarize(long elapsedTimeInNanoseconds) {
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        long total = 0;
+        for (long latency : sorted) {
+            total += latency;
+        }
+        double throughput = (elapsedTimeInNanoseconds > 0) ? count * 1e9 / elapsedTimeInNanoseconds : 0;
+        return String.format("%-10s [calls] %6d [ops/s] %8.2f [p50] %9.2f ms [p99] %9.2f ms [p999] %9.2f ms "
+                        + "[mean] %9.2f ms [max] %9.2f ms [failures] %d", operation, count, throughput,
+                toMilliseconds(percentile(sorted, 0.5)), toMilliseconds(percentile(sorted, 0.99)),
+                toMilliseconds(percentile(sorted, 0.999)),
+                toMilliseconds((count > 0) ? total / count : 0),
+                toMilliseconds((count > 0) ? sorted[count - 1] : 0), failures);
+    }
+
+    /**
+     * returns the nearest rank percentile of the sorted latencies
+     */
+    private static long percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(fraction * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    private static double toMilliseconds(long nanoseconds) {
+        return nanoseconds / NANOSECONDS_PER_MILLISECOND;
+    }
+}
@@ -0,0 +1,236 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.benchmarks.load;
+
+import org.wso2.strategy.benchmarks.fake.FakeDockerDaemon;
+import org.wso2.strategy.benchmarks.fake.FakeKubernetesApiServer;
+import org.wso2.strategy.carbon.CarbonKernelHandler;
+import org.wso2.strategy.carbon.interfaces.ICarbonKernelHandler;
+import org.wso2.strategy.miscellaneous.metrics.MetricsRegistry;
+import org.wso2.strategy.miscellaneous.metrics.StageMetrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * drives concurrent tenants through deployments, rolling updates, scaling and un-deployments against an
+ * in-process Docker daemon and Kubernetes API server, without any network access, and reports the throughput and
+ * latency percentiles of each operation
+ * <p>
+ * Usage: LoadDriver [tenants] [iterations] [replicas]
+ * <p>
+ * Each tenant runs its own thread, which deploys the tenant, rolls out a fresh build of that release, scales it
+ * up and removes it, as many times as the iterations. The latency, jitter and error rate of the fake APIs are set
+ * through the fake.docker and fake.kubernetes system properties, e.g. -Dfake.kubernetes.latency=5
+ * -Dfake.docker.build.error-rate=0.01. As with the handler itself, the state files are written to the working
+ * directory.
+ */
+public class LoadDriver {
+    private static final int DEFAULT_TENANTS = 8;
+    private static final int DEFAULT_ITERATIONS = 10;
+    private static final int DEFAULT_REPLICAS = 2;
+    private static final String KERNEL_ARTIFACT = "wso2carbon-kernel-5.0.0.zip";
+    private static final int MAX_REPORTED_ERRORS = 10;
+    private static final String[] OPERATIONS = { "deploy", "rollUpdate", "scale", "remove" };
+
+    // unless set otherwise, the handler polls the fake APIs as often as a load test needs
+    private static final String[][] DEFAULT_PROPERTIES = {
+            { "kubernetes.rolling-update.poll-interval", "10" },
+            { "carbon.image-readiness.timeout", "10000" },
+            { "docker.preflight.timeout", "5000" } };
+
+    public static void main(String[] args) {
+        int status = 0;
+        try {
+            drive(args);
+        } catch (Throwable failure) {
+            // includes the AssertionError of a broken load scenario, which aborts the run
+            failure.printStackTrace();
+            status = 1;
+        }
+        // the Jersey client of the Docker client library keeps a non-daemon async executor thread alive
+        System.exit(status);
+    }
+
+    private static void drive(String[] args) throws Exception {
+        int tenants = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_TENANTS;
+        int iterations = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_ITERATIONS;
+        int replicas = (args.length > 2) ? Integer.parseInt(args[2]) : DEFAULT_REPLICAS;
+        for (String[] property : DEFAULT_PROPERTIES) {
+            if (System.getProperty(property[0]) == null) {
+                System.setProperty(property[0], property[1]);
+            }
+        }
+
+        FakeDockerDaemon dockerDaemon = new FakeDockerDaemon();
+        FakeKubernetesApiServer kubernetesApiServer = new FakeKubernetesApiServer();
+        dockerDaemon.start();
+        kubernetesApiServer.start();
+        Path kernelDirectory = Files.createTempDirectory("load-driver");
+        Path kernel = createKernelArtifact(kernelDirectory);
+        try {
+            ICarbonKernelHandler handler = new CarbonKernelHandler(dockerDaemon.getURL(),
+                    kubernetesApiServer.getURL());
+            Map<String, LatencyRecorder> recorders = new LinkedHashMap<>();
+            for (String operation : OPERATIONS) {
+                recorders.put(operation, new LatencyRecorder(operation));
+            }
+            List<String> errors = new ArrayList<>();
+            long elapsedTime = run(handler, kernel, tenants, iterations, replicas, recorders, errors);
+
+            System.out.println(String.format("%d tenants x %d iterations, %d replicas, in %.2f s", tenants,
+                    iterations, replicas, elapsedTime / 1e9));
+            for (LatencyRecorder recorder : recorders.values()) {
+                System.out.println(recorder.summarize(elapsedTime));
+            }
+            System.out.println("docker calls:          " + dockerDaemon.getCallCounts());
+            System.out.println("docker failures:       " + dockerDaemon.getInjectedFailureCounts());
+            System.out.println("kubernetes calls:      " + kubernetesApiServer.getCallCounts());
+            System.out.println("kubernetes failures:   " + kubernetesApiServer.getInjectedFailureCounts());
+            // where the time of each operation went, as recorded by the handler itself
+            for (StageMetrics stage : MetricsRegistry.getInstance().getStages()) {
+                System.out.println(stage);
+            }
+            for (String error : errors) {
+                System.err.println(error);
+            }
+        } finally {
+            Files.deleteIfExists(kernel);
+            Files.deleteIfExists(kernelDirectory);
+            dockerDaemon.stop();
+            kubernetesApiServer.stop();
+        }
+    }
+
+    /**
+     * runs the tenants concurrently and returns the time taken, in nanoseconds
+     */
+    private static long run(final ICarbonKernelHandler handler, final Path kernel, int tenants,
+            final int iterations, final int replicas, final Map<String, LatencyRecorder> recorders,
+            final List<String> errors) throws Exception {
+        // tenant names are unique per run, as the state files of earlier runs are kept
+        final String runIdentifier = Integer.toString(new Random().nextInt(46656), 36);
+        final CountDownLatch startSignal = new CountDownLatch(1);
+        final AtomicInteger errorCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(tenants);
+        List<Future<Void>> workers = new ArrayList<>();
+        for (int index = 0; index < tenants; index++) {
+            final String tenant = "load" + runIdentifier + "t" + index;
+            workers.add(executor.submit(new Callable<Void>() {
+                public Void call() throws Exception {
+                    startSignal.await();
+                    for (int iteration = 0; iteration < iterations; iteration++) {
+                        final String buildVersion = "1." + iteration + ".0";
+                        boolean deployed = time(recorders.get("deploy"), errors, errorCount, new Callable<Boolean>() {
+                            public Boolean call() throws Exception {
+                                return handler.deploy(tenant, kernel, buildVersion, replicas);
+                            }
+                        });
+                        if (deployed) {
+                            // rolls out a fresh build of the release just deployed, as the handler updates a
+                            // tenant only to a version with built artifacts
+                            time(recorders.get("rollUpdate"), errors, errorCount, new Callable<Boolean>() {
+                                public Boolean call() throws Exception {
+                                    if (!handler.rollUpdate(tenant, kernel, buildVersion)) {
+                                        // not a sample of the rolling update path, but a broken load scenario
+                                        throw new AssertionError(
+                                                "rolling update of deployed tenant " + tenant + " was not attempted");
+                                    }
+                                    return true;
+                                }
+                            });
+                            time(recorders.get("scale"), errors, errorCount, new Callable<Boolean>() {
+                                public Boolean call() throws Exception {
+                                    return handler.scale(tenant, replicas + 1);
+                                }
+                            });
+                        }
+                        // a failed deployment may have left part of the tenant behind
+                        time(recorders.get("remove"), errors, errorCount, new Callable<Boolean>() {
+                            public Boolean call() throws Exception {
+                                return handler.remove(tenant);
+                            }
+                        });
+                    }
+                    return null;
+                }
+            }));
+        }
+        long startTime = System.nanoTime();
+        startSignal.countDown();
+        try {
+            for (Future<Void> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return System.nanoTime() - startTime;
+    }
+
+    private static boolean time(LatencyRecorder recorder, List<String> errors, AtomicInteger errorCount,
+            Callable<Boolean> operation) {
+        long startTime = System.nanoTime();
+        boolean succeeded;
+        String error = null;
+        try {
+            succeeded = operation.call();
+            if (!succeeded) {
+                error = "returned false";
+            }
+        } catch (Exception exception) {
+            succeeded = false;
+            error = exception.toString();
+        }
+        recorder.record(System.nanoTime() - startTime, succeeded);
+        if ((error != null) && (errorCount.incrementAndGet() <= MAX_REPORTED_ERRORS)) {
+            synchronized (errors) {
+                errors.add(String.format("[%s] %s", Thread.currentThread().getName(), error));
+            }
+        }
+        return succeeded;
+    }
+
+    /**
+     * creates a minimal kernel distribution, which the fake Docker daemon accepts as any other build context
+     */
+    private static Path createKernelArtifact(Path directory) throws IOException {
+        Path kernel = directory.resolve(KERNEL_ARTIFACT);
+        String kernelDirectory = KERNEL_ARTIFACT.substring(0, KERNEL_ARTIFACT.length() - 4);
+        try (OutputStream outputStream = Files.newOutputStream(kernel);
+                ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream)) {
+            zipOutputStream.putNextEntry(new ZipEntry(kernelDirectory + "/bin/wso2server.sh"));
+            zipOutputStream.write("#!/bin/sh\n".getBytes("UTF-8"));
+            zipOutputStream.closeEntry();
+        }
+        return kernel;
+    }
+}
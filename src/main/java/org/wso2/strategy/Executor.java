@@ -16,10 +16,12 @@
 package org.wso2.strategy;
 
 import org.wso2.strategy.carbon.CarbonKernelHandler;
+import org.wso2.strategy.carbon.FleetOperationReport;
 import org.wso2.strategy.carbon.interfaces.ICarbonKernelHandler;
 import org.wso2.strategy.miscellaneous.exception.CarbonKernelHandlerException;
 import org.wso2.strategy.miscellaneous.helper.CarbonKernelHandlerHelper;
 import org.wso2.strategy.miscellaneous.io.FileInputKeyValueDataThread;
+import org.wso2.strategy.miscellaneous.io.FileInputSingletonDataThread;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -37,7 +39,8 @@ public class Executor {
                     configurationData.get("docker-url"), configurationData.get("kubernetes-url"));
             final String welcomeMessage = "***WELCOME TO WSO2 CARBON-KERNEL HANDLER APP***\n\n";
             final String mainMenuContent = "1 - Deploy\n2 - Rolling update\n3 - Rollback\n4 - Scale\n"
-                    + "5 - Un-deploy\n6 - Exit\nEnter your choice: ";
+                    + "5 - Un-deploy\n6 - Scale fleet\n7 - Rolling update fleet\n8 - Un-deploy fleet\n9 - Exit\n"
+                    + "Enter your choice: ";
             showMenu(welcomeMessage);
             while (true) {
                 int userChoice;
@@ -47,7 +50,7 @@ public class Executor {
                     tempUserChoice = SCANNER.next();
                     SCANNER.nextLine();
                     userChoice = getUserChoice(tempUserChoice);
-                } while ((userChoice < 1) || (userChoice > 6));
+                } while ((userChoice < 1) || (userChoice > 9));
                 process(userChoice, kernelHandlerHandler);
             }
         } catch (Exception exception) {
@@ -128,6 +131,21 @@ public class Executor {
                 }
                 break;
             case 6:
+                Map<String, Integer> tenantReplicas = gatherFleetScalingData();
+                showFleetReport(kernelHandler.scaleAll(tenantReplicas));
+                break;
+            case 7:
+                List<String> tenants = gatherFleetData();
+                showMenu("Build version: ");
+                buildVersion = SCANNER.nextLine();
+                artifactPath = gatherArtifactData();
+                showFleetReport(kernelHandler.rollUpdateAll(tenants, artifactPath, buildVersion));
+                break;
+            case 8:
+                tenants = gatherFleetData();
+                showFleetReport(kernelHandler.removeAll(tenants));
+                break;
+            case 9:
                 System.exit(0);
                 break;
             }
@@ -147,6 +165,40 @@ public class Executor {
         return tenant;
     }
 
+    private static List<String> gatherFleetData() {
+        showMenu("File of tenant names, one per line: ");
+        FileInputSingletonDataThread inputThread = new FileInputSingletonDataThread(SCANNER.nextLine());
+        inputThread.run();
+        List<String> tenants = new ArrayList<>();
+        for (String tenant : inputThread.getFileContent()) {
+            if (!tenant.trim().isEmpty()) {
+                tenants.add(tenant.trim());
+            }
+        }
+        return tenants;
+    }
+
+    private static Map<String, Integer> gatherFleetScalingData() {
+        showMenu("File of tenant=replicas pairs, one per line: ");
+        FileInputKeyValueDataThread inputThread = new FileInputKeyValueDataThread(SCANNER.nextLine());
+        inputThread.run();
+        Map<String, Integer> tenantReplicas = new LinkedHashMap<>();
+        for (Map.Entry<String, String> entry : inputThread.getFileContent().entrySet()) {
+            String value = entry.getValue().trim();
+            int replicas = value.isEmpty() ? -1 : getUserChoice(value);
+            if (replicas > 0) {
+                tenantReplicas.put(entry.getKey().trim(), replicas);
+            } else {
+                showMenu(String.format("Skipping tenant %s with an invalid no. of replicas.\n", entry.getKey()));
+            }
+        }
+        return tenantReplicas;
+    }
+
+    private static void showFleetReport(FleetOperationReport report) {
+        showMenu(report.toString() + "\n");
+    }
+
     private static Path gatherArtifactData() {
         Path artifactPath;
         String path;
@@ -0,0 +1,510 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.carbon;
+
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.strategy.carbon.interfaces.IAsyncCarbonKernelHandler;
+import org.wso2.strategy.carbon.journal.JournalEntry;
+import org.wso2.strategy.docker.scheduler.BuildPriority;
+import org.wso2.strategy.kubernetes.shard.KubernetesShard;
+import org.wso2.strategy.miscellaneous.exception.CarbonKernelHandlerException;
+import org.wso2.strategy.miscellaneous.helper.CarbonKernelHandlerHelper;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * a Java class which implements IAsyncCarbonKernelHandler Java interface on top of a CarbonKernelHandler.
+ * Each operation is a chain of steps run on a bounded executor, so that no thread is held by an operation
+ * between its steps or while it waits for an earlier operation on the same tenant to complete. Steps which do
+ * not depend on each other, e.g. the creation of the replication controller and the service of a tenant,
+ * run concurrently.
+ */
+public class AsyncCarbonKernelHandler implements IAsyncCarbonKernelHandler {
+    private final CarbonKernelHandler kernelHandler;
+    private final ListeningExecutorService stepExecutor;
+    // fails the operations which have not completed by their deadline
+    private final ScheduledExecutorService scheduler;
+
+    private static final Log LOG = LogFactory.getLog(AsyncCarbonKernelHandler.class);
+
+    public AsyncCarbonKernelHandler(CarbonKernelHandler kernelHandler) {
+        this(kernelHandler, Integer.getInteger(CarbonKernelHandlerConstants.ASYNC_PARALLELISM_PROPERTY,
+                CarbonKernelHandlerConstants.DEFAULT_ASYNC_PARALLELISM));
+    }
+
+    public AsyncCarbonKernelHandler(CarbonKernelHandler kernelHandler, int parallelism) {
+        this.kernelHandler = kernelHandler;
+        final AtomicInteger threadCount = new AtomicInteger();
+        stepExecutor = MoreExecutors.listeningDecorator(
+                Executors.newFixedThreadPool(Math.max(1, parallelism), new ThreadFactory() {
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "async-operation-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                }));
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "async-operation-scheduler");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    public ListenableFuture<Boolean> deploy(final String tenant, final Path kernelPath, final String buildVersion,
+            final int replicas, long timeoutInMilliseconds) {
+        final String componentName = generateComponentName(tenant);
+        return run("deploy", componentName, timeoutInMilliseconds, new Operation() {
+            public ListenableFuture<Boolean> start(final OperationContext context) {
+                ListenableFuture<String> image = context.submit(new Callable<String>() {
+                    public String call() throws CarbonKernelHandlerException {
+                        context.recordStarted(JournalEntry.Operation.DEPLOY, tenant, buildVersion,
+                                kernelPath.toString(), null, replicas);
+                        if (kernelHandler.isDeployed(componentName)) {
+                            return null;
+                        }
+                        String dockerImageName = kernelHandler
+                                .buildCarbonDockerImage(tenant, kernelPath, buildVersion, BuildPriority.INTERACTIVE);
+                        context.setDockerImageName(dockerImageName);
+                        kernelHandler.waitForImage(dockerImageName);
+                        return dockerImageName;
+                    }
+                });
+                return Futures.transform(image, new AsyncFunction<String, Boolean>() {
+                    public ListenableFuture<Boolean> apply(String dockerImageName) {
+                        if (dockerImageName == null) {
+                            return Futures.immediateFuture(false);
+                        }
+                        return createComponents(context, componentName, dockerImageName, replicas);
+                    }
+                }, MoreExecutors.sameThreadExecutor());
+            }
+        });
+    }
+
+    public ListenableFuture<Boolean> rollUpdate(final String tenant, final Path kernelPath, final String buildVersion,
+            long timeoutInMilliseconds) {
+        final String componentName = generateComponentName(tenant);
+        return run("rolling update", componentName, timeoutInMilliseconds, new Operation() {
+            public ListenableFuture<Boolean> start(final OperationContext context) {
+                ListenableFuture<Boolean> artifactsExist = context.submit(new Callable<Boolean>() {
+                    public Boolean call() throws CarbonKernelHandlerException {
+                        context.recordStarted(JournalEntry.Operation.ROLLING_UPDATE, tenant, buildVersion,
+                                kernelPath.toString(), null, 0);
+                        return kernelHandler.hasBuildArtifacts(tenant, buildVersion);
+                    }
+                });
+                ListenableFuture<Boolean> deployed = context.submit(new Callable<Boolean>() {
+                    public Boolean call() throws CarbonKernelHandlerException {
+                        return kernelHandler.isDeployed(componentName);
+                    }
+                });
+                return Futures.transform(Futures.allAsList(artifactsExist, deployed),
+                        new AsyncFunction<List<Boolean>, Boolean>() {
+                            public ListenableFuture<Boolean> apply(List<Boolean> checks) {
+                                if (!(checks.get(0) && checks.get(1))) {
+                                    return Futures.immediateFuture(false);
+                                }
+                                return context.submit(new Callable<Boolean>() {
+                                    public Boolean call() throws CarbonKernelHandlerException {
+                                        String dockerImageName = kernelHandler.buildCarbonDockerImage(tenant,
+                                                kernelPath, buildVersion, BuildPriority.BACKGROUND);
+                                        context.setDockerImageName(dockerImageName);
+                                        kernelHandler.waitForImage(dockerImageName);
+                                        kernelHandler.rollingUpdate(componentName, dockerImageName);
+                                        return true;
+                                    }
+                                });
+                            }
+                        }, MoreExecutors.sameThreadExecutor());
+            }
+        });
+    }
+
+    public ListenableFuture<Boolean> rollBack(final String tenant, final String buildVersion,
+            final String olderVersion, long timeoutInMilliseconds) {
+        final String componentName = generateComponentName(tenant);
+        return run("rollback", componentName, timeoutInMilliseconds, new Operation() {
+            public ListenableFuture<Boolean> start(final OperationContext context) {
+                return context.submit(new Callable<Boolean>() {
+                    public Boolean call() throws CarbonKernelHandlerException {
+                        context.recordStarted(JournalEntry.Operation.ROLLBACK, tenant, buildVersion, null,
+                                olderVersion, 0);
+                        if (kernelHandler.hasBuildArtifacts(tenant, buildVersion)) {
+                            kernelHandler.rollingUpdate(componentName, olderVersion);
+                            return true;
+                        }
+                        return false;
+                    }
+                });
+            }
+        });
+    }
+
+    public ListenableFuture<Boolean> scale(final String tenant, final int noOfReplicas,
+            long timeoutInMilliseconds) {
+        final String componentName = generateComponentName(tenant);
+        return run("scale", componentName, timeoutInMilliseconds, new Operation() {
+            public ListenableFuture<Boolean> start(final OperationContext context) {
+                return context.submit(new Callable<Boolean>() {
+                    public Boolean call() throws CarbonKernelHandlerException {
+                        context.recordStarted(JournalEntry.Operation.SCALE, tenant, null, null, null, noOfReplicas);
+                        if (kernelHandler.isDeployed(componentName)) {
+                            kernelHandler.getShardRouter().getShard(componentName)
+                                    .getReplicationControllerHandler().updateNoOfReplicas(componentName, noOfReplicas);
+                            return true;
+                        }
+                        return false;
+                    }
+                });
+            }
+        });
+    }
+
+    public ListenableFuture<Boolean> remove(final String tenant, long timeoutInMilliseconds) {
+        final String componentName = generateComponentName(tenant);
+        return run("remove", componentName, timeoutInMilliseconds, new Operation() {
+            public ListenableFuture<Boolean> start(final OperationContext context) {
+                ListenableFuture<KubernetesShard> deployedShard = context.submit(new Callable<KubernetesShard>() {
+                    public KubernetesShard call() throws CarbonKernelHandlerException {
+                        context.recordStarted(JournalEntry.Operation.REMOVE, tenant, null, null, null, 0);
+                        if (kernelHandler.isDeployed(componentName)) {
+                            return kernelHandler.getShardRouter().getShard(componentName);
+                        }
+                        return null;
+                    }
+                });
+                return Futures.transform(deployedShard, new AsyncFunction<KubernetesShard, Boolean>() {
+                    public ListenableFuture<Boolean> apply(KubernetesShard shard) {
+                        if (shard == null) {
+                            return Futures.immediateFuture(false);
+                        }
+                        return removeComponents(context, shard, componentName);
+                    }
+                }, MoreExecutors.sameThreadExecutor());
+            }
+        });
+    }
+
+    /**
+     * places the component on a shard and creates its replication controller and service concurrently. If
+     * the replication controller cannot be created, the placement and any service created are removed.
+     */
+    private ListenableFuture<Boolean> createComponents(final OperationContext context, final String componentName,
+            final String dockerImageName, final int replicas) {
+        ListenableFuture<KubernetesShard> placedShard = context.submit(new Callable<KubernetesShard>() {
+            public KubernetesShard call() throws CarbonKernelHandlerException {
+                return kernelHandler.getShardRouter().place(componentName);
+            }
+        });
+        return Futures.transform(placedShard, new AsyncFunction<KubernetesShard, Boolean>() {
+            public ListenableFuture<Boolean> apply(final KubernetesShard shard) {
+                final ListenableFuture<Void> replicationController = context.submit(new Callable<Void>() {
+                    public Void call() throws CarbonKernelHandlerException {
+                        shard.getReplicationControllerHandler()
+                                .createReplicationController(componentName, componentName, dockerImageName, replicas);
+                        return null;
+                    }
+                });
+                final ListenableFuture<Void> service = context.submit(new Callable<Void>() {
+                    public Void call() throws CarbonKernelHandlerException {
+                        shard.getServiceHandler().createService(componentName, componentName);
+                        return null;
+                    }
+                });
+                return Futures.transform(Futures.successfulAsList(replicationController, service),
+                        new AsyncFunction<List<Void>, Boolean>() {
+                            public ListenableFuture<Boolean> apply(List<Void> ignored) throws Exception {
+                                Throwable failure = getFailure(replicationController);
+                                if (failure != null) {
+                                    if (getFailure(service) == null) {
+                                        deleteQuietly(shard, componentName);
+                                    }
+                                    kernelHandler.getShardRouter().release(componentName);
+                                    return Futures.immediateFailedFuture(failure);
+                                }
+                                failure = getFailure(service);
+                                if (failure != null) {
+                                    return Futures.immediateFailedFuture(failure);
+                                }
+                                return Futures.immediateFuture(true);
+                            }
+                        }, stepExecutor);
+            }
+        }, MoreExecutors.sameThreadExecutor());
+    }
+
+    /**
+     * scales down and deletes the replication controller of the component while concurrently deleting its
+     * service, after which the placement of the component is released
+     */
+    private ListenableFuture<Boolean> removeComponents(OperationContext context, final KubernetesShard shard,
+            final String componentName) {
+        ListenableFuture<Void> replicationController = context.submit(new Callable<Void>() {
+            public Void call() throws CarbonKernelHandlerException {
+                final int noPods = 0;
+                shard.getReplicationControllerHandler().updateNoOfReplicas(componentName, noPods);
+                shard.getReplicationControllerHandler().deleteReplicationController(componentName);
+                return null;
+            }
+        });
+        ListenableFuture<Void> service = context.submit(new Callable<Void>() {
+            public Void call() throws CarbonKernelHandlerException {
+                shard.getServiceHandler().deleteService(componentName);
+                return null;
+            }
+        });
+        return Futures.transform(Futures.allAsList(replicationController, service),
+                new AsyncFunction<List<Void>, Boolean>() {
+                    public ListenableFuture<Boolean> apply(List<Void> ignored) {
+                        kernelHandler.getShardRouter().release(componentName);
+                        return Futures.immediateFuture(true);
+                    }
+                }, MoreExecutors.sameThreadExecutor());
+    }
+
+    /**
+     * starts an operation once the permit of the tenant is available and completes the returned future with its
+     * outcome, its failure or a timeout
+     *
+     * @param operationName         name of the operation, used in the failure messages
+     * @param componentName         Kubernetes component identifier of the tenant
+     * @param timeoutInMilliseconds time within which the operation has to complete, no limit if not positive
+     * @param operation             the operation
+     * @return a future of the outcome of the operation
+     */
+    private ListenableFuture<Boolean> run(final String operationName, final String componentName,
+            final long timeoutInMilliseconds, final Operation operation) {
+        final OperationContext context = new OperationContext(kernelHandler.getTenantPermit(componentName));
+        final ListenableFuture<Boolean> steps = Futures.transform(context.acquirePermit(),
+                new AsyncFunction<Void, Boolean>() {
+                    public ListenableFuture<Boolean> apply(Void ignored) {
+                        return operation.start(context);
+                    }
+                }, MoreExecutors.sameThreadExecutor());
+        final SettableFuture<Boolean> outcome = SettableFuture.create();
+        Futures.addCallback(steps, new FutureCallback<Boolean>() {
+            public void onSuccess(Boolean result) {
+                // recorded before the permit is released, so that the journal keeps the order of the operations
+                kernelHandler.recordOutcome(context.getStarted(),
+                        result ? JournalEntry.Phase.COMPLETED : JournalEntry.Phase.SKIPPED,
+                        context.getDockerImageName());
+                context.finish();
+                outcome.set(result);
+            }
+
+            public void onFailure(Throwable throwable) {
+                kernelHandler.recordOutcome(context.getStarted(), JournalEntry.Phase.FAILED,
+                        context.getDockerImageName());
+                context.finish();
+                if (throwable instanceof CancellationException) {
+                    outcome.cancel(false);
+                    return;
+                }
+                String message = String.format("Failed to %s the WSO2-Carbon kernel of %s.", operationName,
+                        componentName);
+                LOG.error(message, throwable);
+                if (throwable instanceof Exception) {
+                    outcome.setException(new CarbonKernelHandlerException(message, (Exception) throwable));
+                } else {
+                    outcome.setException(throwable);
+                }
+            }
+        });
+        if (timeoutInMilliseconds > 0) {
+            final ScheduledFuture<?> deadline = scheduler.schedule(new Runnable() {
+                public void run() {
+                    String message = String.format("Could not %s the WSO2-Carbon kernel of %s within %d ms.",
+                            operationName, componentName, timeoutInMilliseconds);
+                    if (outcome.setException(new TimeoutException(message))) {
+                        LOG.error(message);
+                        steps.cancel(true);
+                    }
+                }
+            }, timeoutInMilliseconds, TimeUnit.MILLISECONDS);
+            outcome.addListener(new Runnable() {
+                public void run() {
+                    deadline.cancel(false);
+                }
+            }, MoreExecutors.sameThreadExecutor());
+        }
+        outcome.addListener(new Runnable() {
+            public void run() {
+                if (outcome.isCancelled()) {
+                    steps.cancel(true);
+                }
+            }
+        }, MoreExecutors.sameThreadExecutor());
+        return outcome;
+    }
+
+    private void deleteQuietly(KubernetesShard shard, String componentName) {
+        try {
+            shard.getServiceHandler().deleteService(componentName);
+        } catch (CarbonKernelHandlerException exception) {
+            LOG.warn(String.format("Could not delete the service of %s.", componentName), exception);
+        }
+    }
+
+    private static Throwable getFailure(Future<?> future) throws InterruptedException {
+        try {
+            future.get();
+            return null;
+        } catch (ExecutionException exception) {
+            return exception.getCause();
+        } catch (CancellationException exception) {
+            return exception;
+        }
+    }
+
+    private static String generateComponentName(String tenant) {
+        return CarbonKernelHandlerHelper
+                .generateKubernetesComponentIdentifier(tenant, CarbonKernelHandlerConstants.ARTIFACT_NAME);
+    }
+
+    /**
+     * an asynchronous operation on the kernel of a single tenant
+     */
+    private interface Operation {
+        /**
+         * starts the steps of the operation, once the permit of the tenant has been acquired
+         *
+         * @param context context through which the steps are to be submitted
+         * @return a future of the outcome of the operation
+         */
+        ListenableFuture<Boolean> start(OperationContext context);
+    }
+
+    /**
+     * tracks the steps of a single operation, so that the permit of the tenant is released only after the
+     * operation is complete and none of its steps is still running, e.g. after the operation was cancelled
+     * in the middle of a Kubernetes API call
+     */
+    private class OperationContext {
+        private final TenantPermit permit;
+        private boolean permitHeld;
+        private int runningSteps;
+        private boolean finished;
+        // journal entry of the start of the operation, null until recorded
+        private volatile JournalEntry started;
+        // Docker image built by the operation, null if none
+        private volatile String dockerImageName;
+
+        OperationContext(TenantPermit permit) {
+            this.permit = permit;
+        }
+
+        <T> ListenableFuture<T> submit(final Callable<T> step) {
+            return stepExecutor.submit(new Callable<T>() {
+                public T call() throws Exception {
+                    stepStarted();
+                    try {
+                        return step.call();
+                    } finally {
+                        stepFinished();
+                    }
+                }
+            });
+        }
+
+        void recordStarted(JournalEntry.Operation operation, String tenant, String buildVersion,
+                String artifactPath, String dockerImageName, int replicas) throws CarbonKernelHandlerException {
+            started = kernelHandler.getJournal()
+                    .recordStarted(operation, tenant, buildVersion, artifactPath, dockerImageName, replicas);
+        }
+
+        JournalEntry getStarted() {
+            return started;
+        }
+
+        void setDockerImageName(String dockerImageName) {
+            this.dockerImageName = dockerImageName;
+        }
+
+        String getDockerImageName() {
+            return dockerImageName;
+        }
+
+        /**
+         * queues for the permit of the tenant without blocking, behind the operations which asked for it earlier
+         *
+         * @return a future which completes once the permit has been acquired, and whose cancellation gives up
+         * the place in the queue
+         */
+        ListenableFuture<Void> acquirePermit() {
+            final ListenableFuture<Void> acquired = permit.acquireAsync();
+            acquired.addListener(new Runnable() {
+                public void run() {
+                    if (!acquired.isCancelled()) {
+                        permitAcquired();
+                    }
+                }
+            }, MoreExecutors.sameThreadExecutor());
+            return acquired;
+        }
+
+        private synchronized void permitAcquired() {
+            permitHeld = true;
+            // the operation may have timed out as the permit was handed over
+            releaseIfIdle();
+        }
+
+        synchronized void finish() {
+            finished = true;
+            releaseIfIdle();
+        }
+
+        private synchronized void stepStarted() {
+            if (finished) {
+                throw new CancellationException("The operation has already completed.");
+            }
+            runningSteps++;
+        }
+
+        private synchronized void stepFinished() {
+            runningSteps--;
+            releaseIfIdle();
+        }
+
+        private void releaseIfIdle() {
+            if (finished && (runningSteps == 0) && permitHeld) {
+                permitHeld = false;
+                permit.release();
+            }
+        }
+    }
+}
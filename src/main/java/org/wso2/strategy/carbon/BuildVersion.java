@@ -0,0 +1,148 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.carbon;
+
+import org.joda.time.DateTime;
+import org.wso2.strategy.miscellaneous.exception.CarbonKernelHandlerException;
+
+/**
+ * a Java class which represents an immutable, parsed build version of a WSO2 Carbon kernel Docker image, in the
+ * form release-year-month-day-millisOfDay. Build versions are ordered by their release and then by the time
+ * at which they were built, which is packed into a single long.
+ */
+public final class BuildVersion implements Comparable<BuildVersion> {
+    private final String release;
+    // year, month, day of month and millisecond of day, from the most to the least significant bits
+    private final long buildTime;
+    private final String tag;
+
+    private static final int MONTH_SHIFT = 32;
+    private static final int YEAR_SHIFT = 36;
+    private static final int DAY_SHIFT = 27;
+    private static final int MILLIS_PER_DAY = 24 * 60 * 60 * 1000;
+    private static final int BUILD_TIME_FIELDS = 4;
+
+    private BuildVersion(String release, long buildTime, String tag) {
+        this.release = release;
+        this.buildTime = buildTime;
+        this.tag = tag;
+    }
+
+    /**
+     * creates the build version of a kernel release built at the specified time
+     *
+     * @param release  release of the WSO2 Carbon kernel built
+     * @param dateTime time at which the kernel is built
+     * @return the build version of the release built at the specified time
+     */
+    public static BuildVersion create(String release, DateTime dateTime) {
+        release = String.valueOf(release);
+        String tag = release + "-" + dateTime.getYear() + "-" + dateTime.getMonthOfYear() + "-" + dateTime
+                .getDayOfMonth() + "-" + dateTime.getMillisOfDay();
+        return new BuildVersion(release,
+                pack(dateTime.getYear(), dateTime.getMonthOfYear(), dateTime.getDayOfMonth(),
+                        dateTime.getMillisOfDay()), tag);
+    }
+
+    /**
+     * parses the build version of a Docker image tag or of a full Docker image name, e.g.
+     * tenant/wso2carbon:5.0.0-2015-9-1-43200000
+     *
+     * @param buildIdentifier Docker image tag or name holding a build version
+     * @return the parsed build version
+     * @throws CarbonKernelHandlerException if the identifier holds no build version
+     */
+    public static BuildVersion parse(String buildIdentifier) throws CarbonKernelHandlerException {
+        // a registry host may carry a port, hence the tag follows the last colon
+        String tag = buildIdentifier.substring(buildIdentifier.lastIndexOf(':') + 1);
+        int[] fields = new int[BUILD_TIME_FIELDS];
+        int end = tag.length();
+        try {
+            // the build time fields are taken from the end, since the release itself may contain hyphens
+            for (int index = BUILD_TIME_FIELDS - 1; index >= 0; index--) {
+                int start = tag.lastIndexOf('-', end - 1);
+                if (start <= 0) {
+                    throw new NumberFormatException("Missing build time field.");
+                }
+                fields[index] = Integer.parseInt(tag.substring(start + 1, end));
+                end = start;
+            }
+        } catch (NumberFormatException exception) {
+            String message = String.format("Invalid build version [build-identifier]: %s.", buildIdentifier);
+            throw new CarbonKernelHandlerException(message, exception);
+        }
+        final int year = fields[0];
+        final int month = fields[1];
+        final int day = fields[2];
+        final int millisOfDay = fields[3];
+        if ((year < 0) || (year >= (1 << (Long.SIZE - 1 - YEAR_SHIFT))) || (month < 1) || (month > 12) || (day < 1)
+                || (day > 31) || (millisOfDay < 0) || (millisOfDay >= MILLIS_PER_DAY)) {
+            String message = String.format("Invalid build time [build-identifier]: %s.", buildIdentifier);
+            throw new CarbonKernelHandlerException(message);
+        }
+        return new BuildVersion(tag.substring(0, end), pack(year, month, day, millisOfDay), tag);
+    }
+
+    private static long pack(int year, int month, int day, int millisOfDay) {
+        return ((long) year << YEAR_SHIFT) | ((long) month << MONTH_SHIFT) | ((long) day << DAY_SHIFT)
+                | millisOfDay;
+    }
+
+    /**
+     * @return the kernel release, i.e. the version specified when the kernel was deployed
+     */
+    public String getRelease() {
+        return release;
+    }
+
+    /**
+     * @return the packed build time, which orders the builds of a release
+     */
+    public long getBuildTime() {
+        return buildTime;
+    }
+
+    /**
+     * @return the Docker image tag holding this build version
+     */
+    public String getTag() {
+        return tag;
+    }
+
+    public int compareTo(BuildVersion buildVersion) {
+        int result = release.compareTo(buildVersion.release);
+        if (result == 0) {
+            result = Long.compare(buildTime, buildVersion.buildTime);
+        }
+        if (result == 0) {
+            // differently formatted tags of the same build, e.g. with zero padded dates, remain distinct
+            result = tag.compareTo(buildVersion.tag);
+        }
+        return result;
+    }
+
+    public boolean equals(Object object) {
+        return (object instanceof BuildVersion) && tag.equals(((BuildVersion) object).tag);
+    }
+
+    public int hashCode() {
+        return tag.hashCode();
+    }
+
+    public String toString() {
+        return tag;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.carbon;
+
+import com.google.common.collect.Sets;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.strategy.miscellaneous.exception.CarbonKernelHandlerException;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * a Java class which indexes the build versions of the kernel Docker images of each tenant in sorted order, so
+ * that the builds lower than a given one are a view of the index. Each Docker image tag is parsed once, when
+ * it is first indexed, and builds made by this application are indexed without being parsed.
+ */
+public class BuildVersionIndex {
+    private final ConcurrentMap<String, TenantBuildVersions> tenantBuildVersions = new ConcurrentHashMap<>();
+
+    private static final Log LOG = LogFactory.getLog(BuildVersionIndex.class);
+
+    /**
+     * adds a build version of the specified tenant to the index
+     *
+     * @param tenant       name of the tenant
+     * @param buildVersion build version of a Docker image of the tenant
+     */
+    public void add(String tenant, BuildVersion buildVersion) {
+        getTenantBuildVersions(tenant).add(buildVersion);
+    }
+
+    /**
+     * reconciles the indexed build versions of the specified tenant starting with the specified prefix with the
+     * Docker images of the tenant holding them, e.g. after images were built or removed by other Docker clients
+     *
+     * @param tenant           name of the tenant
+     * @param prefix           prefix of the reconciled build versions
+     * @param dockerImageNames names of all the Docker images of the tenant whose build versions start with prefix
+     */
+    public void synchronize(String tenant, String prefix, Collection<String> dockerImageNames) {
+        TenantBuildVersions buildVersions = getTenantBuildVersions(tenant);
+        Set<BuildVersion> existingBuildVersions = new HashSet<>();
+        for (String dockerImageName : dockerImageNames) {
+            String tag = dockerImageName.substring(dockerImageName.lastIndexOf(':') + 1);
+            BuildVersion buildVersion = buildVersions.versionsByTag.get(tag);
+            if (buildVersion == null) {
+                try {
+                    buildVersion = BuildVersion.parse(tag);
+                } catch (CarbonKernelHandlerException exception) {
+                    // e.g. an image tagged by hand
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug(String.format("Ignored the Docker image %s. %s", dockerImageName,
+                                exception.getMessage()));
+                    }
+                    continue;
+                }
+                buildVersions.add(buildVersion);
+            }
+            existingBuildVersions.add(buildVersion);
+        }
+        Iterator<BuildVersion> iterator = buildVersions.versions.iterator();
+        while (iterator.hasNext()) {
+            BuildVersion buildVersion = iterator.next();
+            if (buildVersion.getTag().startsWith(prefix) && (!existingBuildVersions.contains(buildVersion))) {
+                iterator.remove();
+                buildVersions.versionsByTag.remove(buildVersion.getTag());
+            }
+        }
+    }
+
+    /**
+     * returns the indexed build versions of the specified tenant lower than the specified build version
+     *
+     * @param tenant       name of the tenant
+     * @param buildVersion upper limit, exclusive, of the returned build versions
+     * @return a sorted, read-only view of the build versions lower than the specified one
+     */
+    public NavigableSet<BuildVersion> getLowerBuildVersions(String tenant, BuildVersion buildVersion) {
+        return Sets.unmodifiableNavigableSet(getTenantBuildVersions(tenant).versions.headSet(buildVersion, false));
+    }
+
+    /**
+     * returns the build version held by the specified Docker image of the tenant, parsing it only if not indexed
+     *
+     * @param tenant          name of the tenant
+     * @param dockerImageName name of a Docker image of the tenant
+     * @return the build version held by the Docker image
+     * @throws CarbonKernelHandlerException if the Docker image name holds no build version
+     */
+    public BuildVersion getBuildVersion(String tenant, String dockerImageName) throws CarbonKernelHandlerException {
+        BuildVersion buildVersion = getTenantBuildVersions(tenant).versionsByTag
+                .get(dockerImageName.substring(dockerImageName.lastIndexOf(':') + 1));
+        if (buildVersion != null) {
+            return buildVersion;
+        }
+        return BuildVersion.parse(dockerImageName);
+    }
+
+    private TenantBuildVersions getTenantBuildVersions(String tenant) {
+        TenantBuildVersions buildVersions = tenantBuildVersions.get(tenant);
+        if (buildVersions == null) {
+            TenantBuildVersions newBuildVersions = new TenantBuildVersions();
+            buildVersions = tenantBuildVersions.putIfAbsent(tenant, newBuildVersions);
+            if (buildVersions == null) {
+                buildVersions = newBuildVersions;
+            }
+        }
+        return buildVersions;
+    }
+
+    private static class TenantBuildVersions {
+        private final NavigableSet<BuildVersion> versions = new ConcurrentSkipListSet<>();
+        private final ConcurrentMap<String, BuildVersion> versionsByTag = new ConcurrentHashMap<>();
+
+        void add(BuildVersion buildVersion) {
+            versionsByTag.put(buildVersion.getTag(), buildVersion);
+            versions.add(buildVersion);
+        }
+    }
+}
@@ -15,49 +15,180 @@
 */
 package org.wso2.strategy.carbon;
 
-import com.google.common.collect.ImmutableList;
+import com.spotify.docker.client.DockerClient;
+import io.fabric8.kubernetes.api.model.ReplicationController;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.joda.time.DateTime;
 import org.wso2.strategy.carbon.interfaces.ICarbonKernelHandler;
+import org.wso2.strategy.carbon.journal.DeploymentJournal;
+import org.wso2.strategy.carbon.journal.JournalEntry;
+import org.wso2.strategy.carbon.journal.TenantDeploymentState;
 import org.wso2.strategy.docker.configuration.DockerClientBuilder;
+import org.wso2.strategy.docker.DaemonlessDockerImageHandler;
 import org.wso2.strategy.docker.JavaDockerImageHandler;
 import org.wso2.strategy.docker.ContainerStatusChecker;
+import org.wso2.strategy.docker.ImageReadinessWaiter;
+import org.wso2.strategy.docker.InstrumentedDockerImageHandler;
+import org.wso2.strategy.docker.cache.BuildCache;
+import org.wso2.strategy.docker.constants.DockerConstants;
+import org.wso2.strategy.docker.context.BuildContext;
+import org.wso2.strategy.docker.farm.BuildDaemon;
+import org.wso2.strategy.docker.farm.DockerBuildFarm;
 import org.wso2.strategy.docker.interfaces.IDockerImageHandler;
-import org.wso2.strategy.kubernetes.components.replication_controller.ReplicationControllerHandler;
+import org.wso2.strategy.docker.scheduler.BuildPriority;
+import org.wso2.strategy.docker.scheduler.BuildScheduler;
+import org.wso2.strategy.kubernetes.cache.interfaces.IClusterStateCache;
+import org.wso2.strategy.kubernetes.components.replication_controller.RollingUpdateConfiguration;
+import org.wso2.strategy.kubernetes.components.replication_controller.RollingUpdateReport;
 import org.wso2.strategy.kubernetes.components.replication_controller.interfaces.IReplicationControllerHandler;
-import org.wso2.strategy.kubernetes.components.service.ServiceHandler;
 import org.wso2.strategy.kubernetes.components.service.interfaces.IServiceHandler;
+import org.wso2.strategy.kubernetes.shard.KubernetesShard;
+import org.wso2.strategy.kubernetes.shard.ShardRouter;
 import org.wso2.strategy.miscellaneous.exception.CarbonKernelHandlerException;
 import org.wso2.strategy.miscellaneous.helper.CarbonKernelHandlerHelper;
+import org.wso2.strategy.miscellaneous.metrics.MetricsConstants;
+import org.wso2.strategy.miscellaneous.metrics.MetricsRegistry;
+import org.wso2.strategy.miscellaneous.metrics.OperationMetrics;
 
-import java.io.File;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * a Java class which implements ICarbonKernelHandler Java interface
+ * a Java class which implements ICarbonKernelHandler Java interface. It may be called from many threads: the
+ * operations on a single tenant are serialised while those on different tenants run in parallel.
  */
 public class CarbonKernelHandler implements ICarbonKernelHandler {
     private final IDockerImageHandler imageBuilder;
-    private final IReplicationControllerHandler replicationControllerHandler;
-    private final IServiceHandler serviceHandler;
+    // bounds and orders the image builds of imageBuilder, which refers to the same instance
+    private final BuildScheduler buildScheduler;
+    // routes each tenant to the Kubernetes cluster holding its replication controller and service
+    private final ShardRouter shardRouter;
+    // checks the image availability on the Docker daemon used by the kubelet, null if it is the build daemon
+    private final ImageReadinessWaiter kubeletImageWaiter;
+    private final long imageReadinessTimeout;
+    private final RollingUpdateConfiguration rollingUpdateConfiguration;
+    // maps the digests of previously built kernel artifacts to their images, null if build caching is disabled
+    private final BuildCache buildCache;
+    // splits the kernel into stable and volatile image layers instead of adding it as a single zip
+    private final boolean layeredImages;
+    // runs the per-tenant steps of the operations on a fleet of tenants
+    private final ExecutorService fleetExecutor;
+    // serialises the operations on each tenant's Kubernetes components, keyed by the component identifier.
+    // Unlike locks, the permits are handed over first come, first served and may be released by a thread other
+    // than the acquiring one, e.g. the one completing an asynchronous operation.
+    private final TenantPermit[] tenantPermits;
+    // records the operations on the tenants and the resulting deployment of each tenant
+    private final DeploymentJournal journal;
+    // sorts the build versions of the kernel Docker images of each tenant
+    private final BuildVersionIndex buildVersionIndex;
+    // records the latency and outcome of the operations and of their stages
+    private final MetricsRegistry metrics;
 
     private static final Log LOG = LogFactory.getLog(CarbonKernelHandler.class);
 
     public CarbonKernelHandler(String dockerEndpointURL, String kubernetesEndpointURL)
             throws CarbonKernelHandlerException {
-        final ContainerStatusChecker statusChecker = new ContainerStatusChecker(
-                DockerClientBuilder.buildDockerClient(dockerEndpointURL));
+        metrics = MetricsRegistry.getInstance();
+        Integer prometheusPort = Integer.getInteger(MetricsConstants.PROMETHEUS_PORT_PROPERTY);
+        if (prometheusPort != null) {
+            metrics.startPrometheusEndpoint(prometheusPort);
+        }
+        final DockerClient dockerClient = DockerClientBuilder.buildDockerClient(dockerEndpointURL);
+        final ContainerStatusChecker statusChecker = new ContainerStatusChecker(dockerClient, dockerEndpointURL);
         if (statusChecker.checkContainerExistence(getContainerCmdImagePairs())) {
-            imageBuilder = new JavaDockerImageHandler(DockerClientBuilder.buildDockerClient(dockerEndpointURL));
-            replicationControllerHandler = new ReplicationControllerHandler(kubernetesEndpointURL);
-            serviceHandler = new ServiceHandler(kubernetesEndpointURL);
+            String registryURL = System.getProperty(DockerConstants.DAEMONLESS_REGISTRY_URL_PROPERTY);
+            IDockerImageHandler dockerImageHandler = createDockerImageHandler(dockerClient, dockerEndpointURL,
+                    registryURL);
+            int buildDaemonCount = 1;
+            String buildFarmURLs = System.getProperty(DockerConstants.BUILD_FARM_URLS_PROPERTY);
+            if (buildFarmURLs != null) {
+                List<BuildDaemon> buildDaemons = new ArrayList<>();
+                buildDaemons.add(new BuildDaemon(dockerEndpointURL, dockerClient, dockerImageHandler));
+                for (String buildFarmURL : buildFarmURLs.split(",")) {
+                    String daemonURL = buildFarmURL.trim();
+                    if ((!daemonURL.isEmpty()) && (!daemonURL.equals(dockerEndpointURL))) {
+                        DockerClient daemonClient = DockerClientBuilder.buildDockerClient(daemonURL);
+                        buildDaemons.add(new BuildDaemon(daemonURL, daemonClient,
+                                createDockerImageHandler(daemonClient, daemonURL, registryURL)));
+                    }
+                }
+                // images built by the further daemons are moved to the Docker daemon through the registry, without
+                // which they would stay on their build hosts, out of the kubelet's reach
+                if ((buildDaemons.size() > 1) && (registryURL == null)) {
+                    String message = String.format("The Docker build farm %s requires %s, through which the images "
+                            + "built are moved to %s.", buildFarmURLs, DockerConstants.DAEMONLESS_REGISTRY_URL_PROPERTY,
+                            dockerEndpointURL);
+                    LOG.error(message);
+                    throw new CarbonKernelHandlerException(message);
+                }
+                buildDaemonCount = buildDaemons.size();
+                dockerImageHandler = new DockerBuildFarm(buildDaemons, registryURL,
+                        Long.getLong(DockerConstants.BUILD_FARM_FAILURE_BACKOFF_PROPERTY,
+                                DockerConstants.DEFAULT_BUILD_FARM_FAILURE_BACKOFF_IN_MILLISECONDS));
+            }
+            // unless configured, the build concurrency grows with the number of build daemons
+            buildScheduler = new BuildScheduler(dockerImageHandler,
+                    Integer.getInteger(DockerConstants.BUILD_CONCURRENCY_PROPERTY,
+                            DockerConstants.DEFAULT_BUILD_CONCURRENCY * buildDaemonCount),
+                    Integer.getInteger(DockerConstants.BUILD_QUEUE_CAPACITY_PROPERTY,
+                            DockerConstants.DEFAULT_BUILD_QUEUE_CAPACITY));
+            imageBuilder = buildScheduler;
+            shardRouter = ShardRouter.fromSystemProperties(kubernetesEndpointURL);
+            imageReadinessTimeout = Long.getLong(CarbonKernelHandlerConstants.IMAGE_READINESS_TIMEOUT_PROPERTY,
+                    CarbonKernelHandlerConstants.DEFAULT_IMAGE_READINESS_TIMEOUT_IN_MILLISECONDS);
+            rollingUpdateConfiguration = RollingUpdateConfiguration.fromSystemProperties();
+            layeredImages = Boolean.getBoolean(CarbonKernelHandlerConstants.LAYERED_IMAGE_PROPERTY);
+            journal = new DeploymentJournal(CarbonKernelHandlerConstants.JOURNAL_FILENAME);
+            journal.startPeriodicCompaction(
+                    Long.getLong(CarbonKernelHandlerConstants.JOURNAL_COMPACTION_INTERVAL_PROPERTY,
+                            CarbonKernelHandlerConstants.DEFAULT_JOURNAL_COMPACTION_INTERVAL_IN_MILLISECONDS));
+            for (JournalEntry incompleteOperation : journal.getIncompleteOperations()) {
+                LOG.warn(String.format("Operation %s did not complete and may be resumed.", incompleteOperation));
+            }
+            buildVersionIndex = new BuildVersionIndex();
+            tenantPermits = new TenantPermit[Math.max(1, Integer.getInteger(
+                    CarbonKernelHandlerConstants.TENANT_LOCK_STRIPES_PROPERTY,
+                    CarbonKernelHandlerConstants.DEFAULT_TENANT_LOCK_STRIPES))];
+            for (int index = 0; index < tenantPermits.length; index++) {
+                tenantPermits[index] = new TenantPermit();
+            }
+            final AtomicInteger threadCount = new AtomicInteger();
+            fleetExecutor = Executors.newFixedThreadPool(
+                    Math.max(1, Integer.getInteger(CarbonKernelHandlerConstants.FLEET_PARALLELISM_PROPERTY,
+                            CarbonKernelHandlerConstants.DEFAULT_FLEET_PARALLELISM)), new ThreadFactory() {
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, "fleet-operation-" + threadCount.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            if (Boolean.parseBoolean(System.getProperty(DockerConstants.BUILD_CACHE_ENABLED_PROPERTY, "true"))) {
+                buildCache = new BuildCache(DockerConstants.BUILD_CACHE_FILENAME);
+            } else {
+                buildCache = null;
+            }
+            String kubeletDockerURL = System.getProperty(CarbonKernelHandlerConstants.KUBELET_DOCKER_URL_PROPERTY);
+            if ((kubeletDockerURL != null) && (!kubeletDockerURL.equals(dockerEndpointURL))) {
+                kubeletImageWaiter = new ImageReadinessWaiter(DockerClientBuilder.buildDockerClient(kubeletDockerURL),
+                        kubeletDockerURL);
+            } else {
+                kubeletImageWaiter = null;
+            }
         } else {
             String message = "Cannot start the application. Failed to start Docker Containers required for running Kubernetes.";
             LOG.error(message);
@@ -67,178 +198,857 @@ public class CarbonKernelHandler implements ICarbonKernelHandler {
 
     public boolean deploy(String tenant, Path kernelPath, String buildVersion, int replicas)
             throws CarbonKernelHandlerException {
+        OperationMetrics operationMetrics = metrics.getOperation(CarbonKernelHandlerConstants.DEPLOY_OPERATION);
+        long startTime = System.nanoTime();
         String componentName = CarbonKernelHandlerHelper
                 .generateKubernetesComponentIdentifier(tenant, CarbonKernelHandlerConstants.ARTIFACT_NAME);
+        TenantPermit tenantPermit = acquireTenant(componentName);
+        long stageStartTime = operationMetrics.record(CarbonKernelHandlerConstants.TENANT_LOCK_STAGE, startTime, true);
+        // the stage in progress, whose failure is recorded if the deployment fails
+        String stage = CarbonKernelHandlerConstants.LOOKUP_STAGE;
+        JournalEntry started = null;
+        JournalEntry.Phase outcome = JournalEntry.Phase.FAILED;
+        String dockerImageName = null;
         try {
-            boolean notDeployed = (replicationControllerHandler.getReplicationController(componentName) == null);
+            started = journal.recordStarted(JournalEntry.Operation.DEPLOY, tenant, buildVersion,
+                    kernelPath.toString(), null, replicas);
+            boolean notDeployed = (shardRouter.getShard(componentName).getReplicationControllerHandler()
+                    .getReplicationController(componentName) == null);
+            stageStartTime = operationMetrics.record(stage, stageStartTime, true);
             if (notDeployed) {
-                String dockerImageName = buildCarbonDockerImage(tenant, kernelPath, buildVersion);
-                Thread.sleep(CarbonKernelHandlerConstants.IMAGE_BUILD_DELAY_IN_MILLISECONDS);
-                replicationControllerHandler
-                        .createReplicationController(componentName, componentName, dockerImageName, replicas);
-                serviceHandler.createService(componentName, componentName);
+                stage = CarbonKernelHandlerConstants.IMAGE_STAGE;
+                dockerImageName = buildCarbonDockerImage(tenant, kernelPath, buildVersion,
+                        BuildPriority.INTERACTIVE);
+                stageStartTime = operationMetrics.record(stage, stageStartTime, true);
+                stage = CarbonKernelHandlerConstants.IMAGE_WAIT_STAGE;
+                waitForImage(dockerImageName);
+                stageStartTime = operationMetrics.record(stage, stageStartTime, true);
+                stage = CarbonKernelHandlerConstants.REPLICATION_CONTROLLER_STAGE;
+                KubernetesShard shard = shardRouter.place(componentName);
+                try {
+                    shard.getReplicationControllerHandler()
+                            .createReplicationController(componentName, componentName, dockerImageName, replicas);
+                } catch (CarbonKernelHandlerException exception) {
+                    shardRouter.release(componentName);
+                    throw exception;
+                }
+                stageStartTime = operationMetrics.record(stage, stageStartTime, true);
+                stage = CarbonKernelHandlerConstants.SERVICE_STAGE;
+                shard.getServiceHandler().createService(componentName, componentName);
+                operationMetrics.record(stage, stageStartTime, true);
+                outcome = JournalEntry.Phase.COMPLETED;
                 return true;
             } else {
+                outcome = JournalEntry.Phase.SKIPPED;
                 return false;
             }
         } catch (Exception exception) {
+            operationMetrics.record(stage, stageStartTime, false);
             String message = "Failed to deploy WSO2-Carbon kernel.";
             LOG.error(message, exception);
             throw new CarbonKernelHandlerException(message, exception);
+        } finally {
+            recordOutcome(started, outcome, dockerImageName);
+            tenantPermit.release();
+            operationMetrics.getTotal().record(startTime, outcome != JournalEntry.Phase.FAILED);
         }
     }
 
     public boolean rollUpdate(String tenant, Path kernelPath, String buildVersion) throws CarbonKernelHandlerException {
+        return rollUpdate(tenant, kernelPath, buildVersion, null);
+    }
+
+    /**
+     * make a roll update to the newly deployed kernel build
+     *
+     * @param tenant          name of the tenant
+     * @param kernelPath      file system path to the WSO2 Carbon kernel to be deployed
+     * @param buildVersion    build version of the WSO2 Carbon kernel deployed
+     * @param dockerImageName name of the already built Docker image of the kernel, null to build it
+     * @return true if successfully updated, else false
+     * @throws CarbonKernelHandlerException
+     */
+    private boolean rollUpdate(String tenant, Path kernelPath, String buildVersion, String dockerImageName)
+            throws CarbonKernelHandlerException {
+        OperationMetrics operationMetrics = metrics
+                .getOperation(CarbonKernelHandlerConstants.ROLLING_UPDATE_OPERATION);
+        long startTime = System.nanoTime();
+        String componentName = CarbonKernelHandlerHelper
+                .generateKubernetesComponentIdentifier(tenant, CarbonKernelHandlerConstants.ARTIFACT_NAME);
+        TenantPermit tenantPermit = acquireTenant(componentName);
+        long stageStartTime = operationMetrics.record(CarbonKernelHandlerConstants.TENANT_LOCK_STAGE, startTime, true);
+        // the stage in progress, whose failure is recorded if the update fails
+        String stage = CarbonKernelHandlerConstants.LOOKUP_STAGE;
+        JournalEntry started = null;
+        JournalEntry.Phase outcome = JournalEntry.Phase.FAILED;
         try {
-            String componentName = CarbonKernelHandlerHelper
-                    .generateKubernetesComponentIdentifier(tenant, CarbonKernelHandlerConstants.ARTIFACT_NAME);
-            boolean artifactsExist = (
-                    imageBuilder.getExistingImages(tenant, CarbonKernelHandlerConstants.ARTIFACT_NAME, buildVersion)
-                            .size() > 0);
-            boolean deployed = (replicationControllerHandler.getReplicationController(componentName) != null);
-            if (artifactsExist && deployed) {
-                String dockerImageName = buildCarbonDockerImage(tenant, kernelPath, buildVersion);
-                replicationControllerHandler.updateImage(componentName, dockerImageName);
-                replicationControllerHandler
-                        .deleteReplicaPods(componentName, tenant, CarbonKernelHandlerConstants.ARTIFACT_NAME);
+            started = journal.recordStarted(JournalEntry.Operation.ROLLING_UPDATE, tenant, buildVersion,
+                    kernelPath.toString(), dockerImageName, 0);
+            boolean updatable = isUpdatable(tenant, buildVersion);
+            stageStartTime = operationMetrics.record(stage, stageStartTime, true);
+            if (updatable) {
+                if (dockerImageName == null) {
+                    stage = CarbonKernelHandlerConstants.IMAGE_STAGE;
+                    dockerImageName = buildCarbonDockerImage(tenant, kernelPath, buildVersion,
+                            BuildPriority.BACKGROUND);
+                    stageStartTime = operationMetrics.record(stage, stageStartTime, true);
+                }
+                stage = CarbonKernelHandlerConstants.IMAGE_WAIT_STAGE;
+                waitForImage(dockerImageName);
+                stageStartTime = operationMetrics.record(stage, stageStartTime, true);
+                stage = CarbonKernelHandlerConstants.ROLLING_UPDATE_STAGE;
+                rollingUpdate(componentName, dockerImageName);
+                operationMetrics.record(stage, stageStartTime, true);
+                outcome = JournalEntry.Phase.COMPLETED;
                 return true;
             } else {
+                outcome = JournalEntry.Phase.SKIPPED;
                 return false;
             }
         } catch (Exception exception) {
+            operationMetrics.record(stage, stageStartTime, false);
             String message = "Failed to update the running WSO2-Carbon kernel.";
             LOG.error(message, exception);
             throw new CarbonKernelHandlerException(message, exception);
+        } finally {
+            recordOutcome(started, outcome, dockerImageName);
+            tenantPermit.release();
+            operationMetrics.getTotal().record(startTime, outcome != JournalEntry.Phase.FAILED);
         }
     }
 
     public boolean rollBack(String tenant, String buildVersion, String olderVersion)
             throws CarbonKernelHandlerException {
+        OperationMetrics operationMetrics = metrics.getOperation(CarbonKernelHandlerConstants.ROLLBACK_OPERATION);
+        long startTime = System.nanoTime();
         String componentName = CarbonKernelHandlerHelper
                 .generateKubernetesComponentIdentifier(tenant, CarbonKernelHandlerConstants.ARTIFACT_NAME);
-        if ((imageBuilder.getExistingImages(tenant, CarbonKernelHandlerConstants.ARTIFACT_NAME, buildVersion).size()
-                > 0)) {
-            replicationControllerHandler.updateImage(componentName, olderVersion);
-            replicationControllerHandler
-                    .deleteReplicaPods(componentName, tenant, CarbonKernelHandlerConstants.ARTIFACT_NAME);
-            return true;
-        } else {
-            return false;
+        TenantPermit tenantPermit = acquireTenant(componentName);
+        operationMetrics.record(CarbonKernelHandlerConstants.TENANT_LOCK_STAGE, startTime, true);
+        JournalEntry started = null;
+        JournalEntry.Phase outcome = JournalEntry.Phase.FAILED;
+        try {
+            started = journal.recordStarted(JournalEntry.Operation.ROLLBACK, tenant, buildVersion, null, olderVersion,
+                    0);
+            if (hasBuildArtifacts(tenant, buildVersion)) {
+                rollingUpdate(componentName, olderVersion);
+                outcome = JournalEntry.Phase.COMPLETED;
+                return true;
+            } else {
+                outcome = JournalEntry.Phase.SKIPPED;
+                return false;
+            }
+        } finally {
+            recordOutcome(started, outcome, null);
+            tenantPermit.release();
+            operationMetrics.getTotal().record(startTime, outcome != JournalEntry.Phase.FAILED);
         }
     }
 
     public boolean scale(String tenant, int noOfReplicas) throws CarbonKernelHandlerException {
+        OperationMetrics operationMetrics = metrics.getOperation(CarbonKernelHandlerConstants.SCALE_OPERATION);
+        long startTime = System.nanoTime();
         String componentName = CarbonKernelHandlerHelper
                 .generateKubernetesComponentIdentifier(tenant, CarbonKernelHandlerConstants.ARTIFACT_NAME);
-        if (replicationControllerHandler.getReplicationController(componentName) != null) {
-            replicationControllerHandler.updateNoOfReplicas(componentName, noOfReplicas);
-            return true;
-        } else {
-            return false;
+        TenantPermit tenantPermit = acquireTenant(componentName);
+        operationMetrics.record(CarbonKernelHandlerConstants.TENANT_LOCK_STAGE, startTime, true);
+        JournalEntry started = null;
+        JournalEntry.Phase outcome = JournalEntry.Phase.FAILED;
+        try {
+            started = journal.recordStarted(JournalEntry.Operation.SCALE, tenant, null, null, null, noOfReplicas);
+            IReplicationControllerHandler replicationControllerHandler = shardRouter.getShard(componentName)
+                    .getReplicationControllerHandler();
+            if (replicationControllerHandler.getReplicationController(componentName) != null) {
+                replicationControllerHandler.updateNoOfReplicas(componentName, noOfReplicas);
+                outcome = JournalEntry.Phase.COMPLETED;
+                return true;
+            } else {
+                outcome = JournalEntry.Phase.SKIPPED;
+                return false;
+            }
+        } finally {
+            recordOutcome(started, outcome, null);
+            tenantPermit.release();
+            operationMetrics.getTotal().record(startTime, outcome != JournalEntry.Phase.FAILED);
         }
     }
 
     public boolean remove(String tenant) throws CarbonKernelHandlerException {
+        OperationMetrics operationMetrics = metrics.getOperation(CarbonKernelHandlerConstants.REMOVE_OPERATION);
+        long startTime = System.nanoTime();
         String componentName = CarbonKernelHandlerHelper
                 .generateKubernetesComponentIdentifier(tenant, CarbonKernelHandlerConstants.ARTIFACT_NAME);
+        TenantPermit tenantPermit = acquireTenant(componentName);
+        operationMetrics.record(CarbonKernelHandlerConstants.TENANT_LOCK_STAGE, startTime, true);
+        JournalEntry started = null;
+        JournalEntry.Phase outcome = JournalEntry.Phase.FAILED;
         try {
-            if (replicationControllerHandler.getReplicationController(componentName) != null) {
-                final int noPods = 0;
-                scale(tenant, noPods);
-                replicationControllerHandler.deleteReplicationController(componentName);
-                serviceHandler.deleteService(componentName);
+            started = journal.recordStarted(JournalEntry.Operation.REMOVE, tenant, null, null, null, 0);
+            KubernetesShard shard = shardRouter.getShard(componentName);
+            if (shard.getReplicationControllerHandler().getReplicationController(componentName) != null) {
+                removeComponents(shard, componentName);
+                shardRouter.release(componentName);
+                outcome = JournalEntry.Phase.COMPLETED;
                 return true;
             } else {
+                outcome = JournalEntry.Phase.SKIPPED;
                 return false;
             }
         } catch (Exception exception) {
             String message = "Failed to remove the running WSO2-Carbon kernel.";
             LOG.error(message, exception);
             throw new CarbonKernelHandlerException(message, exception);
+        } finally {
+            recordOutcome(started, outcome, null);
+            tenantPermit.release();
+            operationMetrics.getTotal().record(startTime, outcome != JournalEntry.Phase.FAILED);
         }
     }
 
-    public int getNoOfReplicas(String tenant) throws CarbonKernelHandlerException {
+    /**
+     * moves the running kernel of a tenant to another Kubernetes shard. The kernel is deployed on the target
+     * shard with the same Docker image and number of replicas before it is removed from its current shard,
+     * after which it is reached through the service of the target shard. The move is recorded in the deployment
+     * journal, hence a move interrupted in between is completed by resumeIncompleteOperations.
+     *
+     * @param tenant    tenant whose kernel is moved
+     * @param shardName name of the target Kubernetes shard
+     * @return true if the kernel was moved, false if it is not deployed or already runs on the target shard
+     * @throws CarbonKernelHandlerException if the target shard is unknown, has no spare capacity or the
+     *                                      kernel could not be deployed on it
+     */
+    public boolean rebalance(String tenant, String shardName) throws CarbonKernelHandlerException {
         String componentName = CarbonKernelHandlerHelper
                 .generateKubernetesComponentIdentifier(tenant, CarbonKernelHandlerConstants.ARTIFACT_NAME);
-        return replicationControllerHandler.getNoOfReplicas(componentName);
+        OperationMetrics operationMetrics = metrics.getOperation(CarbonKernelHandlerConstants.REBALANCE_OPERATION);
+        long startTime = System.nanoTime();
+        TenantPermit tenantPermit = acquireTenant(componentName);
+        operationMetrics.record(CarbonKernelHandlerConstants.TENANT_LOCK_STAGE, startTime, true);
+        boolean succeeded = false;
+        try {
+            boolean moved = rebalance(tenant, componentName, shardRouter.getShard(componentName),
+                    shardRouter.getShardByName(shardName));
+            succeeded = true;
+            return moved;
+        } finally {
+            tenantPermit.release();
+            operationMetrics.getTotal().record(startTime, succeeded);
+        }
     }
 
-    public String getServiceAccessIPs(String tenant) throws CarbonKernelHandlerException {
+    /**
+     * completes a move of a tenant's kernel to another Kubernetes shard which was interrupted, e.g. by a crash,
+     * after its placement or part of its components were moved to the target shard
+     *
+     * @param tenant          tenant whose kernel is moved
+     * @param sourceShardName name of the shard the kernel was moved from
+     * @param targetShardName name of the shard the kernel was moved to
+     * @return true if the kernel was moved, false if it no longer runs on the source shard
+     * @throws CarbonKernelHandlerException if a shard is unknown or the kernel could not be moved
+     */
+    private boolean resumeRebalance(String tenant, String sourceShardName, String targetShardName)
+            throws CarbonKernelHandlerException {
         String componentName = CarbonKernelHandlerHelper
                 .generateKubernetesComponentIdentifier(tenant, CarbonKernelHandlerConstants.ARTIFACT_NAME);
-        String ipMessage;
-        ipMessage = String.format("Cluster IP: %s/%s\nPublic IP: %s/%s\n\n", serviceHandler.getClusterIP(componentName),
-                CarbonKernelHandlerConstants.INDEX_PAGE, serviceHandler.getNodePortIP(componentName),
-                CarbonKernelHandlerConstants.INDEX_PAGE);
-        return ipMessage;
+        TenantPermit tenantPermit = acquireTenant(componentName);
+        try {
+            return rebalance(tenant, componentName, shardRouter.getShardByName(sourceShardName),
+                    shardRouter.getShardByName(targetShardName));
+        } finally {
+            tenantPermit.release();
+        }
     }
 
-    public List<String> listExistingBuildArtifacts(String tenant, String buildVersion)
+    private boolean rebalance(String tenant, String componentName, KubernetesShard source, KubernetesShard target)
             throws CarbonKernelHandlerException {
-        List<String> artifactList = new ArrayList<>();
-        ImmutableList<String> repoTags;
-        for (int count = 0;
-             count < imageBuilder.getExistingImages(tenant, CarbonKernelHandlerConstants.ARTIFACT_NAME, buildVersion)
-                     .size(); count++) {
-            repoTags = imageBuilder.getExistingImages(tenant, CarbonKernelHandlerConstants.ARTIFACT_NAME, buildVersion)
-                    .get(count).repoTags();
-            for (String tag : repoTags) {
-                if (tag.contains(tenant + "/" + CarbonKernelHandlerConstants.ARTIFACT_NAME + ":" + buildVersion)) {
-                    artifactList.add(tag);
+        ReplicationController replicationController = source.getReplicationControllerHandler()
+                .getReplicationController(componentName);
+        if ((source == target) || (replicationController == null)) {
+            return false;
+        }
+        final int singleImageIndex = 0;
+        String dockerImageName = replicationController.getSpec().getTemplate().getSpec().getContainers()
+                .get(singleImageIndex).getImage();
+        int replicas = source.getReplicationControllerHandler().getNoOfReplicas(componentName);
+        JournalEntry started = journal.recordRebalanceStarted(tenant, dockerImageName, replicas, source.getName(),
+                target.getName());
+        JournalEntry.Phase outcome = JournalEntry.Phase.FAILED;
+        try {
+            deployOnTarget(tenant, componentName, source, target, dockerImageName, replicas);
+            try {
+                removeComponents(source, componentName);
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug(String.format("Moved %s from the Kubernetes shard %s to %s.", componentName,
+                            source.getName(), target.getName()));
+                }
+            } catch (CarbonKernelHandlerException exception) {
+                // the kernel already runs on, and is reached through, the target shard
+                LOG.error(String.format("Moved %s to the Kubernetes shard %s, but its replication controller and "
+                        + "service are left orphaned on %s and have to be removed.", componentName, target.getName(),
+                        source.getName()), exception);
+            }
+            outcome = JournalEntry.Phase.COMPLETED;
+            return true;
+        } finally {
+            // the move is recorded as completed only once the source shard was cleaned up, so that a move
+            // interrupted before is resumed
+            recordOutcome(started, outcome, null);
+        }
+    }
+
+    /**
+     * places a kernel on the target shard of a move and deploys it there. On failure, the components created
+     * on the target shard are removed before the kernel is placed back on the source shard.
+     */
+    private void deployOnTarget(String tenant, String componentName, KubernetesShard source, KubernetesShard target,
+            String dockerImageName, int replicas) throws CarbonKernelHandlerException {
+        boolean deployed = false;
+        try {
+            shardRouter.movePlacement(componentName, target.getName());
+            // an interrupted move may have left part of the kernel's components on the target shard
+            if ((target.getReplicationControllerHandler().getReplicationController(componentName, true) != null)
+                    || (target.getServiceHandler().getService(componentName, true) != null)) {
+                discardComponents(target, componentName);
+            }
+            target.getReplicationControllerHandler()
+                    .createReplicationController(componentName, componentName, dockerImageName, replicas);
+            target.getServiceHandler().createService(componentName, componentName);
+            deployed = true;
+        } catch (CarbonKernelHandlerException exception) {
+            String message = String.format("Failed to move the WSO2-Carbon kernel of %s to the Kubernetes shard %s.",
+                    tenant, target.getName());
+            LOG.error(message, exception);
+            throw new CarbonKernelHandlerException(message, exception);
+        } finally {
+            if (!deployed) {
+                // the target shard must not keep an untracked replication controller or service
+                discardComponents(target, componentName);
+                try {
+                    shardRouter.movePlacement(componentName, source.getName());
+                } catch (CarbonKernelHandlerException exception) {
+                    LOG.error(String.format("Could not place %s back on the Kubernetes shard %s, on which it still "
+                            + "runs.", componentName, source.getName()), exception);
+                }
+            }
+        }
+    }
+
+    /**
+     * returns the Kubernetes cluster state cache of the default shard, which exposes the cache hit, miss
+     * and staleness figures
+     *
+     * @return the Kubernetes cluster state cache of the default shard
+     */
+    public IClusterStateCache getClusterStateCache() {
+        return shardRouter.getDefaultShard().getClusterStateCache();
+    }
+
+    /**
+     * returns the router which places the tenants on the Kubernetes shards, which exposes the tenant count
+     * of each shard
+     *
+     * @return the router which places the tenants on the Kubernetes shards
+     */
+    public ShardRouter getShardRouter() {
+        return shardRouter;
+    }
+
+    /**
+     * returns the deployment journal of this handler, which holds the recorded deployment of each tenant
+     *
+     * @return the deployment journal of this handler
+     */
+    public DeploymentJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * re-runs the operations recorded as started in the deployment journal but never completed, e.g. because
+     * the process stopped in the middle of them. Only the latest such operation of each tenant is re-run.
+     *
+     * @return a report of the outcome and time taken for each tenant
+     */
+    public FleetOperationReport resumeIncompleteOperations() {
+        final Map<String, JournalEntry> incompleteOperations = new LinkedHashMap<>();
+        for (JournalEntry entry : journal.getIncompleteOperations()) {
+            incompleteOperations.put(entry.getTenant(), entry);
+        }
+        OperationMetrics operationMetrics = metrics.getOperation(CarbonKernelHandlerConstants.RESUME_OPERATION);
+        return runOnFleet("resume", operationMetrics, incompleteOperations.keySet(), new TenantOperation() {
+            public boolean apply(String tenant) throws CarbonKernelHandlerException {
+                JournalEntry entry = incompleteOperations.get(tenant);
+                switch (entry.getOperation()) {
+                case DEPLOY:
+                    return deploy(tenant, Paths.get(entry.getArtifactPath()), entry.getBuildVersion(),
+                            entry.getReplicas());
+                case ROLLING_UPDATE:
+                    return rollUpdate(tenant, Paths.get(entry.getArtifactPath()), entry.getBuildVersion(),
+                            entry.getDockerImageName());
+                case ROLLBACK:
+                    return rollBack(tenant, entry.getBuildVersion(), entry.getDockerImageName());
+                case SCALE:
+                    return scale(tenant, entry.getReplicas());
+                case REMOVE:
+                    return remove(tenant);
+                case REBALANCE:
+                    return resumeRebalance(tenant, entry.getSourceShardName(), entry.getTargetShardName());
+                default:
+                    String message = String.format("Cannot resume the unknown operation %s of tenant %s.",
+                            entry.getOperation(), tenant);
+                    LOG.error(message);
+                    throw new CarbonKernelHandlerException(message);
                 }
             }
+        });
+    }
+
+    /**
+     * returns the Docker build cache used by this handler, which exposes the cache hit ratio
+     *
+     * @return the Docker build cache used by this handler, null if build caching is disabled
+     */
+    public BuildCache getBuildCache() {
+        return buildCache;
+    }
+
+    /**
+     * returns the Docker build scheduler used by this handler, which exposes the build queue depth, wait time
+     * and build time figures
+     *
+     * @return the Docker build scheduler used by this handler
+     */
+    public BuildScheduler getBuildScheduler() {
+        return buildScheduler;
+    }
+
+    public int getNoOfReplicas(String tenant) throws CarbonKernelHandlerException {
+        long startTime = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            String componentName = CarbonKernelHandlerHelper
+                    .generateKubernetesComponentIdentifier(tenant, CarbonKernelHandlerConstants.ARTIFACT_NAME);
+            int replicas = shardRouter.getShard(componentName).getReplicationControllerHandler()
+                    .getNoOfReplicas(componentName);
+            succeeded = true;
+            return replicas;
+        } finally {
+            metrics.getOperation(CarbonKernelHandlerConstants.REPLICA_COUNT_OPERATION).getTotal()
+                    .record(startTime, succeeded);
+        }
+    }
+
+    public String getServiceAccessIPs(String tenant) throws CarbonKernelHandlerException {
+        long startTime = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            String componentName = CarbonKernelHandlerHelper
+                    .generateKubernetesComponentIdentifier(tenant, CarbonKernelHandlerConstants.ARTIFACT_NAME);
+            IServiceHandler serviceHandler = shardRouter.getShard(componentName).getServiceHandler();
+            String ipMessage;
+            ipMessage = String.format("Cluster IP: %s/%s\nPublic IP: %s/%s\n\n",
+                    serviceHandler.getClusterIP(componentName), CarbonKernelHandlerConstants.INDEX_PAGE,
+                    serviceHandler.getNodePortIP(componentName), CarbonKernelHandlerConstants.INDEX_PAGE);
+            succeeded = true;
+            return ipMessage;
+        } finally {
+            metrics.getOperation(CarbonKernelHandlerConstants.SERVICE_ACCESS_IPS_OPERATION).getTotal()
+                    .record(startTime, succeeded);
+        }
+    }
+
+    public List<String> listExistingBuildArtifacts(String tenant, String buildVersion)
+            throws CarbonKernelHandlerException {
+        long startTime = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            List<String> buildArtifacts = imageBuilder
+                    .getExistingImageTags(tenant, CarbonKernelHandlerConstants.ARTIFACT_NAME, buildVersion);
+            succeeded = true;
+            return buildArtifacts;
+        } finally {
+            metrics.getOperation(CarbonKernelHandlerConstants.BUILD_ARTIFACTS_OPERATION).getTotal()
+                    .record(startTime, succeeded);
         }
-        return artifactList;
     }
 
     public List<String> listLowerBuildArtifactVersions(String tenant, String buildVersion)
             throws CarbonKernelHandlerException {
+        long startTime = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            List<String> lowerBuildArtifacts = getLowerBuildArtifactVersions(tenant, buildVersion);
+            succeeded = true;
+            return lowerBuildArtifacts;
+        } finally {
+            metrics.getOperation(CarbonKernelHandlerConstants.LOWER_BUILD_ARTIFACTS_OPERATION).getTotal()
+                    .record(startTime, succeeded);
+        }
+    }
+
+    private List<String> getLowerBuildArtifactVersions(String tenant, String buildVersion)
+            throws CarbonKernelHandlerException {
         String componentName = CarbonKernelHandlerHelper
                 .generateKubernetesComponentIdentifier(tenant, CarbonKernelHandlerConstants.ARTIFACT_NAME);
         List<String> minorArtifactList = new ArrayList<>();
         final int singleImageIndex = 0;
-        if (replicationControllerHandler.getReplicationController(componentName) != null) {
-            String upperLimitVersion = replicationControllerHandler.getReplicationController(componentName).getSpec()
-                    .getTemplate().getSpec().getContainers().get(singleImageIndex).getImage();
-            List<String> artifactList = listExistingBuildArtifacts(tenant, buildVersion);
-            minorArtifactList = new ArrayList<>();
+        // the journal holds the running image unless the kernel was deployed before the journal was introduced
+        String upperLimitVersion = null;
+        TenantDeploymentState state = journal.getState(tenant);
+        if (state != null) {
+            upperLimitVersion = state.getDockerImageName();
+        } else {
+            ReplicationController replicationController = shardRouter.getShard(componentName)
+                    .getReplicationControllerHandler().getReplicationController(componentName);
+            if (replicationController != null) {
+                upperLimitVersion = replicationController.getSpec().getTemplate().getSpec().getContainers()
+                        .get(singleImageIndex).getImage();
+            }
+        }
+        if (upperLimitVersion != null) {
+            String buildVersionPrefix = (buildVersion != null) ? buildVersion : "";
+            buildVersionIndex
+                    .synchronize(tenant, buildVersionPrefix, listExistingBuildArtifacts(tenant, buildVersion));
+            BuildVersion upperLimit;
             try {
-                for (String artifactImageBuild : artifactList) {
-                    if (CarbonKernelHandlerHelper.compareBuildVersions(upperLimitVersion, artifactImageBuild) > 0) {
-                        minorArtifactList.add(artifactImageBuild);
-                    }
-                }
-            } catch (ParseException exception) {
+                upperLimit = buildVersionIndex.getBuildVersion(tenant, upperLimitVersion);
+            } catch (CarbonKernelHandlerException exception) {
                 String message = "Failed to list the lower build versions of the WSO2-Carbon kernel.";
                 LOG.error(message, exception);
                 throw new CarbonKernelHandlerException(message, exception);
             }
+            for (BuildVersion lowerBuildVersion : buildVersionIndex.getLowerBuildVersions(tenant, upperLimit)) {
+                if (lowerBuildVersion.getTag().startsWith(buildVersionPrefix)) {
+                    minorArtifactList.add(CarbonKernelHandlerHelper.generateImageIdentifier(tenant,
+                            CarbonKernelHandlerConstants.ARTIFACT_NAME, lowerBuildVersion.getTag()));
+                }
+            }
         }
         return minorArtifactList;
     }
 
-    private String buildCarbonDockerImage(String tenant, Path artifact, String version)
+    public FleetOperationReport scaleAll(final Map<String, Integer> tenantReplicas) {
+        OperationMetrics operationMetrics = metrics.getOperation(CarbonKernelHandlerConstants.FLEET_SCALE_OPERATION);
+        return runOnFleet("scale", operationMetrics, tenantReplicas.keySet(), new TenantOperation() {
+            public boolean apply(String tenant) throws CarbonKernelHandlerException {
+                return scale(tenant, tenantReplicas.get(tenant));
+            }
+        });
+    }
+
+    public FleetOperationReport removeAll(Collection<String> tenants) {
+        OperationMetrics operationMetrics = metrics.getOperation(CarbonKernelHandlerConstants.FLEET_REMOVE_OPERATION);
+        return runOnFleet("remove", operationMetrics, tenants, new TenantOperation() {
+            public boolean apply(String tenant) throws CarbonKernelHandlerException {
+                return remove(tenant);
+            }
+        });
+    }
+
+    public FleetOperationReport rollUpdateAll(Collection<String> tenants, final Path kernelPath,
+            final String buildVersion) {
+        OperationMetrics operationMetrics = metrics
+                .getOperation(CarbonKernelHandlerConstants.FLEET_ROLLING_UPDATE_OPERATION);
+        // the kernel is built once up front, so that the images of the other tenants are tagged from the
+        // build cache instead of being built concurrently by each tenant's update
+        final Map<String, String> builtImages = new HashMap<>();
+        if (buildCache != null) {
+            for (String tenant : tenants) {
+                long stageStartTime = System.nanoTime();
+                try {
+                    if (isUpdatable(tenant, buildVersion)) {
+                        builtImages.put(tenant,
+                                buildCarbonDockerImage(tenant, kernelPath, buildVersion, BuildPriority.BACKGROUND));
+                        operationMetrics.record(CarbonKernelHandlerConstants.IMAGE_STAGE, stageStartTime, true);
+                        break;
+                    }
+                } catch (CarbonKernelHandlerException exception) {
+                    operationMetrics.record(CarbonKernelHandlerConstants.IMAGE_STAGE, stageStartTime, false);
+                    LOG.warn(String.format("Could not pre-build the kernel image of tenant %s.", tenant), exception);
+                    break;
+                }
+            }
+        }
+        return runOnFleet("rolling update", operationMetrics, tenants, new TenantOperation() {
+            public boolean apply(String tenant) throws CarbonKernelHandlerException {
+                return rollUpdate(tenant, kernelPath, buildVersion, builtImages.get(tenant));
+            }
+        });
+    }
+
+    /**
+     * runs an operation on each of the specified tenants, concurrently up to the configured fleet parallelism.
+     * A failure of the operation on one tenant is recorded in the report and does not affect the others.
+     *
+     * @param operationName    name of the operation, used in the report
+     * @param operationMetrics metrics the fleet operation as a whole and the step of each tenant are recorded in
+     * @param tenants          names of the tenants
+     * @param operation        operation to run on each tenant
+     * @return the per-tenant outcomes and timings, in the order of the specified tenants
+     */
+    private FleetOperationReport runOnFleet(final String operationName, final OperationMetrics operationMetrics,
+            Collection<String> tenants, final TenantOperation operation) {
+        long operationStartTime = System.nanoTime();
+        final long startTime = System.currentTimeMillis();
+        FleetOperationReport report = new FleetOperationReport(operationName);
+        List<String> tenantList = new ArrayList<>(tenants);
+        List<Callable<FleetOperationReport.TenantResult>> tasks = new ArrayList<>();
+        for (final String tenant : tenantList) {
+            tasks.add(new Callable<FleetOperationReport.TenantResult>() {
+                public FleetOperationReport.TenantResult call() {
+                    long stageStartTime = System.nanoTime();
+                    long tenantStartTime = System.currentTimeMillis();
+                    try {
+                        FleetOperationReport.Outcome outcome = operation.apply(tenant) ?
+                                FleetOperationReport.Outcome.APPLIED :
+                                FleetOperationReport.Outcome.SKIPPED;
+                        operationMetrics.record(CarbonKernelHandlerConstants.TENANT_STAGE, stageStartTime, true);
+                        return new FleetOperationReport.TenantResult(tenant, outcome, null,
+                                System.currentTimeMillis() - tenantStartTime);
+                    } catch (Exception exception) {
+                        operationMetrics.record(CarbonKernelHandlerConstants.TENANT_STAGE, stageStartTime, false);
+                        LOG.error(String.format("Failed to %s the kernel of tenant %s.", operationName, tenant),
+                                exception);
+                        return new FleetOperationReport.TenantResult(tenant, FleetOperationReport.Outcome.FAILED,
+                                exception.getMessage(), System.currentTimeMillis() - tenantStartTime);
+                    }
+                }
+            });
+        }
+        try {
+            List<Future<FleetOperationReport.TenantResult>> results = fleetExecutor.invokeAll(tasks);
+            for (int index = 0; index < results.size(); index++) {
+                try {
+                    report.addResult(results.get(index).get());
+                } catch (ExecutionException exception) {
+                    report.addResult(new FleetOperationReport.TenantResult(tenantList.get(index),
+                            FleetOperationReport.Outcome.FAILED, exception.getCause().getMessage(), 0));
+                }
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            LOG.error(String.format("Interrupted while running the fleet %s.", operationName), exception);
+        }
+        report.setTotalTimeInMilliseconds(System.currentTimeMillis() - startTime);
+        operationMetrics.getTotal().record(operationStartTime, report.isSuccessful());
+        LOG.info(report.toString());
+        return report;
+    }
+
+    /**
+     * records the outcome of an operation in the deployment journal
+     *
+     * @param started         entry recorded at the start of the operation, null if none could be recorded
+     * @param outcome         outcome of the operation
+     * @param dockerImageName Docker image deployed by the operation, null if it is the one recorded at the start
+     */
+    void recordOutcome(JournalEntry started, JournalEntry.Phase outcome, String dockerImageName) {
+        if (started != null) {
+            journal.recordOutcome(started, outcome, dockerImageName);
+        }
+    }
+
+    /**
+     * acquires the permit which serialises the operations on the Kubernetes components of a tenant. Operations
+     * on other tenants proceed in parallel, unless their component identifiers hash to the same lock stripe.
+     *
+     * @param componentName Kubernetes component identifier of the tenant
+     * @return the acquired permit, to be released by the caller
+     */
+    private TenantPermit acquireTenant(String componentName) {
+        TenantPermit tenantPermit = getTenantPermit(componentName);
+        tenantPermit.acquire();
+        return tenantPermit;
+    }
+
+    /**
+     * returns the permit which serialises the operations on the Kubernetes components of a tenant, without
+     * acquiring it
+     *
+     * @param componentName Kubernetes component identifier of the tenant
+     * @return the permit of the tenant
+     */
+    TenantPermit getTenantPermit(String componentName) {
+        return tenantPermits[(componentName.hashCode() & Integer.MAX_VALUE) % tenantPermits.length];
+    }
+
+    /**
+     * checks whether Docker images of the specified build version of the tenant's kernel exist
+     *
+     * @param tenant       name of the tenant
+     * @param buildVersion build version of the WSO2 Carbon kernel deployed
+     * @return true if such images exist, else false
+     * @throws CarbonKernelHandlerException
+     */
+    boolean hasBuildArtifacts(String tenant, String buildVersion) throws CarbonKernelHandlerException {
+        return (imageBuilder.getExistingImages(tenant, CarbonKernelHandlerConstants.ARTIFACT_NAME, buildVersion)
+                .size() > 0);
+    }
+
+    /**
+     * checks whether a replication controller of the specified component exists on the shard it is placed on
+     *
+     * @param componentName Kubernetes component identifier of the tenant
+     * @return true if the component is deployed, else false
+     * @throws CarbonKernelHandlerException
+     */
+    boolean isDeployed(String componentName) throws CarbonKernelHandlerException {
+        return (shardRouter.getShard(componentName).getReplicationControllerHandler()
+                .getReplicationController(componentName) != null);
+    }
+
+    /**
+     * checks whether the kernel of the specified tenant is deployed and has Docker images of the specified
+     * build version to be updated from
+     *
+     * @param tenant       name of the tenant
+     * @param buildVersion build version of the WSO2 Carbon kernel deployed
+     * @return true if the kernel of the tenant can be roll updated, else false
+     * @throws CarbonKernelHandlerException
+     */
+    private boolean isUpdatable(String tenant, String buildVersion) throws CarbonKernelHandlerException {
+        String componentName = CarbonKernelHandlerHelper
+                .generateKubernetesComponentIdentifier(tenant, CarbonKernelHandlerConstants.ARTIFACT_NAME);
+        return hasBuildArtifacts(tenant, buildVersion) && isDeployed(componentName);
+    }
+
+    /**
+     * replaces the running kernel pods of a component with pods running the specified Docker image
+     *
+     * @param componentName   Kubernetes component identifier of the tenant
+     * @param dockerImageName name of the Docker image to roll out
+     * @throws CarbonKernelHandlerException
+     */
+    void rollingUpdate(String componentName, String dockerImageName) throws CarbonKernelHandlerException {
+        RollingUpdateReport report = shardRouter.getShard(componentName).getReplicationControllerHandler()
+                .rollingUpdate(componentName, dockerImageName, rollingUpdateConfiguration);
+        LOG.info(report.toString());
+    }
+
+    /**
+     * scales down and deletes the replication controller and the service of a component on the specified shard
+     *
+     * @param shard         Kubernetes shard holding the component
+     * @param componentName Kubernetes component identifier of the tenant
+     * @throws CarbonKernelHandlerException
+     */
+    void removeComponents(KubernetesShard shard, String componentName) throws CarbonKernelHandlerException {
+        final int noPods = 0;
+        shard.getReplicationControllerHandler().updateNoOfReplicas(componentName, noPods);
+        shard.getReplicationControllerHandler().deleteReplicationController(componentName);
+        shard.getServiceHandler().deleteService(componentName);
+    }
+
+    /**
+     * removes whatever part of a component was created on a shard, logging rather than throwing on failure
+     *
+     * @param shard         Kubernetes shard on which the component was partially created
+     * @param componentName Kubernetes component identifier of the tenant
+     */
+    private void discardComponents(KubernetesShard shard, String componentName) {
+        try {
+            if (shard.getReplicationControllerHandler().getReplicationController(componentName, true) != null) {
+                removeComponents(shard, componentName);
+            } else {
+                shard.getServiceHandler().deleteService(componentName);
+            }
+        } catch (CarbonKernelHandlerException exception) {
+            LOG.error(String.format("Could not remove the partially created %s from the Kubernetes shard %s, "
+                    + "which has to be removed.", componentName, shard.getName()), exception);
+        }
+    }
+
+    /**
+     * waits until the built image is available to the build Docker daemon and, if configured, to the
+     * Docker daemon used by the kubelet
+     *
+     * @param dockerImageName name of the built Docker image
+     * @throws CarbonKernelHandlerException if the image is not available within the configured timeout
+     */
+    void waitForImage(String dockerImageName) throws CarbonKernelHandlerException {
+        long deadline = System.currentTimeMillis() + imageReadinessTimeout;
+        boolean available = imageBuilder.waitForImage(dockerImageName, imageReadinessTimeout);
+        if (available && (kubeletImageWaiter != null)) {
+            available = kubeletImageWaiter
+                    .waitForImage(dockerImageName, Math.max(0, deadline - System.currentTimeMillis()));
+        }
+        if (!available) {
+            String message = String.format("Docker image %s was not available within %d ms.", dockerImageName,
+                    imageReadinessTimeout);
+            LOG.error(message);
+            throw new CarbonKernelHandlerException(message);
+        }
+    }
+
+    /**
+     * provides the Docker image of a kernel artifact, retagged from the build cache if an identical artifact was
+     * built before, else built. The time taken by each stage is recorded under the carbon.image operation.
+     */
+    String buildCarbonDockerImage(String tenant, Path artifact, String version, BuildPriority priority)
             throws CarbonKernelHandlerException {
-        String kernelArtifact = artifact.getFileName().toString();
-        List<String> dockerFileContent = setDockerFileContent(kernelArtifact);
-
-        Path parentDirectory = artifact.getParent();
-        File dockerFile;
-        if (parentDirectory != null) {
-            String parentDirectoryPath = parentDirectory.toString();
-            dockerFile = new File(parentDirectoryPath + File.separator + "Dockerfile");
-        } else {
-            dockerFile = new File("Dockerfile");
+        OperationMetrics operationMetrics = metrics.getOperation(CarbonKernelHandlerConstants.IMAGE_OPERATION);
+        long startTime = System.nanoTime();
+        long stageStartTime = startTime;
+        // the stage in progress, whose failure is recorded if no image could be provided
+        String stage = CarbonKernelHandlerConstants.DOCKERFILE_STAGE;
+        boolean succeeded = false;
+        try {
+            String kernelArtifact = artifact.getFileName().toString();
+            List<String> dockerFileContent;
+            if (layeredImages) {
+                dockerFileContent = setLayeredDockerFileContent(kernelArtifact);
+            } else {
+                dockerFileContent = setDockerFileContent(kernelArtifact);
+            }
+
+            BuildVersion buildVersion = BuildVersion.create(version, new DateTime());
+            version = buildVersion.getTag();
+            String digest = BuildCache.computeDigest(artifact, dockerFileContent);
+            stageStartTime = operationMetrics.record(stage, stageStartTime, true);
+            if (buildCache != null) {
+                // an identical artifact built before, e.g. for another tenant, is retagged instead of rebuilt
+                String cachedImageId = buildCache.getImageId(digest);
+                if (cachedImageId != null) {
+                    stage = CarbonKernelHandlerConstants.CACHE_TAG_STAGE;
+                    String dockerImageName = imageBuilder
+                            .tagImage(cachedImageId, tenant, CarbonKernelHandlerConstants.ARTIFACT_NAME, version);
+                    stageStartTime = operationMetrics.record(stage, stageStartTime, true);
+                    if (dockerImageName != null) {
+                        buildVersionIndex.add(tenant, buildVersion);
+                        buildCache.recordHit();
+                        LOG.info(String.format("Reused the Docker image %s for %s. %s", cachedImageId,
+                                dockerImageName, buildCache));
+                        succeeded = true;
+                        return dockerImageName;
+                    }
+                    buildCache.remove(digest);
+                }
+                buildCache.recordMiss();
+            }
+            String dockerImageName;
+            stage = CarbonKernelHandlerConstants.BUILD_CONTEXT_STAGE;
+            // each build gets its own context holding only the Dockerfile and the kernel artifact
+            try (BuildContext buildContext = stageBuildContext(artifact, dockerFileContent)) {
+                stageStartTime = operationMetrics.record(stage, stageStartTime, true);
+                stage = CarbonKernelHandlerConstants.BUILD_STAGE;
+                dockerImageName = buildScheduler.buildImage(tenant, CarbonKernelHandlerConstants.ARTIFACT_NAME,
+                        version, buildContext.getDockerFilePath(), priority, digest);
+            }
+            operationMetrics.record(stage, stageStartTime, true);
+            buildVersionIndex.add(tenant, buildVersion);
+            if (buildCache != null) {
+                String freshImageId = imageBuilder.getImageId(dockerImageName);
+                if (freshImageId != null) {
+                    buildCache.put(digest, freshImageId);
+                }
+            }
+            succeeded = true;
+            return dockerImageName;
+        } catch (CarbonKernelHandlerException | RuntimeException exception) {
+            operationMetrics.record(stage, stageStartTime, false);
+            throw exception;
+        } finally {
+            operationMetrics.getTotal().record(startTime, succeeded);
         }
-        CarbonKernelHandlerHelper.writeToFile(dockerFile.getAbsolutePath(), dockerFileContent);
-        DateTime dateTime = new DateTime();
-        String now =
-                dateTime.getYear() + "-" + dateTime.getMonthOfYear() + "-" + dateTime.getDayOfMonth() + "-" + dateTime
-                        .getMillisOfDay();
-        version += ("-" + now);
-        return imageBuilder.buildImage(tenant, CarbonKernelHandlerConstants.ARTIFACT_NAME, version,
-                Paths.get(dockerFile.getAbsolutePath()));
     }
 
     private List<String> setDockerFileContent(String kernelArtifact) throws CarbonKernelHandlerException {
@@ -263,6 +1073,60 @@ public class CarbonKernelHandler implements ICarbonKernelHandler {
         return dockerFileContent;
     }
 
+    private BuildContext stageBuildContext(Path artifact, List<String> dockerFileContent)
+            throws CarbonKernelHandlerException {
+        if (layeredImages) {
+            return BuildContext.stageLayers(artifact, CarbonKernelHandlerConstants.STABLE_LAYER,
+                    getVolatileKernelLayers(), dockerFileContent);
+        } else {
+            return BuildContext.stage(artifact, dockerFileContent);
+        }
+    }
+
+    private List<String> setLayeredDockerFileContent(String kernelArtifact) {
+        List<String> dockerFileContent = new ArrayList<>();
+        dockerFileContent.add("FROM java:openjdk-8");
+        dockerFileContent.add("MAINTAINER dev@wso2.org");
+        // layers are added from the least to the most frequently changing one, so that a rebuild re-uses
+        // the cached layers up to the first one whose content has changed
+        dockerFileContent
+                .add("ADD " + BuildContext.getLayerDirectory(CarbonKernelHandlerConstants.STABLE_LAYER) + " /opt/");
+        for (String layer : getVolatileKernelLayers().keySet()) {
+            dockerFileContent.add("ADD " + BuildContext.getLayerDirectory(layer) + " /opt/");
+        }
+        dockerFileContent.add("# Carbon https port\nEXPOSE 9443");
+        dockerFileContent.add("ENV JAVA_HOME=/usr");
+        dockerFileContent.add("ENTRYPOINT [\"/opt/" + kernelArtifact.substring(0, kernelArtifact.length() - 4)
+                + "/bin/wso2server.sh\"]");
+        return dockerFileContent;
+    }
+
+    /**
+     * returns the image handler of a Docker daemon, which assembles images and pushes them to the registry
+     * if a registry URL is specified, else builds them on the Docker daemon. The calls to the image handlers of
+     * all Docker daemons are recorded together.
+     */
+    private static IDockerImageHandler createDockerImageHandler(DockerClient dockerClient, String dockerEndpointURL,
+            String registryURL) throws CarbonKernelHandlerException {
+        IDockerImageHandler imageHandler;
+        if (registryURL != null) {
+            imageHandler = new DaemonlessDockerImageHandler(dockerClient, dockerEndpointURL, registryURL);
+        } else {
+            imageHandler = new JavaDockerImageHandler(dockerClient, dockerEndpointURL);
+        }
+        return new InstrumentedDockerImageHandler(imageHandler, MetricsRegistry.getInstance());
+    }
+
+    private Map<String, List<String>> getVolatileKernelLayers() {
+        Map<String, List<String>> volatileLayers = new LinkedHashMap<>();
+
+        volatileLayers.put("conf", Arrays.asList("conf/", "repository/conf/"));
+        volatileLayers.put("dropins", Arrays.asList("osgi/dropins/", "repository/components/dropins/"));
+        volatileLayers.put("deployment", Arrays.asList("deployment/", "repository/deployment/"));
+
+        return volatileLayers;
+    }
+
     private Map<String, String> getContainerCmdImagePairs() {
         Map<String, String> containerCmdImagePairs = new HashMap<>();
 
@@ -277,4 +1141,16 @@ public class CarbonKernelHandler implements ICarbonKernelHandler {
 
         return containerCmdImagePairs;
     }
+
+    /**
+     * an operation on the kernel of a single tenant, run by runOnFleet
+     */
+    private interface TenantOperation {
+        /**
+         * @param tenant name of the tenant
+         * @return true if the operation changed the tenant's deployment, false if it did not apply
+         * @throws CarbonKernelHandlerException
+         */
+        boolean apply(String tenant) throws CarbonKernelHandlerException;
+    }
 }
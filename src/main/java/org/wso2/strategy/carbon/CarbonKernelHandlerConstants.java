@@ -18,5 +18,45 @@ package org.wso2.strategy.carbon;
 public class CarbonKernelHandlerConstants {
     protected static final String ARTIFACT_NAME = "carbon";
     protected static final String INDEX_PAGE = "sample";
-    protected static final int IMAGE_BUILD_DELAY_IN_MILLISECONDS = 5000;
+    protected static final String IMAGE_READINESS_TIMEOUT_PROPERTY = "carbon.image-readiness.timeout";
+    protected static final long DEFAULT_IMAGE_READINESS_TIMEOUT_IN_MILLISECONDS = 60000;
+    protected static final String KUBELET_DOCKER_URL_PROPERTY = "carbon.kubelet-docker-url";
+    protected static final String LAYERED_IMAGE_PROPERTY = "carbon.image.layered";
+    protected static final String STABLE_LAYER = "stable";
+    protected static final String FLEET_PARALLELISM_PROPERTY = "carbon.fleet.parallelism";
+    protected static final int DEFAULT_FLEET_PARALLELISM = 8;
+    protected static final String TENANT_LOCK_STRIPES_PROPERTY = "carbon.tenant-lock.stripes";
+    protected static final int DEFAULT_TENANT_LOCK_STRIPES = 1024;
+    protected static final String ASYNC_PARALLELISM_PROPERTY = "carbon.async.parallelism";
+    protected static final int DEFAULT_ASYNC_PARALLELISM = 16;
+    protected static final String JOURNAL_FILENAME = "DeploymentJournal.log";
+    protected static final String JOURNAL_COMPACTION_INTERVAL_PROPERTY = "carbon.journal.compaction-interval";
+    protected static final long DEFAULT_JOURNAL_COMPACTION_INTERVAL_IN_MILLISECONDS = 600000;
+    protected static final String DEPLOY_OPERATION = "carbon.deploy";
+    protected static final String ROLLING_UPDATE_OPERATION = "carbon.rollUpdate";
+    protected static final String ROLLBACK_OPERATION = "carbon.rollBack";
+    protected static final String SCALE_OPERATION = "carbon.scale";
+    protected static final String REMOVE_OPERATION = "carbon.remove";
+    protected static final String REBALANCE_OPERATION = "carbon.rebalance";
+    protected static final String REPLICA_COUNT_OPERATION = "carbon.getNoOfReplicas";
+    protected static final String SERVICE_ACCESS_IPS_OPERATION = "carbon.getServiceAccessIPs";
+    protected static final String BUILD_ARTIFACTS_OPERATION = "carbon.listExistingBuildArtifacts";
+    protected static final String LOWER_BUILD_ARTIFACTS_OPERATION = "carbon.listLowerBuildArtifactVersions";
+    protected static final String FLEET_SCALE_OPERATION = "carbon.scaleAll";
+    protected static final String FLEET_REMOVE_OPERATION = "carbon.removeAll";
+    protected static final String FLEET_ROLLING_UPDATE_OPERATION = "carbon.rollUpdateAll";
+    protected static final String RESUME_OPERATION = "carbon.resumeIncompleteOperations";
+    protected static final String IMAGE_OPERATION = "carbon.image";
+    protected static final String TENANT_LOCK_STAGE = "tenant-lock";
+    protected static final String LOOKUP_STAGE = "lookup";
+    protected static final String IMAGE_STAGE = "image";
+    protected static final String IMAGE_WAIT_STAGE = "image-wait";
+    protected static final String REPLICATION_CONTROLLER_STAGE = "replication-controller";
+    protected static final String SERVICE_STAGE = "service";
+    protected static final String ROLLING_UPDATE_STAGE = "rolling-update";
+    protected static final String DOCKERFILE_STAGE = "dockerfile";
+    protected static final String CACHE_TAG_STAGE = "cache-tag";
+    protected static final String BUILD_CONTEXT_STAGE = "build-context";
+    protected static final String BUILD_STAGE = "build";
+    protected static final String TENANT_STAGE = "tenant";
 }
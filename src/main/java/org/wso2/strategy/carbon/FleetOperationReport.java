@@ -0,0 +1,139 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.carbon;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * a Java class which records the per-tenant outcomes and timings of an operation run on a fleet of tenants
+ */
+public class FleetOperationReport {
+    private final String operation;
+    private final List<TenantResult> results = new ArrayList<>();
+    private long totalTimeInMilliseconds;
+
+    public FleetOperationReport(String operation) {
+        this.operation = operation;
+    }
+
+    void addResult(TenantResult result) {
+        results.add(result);
+    }
+
+    void setTotalTimeInMilliseconds(long totalTimeInMilliseconds) {
+        this.totalTimeInMilliseconds = totalTimeInMilliseconds;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * returns the results in the order in which the tenants were specified
+     *
+     * @return the per-tenant results
+     */
+    public List<TenantResult> getResults() {
+        return Collections.unmodifiableList(results);
+    }
+
+    public long getTotalTimeInMilliseconds() {
+        return totalTimeInMilliseconds;
+    }
+
+    public int getCount(Outcome outcome) {
+        int count = 0;
+        for (TenantResult result : results) {
+            if (result.getOutcome() == outcome) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public boolean isSuccessful() {
+        return getCount(Outcome.FAILED) == 0;
+    }
+
+    public String toString() {
+        StringBuilder report = new StringBuilder(String.format(
+                "Fleet %s [tenants] %d [applied] %d [skipped] %d [failed] %d [total] %d ms", operation,
+                results.size(), getCount(Outcome.APPLIED), getCount(Outcome.SKIPPED), getCount(Outcome.FAILED),
+                totalTimeInMilliseconds));
+        for (TenantResult result : results) {
+            report.append("\n").append(result);
+        }
+        return report.toString();
+    }
+
+    /**
+     * outcome of an operation on a single tenant
+     */
+    public enum Outcome {
+        // the operation changed the tenant's deployment
+        APPLIED,
+        // the operation did not apply, e.g. the tenant has no kernel deployed
+        SKIPPED,
+        FAILED
+    }
+
+    /**
+     * outcome and timing of an operation on a single tenant
+     */
+    public static class TenantResult {
+        private final String tenant;
+        private final Outcome outcome;
+        private final String errorMessage;
+        private final long timeInMilliseconds;
+
+        TenantResult(String tenant, Outcome outcome, String errorMessage, long timeInMilliseconds) {
+            this.tenant = tenant;
+            this.outcome = outcome;
+            this.errorMessage = errorMessage;
+            this.timeInMilliseconds = timeInMilliseconds;
+        }
+
+        public String getTenant() {
+            return tenant;
+        }
+
+        public Outcome getOutcome() {
+            return outcome;
+        }
+
+        /**
+         * @return the error message of a failed operation, else null
+         */
+        public String getErrorMessage() {
+            return errorMessage;
+        }
+
+        public long getTimeInMilliseconds() {
+            return timeInMilliseconds;
+        }
+
+        public String toString() {
+            if (errorMessage != null) {
+                return String.format("  %s [outcome] %s [time] %d ms [error] %s", tenant, outcome,
+                        timeInMilliseconds, errorMessage);
+            } else {
+                return String.format("  %s [outcome] %s [time] %d ms", tenant, outcome, timeInMilliseconds);
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.carbon;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * a Java class which represents the permit serialising the operations on the Kubernetes components of a tenant.
+ * The permit is handed over to its waiters in the order in which they asked for it, whether they block on it or
+ * wait on a future, so that the synchronous and asynchronous operations on a tenant run first come, first served.
+ */
+class TenantPermit {
+    private final Queue<SettableFuture<Void>> waiters = new ArrayDeque<>();
+    private boolean held;
+
+    /**
+     * acquires the permit, blocking uninterruptibly until it is handed over
+     */
+    void acquire() {
+        try {
+            Uninterruptibles.getUninterruptibly(acquireAsync());
+        } catch (ExecutionException exception) {
+            // the future of a waiter is only ever set or cancelled, neither of which happens to a blocked waiter
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    /**
+     * acquires the permit without blocking. A waiter which cancels the returned future before it completes
+     * gives up its place and never holds the permit.
+     *
+     * @return a future which completes once the permit has been handed over to the caller
+     */
+    synchronized ListenableFuture<Void> acquireAsync() {
+        if (!held) {
+            held = true;
+            return Futures.immediateFuture(null);
+        }
+        SettableFuture<Void> waiter = SettableFuture.create();
+        waiters.add(waiter);
+        return waiter;
+    }
+
+    /**
+     * releases the permit, handing it over to the longest waiting caller if any
+     */
+    void release() {
+        while (true) {
+            SettableFuture<Void> next;
+            synchronized (this) {
+                next = waiters.poll();
+                if (next == null) {
+                    held = false;
+                    return;
+                }
+            }
+            // completed outside the monitor, as it runs the listeners of the waiter
+            if (next.set(null)) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.carbon.interfaces;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.nio.file.Path;
+
+/**
+ * asynchronous companion of ICarbonKernelHandler. Each method returns immediately with a future of the outcome
+ * which would have been returned by the corresponding ICarbonKernelHandler method. The future fails with a
+ * CarbonKernelHandlerException if the operation fails, or with a java.util.concurrent.TimeoutException if it does
+ * not complete within the specified timeout. Cancelling the future stops the operation before its next step.
+ */
+public interface IAsyncCarbonKernelHandler {
+    /**
+     * deploys WSO2 Carbon kernel instances
+     *
+     * @param tenant                name of the tenant
+     * @param kernelPath            file system path to the WSO2 Carbon kernel to be deployed
+     * @param buildVersion          build version of the WSO2 Carbon kernel deployed
+     * @param replicas              number of deployed replicas of the kernel
+     * @param timeoutInMilliseconds time within which the operation has to complete, no limit if not positive
+     * @return a future of true if successfully deployed, else false
+     */
+    ListenableFuture<Boolean> deploy(String tenant, Path kernelPath, String buildVersion, int replicas,
+            long timeoutInMilliseconds);
+
+    /**
+     * make a roll update to the newly deployed kernel build
+     *
+     * @param tenant                name of the tenant
+     * @param kernelPath            file system path to the WSO2 Carbon kernel to be deployed
+     * @param buildVersion          build version of the WSO2 Carbon kernel deployed
+     * @param timeoutInMilliseconds time within which the operation has to complete, no limit if not positive
+     * @return a future of true if successfully updated, else false
+     */
+    ListenableFuture<Boolean> rollUpdate(String tenant, Path kernelPath, String buildVersion,
+            long timeoutInMilliseconds);
+
+    /**
+     * rolls back to an existing build version of the currently running kernel artifact build version
+     *
+     * @param tenant                name of the tenant
+     * @param buildVersion          build version of the WSO2 Carbon kernel deployed
+     * @param olderVersion          identifier of older WSO2 Carbon kernel build to be newly deployed
+     * @param timeoutInMilliseconds time within which the operation has to complete, no limit if not positive
+     * @return a future of true if successfully updated, else false
+     */
+    ListenableFuture<Boolean> rollBack(String tenant, String buildVersion, String olderVersion,
+            long timeoutInMilliseconds);
+
+    /**
+     * scale the number of kernel replicas running
+     *
+     * @param tenant                name of the tenant
+     * @param noOfReplicas          latest number of replicas to be deployed
+     * @param timeoutInMilliseconds time within which the operation has to complete, no limit if not positive
+     * @return a future of true if successfully scaled, else false
+     */
+    ListenableFuture<Boolean> scale(String tenant, int noOfReplicas, long timeoutInMilliseconds);
+
+    /**
+     * removes the deployed kernel replicas and service of the specified tenant
+     *
+     * @param tenant                name of the tenant
+     * @param timeoutInMilliseconds time within which the operation has to complete, no limit if not positive
+     * @return a future of true if successfully removed, else false
+     */
+    ListenableFuture<Boolean> remove(String tenant, long timeoutInMilliseconds);
+}
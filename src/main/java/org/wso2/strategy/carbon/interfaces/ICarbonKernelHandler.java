@@ -15,10 +15,13 @@
 */
 package org.wso2.strategy.carbon.interfaces;
 
+import org.wso2.strategy.carbon.FleetOperationReport;
 import org.wso2.strategy.miscellaneous.exception.CarbonKernelHandlerException;
 
 import java.nio.file.Path;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface ICarbonKernelHandler {
     /**
@@ -75,6 +78,32 @@ public interface ICarbonKernelHandler {
      */
     boolean remove(String tenant) throws CarbonKernelHandlerException;
 
+    /**
+     * scales the number of kernel replicas running for each of the specified tenants, concurrently
+     *
+     * @param tenantReplicas latest number of replicas to be deployed, by name of the tenant
+     * @return a report of the outcome and time taken for each tenant
+     */
+    FleetOperationReport scaleAll(Map<String, Integer> tenantReplicas);
+
+    /**
+     * removes the deployed kernel replicas and services of the specified tenants, concurrently
+     *
+     * @param tenants names of the tenants
+     * @return a report of the outcome and time taken for each tenant
+     */
+    FleetOperationReport removeAll(Collection<String> tenants);
+
+    /**
+     * make a roll update of the specified tenants to the newly deployed kernel build, concurrently
+     *
+     * @param tenants      names of the tenants
+     * @param kernelPath   file system path to the WSO2 Carbon kernel to be deployed
+     * @param buildVersion build version of the WSO2 Carbon kernel deployed
+     * @return a report of the outcome and time taken for each tenant
+     */
+    FleetOperationReport rollUpdateAll(Collection<String> tenants, Path kernelPath, String buildVersion);
+
     /**
      * returns the number of kernel replicas a particular tenant is running, currently
      *
@@ -0,0 +1,425 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.carbon.journal;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.wso2.strategy.miscellaneous.exception.CarbonKernelHandlerException;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * a Java class which records the operations on the tenants' kernels in an append-only file and maintains an
+ * in-memory index of the resulting deployment of each tenant.
+ * <p>
+ * Each record of the file consists of the length and the CRC32 checksum of an encoded JournalEntry followed by
+ * the entry itself. On start-up the file is read through a memory mapping and replayed into the index. A torn or
+ * corrupt record, e.g. after a crash in the middle of an append, ends the replay and is truncated. Compaction
+ * rewrites the file with only the entries needed to rebuild the index.
+ */
+public class DeploymentJournal {
+    private final Path journalPath;
+    private FileChannel channel;
+    private final Map<String, TenantDeploymentState> states = new ConcurrentHashMap<>();
+    // operations started but neither completed, skipped nor failed, by tenant
+    private final Map<String, JournalEntry> incompleteOperations = new ConcurrentHashMap<>();
+    private long nextSequence = 1;
+    // entries appended since the last compaction
+    private long appendedEntryCount;
+    private ScheduledExecutorService compactionExecutor;
+
+    private static final int RECORD_HEADER_SIZE_IN_BYTES = 8;
+    private static final int MAXIMUM_ENTRY_SIZE_IN_BYTES = 1024 * 1024;
+    private static final Logger LOG = LogManager.getLogger(DeploymentJournal.class);
+
+    public DeploymentJournal(String fileName) throws CarbonKernelHandlerException {
+        journalPath = Paths.get(fileName);
+        try {
+            channel = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            long validLength = replay();
+            if (validLength < channel.size()) {
+                LOG.warn(String.format("Truncating %d bytes of incomplete or corrupt records from %s.",
+                        channel.size() - validLength, fileName));
+                channel.truncate(validLength);
+            }
+            channel.position(validLength);
+        } catch (IOException exception) {
+            String message = String.format("Could not open the deployment journal %s.", fileName);
+            LOG.error(message, exception);
+            throw new CarbonKernelHandlerException(message, exception);
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(String.format("Replayed the deployment journal. %s", this));
+        }
+    }
+
+    /**
+     * records the start of an operation on a tenant's kernel
+     *
+     * @param operation       operation started
+     * @param tenant          name of the tenant
+     * @param buildVersion    build version of the kernel, null if not applicable
+     * @param artifactPath    file system path of the kernel artifact, null if not applicable
+     * @param dockerImageName Docker image to be deployed, null if not known
+     * @param replicas        number of replicas, or 0 if not applicable
+     * @return the recorded entry, to be passed on to recordOutcome
+     * @throws CarbonKernelHandlerException if the entry could not be written
+     */
+    public synchronized JournalEntry recordStarted(JournalEntry.Operation operation, String tenant,
+            String buildVersion, String artifactPath, String dockerImageName, int replicas)
+            throws CarbonKernelHandlerException {
+        return recordStarted(new JournalEntry(nextSequence++, System.currentTimeMillis(), operation,
+                JournalEntry.Phase.STARTED, tenant, buildVersion, artifactPath, dockerImageName, replicas));
+    }
+
+    /**
+     * records the start of moving a tenant's kernel to another Kubernetes shard
+     *
+     * @param tenant          name of the tenant
+     * @param dockerImageName Docker image of the moved kernel
+     * @param replicas        number of replicas of the moved kernel
+     * @param sourceShardName name of the shard the kernel is moved from
+     * @param targetShardName name of the shard the kernel is moved to
+     * @return the recorded entry, to be passed on to recordOutcome
+     * @throws CarbonKernelHandlerException if the entry could not be written
+     */
+    public synchronized JournalEntry recordRebalanceStarted(String tenant, String dockerImageName, int replicas,
+            String sourceShardName, String targetShardName) throws CarbonKernelHandlerException {
+        return recordStarted(new JournalEntry(nextSequence++, System.currentTimeMillis(),
+                JournalEntry.Operation.REBALANCE, JournalEntry.Phase.STARTED, tenant, null, null, dockerImageName,
+                replicas, sourceShardName, targetShardName));
+    }
+
+    private JournalEntry recordStarted(JournalEntry entry) throws CarbonKernelHandlerException {
+        try {
+            append(entry);
+        } catch (IOException exception) {
+            String message = String.format("Could not record the start of %s.", entry);
+            LOG.error(message, exception);
+            throw new CarbonKernelHandlerException(message, exception);
+        }
+        apply(entry);
+        return entry;
+    }
+
+    /**
+     * records the outcome of a started operation. A failure to write the entry is logged only, as the operation
+     * itself has already taken effect.
+     *
+     * @param started         entry recorded at the start of the operation
+     * @param phase           outcome of the operation
+     * @param dockerImageName Docker image deployed by the operation, null if it is the one recorded at the start
+     */
+    public synchronized void recordOutcome(JournalEntry started, JournalEntry.Phase phase, String dockerImageName) {
+        JournalEntry entry = new JournalEntry(nextSequence++, System.currentTimeMillis(), started.getOperation(),
+                phase, started.getTenant(), started.getBuildVersion(), started.getArtifactPath(),
+                (dockerImageName != null) ? dockerImageName : started.getDockerImageName(), started.getReplicas(),
+                started.getSourceShardName(), started.getTargetShardName());
+        try {
+            append(entry);
+        } catch (IOException exception) {
+            LOG.error(String.format("Could not record the outcome %s.", entry), exception);
+        }
+        apply(entry);
+    }
+
+    /**
+     * @param tenant name of the tenant
+     * @return the recorded deployment of the tenant's kernel, null if it has none
+     */
+    public TenantDeploymentState getState(String tenant) {
+        return states.get(tenant);
+    }
+
+    public List<TenantDeploymentState> getStates() {
+        return new ArrayList<>(states.values());
+    }
+
+    /**
+     * returns the operations which were started but whose outcome was never recorded, e.g. because the process
+     * stopped in the middle of them
+     *
+     * @return the latest incomplete operation of each tenant
+     */
+    public List<JournalEntry> getIncompleteOperations() {
+        return new ArrayList<>(incompleteOperations.values());
+    }
+
+    /**
+     * rewrites the journal with only the entries needed to rebuild the current index, replacing the file
+     * atomically
+     *
+     * @throws CarbonKernelHandlerException
+     */
+    public synchronized void compact() throws CarbonKernelHandlerException {
+        Path compactedPath = Paths.get(journalPath.toString() + ".compact");
+        FileChannel compacted = null;
+        try {
+            // the compacted file stays open across the move and becomes the journal's channel, so the current
+            // channel is left untouched, and in use, unless the journal has been replaced
+            compacted = FileChannel.open(compactedPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            for (JournalEntry entry : getCompactedEntries()) {
+                writeRecord(compacted, entry);
+            }
+            compacted.force(true);
+            Files.move(compactedPath, journalPath, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException exception) {
+            discard(compacted, compactedPath);
+            String message = String.format("Could not compact the deployment journal %s.", journalPath);
+            LOG.error(message, exception);
+            throw new CarbonKernelHandlerException(message, exception);
+        }
+        FileChannel replaced = channel;
+        channel = compacted;
+        appendedEntryCount = 0;
+        try {
+            replaced.close();
+        } catch (IOException exception) {
+            LOG.warn(String.format("Could not close the replaced deployment journal %s.", journalPath), exception);
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(String.format("Compacted the deployment journal. %s", this));
+        }
+    }
+
+    /**
+     * compacts the journal at the specified interval, whenever entries have been appended since the last
+     * compaction
+     *
+     * @param intervalInMilliseconds interval between compactions, no periodic compaction if not positive
+     */
+    public synchronized void startPeriodicCompaction(long intervalInMilliseconds) {
+        if ((intervalInMilliseconds <= 0) || (compactionExecutor != null)) {
+            return;
+        }
+        compactionExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "deployment-journal-compaction");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        compactionExecutor.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                try {
+                    synchronized (DeploymentJournal.this) {
+                        if (appendedEntryCount > 0) {
+                            compact();
+                        }
+                    }
+                } catch (CarbonKernelHandlerException exception) {
+                    // logged by compact, retried at the next interval
+                }
+            }
+        }, intervalInMilliseconds, intervalInMilliseconds, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized String toString() {
+        long size;
+        try {
+            size = channel.size();
+        } catch (IOException exception) {
+            size = -1;
+        }
+        return String.format("Deployment journal [file] %s [bytes] %d [tenants] %d [incomplete] %d", journalPath,
+                size, states.size(), incompleteOperations.size());
+    }
+
+    /**
+     * replays the records of the journal file into the index
+     *
+     * @return the length of the valid prefix of the file
+     */
+    private long replay() throws IOException {
+        long size = channel.size();
+        if (size == 0) {
+            return 0;
+        }
+        MappedByteBuffer records = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        CRC32 checksum = new CRC32();
+        int position = 0;
+        while (records.remaining() >= RECORD_HEADER_SIZE_IN_BYTES) {
+            int length = records.getInt();
+            int expectedChecksum = records.getInt();
+            if ((length <= 0) || (length > MAXIMUM_ENTRY_SIZE_IN_BYTES) || (length > records.remaining())) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            records.get(payload);
+            checksum.reset();
+            checksum.update(payload, 0, length);
+            if ((int) checksum.getValue() != expectedChecksum) {
+                break;
+            }
+            JournalEntry entry;
+            try {
+                entry = JournalEntry.decode(new DataInputStream(new ByteArrayInputStream(payload)));
+            } catch (IOException | RuntimeException exception) {
+                LOG.warn("Could not decode a deployment journal entry.", exception);
+                break;
+            }
+            apply(entry);
+            nextSequence = Math.max(nextSequence, entry.getSequence() + 1);
+            position = records.position();
+        }
+        return position;
+    }
+
+    private void append(JournalEntry entry) throws IOException {
+        writeRecord(channel, entry);
+        channel.force(false);
+        appendedEntryCount++;
+    }
+
+    private static void writeRecord(FileChannel target, JournalEntry entry) throws IOException {
+        byte[] payload = entry.encode();
+        CRC32 checksum = new CRC32();
+        checksum.update(payload, 0, payload.length);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE_IN_BYTES + payload.length);
+        record.putInt(payload.length);
+        record.putInt((int) checksum.getValue());
+        record.put(payload);
+        record.flip();
+        while (record.hasRemaining()) {
+            target.write(record);
+        }
+    }
+
+    /**
+     * closes and deletes a compacted journal which did not replace the journal
+     */
+    private static void discard(FileChannel compacted, Path compactedPath) {
+        try {
+            if (compacted != null) {
+                compacted.close();
+            }
+            Files.deleteIfExists(compactedPath);
+        } catch (IOException exception) {
+            LOG.warn(String.format("Could not discard the compacted deployment journal %s.", compactedPath),
+                    exception);
+        }
+    }
+
+    /**
+     * applies an entry to the index
+     */
+    private void apply(JournalEntry entry) {
+        String tenant = entry.getTenant();
+        if (entry.getPhase() == JournalEntry.Phase.STARTED) {
+            incompleteOperations.put(tenant, entry);
+            return;
+        }
+        incompleteOperations.remove(tenant);
+        if (entry.getPhase() != JournalEntry.Phase.COMPLETED) {
+            return;
+        }
+        boolean deploysImage = (entry.getOperation() != JournalEntry.Operation.SCALE) && (entry.getOperation()
+                != JournalEntry.Operation.REMOVE) && (entry.getOperation() != JournalEntry.Operation.REBALANCE);
+        if (deploysImage && (entry.getDockerImageName() == null)) {
+            return;
+        }
+        TenantDeploymentState current = states.get(tenant);
+        List<String> deployedImages = new ArrayList<>();
+        switch (entry.getOperation()) {
+        case DEPLOY:
+            deployedImages.add(entry.getDockerImageName());
+            states.put(tenant, new TenantDeploymentState(tenant, entry.getBuildVersion(), entry.getDockerImageName(),
+                    entry.getReplicas(), deployedImages, entry.getTimestamp()));
+            break;
+        case ROLLING_UPDATE:
+        case ROLLBACK:
+            int replicas = entry.getReplicas();
+            String buildVersion = entry.getBuildVersion();
+            if (current != null) {
+                deployedImages.addAll(current.getDeployedImages());
+                replicas = current.getReplicas();
+                if (entry.getOperation() == JournalEntry.Operation.ROLLBACK) {
+                    buildVersion = current.getBuildVersion();
+                }
+            }
+            if (!deployedImages.contains(entry.getDockerImageName())) {
+                deployedImages.add(entry.getDockerImageName());
+            }
+            states.put(tenant, new TenantDeploymentState(tenant, buildVersion, entry.getDockerImageName(), replicas,
+                    deployedImages, entry.getTimestamp()));
+            break;
+        case SCALE:
+            if (current != null) {
+                states.put(tenant, new TenantDeploymentState(tenant, current.getBuildVersion(),
+                        current.getDockerImageName(), entry.getReplicas(), current.getDeployedImages(),
+                        entry.getTimestamp()));
+            }
+            break;
+        case REMOVE:
+            states.remove(tenant);
+            break;
+        case REBALANCE:
+            // the kernel keeps its image and replicas on the target shard
+            break;
+        }
+    }
+
+    /**
+     * returns entries which rebuild the current index when replayed: a deployment and a rolling update per
+     * deployed image of each tenant, a rollback if the current image is not the latest deployed one and the
+     * incomplete operations
+     */
+    private List<JournalEntry> getCompactedEntries() {
+        List<JournalEntry> entries = new ArrayList<>();
+        for (TenantDeploymentState state : states.values()) {
+            List<String> deployedImages = state.getDeployedImages();
+            for (int index = 0; index < deployedImages.size(); index++) {
+                JournalEntry.Operation operation = (index == 0) ?
+                        JournalEntry.Operation.DEPLOY :
+                        JournalEntry.Operation.ROLLING_UPDATE;
+                entries.add(new JournalEntry(nextSequence++, state.getLastModified(), operation,
+                        JournalEntry.Phase.COMPLETED, state.getTenant(), state.getBuildVersion(), null,
+                        deployedImages.get(index), state.getReplicas()));
+            }
+            if (!state.getDockerImageName().equals(deployedImages.get(deployedImages.size() - 1))) {
+                entries.add(new JournalEntry(nextSequence++, state.getLastModified(), JournalEntry.Operation.ROLLBACK,
+                        JournalEntry.Phase.COMPLETED, state.getTenant(), state.getBuildVersion(), null,
+                        state.getDockerImageName(), state.getReplicas()));
+            }
+        }
+        for (JournalEntry entry : incompleteOperations.values()) {
+            entries.add(entry);
+        }
+        return entries;
+    }
+}
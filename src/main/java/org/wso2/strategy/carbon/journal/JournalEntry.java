@@ -0,0 +1,198 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.carbon.journal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * a Java class which represents a single, immutable event of the deployment journal
+ */
+public class JournalEntry {
+    private final long sequence;
+    private final long timestamp;
+    private final Operation operation;
+    private final Phase phase;
+    private final String tenant;
+    private final String buildVersion;
+    // file system path of the kernel artifact, null if the operation does not build one
+    private final String artifactPath;
+    // Docker image deployed by the operation, null if not known (yet)
+    private final String dockerImageName;
+    private final int replicas;
+    // Kubernetes shards a rebalance moves the kernel from and to, null for the other operations
+    private final String sourceShardName;
+    private final String targetShardName;
+
+    private static final byte FORMAT_VERSION = 2;
+    // format of the entries written before the rebalance was recorded, which hold no shard names
+    private static final byte UNSHARDED_FORMAT_VERSION = 1;
+
+    JournalEntry(long sequence, long timestamp, Operation operation, Phase phase, String tenant, String buildVersion,
+            String artifactPath, String dockerImageName, int replicas) {
+        this(sequence, timestamp, operation, phase, tenant, buildVersion, artifactPath, dockerImageName, replicas,
+                null, null);
+    }
+
+    JournalEntry(long sequence, long timestamp, Operation operation, Phase phase, String tenant, String buildVersion,
+            String artifactPath, String dockerImageName, int replicas, String sourceShardName,
+            String targetShardName) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.operation = operation;
+        this.phase = phase;
+        this.tenant = tenant;
+        this.buildVersion = buildVersion;
+        this.artifactPath = artifactPath;
+        this.dockerImageName = dockerImageName;
+        this.replicas = replicas;
+        this.sourceShardName = sourceShardName;
+        this.targetShardName = targetShardName;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    public String getTenant() {
+        return tenant;
+    }
+
+    public String getBuildVersion() {
+        return buildVersion;
+    }
+
+    public String getArtifactPath() {
+        return artifactPath;
+    }
+
+    public String getDockerImageName() {
+        return dockerImageName;
+    }
+
+    public int getReplicas() {
+        return replicas;
+    }
+
+    public String getSourceShardName() {
+        return sourceShardName;
+    }
+
+    public String getTargetShardName() {
+        return targetShardName;
+    }
+
+    byte[] encode() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeByte(FORMAT_VERSION);
+            output.writeLong(sequence);
+            output.writeLong(timestamp);
+            output.writeByte(operation.ordinal());
+            output.writeByte(phase.ordinal());
+            output.writeUTF(tenant);
+            writeNullableUTF(output, buildVersion);
+            writeNullableUTF(output, artifactPath);
+            writeNullableUTF(output, dockerImageName);
+            output.writeInt(replicas);
+            writeNullableUTF(output, sourceShardName);
+            writeNullableUTF(output, targetShardName);
+        }
+        return bytes.toByteArray();
+    }
+
+    static JournalEntry decode(DataInputStream input) throws IOException {
+        byte formatVersion = input.readByte();
+        if ((formatVersion != FORMAT_VERSION) && (formatVersion != UNSHARDED_FORMAT_VERSION)) {
+            throw new IOException(String.format("Unsupported journal entry format version %d.", formatVersion));
+        }
+        long sequence = input.readLong();
+        long timestamp = input.readLong();
+        Operation operation = Operation.values()[input.readByte()];
+        Phase phase = Phase.values()[input.readByte()];
+        String tenant = input.readUTF();
+        String buildVersion = readNullableUTF(input);
+        String artifactPath = readNullableUTF(input);
+        String dockerImageName = readNullableUTF(input);
+        int replicas = input.readInt();
+        String sourceShardName = null;
+        String targetShardName = null;
+        if (formatVersion == FORMAT_VERSION) {
+            sourceShardName = readNullableUTF(input);
+            targetShardName = readNullableUTF(input);
+        }
+        return new JournalEntry(sequence, timestamp, operation, phase, tenant, buildVersion, artifactPath,
+                dockerImageName, replicas, sourceShardName, targetShardName);
+    }
+
+    private static void writeNullableUTF(DataOutputStream output, String value) throws IOException {
+        output.writeBoolean(value != null);
+        if (value != null) {
+            output.writeUTF(value);
+        }
+    }
+
+    private static String readNullableUTF(DataInputStream input) throws IOException {
+        if (input.readBoolean()) {
+            return input.readUTF();
+        } else {
+            return null;
+        }
+    }
+
+    public String toString() {
+        String entry = String.format("#%d %s %s [tenant] %s [version] %s [image] %s [replicas] %d", sequence,
+                operation, phase, tenant, buildVersion, dockerImageName, replicas);
+        if (targetShardName != null) {
+            entry += String.format(" [shards] %s -> %s", sourceShardName, targetShardName);
+        }
+        return entry;
+    }
+
+    /**
+     * operations of the kernel handler recorded in the journal
+     */
+    public enum Operation {
+        DEPLOY, ROLLING_UPDATE, ROLLBACK, SCALE, REMOVE, REBALANCE
+    }
+
+    /**
+     * phases of an operation recorded in the journal. An operation started without a later entry of another
+     * phase for the same tenant was interrupted, e.g. by a crash.
+     */
+    public enum Phase {
+        STARTED,
+        // the operation changed the tenant's deployment
+        COMPLETED,
+        // the operation did not apply, e.g. the tenant has no kernel deployed
+        SKIPPED,
+        FAILED
+    }
+}
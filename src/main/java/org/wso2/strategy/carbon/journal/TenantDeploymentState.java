@@ -0,0 +1,75 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.carbon.journal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * a Java class which represents the deployment of a tenant's kernel as recorded in the deployment journal
+ */
+public class TenantDeploymentState {
+    private final String tenant;
+    private final String buildVersion;
+    private final String dockerImageName;
+    private final int replicas;
+    // Docker images deployed for the tenant, in the order in which they were first deployed
+    private final List<String> deployedImages;
+    private final long lastModified;
+
+    TenantDeploymentState(String tenant, String buildVersion, String dockerImageName, int replicas,
+            List<String> deployedImages, long lastModified) {
+        this.tenant = tenant;
+        this.buildVersion = buildVersion;
+        this.dockerImageName = dockerImageName;
+        this.replicas = replicas;
+        this.deployedImages = Collections.unmodifiableList(new ArrayList<>(deployedImages));
+        this.lastModified = lastModified;
+    }
+
+    public String getTenant() {
+        return tenant;
+    }
+
+    public String getBuildVersion() {
+        return buildVersion;
+    }
+
+    /**
+     * @return the Docker image the tenant's kernel currently runs
+     */
+    public String getDockerImageName() {
+        return dockerImageName;
+    }
+
+    public int getReplicas() {
+        return replicas;
+    }
+
+    public List<String> getDeployedImages() {
+        return deployedImages;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public String toString() {
+        return String.format("%s [version] %s [image] %s [replicas] %d [deployed images] %d", tenant, buildVersion,
+                dockerImageName, replicas, deployedImages.size());
+    }
+}
@@ -20,50 +20,136 @@ import com.spotify.docker.client.DockerException;
 import com.spotify.docker.client.messages.Container;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.wso2.strategy.docker.constants.DockerConstants;
 import org.wso2.strategy.miscellaneous.exception.CarbonKernelHandlerException;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class ContainerStatusChecker {
     private final DockerClient dockerClient;
+    // URL of the Docker daemon whose container start events cut the waits short, null to poll only
+    private final String eventsEndpointURL;
+    private final Object containerStartMonitor = new Object();
+    private final AtomicLong containerStartCount = new AtomicLong();
 
-    private static final int CONTAINER_STARTUP_WAIT_TIME_IN_MILLISECONDS = 1000;
+    private static final long INITIAL_BACKOFF_IN_MILLISECONDS = 50;
+    private static final long MAXIMUM_BACKOFF_IN_MILLISECONDS = 2000;
     private static final Logger LOG = LogManager.getLogger(ContainerStatusChecker.class);
 
     public ContainerStatusChecker(DockerClient client) {
+        this(client, null);
+    }
+
+    public ContainerStatusChecker(DockerClient client, String dockerEndpointURL) {
         dockerClient = client;
+        if (Boolean.getBoolean(DockerConstants.PREFLIGHT_EVENTS_PROPERTY) && StreamingImageBuilder
+                .supports(dockerEndpointURL)) {
+            eventsEndpointURL = dockerEndpointURL;
+        } else {
+            eventsEndpointURL = null;
+        }
     }
 
     public boolean checkContainerExistence(Map<String, String> keyValuePairs) throws CarbonKernelHandlerException {
-        Iterator iterator = keyValuePairs.entrySet().iterator();
-        boolean exists;
+        return checkContainerExistence(keyValuePairs, Long.getLong(DockerConstants.PREFLIGHT_TIMEOUT_PROPERTY,
+                DockerConstants.DEFAULT_PREFLIGHT_TIMEOUT_IN_MILLISECONDS));
+    }
+
+    public boolean checkContainerExistence(Map<String, String> keyValuePairs, long timeoutInMilliseconds)
+            throws CarbonKernelHandlerException {
+        PreflightReport report = runPreflight(keyValuePairs, timeoutInMilliseconds);
+        if (report.isSuccessful()) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(report.toString());
+            }
+        } else {
+            LOG.error(report.toString());
+        }
+        return report.isSuccessful();
+    }
+
+    /**
+     * waits until a running container matches each of the specified command and image pairs or the timeout
+     * elapses, matching all pending pairs against a single container listing per round and backing off
+     * exponentially between the rounds
+     *
+     * @param commandImagePairs     the start of the container command, mapped to the image of the container
+     * @param timeoutInMilliseconds maximum time to wait for the containers
+     * @return the outcome of the preflight
+     * @throws CarbonKernelHandlerException
+     */
+    public PreflightReport runPreflight(Map<String, String> commandImagePairs, long timeoutInMilliseconds)
+            throws CarbonKernelHandlerException {
+        final long startTime = System.currentTimeMillis();
+        final long deadline = startTime + timeoutInMilliseconds;
+        Map<String, String> pendingPairs = new LinkedHashMap<>(commandImagePairs);
+        PreflightReport report = new PreflightReport();
+        long backoff = INITIAL_BACKOFF_IN_MILLISECONDS;
+        int rounds = 0;
+        DockerEventListener eventListener = startEventListener();
         try {
-            while (iterator.hasNext()) {
-                Map.Entry pair = (Map.Entry) (iterator.next());
-                exists = false;
-                while (!exists) {
-                    for (Container container : dockerClient.listContainers()) {
-                        if ((container.command().contains((String) pair.getKey())) && (container.image()
+            while (true) {
+                long seenContainerStarts = containerStartCount.get();
+                List<Container> containers = dockerClient.listContainers();
+                rounds++;
+                Iterator<Map.Entry<String, String>> iterator = pendingPairs.entrySet().iterator();
+                while (iterator.hasNext()) {
+                    Map.Entry<String, String> pair = iterator.next();
+                    for (Container container : containers) {
+                        if ((container.command().contains(pair.getKey())) && (container.image()
                                 .equals(pair.getValue()))) {
-                            exists = true;
+                            report.addReadyContainer(pair.getKey(), System.currentTimeMillis() - startTime);
                             iterator.remove();
                             break;
                         }
                     }
-                    if (!exists) {
-                        Thread.sleep(CONTAINER_STARTUP_WAIT_TIME_IN_MILLISECONDS);
+                }
+                long remaining = deadline - System.currentTimeMillis();
+                if ((pendingPairs.isEmpty()) || (remaining <= 0)) {
+                    break;
+                }
+                synchronized (containerStartMonitor) {
+                    // a container started since the listing makes the next round due at once
+                    if (containerStartCount.get() == seenContainerStarts) {
+                        containerStartMonitor.wait(Math.min(backoff, remaining));
                     }
                 }
+                backoff = Math.min(backoff * 2, MAXIMUM_BACKOFF_IN_MILLISECONDS);
             }
-            return keyValuePairs.isEmpty();
         } catch (DockerException exception) {
             String message = "Could not check the existence of the Kubernetes-Docker Containers.";
-            LOG.error(message);
-            throw new CarbonKernelHandlerException(message);
+            LOG.error(message, exception);
+            throw new CarbonKernelHandlerException(message, exception);
         } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
             String message = "Could not check the existence of the Kubernetes-Docker Containers.";
-            LOG.error(message);
-            throw new CarbonKernelHandlerException(message);
+            LOG.error(message, exception);
+            throw new CarbonKernelHandlerException(message, exception);
+        } finally {
+            if (eventListener != null) {
+                eventListener.close();
+            }
+        }
+        report.setMissingContainers(pendingPairs.keySet());
+        report.setRounds(rounds);
+        report.setTotalTimeInMilliseconds(System.currentTimeMillis() - startTime);
+        return report;
+    }
+
+    private DockerEventListener startEventListener() {
+        if (eventsEndpointURL == null) {
+            return null;
         }
+        DockerEventListener eventListener = new DockerEventListener(eventsEndpointURL, new Runnable() {
+            public void run() {
+                containerStartCount.incrementAndGet();
+                synchronized (containerStartMonitor) {
+                    containerStartMonitor.notifyAll();
+                }
+            }
+        });
+        eventListener.start();
+        return eventListener;
     }
 }
@@ -0,0 +1,75 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.docker;
+
+import com.spotify.docker.client.DockerClient;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.wso2.strategy.docker.assembly.ImageAssembler;
+import org.wso2.strategy.miscellaneous.exception.CarbonKernelHandlerException;
+import org.wso2.strategy.miscellaneous.helper.CarbonKernelHandlerHelper;
+
+import java.nio.file.Path;
+
+/**
+ * an IDockerImageHandler Java interface implementation which assembles the Docker images in Java and publishes
+ * them to a Docker registry, from which the Docker daemon pulls them
+ * <p>
+ * Images whose Dockerfile requires a container to be run, e.g. a RUN instruction, are built by the Docker daemon.
+ */
+public class DaemonlessDockerImageHandler extends JavaDockerImageHandler {
+    private final ImageAssembler imageAssembler;
+
+    private static final Logger LOG = LogManager.getLogger(DaemonlessDockerImageHandler.class);
+
+    public DaemonlessDockerImageHandler(DockerClient client, String dockerEndpointURL, String registryURL)
+            throws CarbonKernelHandlerException {
+        super(client, dockerEndpointURL);
+        imageAssembler = new ImageAssembler(client, registryURL);
+    }
+
+    public String buildImage(String creator, String dockerArtifactName, String version, Path dockerFilePath)
+            throws CarbonKernelHandlerException {
+        String dockerImageName = CarbonKernelHandlerHelper
+                .generateImageIdentifier(creator, dockerArtifactName, version);
+        if (dockerImageName == null) {
+            return null;
+        }
+        String registryImageName = imageAssembler.assemble(dockerFilePath.getParent(), dockerImageName);
+        if (registryImageName == null) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(String.format("Docker image %s cannot be assembled, building it with the Docker daemon.",
+                        dockerImageName));
+            }
+            return super.buildImage(creator, dockerArtifactName, version, dockerFilePath);
+        }
+        try {
+            DockerClient dockerClient = getDockerClient();
+            // only the layers missing on the Docker daemon are pulled
+            dockerClient.pull(registryImageName);
+            dockerClient.tag(registryImageName, dockerImageName);
+            synchronizeRepository(creator, dockerArtifactName);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(String.format("Assembled the Docker image %s without a Docker build.", dockerImageName));
+            }
+        } catch (Exception exception) {
+            String message = String.format("Could not load the Docker image [docker-image]: %s.", dockerImageName);
+            LOG.error(message, exception);
+            throw new CarbonKernelHandlerException(message, exception);
+        }
+        return dockerImageName;
+    }
+}
@@ -0,0 +1,170 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.docker;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.wso2.strategy.docker.interfaces.IDockerEventHandler;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+
+/**
+ * subscribes to the events of a Docker daemon reachable over plain HTTP, passing each event to a handler on a
+ * background thread until it is closed
+ */
+public class DockerEventListener implements Closeable {
+    private final String eventsEndpoint;
+    private final String filters;
+    private final IDockerEventHandler handler;
+    // guards the connection against a concurrent close, so that no connection is left open after the close
+    private final Object connectionLock = new Object();
+    private HttpURLConnection connection;
+    private boolean closed;
+    // true while the event stream is open, i.e. no event is being missed
+    private volatile boolean receiving;
+
+    private static final String CONTAINER_START_FILTER = "{\"event\":[\"start\"]}";
+    private static final String CHARSET = "UTF-8";
+    private static final Logger LOG = LogManager.getLogger(DockerEventListener.class);
+
+    /**
+     * @param dockerEndpointURL URL of the Docker daemon, supported as per StreamingImageBuilder.supports
+     * @param listener          notified of each container start event
+     */
+    public DockerEventListener(String dockerEndpointURL, final Runnable listener) {
+        this(dockerEndpointURL, CONTAINER_START_FILTER, new IDockerEventHandler() {
+            public void onEvent(String status, String reference, JsonNode event) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug(String.format("Docker container started [image]: %s.", event.path("from").asText()));
+                }
+                listener.run();
+            }
+        });
+    }
+
+    /**
+     * @param dockerEndpointURL URL of the Docker daemon, supported as per StreamingImageBuilder.supports
+     * @param filters           JSON encoded filters of the events, e.g. {"event":["tag","untag"]}
+     * @param handler           handler of each event
+     */
+    public DockerEventListener(String dockerEndpointURL, String filters, IDockerEventHandler handler) {
+        String endpoint = dockerEndpointURL.replaceFirst("^tcp://", "http://");
+        if (endpoint.endsWith("/")) {
+            endpoint = endpoint.substring(0, endpoint.length() - 1);
+        }
+        eventsEndpoint = endpoint + "/events";
+        this.filters = filters;
+        this.handler = handler;
+    }
+
+    /**
+     * starts receiving the events on a daemon thread
+     */
+    public void start() {
+        Thread eventThread = new Thread(new Runnable() {
+            public void run() {
+                receive();
+            }
+        }, "docker-events");
+        eventThread.setDaemon(true);
+        eventThread.start();
+    }
+
+    /**
+     * returns true while the events are being received, i.e. from the time the event stream is open until it
+     * ends or the listener is closed
+     *
+     * @return true while the events are being received, else false
+     */
+    public boolean isReceiving() {
+        return receiving;
+    }
+
+    private void receive() {
+        try {
+            HttpURLConnection eventConnection = (HttpURLConnection) new URL(
+                    eventsEndpoint + "?filters=" + URLEncoder.encode(filters, CHARSET)).openConnection();
+            synchronized (connectionLock) {
+                if (closed) {
+                    return;
+                }
+                connection = eventConnection;
+            }
+            try (InputStream events = eventConnection.getInputStream()) {
+                receiving = !isClosed();
+                MappingIterator<JsonNode> eventIterator = new ObjectMapper().reader(JsonNode.class)
+                        .readValues(events);
+                while ((!isClosed()) && eventIterator.hasNextValue()) {
+                    JsonNode event = eventIterator.nextValue();
+                    handler.onEvent(getStatus(event), getReference(event), event);
+                }
+            }
+        } catch (IOException exception) {
+            if (!isClosed()) {
+                // the subscribers fall back to polling alone
+                LOG.warn("Docker event subscription ended.", exception);
+            }
+        } catch (RuntimeException exception) {
+            LOG.error("Docker event subscription ended as an event could not be handled.", exception);
+        } finally {
+            receiving = false;
+        }
+    }
+
+    /**
+     * returns the kind of an event, as reported by both the earlier and the later Docker remote API versions
+     */
+    private static String getStatus(JsonNode event) {
+        return event.has("status") ? event.get("status").asText() : event.path("Action").asText();
+    }
+
+    /**
+     * returns the name of the image or, failing that, the identifier the event refers to
+     */
+    private static String getReference(JsonNode event) {
+        JsonNode name = event.path("Actor").path("Attributes").get("name");
+        if (name != null) {
+            return name.asText();
+        }
+        return event.has("id") ? event.get("id").asText() : event.path("Actor").path("ID").asText();
+    }
+
+    private boolean isClosed() {
+        synchronized (connectionLock) {
+            return closed;
+        }
+    }
+
+    public void close() {
+        HttpURLConnection currentConnection;
+        synchronized (connectionLock) {
+            closed = true;
+            currentConnection = connection;
+        }
+        receiving = false;
+        if (currentConnection != null) {
+            currentConnection.disconnect();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.docker;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.spotify.docker.client.DockerClient;
+import com.spotify.docker.client.ImageNotFoundException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.wso2.strategy.docker.interfaces.IDockerEventHandler;
+import org.wso2.strategy.miscellaneous.exception.CarbonKernelHandlerException;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * waits until a Docker image tag can be resolved by a Docker daemon, until a deadline
+ * <p>
+ * If the Docker daemon is reachable over plain HTTP, the waiter subscribes to its tag and pull events, each of
+ * which makes the next check due at once. Otherwise, or while no events are received, the waiter backs off
+ * exponentially between the checks.
+ */
+public class ImageReadinessWaiter {
+    private final DockerClient dockerClient;
+    private final String dockerEndpointURL;
+    private final AtomicLong imageEventCount = new AtomicLong();
+    private final Object imageEventMonitor = new Object();
+    private DockerEventListener eventListener;
+    private long subscriptionTime;
+
+    private static final long INITIAL_BACKOFF_IN_MILLISECONDS = 50;
+    private static final long MAXIMUM_BACKOFF_IN_MILLISECONDS = 1000;
+    // minimum time between two subscriptions, so that a daemon without an event stream is not asked at each check
+    private static final long SUBSCRIPTION_RENEWAL_INTERVAL_IN_MILLISECONDS = 30000;
+    private static final String IMAGE_EVENT_FILTER = "{\"event\":[\"tag\",\"pull\",\"import\",\"load\"]}";
+    private static final Logger LOG = LogManager.getLogger(ImageReadinessWaiter.class);
+
+    public ImageReadinessWaiter(DockerClient client) {
+        this(client, null);
+    }
+
+    /**
+     * @param client            client of the Docker daemon
+     * @param dockerEndpointURL URL of the Docker daemon, whose image events are subscribed to if it is reachable
+     *                          over plain HTTP, null to poll alone
+     */
+    public ImageReadinessWaiter(DockerClient client, String dockerEndpointURL) {
+        dockerClient = client;
+        this.dockerEndpointURL = StreamingImageBuilder.supports(dockerEndpointURL) ? dockerEndpointURL : null;
+        if (this.dockerEndpointURL != null) {
+            eventListener = startEventListener();
+        }
+    }
+
+    /**
+     * blocks until the specified image can be inspected on the Docker daemon or the timeout elapses
+     *
+     * @param dockerImageName       name of the Docker image, including its tag
+     * @param timeoutInMilliseconds maximum time to wait
+     * @return true if the image became available within the timeout, else false
+     * @throws CarbonKernelHandlerException
+     */
+    public boolean waitForImage(String dockerImageName, long timeoutInMilliseconds)
+            throws CarbonKernelHandlerException {
+        final long startTime = System.currentTimeMillis();
+        final long deadline = startTime + timeoutInMilliseconds;
+        long backoff = INITIAL_BACKOFF_IN_MILLISECONDS;
+        try {
+            while (true) {
+                long seenImageEvents = imageEventCount.get();
+                boolean receivingEvents = isReceivingEvents();
+                if (isAvailable(dockerImageName)) {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug(String.format("Docker image %s available after %d ms.", dockerImageName,
+                                System.currentTimeMillis() - startTime));
+                    }
+                    return true;
+                }
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    LOG.warn(String.format("Docker image %s not available within %d ms.", dockerImageName,
+                            timeoutInMilliseconds));
+                    return false;
+                }
+                if (receivingEvents) {
+                    // an image event since the check makes the next check due at once, while the checks at the
+                    // longest interval cover events the Docker daemon does not send, e.g. for older builds
+                    synchronized (imageEventMonitor) {
+                        if (imageEventCount.get() == seenImageEvents) {
+                            imageEventMonitor.wait(Math.min(MAXIMUM_BACKOFF_IN_MILLISECONDS, remaining));
+                        }
+                    }
+                } else {
+                    Thread.sleep(Math.min(backoff, remaining));
+                    backoff = Math.min(backoff * 2, MAXIMUM_BACKOFF_IN_MILLISECONDS);
+                }
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            String message = String.format("Interrupted while waiting for the Docker image %s.", dockerImageName);
+            LOG.error(message, exception);
+            throw new CarbonKernelHandlerException(message, exception);
+        } catch (Exception exception) {
+            String message = String.format("Could not check the availability of the Docker image %s.",
+                    dockerImageName);
+            LOG.error(message, exception);
+            throw new CarbonKernelHandlerException(message, exception);
+        }
+    }
+
+    /**
+     * stops receiving the image events of the Docker daemon
+     */
+    public synchronized void close() {
+        if (eventListener != null) {
+            eventListener.close();
+            eventListener = null;
+        }
+    }
+
+    /**
+     * returns true while the image events are received, renewing an event subscription which has ended
+     */
+    private synchronized boolean isReceivingEvents() {
+        if (eventListener == null) {
+            return false;
+        }
+        if ((!eventListener.isReceiving()) && (System.currentTimeMillis() - subscriptionTime
+                >= SUBSCRIPTION_RENEWAL_INTERVAL_IN_MILLISECONDS)) {
+            eventListener.close();
+            eventListener = startEventListener();
+        }
+        return eventListener.isReceiving();
+    }
+
+    private DockerEventListener startEventListener() {
+        subscriptionTime = System.currentTimeMillis();
+        DockerEventListener listener = new DockerEventListener(dockerEndpointURL, IMAGE_EVENT_FILTER,
+                new IDockerEventHandler() {
+                    public void onEvent(String status, String reference, JsonNode event) {
+                        imageEventCount.incrementAndGet();
+                        synchronized (imageEventMonitor) {
+                            imageEventMonitor.notifyAll();
+                        }
+                    }
+                });
+        listener.start();
+        return listener;
+    }
+
+    private boolean isAvailable(String dockerImageName) throws Exception {
+        try {
+            return dockerClient.inspectImage(dockerImageName) != null;
+        } catch (ImageNotFoundException exception) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.docker;
+
+import com.spotify.docker.client.messages.Image;
+import org.wso2.strategy.docker.interfaces.IDockerImageHandler;
+import org.wso2.strategy.miscellaneous.exception.CarbonKernelHandlerException;
+import org.wso2.strategy.miscellaneous.metrics.MetricsRegistry;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * an IDockerImageHandler which records the latency and outcome of each call to the image handler it decorates,
+ * as the total stage of the docker.method-name operation
+ */
+public class InstrumentedDockerImageHandler implements IDockerImageHandler {
+    private final IDockerImageHandler imageHandler;
+    private final MetricsRegistry metrics;
+
+    private static final String BUILD_IMAGE = "docker.buildImage";
+    private static final String TAG_IMAGE = "docker.tagImage";
+    private static final String GET_IMAGE_ID = "docker.getImageId";
+    private static final String GET_EXISTING_IMAGES = "docker.getExistingImages";
+    private static final String GET_EXISTING_IMAGE_TAGS = "docker.getExistingImageTags";
+    private static final String WAIT_FOR_IMAGE = "docker.waitForImage";
+    private static final String REMOVE_IMAGE = "docker.removeImage";
+
+    public InstrumentedDockerImageHandler(IDockerImageHandler imageHandler, MetricsRegistry metrics) {
+        this.imageHandler = imageHandler;
+        this.metrics = metrics;
+    }
+
+    public String buildImage(String creator, String dockerArtifactName, String version, Path dockerFilePath)
+            throws CarbonKernelHandlerException {
+        long startTime = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            String dockerImageName = imageHandler.buildImage(creator, dockerArtifactName, version, dockerFilePath);
+            succeeded = true;
+            return dockerImageName;
+        } finally {
+            metrics.getOperation(BUILD_IMAGE).getTotal().record(startTime, succeeded);
+        }
+    }
+
+    public String tagImage(String imageId, String creator, String dockerArtifactName, String version)
+            throws CarbonKernelHandlerException {
+        long startTime = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            String dockerImageName = imageHandler.tagImage(imageId, creator, dockerArtifactName, version);
+            succeeded = true;
+            return dockerImageName;
+        } finally {
+            metrics.getOperation(TAG_IMAGE).getTotal().record(startTime, succeeded);
+        }
+    }
+
+    public String getImageId(String dockerImageName) throws CarbonKernelHandlerException {
+        long startTime = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            String imageId = imageHandler.getImageId(dockerImageName);
+            succeeded = true;
+            return imageId;
+        } finally {
+            metrics.getOperation(GET_IMAGE_ID).getTotal().record(startTime, succeeded);
+        }
+    }
+
+    public List<Image> getExistingImages(String creator, String dockerArtifactName, String version)
+            throws CarbonKernelHandlerException {
+        long startTime = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            List<Image> images = imageHandler.getExistingImages(creator, dockerArtifactName, version);
+            succeeded = true;
+            return images;
+        } finally {
+            metrics.getOperation(GET_EXISTING_IMAGES).getTotal().record(startTime, succeeded);
+        }
+    }
+
+    public List<String> getExistingImageTags(String creator, String dockerArtifactName, String version)
+            throws CarbonKernelHandlerException {
+        long startTime = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            List<String> tags = imageHandler.getExistingImageTags(creator, dockerArtifactName, version);
+            succeeded = true;
+            return tags;
+        } finally {
+            metrics.getOperation(GET_EXISTING_IMAGE_TAGS).getTotal().record(startTime, succeeded);
+        }
+    }
+
+    public boolean waitForImage(String dockerImageName, long timeoutInMilliseconds)
+            throws CarbonKernelHandlerException {
+        long startTime = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            boolean available = imageHandler.waitForImage(dockerImageName, timeoutInMilliseconds);
+            succeeded = true;
+            return available;
+        } finally {
+            metrics.getOperation(WAIT_FOR_IMAGE).getTotal().record(startTime, succeeded);
+        }
+    }
+
+    public String removeImage(String creator, String deployedArtifactName, String version)
+            throws CarbonKernelHandlerException {
+        long startTime = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            String dockerImageName = imageHandler.removeImage(creator, deployedArtifactName, version);
+            succeeded = true;
+            return dockerImageName;
+        } finally {
+            metrics.getOperation(REMOVE_IMAGE).getTotal().record(startTime, succeeded);
+        }
+    }
+}
@@ -16,9 +16,12 @@
 package org.wso2.strategy.docker;
 
 import com.spotify.docker.client.DockerClient;
+import com.spotify.docker.client.ImageNotFoundException;
 import com.spotify.docker.client.messages.Image;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.wso2.strategy.docker.constants.DockerConstants;
+import org.wso2.strategy.docker.index.DockerImageIndex;
 import org.wso2.strategy.docker.interfaces.IDockerImageHandler;
 import org.wso2.strategy.miscellaneous.exception.CarbonKernelHandlerException;
 import org.wso2.strategy.miscellaneous.helper.CarbonKernelHandlerHelper;
@@ -32,9 +35,17 @@ import java.util.List;
  */
 public class JavaDockerImageHandler implements IDockerImageHandler {
     private final DockerClient dockerClient;
+    private final DockerImageIndex imageIndex;
+    private final ImageReadinessWaiter readinessWaiter;
+    // streams uncompressed build contexts to Docker daemons reachable over plain HTTP, else null
+    private final StreamingImageBuilder streamingBuilder;
     private static final Logger LOG = LogManager.getLogger(JavaDockerImageHandler.class);
 
     public JavaDockerImageHandler(DockerClient client) {
+        this(client, null);
+    }
+
+    public JavaDockerImageHandler(DockerClient client, String dockerEndpointURL) {
         if (LOG.isDebugEnabled()) {
             LOG.debug("Creating a new DockerClient.");
         }
@@ -42,6 +53,18 @@ public class JavaDockerImageHandler implements IDockerImageHandler {
         if (LOG.isDebugEnabled()) {
             LOG.debug(String.format("Created a new DockerClient[docker-client]: %s.", dockerClient));
         }
+        imageIndex = new DockerImageIndex(dockerClient);
+        readinessWaiter = new ImageReadinessWaiter(dockerClient, dockerEndpointURL);
+        if (StreamingImageBuilder.supports(dockerEndpointURL)) {
+            streamingBuilder = new StreamingImageBuilder(dockerEndpointURL);
+        } else {
+            streamingBuilder = null;
+        }
+        imageIndex.subscribe(dockerEndpointURL);
+        imageIndex.startPeriodicSynchronization(Long.getLong(DockerConstants.IMAGE_INDEX_RESYNC_INTERVAL_PROPERTY,
+                DockerConstants.DEFAULT_IMAGE_INDEX_RESYNC_INTERVAL_IN_MILLISECONDS),
+                Long.getLong(DockerConstants.IMAGE_INDEX_MAX_RESYNC_INTERVAL_PROPERTY,
+                        DockerConstants.DEFAULT_IMAGE_INDEX_MAX_RESYNC_INTERVAL_IN_MILLISECONDS));
     }
 
     public String buildImage(String creator, String dockerArtifactName, String version, Path dockerFilePath)
@@ -53,8 +76,14 @@ public class JavaDockerImageHandler implements IDockerImageHandler {
                 if (LOG.isDebugEnabled()) {
                     LOG.debug(String.format("Creating a new Docker image %s.", dockerImageName));
                 }
-                String freshImageId = dockerClient.build(dockerFilePath.getParent(), dockerImageName);
+                String freshImageId;
+                if (streamingBuilder != null) {
+                    freshImageId = streamingBuilder.build(dockerFilePath.getParent(), dockerImageName);
+                } else {
+                    freshImageId = dockerClient.build(dockerFilePath.getParent(), dockerImageName);
+                }
                 if (freshImageId != null) {
+                    imageIndex.synchronizeRepository(creator + "/" + dockerArtifactName);
                     if (LOG.isDebugEnabled()) {
                         LOG.debug(
                                 String.format("Created a new Docker image %s [id]:%s", dockerImageName, freshImageId));
@@ -74,30 +103,86 @@ public class JavaDockerImageHandler implements IDockerImageHandler {
         return dockerImageName;
     }
 
-    public List<Image> getExistingImages(String creator, String dockerArtifactName, String version)
+    public String tagImage(String imageId, String creator, String dockerArtifactName, String version)
             throws CarbonKernelHandlerException {
-        List<Image> matchingImageList = new ArrayList<>();
-        String imageIdentifier = CarbonKernelHandlerHelper
+        String dockerImageName = CarbonKernelHandlerHelper
                 .generateImageIdentifier(creator, dockerArtifactName, version);
+        if ((dockerImageName == null) || (!imageIndex.containsImage(imageId))) {
+            return null;
+        }
         try {
-            if (imageIdentifier != null) {
-                List<Image> tempImages = dockerClient.listImages();
-                for (Image image : tempImages) {
-                    for (String tag : image.repoTags()) {
-                        if (tag.contains(imageIdentifier)) {
-                            if (!matchingImageList.contains(image)) {
-                                matchingImageList.add(image);
-                            }
-                        }
-                    }
-                }
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(String.format("Tagging the Docker image [id]: %s as %s.", imageId, dockerImageName));
             }
+            dockerClient.tag(imageId, dockerImageName);
+            imageIndex.synchronizeRepository(creator + "/" + dockerArtifactName);
+        } catch (ImageNotFoundException exception) {
+            // removed by another Docker client since the last index synchronization
+            return null;
         } catch (Exception exception) {
-            String message = "Could not load the repo images.";
+            String message = String.format("Could not tag the Docker image [docker-image]: %s.", dockerImageName);
             LOG.error(message, exception);
             throw new CarbonKernelHandlerException(message, exception);
         }
-        return matchingImageList;
+        return dockerImageName;
+    }
+
+    public String getImageId(String dockerImageName) throws CarbonKernelHandlerException {
+        if (dockerImageName == null) {
+            return null;
+        }
+        return imageIndex.getImageId(dockerImageName);
+    }
+
+    public List<Image> getExistingImages(String creator, String dockerArtifactName, String version)
+            throws CarbonKernelHandlerException {
+        String imageIdentifier = CarbonKernelHandlerHelper
+                .generateImageIdentifier(creator, dockerArtifactName, version);
+        if (imageIdentifier != null) {
+            return imageIndex.getImages(imageIdentifier);
+        } else {
+            return new ArrayList<>();
+        }
+    }
+
+    public List<String> getExistingImageTags(String creator, String dockerArtifactName, String version)
+            throws CarbonKernelHandlerException {
+        String imageIdentifier = CarbonKernelHandlerHelper
+                .generateImageIdentifier(creator, dockerArtifactName, version);
+        if (imageIdentifier != null) {
+            return new ArrayList<>(imageIndex.getTags(imageIdentifier));
+        } else {
+            return new ArrayList<>();
+        }
+    }
+
+    public boolean waitForImage(String dockerImageName, long timeoutInMilliseconds)
+            throws CarbonKernelHandlerException {
+        if (dockerImageName == null) {
+            return false;
+        }
+        // a tag indexed after a completed build needs no further round trip to the Docker daemon
+        if (imageIndex.getImageId(dockerImageName) != null) {
+            return true;
+        }
+        return readinessWaiter.waitForImage(dockerImageName, timeoutInMilliseconds);
+    }
+
+    /**
+     * re-loads the index entries of the Docker repository of the specified creator and artifact, e.g. after
+     * an image of it has been added to the Docker daemon other than by a build
+     *
+     * @param creator            name of the person deploying the artifact
+     * @param dockerArtifactName name of the artifact deployed
+     * @throws CarbonKernelHandlerException
+     */
+    protected void synchronizeRepository(String creator, String dockerArtifactName)
+            throws CarbonKernelHandlerException {
+        imageIndex.synchronizeRepository(creator + "/" + dockerArtifactName);
+    }
+
+    protected DockerClient getDockerClient() {
+        return dockerClient;
     }
 
     public String removeImage(String creator, String dockerArtifactName, String version)
@@ -111,6 +196,7 @@ public class JavaDockerImageHandler implements IDockerImageHandler {
                     LOG.debug(String.format("Removing the Docker image [docker-image]: %s.", dockerImageName));
                 }
                 dockerClient.removeImage(dockerImageName);
+                imageIndex.removeTag(dockerImageName);
                 if (LOG.isDebugEnabled()) {
                     LOG.debug(String.format("Removed the Docker image [docker-image]: %s.", dockerImageName));
                 }
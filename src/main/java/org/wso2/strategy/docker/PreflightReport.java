@@ -0,0 +1,85 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.docker;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * a Java class which records the outcome of a container preflight, i.e. when each required container was first
+ * seen running and which containers were still missing when the preflight ended
+ */
+public class PreflightReport {
+    // container command to the time in milliseconds after the start of the preflight it was seen running
+    private final Map<String, Long> readinessTimes = new LinkedHashMap<>();
+    private final Set<String> missingContainers = new TreeSet<>();
+    private int rounds;
+    private long totalTimeInMilliseconds;
+
+    void addReadyContainer(String command, long readinessTimeInMilliseconds) {
+        readinessTimes.put(command, readinessTimeInMilliseconds);
+    }
+
+    void setMissingContainers(Set<String> commands) {
+        missingContainers.clear();
+        missingContainers.addAll(commands);
+    }
+
+    void setRounds(int rounds) {
+        this.rounds = rounds;
+    }
+
+    void setTotalTimeInMilliseconds(long totalTimeInMilliseconds) {
+        this.totalTimeInMilliseconds = totalTimeInMilliseconds;
+    }
+
+    public boolean isSuccessful() {
+        return missingContainers.isEmpty();
+    }
+
+    public Map<String, Long> getReadinessTimes() {
+        return Collections.unmodifiableMap(readinessTimes);
+    }
+
+    public Set<String> getMissingContainers() {
+        return Collections.unmodifiableSet(missingContainers);
+    }
+
+    public int getRounds() {
+        return rounds;
+    }
+
+    public long getTotalTimeInMilliseconds() {
+        return totalTimeInMilliseconds;
+    }
+
+    public String toString() {
+        StringBuilder report = new StringBuilder(String.format(
+                "Container preflight [ready] %d [missing] %d [rounds] %d [total] %d ms", readinessTimes.size(),
+                missingContainers.size(), rounds, totalTimeInMilliseconds));
+        for (Map.Entry<String, Long> readinessTime : readinessTimes.entrySet()) {
+            report.append(String.format("%n  %s ready after %d ms", readinessTime.getKey().trim(),
+                    readinessTime.getValue()));
+        }
+        for (String command : missingContainers) {
+            report.append(String.format("%n  %s missing", command.trim()));
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,150 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.docker;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.wso2.strategy.docker.constants.DockerConstants;
+import org.wso2.strategy.docker.context.TarArchiveWriter;
+import org.wso2.strategy.miscellaneous.exception.CarbonKernelHandlerException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.file.Path;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * builds Docker images by streaming the build context to the build API of the Docker daemon as an
+ * uncompressed tar archive, which avoids compressing the already compressed kernel artifact
+ */
+public class StreamingImageBuilder {
+    private final String buildEndpoint;
+    private final ObjectMapper objectMapper;
+    private final int connectTimeoutInMilliseconds;
+    // maximum time without any progress message of the Docker daemon
+    private final int readTimeoutInMilliseconds;
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final String CHARSET = "UTF-8";
+    private static final Pattern IMAGE_ID_PATTERN = Pattern.compile("Successfully built ([0-9a-f]+)");
+    private static final Logger LOG = LogManager.getLogger(StreamingImageBuilder.class);
+
+    public StreamingImageBuilder(String dockerEndpointURL) {
+        String endpoint = dockerEndpointURL.replaceFirst("^tcp://", "http://");
+        if (endpoint.endsWith("/")) {
+            endpoint = endpoint.substring(0, endpoint.length() - 1);
+        }
+        buildEndpoint = endpoint + "/build";
+        objectMapper = new ObjectMapper();
+        connectTimeoutInMilliseconds = toTimeout(Long.getLong(DockerConstants.CLIENT_CONNECT_TIMEOUT_PROPERTY,
+                DockerConstants.DEFAULT_CLIENT_CONNECT_TIMEOUT_IN_MILLISECONDS));
+        readTimeoutInMilliseconds = toTimeout(Long.getLong(DockerConstants.CLIENT_READ_TIMEOUT_PROPERTY,
+                DockerConstants.DEFAULT_CLIENT_READ_TIMEOUT_IN_MILLISECONDS));
+    }
+
+
+    /**
+     * returns true if the Docker daemon at the specified endpoint can be reached by this builder, i.e.
+     * over plain HTTP
+     *
+     * @param dockerEndpointURL URL of the Docker daemon
+     * @return true if the Docker daemon at the specified endpoint can be reached by this builder
+     */
+    public static boolean supports(String dockerEndpointURL) {
+        return (dockerEndpointURL != null) && (dockerEndpointURL.startsWith("http://") || dockerEndpointURL
+                .startsWith("tcp://"));
+    }
+
+    /**
+     * builds a Docker image from the files of the specified build context directory
+     *
+     * @param contextDirectory directory holding the Dockerfile and the files it adds
+     * @param dockerImageName  name of the Docker image, including its tag
+     * @return the identifier of the built Docker image, null if the daemon did not report one
+     * @throws CarbonKernelHandlerException
+     */
+    public String build(Path contextDirectory, String dockerImageName) throws CarbonKernelHandlerException {
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(
+                    buildEndpoint + "?t=" + URLEncoder.encode(dockerImageName, CHARSET)).openConnection();
+            connection.setConnectTimeout(connectTimeoutInMilliseconds);
+            connection.setReadTimeout(readTimeoutInMilliseconds);
+            connection.setRequestMethod("POST");
+            connection.setRequestProperty("Content-Type", "application/x-tar");
+            connection.setDoOutput(true);
+            // the context is streamed in chunks instead of being buffered to compute its length
+            connection.setChunkedStreamingMode(CHUNK_SIZE);
+            try (OutputStream requestBody = connection.getOutputStream()) {
+                TarArchiveWriter.writeDirectory(contextDirectory, requestBody);
+            }
+            int status = connection.getResponseCode();
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new CarbonKernelHandlerException(
+                        String.format("Docker build request failed with HTTP status %d.", status));
+            }
+            try (InputStream response = connection.getInputStream()) {
+                return readImageId(response);
+            }
+        } catch (IOException exception) {
+            String message = String.format("Could not build the Docker image [docker-image]: %s.", dockerImageName);
+            LOG.error(message, exception);
+            throw new CarbonKernelHandlerException(message, exception);
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    /**
+     * reads the progress messages of a build and returns the identifier of the built image
+     */
+    private String readImageId(InputStream response) throws IOException, CarbonKernelHandlerException {
+        String imageId = null;
+        MappingIterator<JsonNode> messages = objectMapper.reader(JsonNode.class).readValues(response);
+        while (messages.hasNextValue()) {
+            JsonNode message = messages.nextValue();
+            if (message.has("error")) {
+                throw new CarbonKernelHandlerException(
+                        String.format("Docker build failed: %s", message.get("error").asText()));
+            }
+            if (message.has("stream")) {
+                String stream = message.get("stream").asText();
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug(stream.trim());
+                }
+                Matcher matcher = IMAGE_ID_PATTERN.matcher(stream);
+                if (matcher.find()) {
+                    imageId = matcher.group(1);
+                }
+            }
+        }
+        return imageId;
+    }
+
+    private static int toTimeout(long timeoutInMilliseconds) {
+        return (int) Math.max(0, Math.min(Integer.MAX_VALUE, timeoutInMilliseconds));
+    }
+}
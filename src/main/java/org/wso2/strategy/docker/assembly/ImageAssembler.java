@@ -0,0 +1,286 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.docker.assembly;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.spotify.docker.client.DockerClient;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.wso2.strategy.docker.context.TarArchiveWriter;
+import org.wso2.strategy.miscellaneous.exception.CarbonKernelHandlerException;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * assembles Docker images without a Docker daemon, by writing the layer archives, the image configuration and
+ * the image manifest in Java and publishing them to a Docker registry
+ * <p>
+ * Only Dockerfiles whose instructions are FROM, MAINTAINER, ADD of a build context directory, EXPOSE, ENV and
+ * ENTRYPOINT can be assembled, as produced for layered Carbon images. The base image is taken from the registry,
+ * where it is pushed once if missing. Layers are content-addressed, hence unchanged layers are never uploaded
+ * again, and since the layer archives are written deterministically, identical inputs produce identical images.
+ */
+public class ImageAssembler {
+    private final DockerClient dockerClient;
+    private final RegistryClient registryClient;
+    private final String registryHost;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final String DOCKER_FILE_NAME = "Dockerfile";
+    private static final String DEFAULT_TAG = "latest";
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final String CONFIG_MEDIA_TYPE = "application/vnd.docker.container.image.v1+json";
+    private static final String LAYER_MEDIA_TYPE = "application/vnd.docker.image.rootfs.diff.tar.gzip";
+    private static final int SCHEMA_VERSION = 2;
+    private static final Logger LOG = LogManager.getLogger(ImageAssembler.class);
+
+    public ImageAssembler(DockerClient dockerClient, String registryURL) throws CarbonKernelHandlerException {
+        this.dockerClient = dockerClient;
+        registryClient = new RegistryClient(registryURL);
+        try {
+            registryHost = new URL(registryURL).getAuthority();
+        } catch (MalformedURLException exception) {
+            throw new CarbonKernelHandlerException(String.format("Invalid registry URL %s.", registryURL),
+                    exception);
+        }
+    }
+
+    /**
+     * returns the name under which the Docker daemon refers to an image of the registry
+     *
+     * @param dockerImageName name of the image, including its tag
+     * @return the name under which the Docker daemon refers to the image in the registry
+     */
+    public String getRegistryImageName(String dockerImageName) {
+        return registryHost + "/" + dockerImageName;
+    }
+
+    /**
+     * assembles the image described by the Dockerfile of the specified build context and publishes it to the
+     * registry
+     *
+     * @param contextDirectory build context directory holding the Dockerfile
+     * @param dockerImageName  name of the image, including its tag
+     * @return the name of the published image as referred to by the Docker daemon, null if the Dockerfile holds
+     * instructions which require a Docker daemon
+     * @throws CarbonKernelHandlerException
+     */
+    public String assemble(Path contextDirectory, String dockerImageName) throws CarbonKernelHandlerException {
+        try {
+            ImageDefinition definition = ImageDefinition
+                    .parse(Files.readAllLines(contextDirectory.resolve(DOCKER_FILE_NAME), StandardCharsets.UTF_8));
+            if (definition == null) {
+                return null;
+            }
+            for (ImageDefinition.Layer layer : definition.getLayers()) {
+                if (!Files.isDirectory(contextDirectory.resolve(layer.getSource()))) {
+                    // only directories can be added as they are, archives and files need a Docker daemon
+                    return null;
+                }
+            }
+            String repository = getRepository(dockerImageName);
+            String tag = getTag(dockerImageName);
+            String baseRepository = getRepository(definition.getBaseImage());
+            JsonNode baseManifest = getBaseManifest(definition.getBaseImage());
+            if ((baseManifest == null) || (baseManifest.path("schemaVersion").asInt() != SCHEMA_VERSION)) {
+                LOG.warn(String.format("Base image %s is not available as a version 2 manifest.",
+                        definition.getBaseImage()));
+                return null;
+            }
+            ObjectNode config = (ObjectNode) objectMapper.readTree(registryClient
+                    .getBlob(baseRepository, baseManifest.path("config").path("digest").asText()));
+
+            ArrayNode layers = objectMapper.createArrayNode();
+            for (JsonNode baseLayer : baseManifest.path("layers")) {
+                String digest = baseLayer.path("digest").asText();
+                if ((!registryClient.blobExists(repository, digest)) && (!registryClient
+                        .mountBlob(repository, digest, baseRepository))) {
+                    throw new CarbonKernelHandlerException(
+                            String.format("Could not make the base layer %s available to %s.", digest, repository));
+                }
+                layers.add(baseLayer);
+            }
+            List<String> diffIds = new ArrayList<>();
+            List<String> createdBy = new ArrayList<>();
+            for (ImageDefinition.Layer layer : definition.getLayers()) {
+                LayerArchive archive = LayerArchive.create(contextDirectory.resolve(layer.getSource()),
+                        layer.getEntryPrefix(), Files.createTempFile(contextDirectory, "layer-", ".tar.gz"));
+                if (!registryClient.blobExists(repository, archive.getDigest())) {
+                    registryClient.uploadBlob(repository, archive.getDigest(), archive.getPath());
+                } else if (LOG.isDebugEnabled()) {
+                    LOG.debug(String.format("Layer %s of %s is unchanged.", archive.getDigest(), dockerImageName));
+                }
+                ObjectNode layerDescriptor = layers.addObject();
+                layerDescriptor.put("mediaType", LAYER_MEDIA_TYPE);
+                layerDescriptor.put("size", archive.getSize());
+                layerDescriptor.put("digest", archive.getDigest());
+                diffIds.add(archive.getDiffId());
+                createdBy.add("ADD " + layer.getSource() + " " + layer.getDestination());
+            }
+
+            byte[] configContent = objectMapper.writeValueAsBytes(definition.applyTo(config, diffIds, createdBy));
+            String configDigest = computeDigest(configContent);
+            if (!registryClient.blobExists(repository, configDigest)) {
+                registryClient.uploadBlob(repository, configDigest, configContent);
+            }
+
+            ObjectNode manifest = objectMapper.createObjectNode();
+            manifest.put("schemaVersion", SCHEMA_VERSION);
+            manifest.put("mediaType", RegistryClient.MANIFEST_MEDIA_TYPE);
+            ObjectNode configDescriptor = manifest.putObject("config");
+            configDescriptor.put("mediaType", CONFIG_MEDIA_TYPE);
+            configDescriptor.put("size", configContent.length);
+            configDescriptor.put("digest", configDigest);
+            manifest.put("layers", layers);
+            registryClient.putManifest(repository, tag, objectMapper.writeValueAsBytes(manifest));
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(String.format("Assembled the Docker image %s [config] %s", dockerImageName, configDigest));
+            }
+            return getRegistryImageName(dockerImageName);
+        } catch (IOException exception) {
+            String message = String.format("Could not assemble the Docker image [docker-image]: %s.", dockerImageName);
+            LOG.error(message, exception);
+            throw new CarbonKernelHandlerException(message, exception);
+        }
+    }
+
+    /**
+     * returns the manifest of the base image from the registry, pushing the base image of the Docker daemon to
+     * the registry first if the registry does not hold it yet
+     */
+    private JsonNode getBaseManifest(String baseImage) throws CarbonKernelHandlerException {
+        JsonNode manifest = registryClient.getManifest(getRepository(baseImage), getTag(baseImage));
+        if (manifest == null) {
+            String registryBaseImage = getRegistryImageName(baseImage);
+            try {
+                LOG.info(String.format("Pushing the base image %s to the registry.", baseImage));
+                dockerClient.tag(baseImage, registryBaseImage);
+                dockerClient.push(registryBaseImage);
+            } catch (Exception exception) {
+                String message = String.format("Could not push the base image %s to the registry.", baseImage);
+                LOG.error(message, exception);
+                throw new CarbonKernelHandlerException(message, exception);
+            }
+            manifest = registryClient.getManifest(getRepository(baseImage), getTag(baseImage));
+        }
+        return manifest;
+    }
+
+    private static String getRepository(String dockerImageName) {
+        int tagSeparator = dockerImageName.lastIndexOf(':');
+        if (tagSeparator > dockerImageName.lastIndexOf('/')) {
+            return dockerImageName.substring(0, tagSeparator);
+        } else {
+            return dockerImageName;
+        }
+    }
+
+    private static String getTag(String dockerImageName) {
+        int tagSeparator = dockerImageName.lastIndexOf(':');
+        if (tagSeparator > dockerImageName.lastIndexOf('/')) {
+            return dockerImageName.substring(tagSeparator + 1);
+        } else {
+            return DEFAULT_TAG;
+        }
+    }
+
+    static String computeDigest(byte[] content) throws CarbonKernelHandlerException {
+        try {
+            return toDigestString(MessageDigest.getInstance(DIGEST_ALGORITHM).digest(content));
+        } catch (NoSuchAlgorithmException exception) {
+            throw new CarbonKernelHandlerException("Could not compute the content digest.", exception);
+        }
+    }
+
+    static String toDigestString(byte[] digest) {
+        StringBuilder digestString = new StringBuilder("sha256:");
+        for (byte digestByte : digest) {
+            digestString.append(String.format("%02x", digestByte));
+        }
+        return digestString.toString();
+    }
+
+    /**
+     * a gzip compressed layer archive along with the digests of its compressed and uncompressed content
+     */
+    static class LayerArchive {
+        private final Path path;
+        private final String digest;
+        private final String diffId;
+        private final long size;
+
+        private LayerArchive(Path path, String digest, String diffId, long size) {
+            this.path = path;
+            this.digest = digest;
+            this.diffId = diffId;
+            this.size = size;
+        }
+
+        /**
+         * writes the content of a directory as a gzip compressed layer archive, computing both digests in the
+         * same pass
+         */
+        static LayerArchive create(Path sourceDirectory, String destination, Path target)
+                throws IOException, CarbonKernelHandlerException {
+            try {
+                MessageDigest compressedDigest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+                MessageDigest uncompressedDigest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+                try (OutputStream fileOutput = new DigestOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(target)), compressedDigest);
+                        GZIPOutputStream compressedOutput = new GZIPOutputStream(fileOutput);
+                        OutputStream layerOutput = new DigestOutputStream(compressedOutput, uncompressedDigest)) {
+                    TarArchiveWriter.writeDirectory(sourceDirectory, destination, layerOutput);
+                }
+                return new LayerArchive(target, toDigestString(compressedDigest.digest()),
+                        toDigestString(uncompressedDigest.digest()), Files.size(target));
+            } catch (NoSuchAlgorithmException exception) {
+                throw new CarbonKernelHandlerException("Could not compute the layer digest.", exception);
+            }
+        }
+
+        Path getPath() {
+            return path;
+        }
+
+        String getDigest() {
+            return digest;
+        }
+
+        String getDiffId() {
+            return diffId;
+        }
+
+        long getSize() {
+            return size;
+        }
+    }
+}
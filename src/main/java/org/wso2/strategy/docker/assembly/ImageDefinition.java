@@ -0,0 +1,201 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.docker.assembly;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * the image definition read from a Dockerfile which consists only of instructions that can be applied without
+ * running a container
+ */
+class ImageDefinition {
+    private String baseImage;
+    private String author;
+    private final List<Layer> layers = new ArrayList<>();
+    private final Map<String, String> environment = new LinkedHashMap<>();
+    private final List<String> exposedPorts = new ArrayList<>();
+    private JsonNode entrypoint;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * reads an image definition from the lines of a Dockerfile
+     *
+     * @param dockerFileContent lines of the Dockerfile
+     * @return the image definition, null if the Dockerfile holds instructions which require a Docker daemon
+     */
+    static ImageDefinition parse(List<String> dockerFileContent) {
+        ImageDefinition definition = new ImageDefinition();
+        for (String line : dockerFileContent) {
+            String trimmedLine = line.trim();
+            if (trimmedLine.isEmpty() || trimmedLine.startsWith("#")) {
+                continue;
+            }
+            String[] instruction = trimmedLine.split("\\s+", 2);
+            if (instruction.length < 2) {
+                return null;
+            }
+            String arguments = instruction[1].trim();
+            switch (instruction[0].toUpperCase()) {
+            case "FROM":
+                definition.baseImage = arguments;
+                break;
+            case "MAINTAINER":
+                definition.author = arguments;
+                break;
+            case "ADD":
+            case "COPY":
+                String[] paths = arguments.split("\\s+");
+                if (paths.length != 2) {
+                    return null;
+                }
+                definition.layers.add(new Layer(paths[0], paths[1]));
+                break;
+            case "EXPOSE":
+                for (String port : arguments.split("\\s+")) {
+                    definition.exposedPorts.add(port.contains("/") ? port : (port + "/tcp"));
+                }
+                break;
+            case "ENV":
+                String[] variable = arguments.split("[=\\s]", 2);
+                if (variable.length != 2) {
+                    return null;
+                }
+                definition.environment.put(variable[0], variable[1].trim());
+                break;
+            case "ENTRYPOINT":
+                try {
+                    definition.entrypoint = OBJECT_MAPPER.readTree(arguments);
+                } catch (IOException exception) {
+                    return null;
+                }
+                if (!definition.entrypoint.isArray()) {
+                    // the shell form requires a shell of the base image to be resolved
+                    return null;
+                }
+                break;
+            default:
+                return null;
+            }
+        }
+        if (definition.baseImage == null) {
+            return null;
+        }
+        return definition;
+    }
+
+    String getBaseImage() {
+        return baseImage;
+    }
+
+    List<Layer> getLayers() {
+        return layers;
+    }
+
+    /**
+     * applies this definition to the image configuration of the base image
+     *
+     * @param config    image configuration of the base image, which is modified
+     * @param diffIds   digests of the uncompressed archives of the layers of this definition
+     * @param createdBy instructions which created the layers of this definition
+     * @return the modified image configuration
+     */
+    ObjectNode applyTo(ObjectNode config, List<String> diffIds, List<String> createdBy) {
+        // the configuration of the build container of the base image does not describe this image
+        config.remove("container");
+        config.remove("container_config");
+        if (author != null) {
+            config.put("author", author);
+        }
+        ObjectNode containerConfig = config.with("config");
+        if (!environment.isEmpty()) {
+            Map<String, String> mergedEnvironment = new LinkedHashMap<>();
+            for (JsonNode variable : containerConfig.path("Env")) {
+                String[] keyValue = variable.asText().split("=", 2);
+                mergedEnvironment.put(keyValue[0], (keyValue.length > 1) ? keyValue[1] : "");
+            }
+            mergedEnvironment.putAll(environment);
+            ArrayNode env = containerConfig.putArray("Env");
+            for (Map.Entry<String, String> variable : mergedEnvironment.entrySet()) {
+                env.add(variable.getKey() + "=" + variable.getValue());
+            }
+        }
+        if (!exposedPorts.isEmpty()) {
+            ObjectNode ports = containerConfig.with("ExposedPorts");
+            for (String port : exposedPorts) {
+                ports.putObject(port);
+            }
+        }
+        if (entrypoint != null) {
+            containerConfig.put("Entrypoint", entrypoint);
+            containerConfig.putNull("Cmd");
+        }
+        ArrayNode configDiffIds = config.with("rootfs").withArray("diff_ids");
+        ArrayNode history = config.withArray("history");
+        // the creation time of the base image is kept, so that identical inputs produce identical images
+        String created = config.path("created").asText();
+        Iterator<String> instructions = createdBy.iterator();
+        for (String diffId : diffIds) {
+            configDiffIds.add(diffId);
+            ObjectNode historyEntry = history.addObject();
+            historyEntry.put("created", created);
+            historyEntry.put("created_by", instructions.next());
+        }
+        return config;
+    }
+
+    /**
+     * a build context directory added to the image as one layer
+     */
+    static class Layer {
+        private final String source;
+        private final String destination;
+
+        Layer(String source, String destination) {
+            this.source = source;
+            this.destination = destination;
+        }
+
+        String getSource() {
+            return source;
+        }
+
+        String getDestination() {
+            return destination;
+        }
+
+        /**
+         * returns the path below which the layer entries are placed, relative to the root of the image
+         */
+        String getEntryPrefix() {
+            String prefix = destination;
+            while (prefix.startsWith("/")) {
+                prefix = prefix.substring(1);
+            }
+            return prefix;
+        }
+    }
+}
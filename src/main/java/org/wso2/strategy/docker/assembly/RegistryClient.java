@@ -0,0 +1,314 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.docker.assembly;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.wso2.strategy.docker.constants.DockerConstants;
+import org.wso2.strategy.miscellaneous.exception.CarbonKernelHandlerException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * a minimal client of the Docker registry HTTP API V2, covering the blob and manifest requests needed to
+ * publish an image assembled without a Docker daemon
+ */
+public class RegistryClient {
+    private final String registryEndpoint;
+    private final int connectTimeoutInMilliseconds;
+    // maximum time waited for the next data of a response, including the verification of an uploaded blob
+    private final int readTimeoutInMilliseconds;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public static final String MANIFEST_MEDIA_TYPE = "application/vnd.docker.distribution.manifest.v2+json";
+    private static final String CHARSET = "UTF-8";
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * @param registryURL URL of the registry, e.g. http://localhost:5000
+     */
+    public RegistryClient(String registryURL) {
+        this(registryURL, Integer.getInteger(DockerConstants.REGISTRY_CONNECT_TIMEOUT_PROPERTY,
+                        DockerConstants.DEFAULT_REGISTRY_CONNECT_TIMEOUT_IN_MILLISECONDS),
+                Integer.getInteger(DockerConstants.REGISTRY_READ_TIMEOUT_PROPERTY,
+                        DockerConstants.DEFAULT_REGISTRY_READ_TIMEOUT_IN_MILLISECONDS));
+    }
+
+    /**
+     * @param registryURL                  URL of the registry, e.g. http://localhost:5000
+     * @param connectTimeoutInMilliseconds timeout of connecting to the registry
+     * @param readTimeoutInMilliseconds    timeout of waiting for the next data of a registry response
+     */
+    public RegistryClient(String registryURL, int connectTimeoutInMilliseconds, int readTimeoutInMilliseconds) {
+        this.connectTimeoutInMilliseconds = connectTimeoutInMilliseconds;
+        this.readTimeoutInMilliseconds = readTimeoutInMilliseconds;
+        if (registryURL.endsWith("/")) {
+            registryEndpoint = registryURL.substring(0, registryURL.length() - 1) + "/v2/";
+        } else {
+            registryEndpoint = registryURL + "/v2/";
+        }
+    }
+
+    /**
+     * returns the image manifest of the specified repository and tag
+     *
+     * @param repository name of the repository
+     * @param tag        tag or digest of the manifest
+     * @return the image manifest, null if it does not exist
+     * @throws CarbonKernelHandlerException
+     */
+    public JsonNode getManifest(String repository, String tag) throws CarbonKernelHandlerException {
+        byte[] manifest = getBytes(repository + "/manifests/" + tag, MANIFEST_MEDIA_TYPE);
+        if (manifest == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readTree(manifest);
+        } catch (IOException exception) {
+            throw new CarbonKernelHandlerException(
+                    String.format("Could not read the manifest of %s:%s.", repository, tag), exception);
+        }
+    }
+
+    /**
+     * returns the content of the specified blob
+     *
+     * @param repository name of the repository
+     * @param digest     digest of the blob
+     * @return the content of the blob, null if it does not exist
+     * @throws CarbonKernelHandlerException
+     */
+    public byte[] getBlob(String repository, String digest) throws CarbonKernelHandlerException {
+        return getBytes(repository + "/blobs/" + digest, null);
+    }
+
+    /**
+     * returns true if the repository holds the specified blob
+     *
+     * @param repository name of the repository
+     * @param digest     digest of the blob
+     * @return true if the repository holds the specified blob, else false
+     * @throws CarbonKernelHandlerException
+     */
+    public boolean blobExists(String repository, String digest) throws CarbonKernelHandlerException {
+        HttpURLConnection connection = null;
+        try {
+            connection = open("HEAD", repository + "/blobs/" + digest);
+            return (connection.getResponseCode() == HttpURLConnection.HTTP_OK);
+        } catch (IOException exception) {
+            throw new CarbonKernelHandlerException(String.format("Could not check the blob %s.", digest), exception);
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    /**
+     * makes a blob of another repository of the registry available to the specified repository without
+     * uploading its content
+     *
+     * @param repository       name of the target repository
+     * @param digest           digest of the blob
+     * @param sourceRepository name of the repository holding the blob
+     * @return true if the blob was mounted, false if the registry requires it to be uploaded
+     * @throws CarbonKernelHandlerException
+     */
+    public boolean mountBlob(String repository, String digest, String sourceRepository)
+            throws CarbonKernelHandlerException {
+        HttpURLConnection connection = null;
+        try {
+            connection = open("POST", repository + "/blobs/uploads/?mount=" + URLEncoder.encode(digest, CHARSET)
+                    + "&from=" + URLEncoder.encode(sourceRepository, CHARSET));
+            connection.setFixedLengthStreamingMode(0);
+            connection.setDoOutput(true);
+            connection.getOutputStream().close();
+            return (connection.getResponseCode() == HttpURLConnection.HTTP_CREATED);
+        } catch (IOException exception) {
+            throw new CarbonKernelHandlerException(String.format("Could not mount the blob %s.", digest), exception);
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    /**
+     * uploads the content of a file as a blob, in a single monolithic upload
+     *
+     * @param repository name of the repository
+     * @param digest     digest of the file content
+     * @param file       file system path to the blob content
+     * @throws CarbonKernelHandlerException
+     */
+    public void uploadBlob(String repository, String digest, Path file) throws CarbonKernelHandlerException {
+        HttpURLConnection connection = null;
+        try {
+            String location = startUpload(repository);
+            String separator = location.contains("?") ? "&" : "?";
+            connection = openAbsolute("PUT", location + separator + "digest=" + URLEncoder.encode(digest, CHARSET));
+            connection.setRequestProperty("Content-Type", "application/octet-stream");
+            connection.setDoOutput(true);
+            connection.setChunkedStreamingMode(CHUNK_SIZE);
+            try (OutputStream requestBody = connection.getOutputStream()) {
+                Files.copy(file, requestBody);
+            }
+            checkStatus(connection, HttpURLConnection.HTTP_CREATED, "PUT blob " + digest);
+        } catch (IOException exception) {
+            throw new CarbonKernelHandlerException(String.format("Could not upload the blob %s.", digest), exception);
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    /**
+     * uploads a blob held in memory, e.g. an image configuration
+     *
+     * @param repository name of the repository
+     * @param digest     digest of the content
+     * @param content    content of the blob
+     * @throws CarbonKernelHandlerException
+     */
+    public void uploadBlob(String repository, String digest, byte[] content) throws CarbonKernelHandlerException {
+        HttpURLConnection connection = null;
+        try {
+            String location = startUpload(repository);
+            String separator = location.contains("?") ? "&" : "?";
+            connection = openAbsolute("PUT", location + separator + "digest=" + URLEncoder.encode(digest, CHARSET));
+            connection.setRequestProperty("Content-Type", "application/octet-stream");
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(content.length);
+            try (OutputStream requestBody = connection.getOutputStream()) {
+                requestBody.write(content);
+            }
+            checkStatus(connection, HttpURLConnection.HTTP_CREATED, "PUT blob " + digest);
+        } catch (IOException exception) {
+            throw new CarbonKernelHandlerException(String.format("Could not upload the blob %s.", digest), exception);
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    /**
+     * publishes an image manifest under the specified tag
+     *
+     * @param repository name of the repository
+     * @param tag        tag of the image
+     * @param manifest   serialized image manifest
+     * @throws CarbonKernelHandlerException
+     */
+    public void putManifest(String repository, String tag, byte[] manifest) throws CarbonKernelHandlerException {
+        HttpURLConnection connection = null;
+        try {
+            connection = open("PUT", repository + "/manifests/" + tag);
+            connection.setRequestProperty("Content-Type", MANIFEST_MEDIA_TYPE);
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(manifest.length);
+            try (OutputStream requestBody = connection.getOutputStream()) {
+                requestBody.write(manifest);
+            }
+            checkStatus(connection, HttpURLConnection.HTTP_CREATED, "PUT manifest " + repository + ":" + tag);
+        } catch (IOException exception) {
+            throw new CarbonKernelHandlerException(
+                    String.format("Could not publish the manifest of %s:%s.", repository, tag), exception);
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    private String startUpload(String repository) throws IOException, CarbonKernelHandlerException {
+        HttpURLConnection connection = open("POST", repository + "/blobs/uploads/");
+        try {
+            connection.setFixedLengthStreamingMode(0);
+            connection.setDoOutput(true);
+            connection.getOutputStream().close();
+            checkStatus(connection, HttpURLConnection.HTTP_ACCEPTED, "POST upload " + repository);
+            String location = connection.getHeaderField("Location");
+            if (location.startsWith("/")) {
+                URL registryURL = new URL(registryEndpoint);
+                location = registryURL.getProtocol() + "://" + registryURL.getAuthority() + location;
+            }
+            return location;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private byte[] getBytes(String path, String accept) throws CarbonKernelHandlerException {
+        HttpURLConnection connection = null;
+        try {
+            connection = open("GET", path);
+            if (accept != null) {
+                connection.setRequestProperty("Accept", accept);
+            }
+            if (connection.getResponseCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+                return null;
+            }
+            checkStatus(connection, HttpURLConnection.HTTP_OK, "GET " + path);
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            try (InputStream response = connection.getInputStream()) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = response.read(buffer)) != -1) {
+                    content.write(buffer, 0, read);
+                }
+            }
+            return content.toByteArray();
+        } catch (IOException exception) {
+            throw new CarbonKernelHandlerException(String.format("Registry request GET %s failed.", path), exception);
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    private HttpURLConnection open(String method, String path) throws IOException {
+        return openAbsolute(method, registryEndpoint + path);
+    }
+
+    private HttpURLConnection openAbsolute(String method, String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(connectTimeoutInMilliseconds);
+        connection.setReadTimeout(readTimeoutInMilliseconds);
+        connection.setRequestMethod(method);
+        return connection;
+    }
+
+    private static void checkStatus(HttpURLConnection connection, int expectedStatus, String request)
+            throws IOException, CarbonKernelHandlerException {
+        int status = connection.getResponseCode();
+        if (status != expectedStatus) {
+            throw new CarbonKernelHandlerException(
+                    String.format("Registry request %s failed with HTTP status %d.", request, status));
+        }
+    }
+}
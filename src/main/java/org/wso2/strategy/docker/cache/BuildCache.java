@@ -0,0 +1,177 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.docker.cache;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.wso2.strategy.miscellaneous.exception.CarbonKernelHandlerException;
+import org.wso2.strategy.miscellaneous.helper.CarbonKernelHandlerHelper;
+import org.wso2.strategy.miscellaneous.io.FileInputKeyValueDataThread;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * a content-addressed cache of built Docker images, which maps the digest of a build's inputs, i.e. the
+ * artifact and the Dockerfile, to the identifier of the image built from them
+ * <p>
+ * The mappings are persisted in a local key-value file, so that they survive restarts of the application.
+ */
+public class BuildCache {
+    private final String storeFileName;
+    // build input digest to Docker image identifier
+    private final Map<String, String> images = new ConcurrentHashMap<>();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    // the artifact is mapped into memory in regions of at most this size
+    private static final long MAPPED_REGION_SIZE = 64L * 1024 * 1024;
+    private static final Logger LOG = LogManager.getLogger(BuildCache.class);
+
+    public BuildCache(String storeFileName) {
+        this.storeFileName = storeFileName;
+        FileInputKeyValueDataThread inputThread = new FileInputKeyValueDataThread(storeFileName);
+        inputThread.run();
+        images.putAll(inputThread.getFileContent());
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(String.format("Loaded the Docker build cache [entries] %d", images.size()));
+        }
+    }
+
+    /**
+     * returns the hexadecimal SHA-256 digest of the specified artifact and Dockerfile content, reading the
+     * artifact through memory mapped regions rather than copying it through the Java heap
+     *
+     * @param artifact          file system path to the artifact added to the Docker image
+     * @param dockerFileContent lines of the Dockerfile
+     * @return the hexadecimal SHA-256 digest of the build inputs
+     * @throws CarbonKernelHandlerException
+     */
+    public static String computeDigest(Path artifact, List<String> dockerFileContent)
+            throws CarbonKernelHandlerException {
+        try (FileChannel channel = FileChannel.open(artifact, StandardOpenOption.READ)) {
+            MessageDigest digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+            long size = channel.size();
+            for (long position = 0; position < size; position += MAPPED_REGION_SIZE) {
+                MappedByteBuffer region = channel
+                        .map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAPPED_REGION_SIZE, size - position));
+                digest.update(region);
+            }
+            for (String line : dockerFileContent) {
+                digest.update(line.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '\n');
+            }
+            StringBuilder hexDigest = new StringBuilder();
+            for (byte digestByte : digest.digest()) {
+                hexDigest.append(String.format("%02x", digestByte));
+            }
+            return hexDigest.toString();
+        } catch (IOException | NoSuchAlgorithmException exception) {
+            String message = String.format("Could not compute the digest of the artifact [artifact]: %s.", artifact);
+            LOG.error(message, exception);
+            throw new CarbonKernelHandlerException(message, exception);
+        }
+    }
+
+    /**
+     * returns the identifier of the Docker image built from the inputs with the specified digest
+     *
+     * @param digest digest of the build inputs
+     * @return the identifier of the Docker image, null if no image is cached for the digest
+     */
+    public String getImageId(String digest) {
+        return images.get(digest);
+    }
+
+    /**
+     * caches the identifier of the Docker image built from the inputs with the specified digest
+     *
+     * @param digest  digest of the build inputs
+     * @param imageId identifier of the built Docker image
+     */
+    public void put(String digest, String imageId) {
+        if (!imageId.equals(images.put(digest, imageId))) {
+            persist();
+        }
+    }
+
+    /**
+     * removes a cache entry, e.g. if its Docker image no longer exists
+     *
+     * @param digest digest of the build inputs
+     */
+    public void remove(String digest) {
+        if (images.remove(digest) != null) {
+            persist();
+        }
+    }
+
+    public void recordHit() {
+        hitCount.incrementAndGet();
+    }
+
+    public void recordMiss() {
+        missCount.incrementAndGet();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * returns the ratio of builds served by retagging a cached image
+     *
+     * @return the ratio of builds served by retagging a cached image, 0 if no build was requested
+     */
+    public double getHitRatio() {
+        long hits = hitCount.get();
+        long total = hits + missCount.get();
+        if (total == 0) {
+            return 0;
+        } else {
+            return (double) hits / total;
+        }
+    }
+
+    public String toString() {
+        return String.format("Docker build cache [entries] %d [hits] %d [misses] %d [hit-ratio] %.2f", images.size(),
+                getHitCount(), getMissCount(), getHitRatio());
+    }
+
+    private synchronized void persist() {
+        List<String> output = new ArrayList<>();
+        for (Map.Entry<String, String> entry : images.entrySet()) {
+            output.add(entry.getKey() + "=" + entry.getValue());
+        }
+        CarbonKernelHandlerHelper.writeToFile(storeFileName, output);
+    }
+}
@@ -20,31 +20,62 @@ import com.spotify.docker.client.DockerCertificateException;
 import com.spotify.docker.client.DockerClient;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.wso2.strategy.docker.constants.DockerConstants;
 import org.wso2.strategy.miscellaneous.exception.CarbonKernelHandlerException;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 public class DockerClientBuilder {
-    private static DockerClient DOCKER_CLIENT;
+    // one DockerClient, and hence one keep-alive connection pool, per Docker endpoint
+    private static final ConcurrentMap<String, DockerClient> DOCKER_CLIENTS = new ConcurrentHashMap<>();
+    // key of the client configured by the DOCKER_HOST and DOCKER_CERT_PATH environment variables
+    private static final String ENVIRONMENT_ENDPOINT = "";
 
     private static final Logger LOG = LogManager.getLogger(DockerClientBuilder.class);
 
     public static DockerClient buildDockerClient(String dockerEndPointUrl) throws CarbonKernelHandlerException {
         /*
-        implements the singleton design pattern on the DockerClient instance
+        lazily creates a single DockerClient instance per endpoint, safely under concurrent first use
          */
-        try {
-            if (DOCKER_CLIENT == null) {
-                if (dockerEndPointUrl == null) {
-                    DOCKER_CLIENT = DefaultDockerClient.fromEnv().build();
-                } else {
-                    DOCKER_CLIENT = DefaultDockerClient.builder().uri(dockerEndPointUrl).build();
+        String endpoint = (dockerEndPointUrl != null) ? dockerEndPointUrl : ENVIRONMENT_ENDPOINT;
+        DockerClient dockerClient = DOCKER_CLIENTS.get(endpoint);
+        if (dockerClient == null) {
+            synchronized (DOCKER_CLIENTS) {
+                dockerClient = DOCKER_CLIENTS.get(endpoint);
+                if (dockerClient == null) {
+                    dockerClient = createDockerClient(dockerEndPointUrl);
+                    DOCKER_CLIENTS.put(endpoint, dockerClient);
                 }
             }
+        }
+        return dockerClient;
+    }
+
+    private static DockerClient createDockerClient(String dockerEndPointUrl) throws CarbonKernelHandlerException {
+        try {
+            DefaultDockerClient.Builder builder;
+            if (dockerEndPointUrl == null) {
+                builder = DefaultDockerClient.fromEnv();
+            } else {
+                builder = DefaultDockerClient.builder().uri(dockerEndPointUrl);
+            }
+            builder.connectionPoolSize(Integer.getInteger(DockerConstants.CLIENT_POOL_SIZE_PROPERTY,
+                    DockerConstants.DEFAULT_CLIENT_POOL_SIZE))
+                    .connectTimeoutMillis(Long.getLong(DockerConstants.CLIENT_CONNECT_TIMEOUT_PROPERTY,
+                            DockerConstants.DEFAULT_CLIENT_CONNECT_TIMEOUT_IN_MILLISECONDS))
+                    .readTimeoutMillis(Long.getLong(DockerConstants.CLIENT_READ_TIMEOUT_PROPERTY,
+                            DockerConstants.DEFAULT_CLIENT_READ_TIMEOUT_IN_MILLISECONDS));
+            DockerClient dockerClient = builder.build();
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(String.format("Created a new DockerClient [endpoint]: %s [pool-size]: %d", builder.uri(),
+                        builder.connectionPoolSize()));
+            }
+            return dockerClient;
         } catch (DockerCertificateException exception) {
             String message = "Could not create the Docker Client instance.";
             LOG.error(message, exception);
             throw new CarbonKernelHandlerException(message, exception);
         }
-
-        return DOCKER_CLIENT;
     }
 }
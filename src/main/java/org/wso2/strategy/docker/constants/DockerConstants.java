@@ -0,0 +1,46 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.docker.constants;
+
+public class DockerConstants {
+    public static final String IMAGE_INDEX_RESYNC_INTERVAL_PROPERTY = "docker.image-index.resync-interval";
+    public static final long DEFAULT_IMAGE_INDEX_RESYNC_INTERVAL_IN_MILLISECONDS = 60000;
+    public static final String IMAGE_INDEX_MAX_RESYNC_INTERVAL_PROPERTY = "docker.image-index.max-resync-interval";
+    public static final long DEFAULT_IMAGE_INDEX_MAX_RESYNC_INTERVAL_IN_MILLISECONDS = 600000;
+    public static final String BUILD_CACHE_ENABLED_PROPERTY = "docker.build-cache.enabled";
+    public static final String BUILD_CACHE_FILENAME = "BuildCache.txt";
+    public static final String DAEMONLESS_REGISTRY_URL_PROPERTY = "docker.daemonless.registry-url";
+    public static final String REGISTRY_CONNECT_TIMEOUT_PROPERTY = "docker.registry.connect-timeout";
+    public static final int DEFAULT_REGISTRY_CONNECT_TIMEOUT_IN_MILLISECONDS = 5000;
+    public static final String REGISTRY_READ_TIMEOUT_PROPERTY = "docker.registry.read-timeout";
+    public static final int DEFAULT_REGISTRY_READ_TIMEOUT_IN_MILLISECONDS = 60000;
+    public static final String BUILD_CONCURRENCY_PROPERTY = "docker.build.concurrency";
+    public static final int DEFAULT_BUILD_CONCURRENCY = 2;
+    public static final String BUILD_QUEUE_CAPACITY_PROPERTY = "docker.build.queue-capacity";
+    public static final int DEFAULT_BUILD_QUEUE_CAPACITY = 64;
+    public static final String PREFLIGHT_TIMEOUT_PROPERTY = "docker.preflight.timeout";
+    public static final long DEFAULT_PREFLIGHT_TIMEOUT_IN_MILLISECONDS = 120000;
+    public static final String PREFLIGHT_EVENTS_PROPERTY = "docker.preflight.events";
+    public static final String CLIENT_POOL_SIZE_PROPERTY = "docker.client.pool-size";
+    public static final int DEFAULT_CLIENT_POOL_SIZE = 100;
+    public static final String CLIENT_CONNECT_TIMEOUT_PROPERTY = "docker.client.connect-timeout";
+    public static final long DEFAULT_CLIENT_CONNECT_TIMEOUT_IN_MILLISECONDS = 5000;
+    public static final String CLIENT_READ_TIMEOUT_PROPERTY = "docker.client.read-timeout";
+    public static final long DEFAULT_CLIENT_READ_TIMEOUT_IN_MILLISECONDS = 30000;
+    public static final String BUILD_FARM_URLS_PROPERTY = "docker.build-farm.urls";
+    public static final String BUILD_FARM_FAILURE_BACKOFF_PROPERTY = "docker.build-farm.failure-backoff";
+    public static final long DEFAULT_BUILD_FARM_FAILURE_BACKOFF_IN_MILLISECONDS = 30000;
+}
@@ -0,0 +1,287 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.docker.context;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.wso2.strategy.miscellaneous.exception.CarbonKernelHandlerException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * a per-build staging directory which holds only the Dockerfile and the artifact, or its extracted image
+ * layers, to be added to the Docker image, so that the build context sent to the Docker daemon is no larger
+ * than required and concurrent builds never share a Dockerfile
+ */
+public class BuildContext implements Closeable {
+    private final Path directory;
+    private final Path dockerFilePath;
+
+    private static final String STAGING_DIRECTORY_PREFIX = "carbon-build-";
+    private static final String DOCKER_FILE_NAME = "Dockerfile";
+    private static final String LAYERS_DIRECTORY = "layers";
+    private static final String SHELL_SCRIPT_EXTENSION = ".sh";
+    private static final Logger LOG = LogManager.getLogger(BuildContext.class);
+
+    private BuildContext(Path directory) {
+        this.directory = directory;
+        dockerFilePath = directory.resolve(DOCKER_FILE_NAME);
+    }
+
+    /**
+     * creates a new staging directory holding the specified artifact and a Dockerfile with the specified content
+     *
+     * @param artifact          file system path to the artifact to be added to the Docker image
+     * @param dockerFileContent lines of the Dockerfile
+     * @return the staged build context
+     * @throws CarbonKernelHandlerException
+     */
+    public static BuildContext stage(Path artifact, List<String> dockerFileContent)
+            throws CarbonKernelHandlerException {
+        BuildContext context = null;
+        try {
+            context = new BuildContext(createStagingDirectory(artifact));
+            Files.write(context.dockerFilePath, dockerFileContent, StandardCharsets.UTF_8);
+            context.addFile(artifact);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(String.format("Staged the Docker build context [directory]: %s.", context.directory));
+            }
+            return context;
+        } catch (IOException exception) {
+            if (context != null) {
+                context.close();
+            }
+            String message = String.format("Could not stage the Docker build context [artifact]: %s.", artifact);
+            LOG.error(message, exception);
+            throw new CarbonKernelHandlerException(message, exception);
+        }
+    }
+
+    /**
+     * creates a new staging directory holding a Dockerfile with the specified content and the content of the
+     * specified zip artifact, split into one directory per image layer
+     * <p>
+     * An entry is placed in the first layer which lists a prefix of its path, relative to the top level directory
+     * of the artifact, and in the default layer otherwise. The modification times of the extracted files are
+     * normalized, so that a layer holding the same content always produces the same Docker image layer.
+     *
+     * @param artifact          file system path to the zip artifact
+     * @param defaultLayer      name of the layer holding the entries not claimed by any other layer
+     * @param layers            names of the other layers, mapped to the path prefixes of their entries
+     * @param dockerFileContent lines of the Dockerfile, which adds each layer directory in turn
+     * @return the staged build context
+     * @throws CarbonKernelHandlerException
+     */
+    public static BuildContext stageLayers(Path artifact, String defaultLayer, Map<String, List<String>> layers,
+            List<String> dockerFileContent) throws CarbonKernelHandlerException {
+        BuildContext context = null;
+        try {
+            context = new BuildContext(createStagingDirectory(artifact));
+            Files.write(context.dockerFilePath, dockerFileContent, StandardCharsets.UTF_8);
+            Files.createDirectories(context.directory.resolve(getLayerDirectory(defaultLayer)));
+            for (String layer : layers.keySet()) {
+                Files.createDirectories(context.directory.resolve(getLayerDirectory(layer)));
+            }
+            context.extractLayers(artifact, defaultLayer, layers);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(String.format("Staged the layered Docker build context [directory]: %s.",
+                        context.directory));
+            }
+            return context;
+        } catch (IOException exception) {
+            if (context != null) {
+                context.close();
+            }
+            String message = String.format("Could not stage the Docker build context [artifact]: %s.", artifact);
+            LOG.error(message, exception);
+            throw new CarbonKernelHandlerException(message, exception);
+        }
+    }
+
+    /**
+     * creates the staging directory next to the artifact, so that the artifact can be hard linked into it, or in
+     * the default temporary-file directory if the directory of the artifact is not writable
+     *
+     * @param artifact file system path to the artifact to be staged
+     * @return the path of the new staging directory
+     * @throws IOException
+     */
+    private static Path createStagingDirectory(Path artifact) throws IOException {
+        Path artifactDirectory = artifact.toAbsolutePath().getParent();
+        if ((artifactDirectory != null) && Files.isWritable(artifactDirectory)) {
+            try {
+                return Files.createTempDirectory(artifactDirectory, STAGING_DIRECTORY_PREFIX);
+            } catch (IOException exception) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug(String.format("Could not create the staging directory in %s, using the default "
+                            + "temporary-file directory instead.", artifactDirectory));
+                }
+            }
+        }
+        return Files.createTempDirectory(STAGING_DIRECTORY_PREFIX);
+    }
+
+    /**
+     * returns the path of a layer directory, relative to the build context, as referred to by the Dockerfile
+     *
+     * @param layer name of the layer
+     * @return the path of the layer directory, relative to the build context
+     */
+    public static String getLayerDirectory(String layer) {
+        return LAYERS_DIRECTORY + "/" + layer;
+    }
+
+    /**
+     * makes a file executable by everyone, through its POSIX permissions where the file system supports them
+     */
+    private static void makeExecutable(Path file) throws IOException {
+        if (Files.getFileAttributeView(file, PosixFileAttributeView.class) != null) {
+            Set<PosixFilePermission> permissions = EnumSet.copyOf(Files.getPosixFilePermissions(file));
+            permissions.add(PosixFilePermission.OWNER_EXECUTE);
+            permissions.add(PosixFilePermission.GROUP_EXECUTE);
+            permissions.add(PosixFilePermission.OTHERS_EXECUTE);
+            Files.setPosixFilePermissions(file, permissions);
+        } else if (!file.toFile().setExecutable(true, false)) {
+            throw new IOException(String.format("Could not make %s executable.", file));
+        }
+    }
+
+    private void extractLayers(Path artifact, String defaultLayer, Map<String, List<String>> layers)
+            throws IOException {
+        final FileTime normalizedTime = FileTime.fromMillis(0);
+        try (ZipInputStream zipInput = new ZipInputStream(Files.newInputStream(artifact))) {
+            ZipEntry entry;
+            while ((entry = zipInput.getNextEntry()) != null) {
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                String layer = selectLayer(entry.getName(), defaultLayer, layers);
+                Path layerDirectory = directory.resolve(getLayerDirectory(layer));
+                Path target = layerDirectory.resolve(entry.getName()).normalize();
+                if (!target.startsWith(layerDirectory)) {
+                    throw new IOException(String.format("Zip entry %s is outside of the artifact.", entry.getName()));
+                }
+                Files.createDirectories(target.getParent());
+                Files.copy(zipInput, target);
+                if (entry.getName().endsWith(SHELL_SCRIPT_EXTENSION)) {
+                    // java.util.zip does not expose the Unix permissions of the entries
+                    makeExecutable(target);
+                }
+                Files.setLastModifiedTime(target, normalizedTime);
+            }
+        }
+        // directory times change while their files are extracted, hence they are normalized last
+        Files.walkFileTree(directory.resolve(LAYERS_DIRECTORY), new SimpleFileVisitor<Path>() {
+            public FileVisitResult postVisitDirectory(Path visitedDirectory, IOException exception)
+                    throws IOException {
+                Files.setLastModifiedTime(visitedDirectory, normalizedTime);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static String selectLayer(String entryName, String defaultLayer, Map<String, List<String>> layers) {
+        // paths are matched relative to the top level directory of the artifact, e.g. wso2carbon-kernel-5.0.0/
+        int rootEnd = entryName.indexOf('/');
+        String relativePath = entryName.substring(rootEnd + 1);
+        for (Map.Entry<String, List<String>> layer : layers.entrySet()) {
+            for (String prefix : layer.getValue()) {
+                if (relativePath.startsWith(prefix)) {
+                    return layer.getKey();
+                }
+            }
+        }
+        return defaultLayer;
+    }
+
+    /**
+     * adds a file to the staging directory, as a hard link if the file system allows it, else as a copy
+     * made by the kernel without passing the file content through the Java heap
+     *
+     * @param file file system path to the file to be added
+     * @throws IOException
+     */
+    private void addFile(Path file) throws IOException {
+        Path target = directory.resolve(file.getFileName());
+        try {
+            Files.createLink(target, file);
+        } catch (IOException | UnsupportedOperationException exception) {
+            // hard links are unavailable on some platforms and when staging fell back to the temporary directory
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(String.format("Could not hard link %s, copying it instead.", file));
+            }
+            Files.deleteIfExists(target);
+            try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ);
+                    FileChannel destination = FileChannel
+                            .open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                long position = 0;
+                long size = source.size();
+                while (position < size) {
+                    position += source.transferTo(position, size - position, destination);
+                }
+            }
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public Path getDockerFilePath() {
+        return dockerFilePath;
+    }
+
+    /**
+     * deletes the staging directory and its content, the original artifact is left intact
+     */
+    public void close() {
+        try {
+            Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                    Files.delete(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                public FileVisitResult postVisitDirectory(Path visitedDirectory, IOException exception)
+                        throws IOException {
+                    Files.delete(visitedDirectory);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException exception) {
+            LOG.warn(String.format("Could not clean up the Docker build context [directory]: %s.", directory),
+                    exception);
+        }
+    }
+}
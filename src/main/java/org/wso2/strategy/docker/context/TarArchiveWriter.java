@@ -0,0 +1,123 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.docker.context;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * writes the content of a directory, such as a staged build context, as an uncompressed tar archive, streaming
+ * the file content instead of buffering the archive
+ * <p>
+ * Entry names too long for the ustar header fields and files larger than 8 GiB are written with PAX extended
+ * headers.
+ */
+public class TarArchiveWriter {
+    private static final int BLOCK_SIZE = 512;
+    private static final int FILE_MODE = 0100644;
+    private static final int EXECUTABLE_MODE = 0100755;
+    private static final int DIRECTORY_MODE = 040755;
+
+    /**
+     * writes the files and sub directories of the specified directory as an uncompressed tar archive
+     *
+     * @param directory    directory whose content is to be archived
+     * @param outputStream stream to which the archive is written, it is not closed
+     * @throws IOException
+     */
+    public static void writeDirectory(Path directory, OutputStream outputStream) throws IOException {
+        writeDirectory(directory, "", outputStream);
+    }
+
+    /**
+     * writes the files and sub directories of the specified directory as an uncompressed tar archive, placing
+     * them below the specified entry name prefix
+     * <p>
+     * The entries are written in the lexicographical order of their names, without owner names, so that
+     * identical directory trees with identical modification times always produce byte-identical archives.
+     *
+     * @param directory    directory whose content is to be archived
+     * @param entryPrefix  path below which the entries are placed, e.g. opt/, or an empty String
+     * @param outputStream stream to which the archive is written, it is not closed
+     * @throws IOException
+     */
+    public static void writeDirectory(Path directory, String entryPrefix, OutputStream outputStream)
+            throws IOException {
+        // records of a single block, so that the archive is not padded beyond its end of archive blocks
+        TarArchiveOutputStream tarOutput = new TarArchiveOutputStream(outputStream, BLOCK_SIZE, BLOCK_SIZE);
+        tarOutput.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+        tarOutput.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+        String prefix = "";
+        for (String component : entryPrefix.split("/")) {
+            if (!component.isEmpty()) {
+                prefix += component + "/";
+                putEntry(tarOutput, prefix, DIRECTORY_MODE, 0, 0);
+                tarOutput.closeArchiveEntry();
+            }
+        }
+        writeEntries(directory, prefix, tarOutput);
+        // writes the end of archive blocks, while the stream of the caller is left open
+        tarOutput.finish();
+        outputStream.flush();
+    }
+
+    private static void writeEntries(Path directory, String prefix, TarArchiveOutputStream tarOutput)
+            throws IOException {
+        List<Path> entries = new ArrayList<>();
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(directory)) {
+            for (Path child : children) {
+                entries.add(child);
+            }
+        }
+        Collections.sort(entries);
+        for (Path entry : entries) {
+            BasicFileAttributes attributes = Files.readAttributes(entry, BasicFileAttributes.class);
+            String name = prefix + entry.getFileName().toString();
+            if (attributes.isDirectory()) {
+                putEntry(tarOutput, name + "/", DIRECTORY_MODE, 0, attributes.lastModifiedTime().toMillis());
+                tarOutput.closeArchiveEntry();
+                writeEntries(entry, name + "/", tarOutput);
+            } else if (attributes.isRegularFile()) {
+                int mode = Files.isExecutable(entry) ? EXECUTABLE_MODE : FILE_MODE;
+                putEntry(tarOutput, name, mode, attributes.size(), attributes.lastModifiedTime().toMillis());
+                Files.copy(entry, tarOutput);
+                tarOutput.closeArchiveEntry();
+            }
+        }
+    }
+
+    private static void putEntry(TarArchiveOutputStream tarOutput, String name, int mode, long size,
+            long modificationTime) throws IOException {
+        TarArchiveEntry entry = new TarArchiveEntry(name);
+        entry.setMode(mode);
+        entry.setSize(size);
+        entry.setModTime(modificationTime);
+        // the entry takes the name of the user running the application by default
+        entry.setUserName("");
+        entry.setGroupName("");
+        tarOutput.putArchiveEntry(entry);
+    }
+}
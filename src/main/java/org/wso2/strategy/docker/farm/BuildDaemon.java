@@ -0,0 +1,135 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.docker.farm;
+
+import com.spotify.docker.client.DockerClient;
+import org.wso2.strategy.docker.interfaces.IDockerImageHandler;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * a Java class which represents a Docker daemon of a DockerBuildFarm, along with its load and health
+ */
+public class BuildDaemon {
+    private final String endpoint;
+    private final DockerClient dockerClient;
+    private final IDockerImageHandler imageHandler;
+    private final AtomicInteger activeBuildCount = new AtomicInteger();
+    private final AtomicLong completedBuildCount = new AtomicLong();
+    private final AtomicLong failedBuildCount = new AtomicLong();
+    private final AtomicInteger consecutiveFailureCount = new AtomicInteger();
+    // time before which the daemon is not chosen for builds, after it has been found unreachable
+    private volatile long unavailableUntil;
+
+    private static final int MAXIMUM_BACKOFF_MULTIPLIER = 16;
+
+    /**
+     * @param endpoint     URL of the Docker daemon
+     * @param dockerClient client of the Docker daemon, used for health checks and for moving the images built
+     *                     through the registry
+     * @param imageHandler handler which builds and looks up the images of the Docker daemon
+     */
+    public BuildDaemon(String endpoint, DockerClient dockerClient, IDockerImageHandler imageHandler) {
+        this.endpoint = endpoint;
+        this.dockerClient = dockerClient;
+        this.imageHandler = imageHandler;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public int getActiveBuildCount() {
+        return activeBuildCount.get();
+    }
+
+    public long getCompletedBuildCount() {
+        return completedBuildCount.get();
+    }
+
+    public long getFailedBuildCount() {
+        return failedBuildCount.get();
+    }
+
+    /**
+     * returns true unless the daemon was found unreachable and its back-off period has not elapsed yet
+     *
+     * @return true if the daemon may be chosen for builds, else false
+     */
+    public boolean isAvailable() {
+        return System.currentTimeMillis() >= unavailableUntil;
+    }
+
+    IDockerImageHandler getImageHandler() {
+        return imageHandler;
+    }
+
+    DockerClient getDockerClient() {
+        return dockerClient;
+    }
+
+    long getUnavailableUntil() {
+        return unavailableUntil;
+    }
+
+    void buildStarted() {
+        activeBuildCount.incrementAndGet();
+    }
+
+    void buildSucceeded() {
+        activeBuildCount.decrementAndGet();
+        completedBuildCount.incrementAndGet();
+        consecutiveFailureCount.set(0);
+        unavailableUntil = 0;
+    }
+
+    /**
+     * records a failed build and, if the daemon does not respond, takes it out of rotation for a back-off
+     * period which grows with the number of consecutive failures
+     *
+     * @param backoffInMilliseconds back-off period after the first failure
+     * @return true if the daemon responds, i.e. the build itself failed, else false
+     */
+    boolean buildFailed(long backoffInMilliseconds) {
+        activeBuildCount.decrementAndGet();
+        failedBuildCount.incrementAndGet();
+        if (isResponsive()) {
+            consecutiveFailureCount.set(0);
+            return true;
+        }
+        int failures = Math.min(consecutiveFailureCount.incrementAndGet(), MAXIMUM_BACKOFF_MULTIPLIER);
+        unavailableUntil = System.currentTimeMillis() + backoffInMilliseconds * failures;
+        return false;
+    }
+
+    private boolean isResponsive() {
+        try {
+            dockerClient.ping();
+            return true;
+        } catch (Exception exception) {
+            if (exception instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        }
+    }
+
+    public String toString() {
+        return String.format("%s [active] %d [completed] %d [failed] %d [available] %s", endpoint,
+                getActiveBuildCount(), getCompletedBuildCount(), getFailedBuildCount(), isAvailable());
+    }
+}
@@ -0,0 +1,337 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.docker.farm;
+
+import com.spotify.docker.client.DockerClient;
+import com.spotify.docker.client.messages.Image;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.wso2.strategy.docker.interfaces.IDockerImageHandler;
+import org.wso2.strategy.miscellaneous.exception.CarbonKernelHandlerException;
+import org.wso2.strategy.miscellaneous.helper.CarbonKernelHandlerHelper;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * an IDockerImageHandler Java interface implementation which spreads the image builds across a pool of
+ * Docker daemons
+ * <p>
+ * Each build is sent to the daemon with the lowest cost, i.e. the number of builds it is running less its cache
+ * warmth. A daemon is warm for a build if it has built the same creator's artifact before, or if it already holds
+ * the base image of the Dockerfile. If a daemon does not respond to a failed build, it is taken out of rotation
+ * for a back-off period and the build fails over to the next daemon. Image lookups are answered by whichever
+ * daemon holds the image.
+ * <p>
+ * An image built on any daemon but the first is pushed to the registry and pulled from it into the first daemon,
+ * so that the image is present where it is deployed from.
+ */
+public class DockerBuildFarm implements IDockerImageHandler {
+    private final List<BuildDaemon> daemons;
+    private final long failureBackoffInMilliseconds;
+    // host and port of the registry through which the images built are moved to the first daemon
+    private final String registryHost;
+    // repository, i.e. creator/artifact, to the daemon which last built an image of it
+    private final ConcurrentMap<String, BuildDaemon> repositoryAffinity = new ConcurrentHashMap<>();
+    // image name to the daemon which built it
+    private final ConcurrentMap<String, BuildDaemon> imageLocations = new ConcurrentHashMap<>();
+    // rotates the order of equally ranked daemons, so that ties do not always favour the first daemon
+    private final AtomicInteger rotation = new AtomicInteger();
+
+    private static final String DEFAULT_BASE_IMAGE_TAG = ":latest";
+    private static final Logger LOG = LogManager.getLogger(DockerBuildFarm.class);
+
+    /**
+     * @param daemons                      Docker daemons of the farm, of which the first one is the daemon the
+     *                                     images are deployed from and is used for the lookups of images which
+     *                                     no daemon holds yet
+     * @param registryURL                  URL of the Docker registry through which the images built on the other
+     *                                     daemons are moved to the first one, only optional for a single daemon
+     * @param failureBackoffInMilliseconds period for which a daemon found unreachable is not chosen for builds
+     * @throws CarbonKernelHandlerException if the registry URL is invalid
+     */
+    public DockerBuildFarm(List<BuildDaemon> daemons, String registryURL, long failureBackoffInMilliseconds)
+            throws CarbonKernelHandlerException {
+        if (daemons.isEmpty()) {
+            throw new IllegalArgumentException("A Docker build farm requires at least one Docker daemon.");
+        }
+        this.daemons = Collections.unmodifiableList(new ArrayList<>(daemons));
+        this.failureBackoffInMilliseconds = failureBackoffInMilliseconds;
+        if ((registryURL == null) && (daemons.size() > 1)) {
+            throw new IllegalArgumentException("A Docker build farm of several Docker daemons requires a registry.");
+        }
+        try {
+            registryHost = (registryURL != null) ? new URL(registryURL).getAuthority() : null;
+        } catch (MalformedURLException exception) {
+            throw new CarbonKernelHandlerException(String.format("Invalid registry URL %s.", registryURL),
+                    exception);
+        }
+    }
+
+    public String buildImage(String creator, String dockerArtifactName, String version, Path dockerFilePath)
+            throws CarbonKernelHandlerException {
+        String dockerImageName = CarbonKernelHandlerHelper
+                .generateImageIdentifier(creator, dockerArtifactName, version);
+        if (dockerImageName == null) {
+            return null;
+        }
+        String repository = creator + "/" + dockerArtifactName;
+        CarbonKernelHandlerException lastFailure = null;
+        for (BuildDaemon daemon : rankDaemons(repository, readBaseImage(dockerFilePath))) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(String.format("Building the Docker image %s on %s.", dockerImageName, daemon));
+            }
+            daemon.buildStarted();
+            String builtImageName;
+            try {
+                builtImageName = daemon.getImageHandler()
+                        .buildImage(creator, dockerArtifactName, version, dockerFilePath);
+            } catch (CarbonKernelHandlerException exception) {
+                if (daemon.buildFailed(failureBackoffInMilliseconds)) {
+                    // the daemon is healthy, hence the build would fail on any other daemon as well
+                    throw exception;
+                }
+                LOG.warn(String.format("Docker daemon %s is unreachable. Failing over the build of %s.",
+                        daemon.getEndpoint(), dockerImageName));
+                lastFailure = exception;
+                continue;
+            }
+            daemon.buildSucceeded();
+            repositoryAffinity.put(repository, daemon);
+            imageLocations.put(builtImageName, daemon);
+            if (daemon != daemons.get(0)) {
+                moveToFirstDaemon(daemon, builtImageName);
+            }
+            return builtImageName;
+        }
+        String message = String.format("Could not create the Docker image [docker-image]: %s on any Docker daemon.",
+                dockerImageName);
+        LOG.error(message);
+        throw new CarbonKernelHandlerException(message, lastFailure);
+    }
+
+    public String tagImage(String imageId, String creator, String dockerArtifactName, String version)
+            throws CarbonKernelHandlerException {
+        for (BuildDaemon daemon : daemons) {
+            String dockerImageName = daemon.getImageHandler().tagImage(imageId, creator, dockerArtifactName, version);
+            if (dockerImageName != null) {
+                imageLocations.put(dockerImageName, daemon);
+                return dockerImageName;
+            }
+        }
+        return null;
+    }
+
+    public String getImageId(String dockerImageName) throws CarbonKernelHandlerException {
+        BuildDaemon daemon = locateImage(dockerImageName);
+        if (daemon != null) {
+            return daemon.getImageHandler().getImageId(dockerImageName);
+        } else {
+            return null;
+        }
+    }
+
+    public List<Image> getExistingImages(String creator, String dockerArtifactName, String version)
+            throws CarbonKernelHandlerException {
+        // an image present on several daemons is listed once
+        Map<String, Image> images = new LinkedHashMap<>();
+        for (BuildDaemon daemon : daemons) {
+            for (Image image : daemon.getImageHandler().getExistingImages(creator, dockerArtifactName, version)) {
+                if (!images.containsKey(image.id())) {
+                    images.put(image.id(), image);
+                }
+            }
+        }
+        return new ArrayList<>(images.values());
+    }
+
+    public List<String> getExistingImageTags(String creator, String dockerArtifactName, String version)
+            throws CarbonKernelHandlerException {
+        TreeSet<String> tags = new TreeSet<>();
+        for (BuildDaemon daemon : daemons) {
+            tags.addAll(daemon.getImageHandler().getExistingImageTags(creator, dockerArtifactName, version));
+        }
+        return new ArrayList<>(tags);
+    }
+
+    public boolean waitForImage(String dockerImageName, long timeoutInMilliseconds)
+            throws CarbonKernelHandlerException {
+        if (dockerImageName == null) {
+            return false;
+        }
+        BuildDaemon daemon = locateImage(dockerImageName);
+        if (daemon == null) {
+            daemon = daemons.get(0);
+        }
+        return daemon.getImageHandler().waitForImage(dockerImageName, timeoutInMilliseconds);
+    }
+
+    public String removeImage(String creator, String dockerArtifactName, String version)
+            throws CarbonKernelHandlerException {
+        String dockerImageName = CarbonKernelHandlerHelper
+                .generateImageIdentifier(creator, dockerArtifactName, version);
+        CarbonKernelHandlerException failure = null;
+        for (BuildDaemon daemon : daemons) {
+            try {
+                daemon.getImageHandler().removeImage(creator, dockerArtifactName, version);
+            } catch (CarbonKernelHandlerException exception) {
+                failure = exception;
+            }
+        }
+        if (dockerImageName != null) {
+            imageLocations.remove(dockerImageName);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return dockerImageName;
+    }
+
+    public List<BuildDaemon> getDaemons() {
+        return daemons;
+    }
+
+    public String toString() {
+        StringBuilder farm = new StringBuilder(String.format("Docker build farm [daemons] %d", daemons.size()));
+        for (BuildDaemon daemon : daemons) {
+            farm.append("\n  ").append(daemon);
+        }
+        return farm.toString();
+    }
+
+    /**
+     * pushes an image from the daemon which built it to the registry and pulls it into the first daemon under its
+     * own name
+     */
+    private void moveToFirstDaemon(BuildDaemon daemon, String dockerImageName) throws CarbonKernelHandlerException {
+        BuildDaemon firstDaemon = daemons.get(0);
+        String registryImageName = registryHost + "/" + dockerImageName;
+        try {
+            DockerClient builder = daemon.getDockerClient();
+            builder.tag(dockerImageName, registryImageName);
+            builder.push(registryImageName);
+            DockerClient deployer = firstDaemon.getDockerClient();
+            // only the layers missing on the first daemon are pulled
+            deployer.pull(registryImageName);
+            deployer.tag(registryImageName, dockerImageName);
+        } catch (Exception exception) {
+            if (exception instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            String message = String.format("Could not move the Docker image %s from %s to %s.", dockerImageName,
+                    daemon.getEndpoint(), firstDaemon.getEndpoint());
+            LOG.error(message, exception);
+            throw new CarbonKernelHandlerException(message, exception);
+        }
+        imageLocations.put(dockerImageName, firstDaemon);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(String.format("Moved the Docker image %s from %s to %s through the registry.",
+                    dockerImageName, daemon.getEndpoint(), firstDaemon.getEndpoint()));
+        }
+    }
+
+    /**
+     * returns the daemons in the order in which they are tried for a build, i.e. the available daemons by
+     * increasing cost followed by the unavailable daemons by the end of their back-off periods
+     */
+    private List<BuildDaemon> rankDaemons(String repository, String baseImage) throws CarbonKernelHandlerException {
+        final Map<BuildDaemon, Integer> costs = new LinkedHashMap<>();
+        List<BuildDaemon> available = new ArrayList<>();
+        List<BuildDaemon> unavailable = new ArrayList<>();
+        int offset = Math.abs(rotation.getAndIncrement() % daemons.size());
+        for (int index = 0; index < daemons.size(); index++) {
+            BuildDaemon daemon = daemons.get((offset + index) % daemons.size());
+            if (daemon.isAvailable()) {
+                int warmth = 0;
+                if (daemon == repositoryAffinity.get(repository)) {
+                    warmth++;
+                }
+                if ((baseImage != null) && (daemon.getImageHandler().getImageId(baseImage) != null)) {
+                    warmth++;
+                }
+                costs.put(daemon, daemon.getActiveBuildCount() - warmth);
+                available.add(daemon);
+            } else {
+                unavailable.add(daemon);
+            }
+        }
+        // stable sorts keep the rotated order among equally ranked daemons
+        Collections.sort(available, new Comparator<BuildDaemon>() {
+            public int compare(BuildDaemon first, BuildDaemon second) {
+                return Integer.compare(costs.get(first), costs.get(second));
+            }
+        });
+        Collections.sort(unavailable, new Comparator<BuildDaemon>() {
+            public int compare(BuildDaemon first, BuildDaemon second) {
+                return Long.compare(first.getUnavailableUntil(), second.getUnavailableUntil());
+            }
+        });
+        available.addAll(unavailable);
+        return available;
+    }
+
+    private BuildDaemon locateImage(String dockerImageName) throws CarbonKernelHandlerException {
+        if (dockerImageName == null) {
+            return null;
+        }
+        BuildDaemon daemon = imageLocations.get(dockerImageName);
+        if ((daemon != null) && (daemon.getImageHandler().getImageId(dockerImageName) != null)) {
+            return daemon;
+        }
+        for (BuildDaemon candidate : daemons) {
+            if (candidate.getImageHandler().getImageId(dockerImageName) != null) {
+                imageLocations.put(dockerImageName, candidate);
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * returns the base image of the specified Dockerfile, null if it cannot be read
+     */
+    private static String readBaseImage(Path dockerFilePath) {
+        try {
+            for (String line : Files.readAllLines(dockerFilePath, StandardCharsets.UTF_8)) {
+                String instruction = line.trim();
+                if (instruction.toUpperCase().startsWith("FROM ")) {
+                    String baseImage = instruction.substring("FROM ".length()).trim();
+                    if (baseImage.lastIndexOf(':') <= baseImage.lastIndexOf('/')) {
+                        baseImage += DEFAULT_BASE_IMAGE_TAG;
+                    }
+                    return baseImage;
+                }
+            }
+        } catch (IOException exception) {
+            LOG.warn(String.format("Could not read the base image of %s.", dockerFilePath), exception);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,407 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.docker.index;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.collect.ImmutableSortedSet;
+import com.spotify.docker.client.DockerClient;
+import com.spotify.docker.client.messages.Image;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.wso2.strategy.docker.DockerEventListener;
+import org.wso2.strategy.docker.StreamingImageBuilder;
+import org.wso2.strategy.docker.interfaces.IDockerEventHandler;
+import org.wso2.strategy.miscellaneous.exception.CarbonKernelHandlerException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * an in-memory index of the Docker images of a Docker daemon, which maps each repo tag to its image
+ * <p>
+ * The tags are kept sorted, so that all build tags of a tenant/artifact:version identifier form one contiguous
+ * range of the index. The index is filled by a single image listing and is then updated by the image builds,
+ * tags and removals made through this application, as well as by the image events of the Docker daemon. The whole
+ * index is periodically re-synchronized while no events are received, e.g. as the Docker daemon is not reachable
+ * over plain HTTP, and at a longer maximum interval even while they are, as Docker does not replay the events
+ * dropped by an overloaded daemon.
+ */
+public class DockerImageIndex {
+    private final DockerClient dockerClient;
+    // repo tag to the identifier of the image it refers to
+    private volatile ConcurrentNavigableMap<String, String> tagIndex = new ConcurrentSkipListMap<>();
+    // image identifier to image
+    private volatile Map<String, Image> images = new ConcurrentHashMap<>();
+    // image identifier to the repo tags which refer to it, so that an image is dropped with its last tag
+    private volatile Map<String, Set<String>> imageTags = new ConcurrentHashMap<>();
+    private volatile long lastSynchronizationTime = -1;
+    private ScheduledExecutorService synchronizationExecutor;
+    private String dockerEndpointURL;
+    private DockerEventListener eventListener;
+
+    private static final String DOCKER_REPOSITORY_FILTER = "filter";
+    private static final String IMAGE_EVENT_FILTER = "{\"event\":[\"tag\",\"untag\",\"delete\",\"pull\",\"import\","
+            + "\"load\"]}";
+    private static final String IMAGE_ID_PREFIX = "sha256:";
+    // repository of the <none>:<none> tag which Docker reports for untagged images
+    private static final String UNTAGGED_REPOSITORY = "<none>";
+    private static final Logger LOG = LogManager.getLogger(DockerImageIndex.class);
+
+    public DockerImageIndex(DockerClient dockerClient) {
+        this.dockerClient = dockerClient;
+    }
+
+    /**
+     * re-builds the whole index from a single Docker image listing
+     *
+     * @throws CarbonKernelHandlerException
+     */
+    public synchronized void synchronize() throws CarbonKernelHandlerException {
+        try {
+            ConcurrentNavigableMap<String, String> freshTagIndex = new ConcurrentSkipListMap<>();
+            Map<String, Image> freshImages = new ConcurrentHashMap<>();
+            Map<String, Set<String>> freshImageTags = new ConcurrentHashMap<>();
+            for (Image image : dockerClient.listImages()) {
+                addImage(image, freshTagIndex, freshImages, freshImageTags);
+            }
+            tagIndex = freshTagIndex;
+            images = freshImages;
+            imageTags = freshImageTags;
+            lastSynchronizationTime = System.currentTimeMillis();
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(String.format("Synchronized the Docker image index [images] %d [tags] %d", images.size(),
+                        tagIndex.size()));
+            }
+        } catch (Exception exception) {
+            String message = "Could not load the repo images.";
+            LOG.error(message, exception);
+            throw new CarbonKernelHandlerException(message, exception);
+        }
+    }
+
+    /**
+     * subscribes to the image events of the Docker daemon, each of which re-loads the index entries of the
+     * repositories the event refers to. Docker daemons not reachable over plain HTTP are left to the periodic
+     * re-synchronization.
+     *
+     * @param endpointURL URL of the Docker daemon
+     */
+    public synchronized void subscribe(String endpointURL) {
+        if ((eventListener == null) && StreamingImageBuilder.supports(endpointURL)) {
+            dockerEndpointURL = endpointURL;
+            eventListener = startEventListener();
+        }
+    }
+
+    /**
+     * periodically re-builds the index while no image events are received, so that images built or removed by
+     * other Docker clients become visible. An event subscription which has ended is renewed before the index is
+     * re-built, which covers the events missed in between. While events are received, the index is still re-built
+     * once the maximum interval has passed since its last synchronization, which covers the events dropped by
+     * the Docker daemon.
+     *
+     * @param intervalInMilliseconds        interval between two consecutive synchronizations without events
+     * @param maximumIntervalInMilliseconds maximum interval between two consecutive synchronizations
+     */
+    public synchronized void startPeriodicSynchronization(long intervalInMilliseconds,
+            final long maximumIntervalInMilliseconds) {
+        if (synchronizationExecutor == null) {
+            synchronizationExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "docker-image-index-resync");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            synchronizationExecutor.scheduleWithFixedDelay(new Runnable() {
+                public void run() {
+                    try {
+                        boolean overdue = (System.currentTimeMillis() - lastSynchronizationTime)
+                                >= maximumIntervalInMilliseconds;
+                        if (renewEventSubscription() || overdue) {
+                            synchronize();
+                        }
+                    } catch (CarbonKernelHandlerException exception) {
+                        // already logged, the index keeps its current content until the next attempt
+                    }
+                }
+            }, intervalInMilliseconds, intervalInMilliseconds, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * stops the periodic re-synchronization of the index and the event subscription
+     */
+    public synchronized void stopPeriodicSynchronization() {
+        if (synchronizationExecutor != null) {
+            synchronizationExecutor.shutdownNow();
+            synchronizationExecutor = null;
+        }
+        if (eventListener != null) {
+            eventListener.close();
+            eventListener = null;
+        }
+    }
+
+    /**
+     * re-loads the index entries of a single Docker repository, e.g. after an image of it has been built or tagged
+     *
+     * @param repository name of the Docker repository, e.g. tenant/carbon
+     * @throws CarbonKernelHandlerException
+     */
+    public synchronized void synchronizeRepository(String repository) throws CarbonKernelHandlerException {
+        if (lastSynchronizationTime < 0) {
+            synchronize();
+            return;
+        }
+        try {
+            List<Image> repositoryImages = dockerClient
+                    .listImages(DockerClient.ListImagesParam.create(DOCKER_REPOSITORY_FILTER, repository));
+            String prefix = repository + ":";
+            // the fresh tags are added before the vanished ones are removed, so that readers never find the
+            // repository empty in between
+            Set<String> freshTags = new HashSet<>();
+            for (Image image : repositoryImages) {
+                addImage(image, tagIndex, images, imageTags);
+                if (image.repoTags() != null) {
+                    freshTags.addAll(image.repoTags());
+                }
+            }
+            for (String tag : new ArrayList<>(tagRange(prefix).keySet())) {
+                if (!freshTags.contains(tag)) {
+                    removeTag(tag);
+                }
+            }
+        } catch (Exception exception) {
+            String message = String.format("Could not load the images of the repository %s.", repository);
+            LOG.error(message, exception);
+            throw new CarbonKernelHandlerException(message, exception);
+        }
+    }
+
+    /**
+     * returns the images which have at least one repo tag starting with the specified image identifier
+     *
+     * @param imageIdentifier image identifier in the form creator/artifact:version
+     * @return the images which have at least one repo tag starting with the specified image identifier
+     * @throws CarbonKernelHandlerException
+     */
+    public List<Image> getImages(String imageIdentifier) throws CarbonKernelHandlerException {
+        ensureLoaded();
+        Set<String> imageIds = new LinkedHashSet<>(tagRange(imageIdentifier).values());
+        List<Image> matchingImages = new ArrayList<>();
+        Map<String, Image> currentImages = images;
+        for (String imageId : imageIds) {
+            Image image = currentImages.get(imageId);
+            if (image != null) {
+                matchingImages.add(image);
+            }
+        }
+        return matchingImages;
+    }
+
+    /**
+     * returns the sorted repo tags starting with the specified image identifier
+     *
+     * @param imageIdentifier image identifier in the form creator/artifact:version
+     * @return the sorted repo tags starting with the specified image identifier
+     * @throws CarbonKernelHandlerException
+     */
+    public NavigableSet<String> getTags(String imageIdentifier) throws CarbonKernelHandlerException {
+        ensureLoaded();
+        return ImmutableSortedSet.copyOf(tagRange(imageIdentifier).keySet());
+    }
+
+    /**
+     * returns the identifier of the image the specified repo tag refers to
+     *
+     * @param tag repo tag
+     * @return the identifier of the image the specified repo tag refers to, null if the tag is unknown
+     * @throws CarbonKernelHandlerException
+     */
+    public String getImageId(String tag) throws CarbonKernelHandlerException {
+        ensureLoaded();
+        return tagIndex.get(tag);
+    }
+
+    /**
+     * returns true if the index holds an image with the specified identifier
+     *
+     * @param imageId identifier of the image
+     * @return true if the index holds an image with the specified identifier, else false
+     * @throws CarbonKernelHandlerException
+     */
+    public boolean containsImage(String imageId) throws CarbonKernelHandlerException {
+        ensureLoaded();
+        return images.containsKey(imageId);
+    }
+
+    /**
+     * removes a repo tag from the index, along with its image if no other tag refers to that image
+     *
+     * @param tag repo tag
+     */
+    public synchronized void removeTag(String tag) {
+        String imageId = tagIndex.remove(tag);
+        if (imageId != null) {
+            untag(imageId, tag, images, imageTags);
+        }
+    }
+
+    /**
+     * returns the time of the last complete synchronization of the index
+     *
+     * @return the time of the last complete synchronization of the index in milliseconds, -1 if never synchronized
+     */
+    public long getLastSynchronizationTime() {
+        return lastSynchronizationTime;
+    }
+
+    private void ensureLoaded() throws CarbonKernelHandlerException {
+        if (lastSynchronizationTime < 0) {
+            synchronize();
+        }
+    }
+
+    private ConcurrentNavigableMap<String, String> tagRange(String prefix) {
+        return tagIndex.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    /**
+     * renews the event subscription if it has ended
+     *
+     * @return true if no image events were being received, i.e. the index has to be re-built
+     */
+    private synchronized boolean renewEventSubscription() {
+        if (eventListener == null) {
+            return true;
+        }
+        if (eventListener.isReceiving()) {
+            return false;
+        }
+        eventListener.close();
+        eventListener = startEventListener();
+        return true;
+    }
+
+    private DockerEventListener startEventListener() {
+        DockerEventListener listener = new DockerEventListener(dockerEndpointURL, IMAGE_EVENT_FILTER,
+                new IDockerEventHandler() {
+                    public void onEvent(String status, String reference, JsonNode event) {
+                        invalidate(reference);
+                    }
+                });
+        listener.start();
+        return listener;
+    }
+
+    /**
+     * re-loads the index entries of the repositories an image event refers to, i.e. the repository of the image
+     * name or the repositories of the tags of the image identifier
+     */
+    private void invalidate(String reference) {
+        Set<String> repositories = new HashSet<>();
+        String repository = getRepository(reference);
+        if (repository != null) {
+            repositories.add(repository);
+        } else {
+            for (String imageId : new String[] { reference, IMAGE_ID_PREFIX + reference,
+                    reference.replaceFirst("^" + IMAGE_ID_PREFIX, "") }) {
+                Set<String> tags = imageTags.get(imageId);
+                if (tags != null) {
+                    for (String tag : tags.toArray(new String[tags.size()])) {
+                        String tagRepository = getRepository(tag);
+                        if ((tagRepository != null) && (!tagRepository.equals(UNTAGGED_REPOSITORY))) {
+                            repositories.add(tagRepository);
+                        }
+                    }
+                }
+            }
+        }
+        for (String invalidRepository : repositories) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(String.format("Re-loading the Docker repository %s on an image event of %s.",
+                        invalidRepository, reference));
+            }
+            try {
+                synchronizeRepository(invalidRepository);
+            } catch (CarbonKernelHandlerException exception) {
+                // already logged, corrected by the next event of the repository or the next re-synchronization
+            }
+        }
+    }
+
+    /**
+     * returns the repository of an image name in the form repository:tag, null if the reference is no such name
+     */
+    private static String getRepository(String reference) {
+        int tagSeparator = reference.lastIndexOf(':');
+        if ((tagSeparator <= reference.lastIndexOf('/')) || reference.startsWith(IMAGE_ID_PREFIX)) {
+            return null;
+        }
+        return reference.substring(0, tagSeparator);
+    }
+
+    private static void addImage(Image image, Map<String, String> tags, Map<String, Image> imagesById,
+            Map<String, Set<String>> tagsByImage) {
+        imagesById.put(image.id(), image);
+        Set<String> imageTagSet = tagsByImage.get(image.id());
+        if (imageTagSet == null) {
+            imageTagSet = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+            tagsByImage.put(image.id(), imageTagSet);
+        }
+        if (image.repoTags() != null) {
+            for (String tag : image.repoTags()) {
+                String previousImageId = tags.put(tag, image.id());
+                if ((previousImageId != null) && (!previousImageId.equals(image.id()))) {
+                    // the tag has moved to the image, e.g. by a re-build of the same version
+                    untag(previousImageId, tag, imagesById, tagsByImage);
+                }
+                imageTagSet.add(tag);
+            }
+        }
+    }
+
+    /**
+     * removes a tag from the tags of an image, dropping the image along with its last tag
+     */
+    private static void untag(String imageId, String tag, Map<String, Image> imagesById,
+            Map<String, Set<String>> tagsByImage) {
+        Set<String> imageTagSet = tagsByImage.get(imageId);
+        if (imageTagSet != null) {
+            imageTagSet.remove(tag);
+            if (imageTagSet.isEmpty()) {
+                tagsByImage.remove(imageId);
+                imagesById.remove(imageId);
+            }
+        } else {
+            imagesById.remove(imageId);
+        }
+    }
+}
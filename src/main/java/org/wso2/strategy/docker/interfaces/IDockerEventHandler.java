@@ -0,0 +1,32 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.docker.interfaces;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * a Java interface for handling the events streamed by a Docker daemon
+ */
+public interface IDockerEventHandler {
+    /**
+     * handles an event, on the thread receiving the events
+     *
+     * @param status    the kind of event, e.g. start, tag or untag
+     * @param reference the image name, image identifier or container identifier the event refers to
+     * @param event     the event as received
+     */
+    void onEvent(String status, String reference, JsonNode event);
+}
@@ -31,7 +31,8 @@ public interface IDockerImageHandler {
      * @param creator            name of the person deploying the artifact
      * @param dockerArtifactName name of the artifact to be deployed
      * @param version            Docker image version
-     * @param dockerFilePath     file system path to the Dockerfile to be built
+     * @param dockerFilePath     file system path to the Dockerfile to be built, every file in its directory
+     *                           is sent to the Docker daemon as the build context
      * @return unique identifier of the created Docker image.
      * if at least one of either the creator or artifact name equals null, null is returned
      * @throws CarbonKernelHandlerException
@@ -39,6 +40,29 @@ public interface IDockerImageHandler {
     String buildImage(String creator, String dockerArtifactName, String version, Path dockerFilePath)
             throws CarbonKernelHandlerException;
 
+    /**
+     * tags an existing Docker image with the identifier generated for the creator, artifact name and version,
+     * instead of building an identical image
+     *
+     * @param imageId            identifier of the existing Docker image
+     * @param creator            name of the person deploying the artifact
+     * @param dockerArtifactName name of the artifact to be deployed
+     * @param version            Docker image version
+     * @return unique identifier of the tagged Docker image, null if the existing image no longer exists
+     * @throws CarbonKernelHandlerException
+     */
+    String tagImage(String imageId, String creator, String dockerArtifactName, String version)
+            throws CarbonKernelHandlerException;
+
+    /**
+     * returns the identifier of the Docker image the specified Docker image name refers to
+     *
+     * @param dockerImageName unique identifier of the Docker image, as returned by buildImage
+     * @return the identifier of the Docker image, null if no such image exists
+     * @throws CarbonKernelHandlerException
+     */
+    String getImageId(String dockerImageName) throws CarbonKernelHandlerException;
+
     /**
      * returns a list images from existing Docker images specified by the creator,
      * image name and image version
@@ -53,6 +77,30 @@ public interface IDockerImageHandler {
     List<Image> getExistingImages(String creator, String dockerArtifactName, String version)
             throws CarbonKernelHandlerException;
 
+    /**
+     * returns the sorted repo tags of the existing Docker images specified by the creator,
+     * image name and image version
+     *
+     * @param creator            name of the person deploying the artifact
+     * @param dockerArtifactName name of the artifact to be deployed
+     * @param version            Docker image version
+     * @return the sorted repo tags of the existing Docker images specified by the creator,
+     * image name and image version
+     * @throws CarbonKernelHandlerException
+     */
+    List<String> getExistingImageTags(String creator, String dockerArtifactName, String version)
+            throws CarbonKernelHandlerException;
+
+    /**
+     * blocks until the specified Docker image is available to the Docker daemon or the timeout elapses
+     *
+     * @param dockerImageName       unique identifier of the Docker image, as returned by buildImage
+     * @param timeoutInMilliseconds maximum time to wait for the image
+     * @return true if the image is available, else false
+     * @throws CarbonKernelHandlerException
+     */
+    boolean waitForImage(String dockerImageName, long timeoutInMilliseconds) throws CarbonKernelHandlerException;
+
     /**
      * deletes the specified Docker image
      *
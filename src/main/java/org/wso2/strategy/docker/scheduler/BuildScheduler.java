@@ -0,0 +1,337 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.docker.scheduler;
+
+import com.spotify.docker.client.messages.Image;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.wso2.strategy.docker.interfaces.IDockerImageHandler;
+import org.wso2.strategy.miscellaneous.exception.CarbonKernelHandlerException;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * an IDockerImageHandler Java interface implementation which queues the image builds of another
+ * IDockerImageHandler, so that no more than a configured number of builds reach the Docker daemon at once
+ * <p>
+ * Queued builds are started in priority order and, within a priority, in arrival order. Concurrent requests
+ * to build the same content for the same creator and artifact share a single build, the image built being
+ * tagged with the version of each request sharing it. Every other operation is passed on to the wrapped handler.
+ */
+public class BuildScheduler implements IDockerImageHandler {
+    private final IDockerImageHandler imageHandler;
+    private final ThreadPoolExecutor buildExecutor;
+    private final int queueCapacity;
+    // single-flight key to the build queued or running for it
+    private final ConcurrentMap<String, BuildTask> inFlightBuilds = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicInteger pendingBuilds = new AtomicInteger();
+    private final AtomicLong completedBuildCount = new AtomicLong();
+    private final AtomicLong coalescedBuildCount = new AtomicLong();
+    private final AtomicLong rejectedBuildCount = new AtomicLong();
+    private final AtomicLong totalWaitTime = new AtomicLong();
+    private final AtomicLong maximumWaitTime = new AtomicLong();
+    private final AtomicLong totalBuildTime = new AtomicLong();
+    private final AtomicLong maximumBuildTime = new AtomicLong();
+
+    private static final Logger LOG = LogManager.getLogger(BuildScheduler.class);
+
+    /**
+     * @param imageHandler  handler which performs the image builds
+     * @param concurrency   maximum number of builds run at once
+     * @param queueCapacity maximum number of builds waiting to be run, further builds are rejected
+     */
+    public BuildScheduler(IDockerImageHandler imageHandler, int concurrency, int queueCapacity) {
+        this.imageHandler = imageHandler;
+        this.queueCapacity = queueCapacity;
+        final AtomicInteger threadCount = new AtomicInteger();
+        int threads = Math.max(1, concurrency);
+        buildExecutor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "docker-build-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    public String buildImage(String creator, String dockerArtifactName, String version, Path dockerFilePath)
+            throws CarbonKernelHandlerException {
+        return buildImage(creator, dockerArtifactName, version, dockerFilePath, BuildPriority.INTERACTIVE, null);
+    }
+
+    /**
+     * queues a Docker image build and blocks until it has completed
+     *
+     * @param creator            name of the person deploying the artifact
+     * @param dockerArtifactName name of the artifact to be deployed
+     * @param version            Docker image version
+     * @param dockerFilePath     file system path to the Dockerfile to be built
+     * @param priority           priority of the build
+     * @param contentDigest      digest of the build inputs, used to share one build among identical concurrent
+     *                           requests, null if the build is not to be shared
+     * @return unique identifier of the created Docker image, tagged with the specified version also if the build
+     * was shared with an earlier request
+     * @throws CarbonKernelHandlerException
+     */
+    public String buildImage(final String creator, final String dockerArtifactName, final String version,
+            final Path dockerFilePath, BuildPriority priority, String contentDigest)
+            throws CarbonKernelHandlerException {
+        final String flightKey;
+        if (contentDigest != null) {
+            flightKey = creator + "/" + dockerArtifactName + "@" + contentDigest;
+        } else {
+            flightKey = null;
+        }
+        BuildTask task = new BuildTask(new Callable<String>() {
+            public String call() throws Exception {
+                return imageHandler.buildImage(creator, dockerArtifactName, version, dockerFilePath);
+            }
+        }, version, priority, sequence.getAndIncrement(), flightKey);
+
+        if (flightKey != null) {
+            BuildTask inFlightBuild = inFlightBuilds.get(flightKey);
+            if (inFlightBuild != null) {
+                return join(inFlightBuild, creator, dockerArtifactName, version);
+            }
+        }
+        // the queue capacity is reserved before the build is published, so that no request ever joins a build
+        // which is rejected afterwards
+        if (pendingBuilds.incrementAndGet() > queueCapacity) {
+            pendingBuilds.decrementAndGet();
+            rejectedBuildCount.incrementAndGet();
+            String message = String.format("Could not queue the Docker image build. %d builds are already queued.",
+                    queueCapacity);
+            LOG.error(message);
+            throw new CarbonKernelHandlerException(message);
+        }
+        if (flightKey != null) {
+            BuildTask inFlightBuild = inFlightBuilds.putIfAbsent(flightKey, task);
+            if (inFlightBuild != null) {
+                pendingBuilds.decrementAndGet();
+                return join(inFlightBuild, creator, dockerArtifactName, version);
+            }
+        }
+        buildExecutor.execute(task);
+        return await(task);
+    }
+
+    /**
+     * waits for a build queued by an earlier identical request and returns its image, tagged with the version
+     * of the joining request
+     */
+    private String join(BuildTask inFlightBuild, String creator, String dockerArtifactName, String version)
+            throws CarbonKernelHandlerException {
+        coalescedBuildCount.incrementAndGet();
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(String.format("Sharing the queued Docker image build of %s.", inFlightBuild.flightKey));
+        }
+        String dockerImageName = await(inFlightBuild);
+        if (Objects.equals(version, inFlightBuild.version)) {
+            return dockerImageName;
+        }
+        return tagSharedImage(dockerImageName, creator, dockerArtifactName, version);
+    }
+
+    private String await(BuildTask task) throws CarbonKernelHandlerException {
+        try {
+            return task.get();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            String message = "Interrupted while waiting for a Docker image build.";
+            LOG.error(message, exception);
+            throw new CarbonKernelHandlerException(message, exception);
+        } catch (ExecutionException exception) {
+            if (exception.getCause() instanceof CarbonKernelHandlerException) {
+                throw (CarbonKernelHandlerException) exception.getCause();
+            }
+            String message = "Docker image build failed.";
+            LOG.error(message, exception);
+            throw new CarbonKernelHandlerException(message, exception);
+        }
+    }
+
+    /**
+     * tags the image of a shared build with the version of a request which joined that build, so that the
+     * returned image name carries the version requested
+     */
+    private String tagSharedImage(String dockerImageName, String creator, String dockerArtifactName,
+            String version) throws CarbonKernelHandlerException {
+        String imageId = imageHandler.getImageId(dockerImageName);
+        String taggedImageName = null;
+        if (imageId != null) {
+            taggedImageName = imageHandler.tagImage(imageId, creator, dockerArtifactName, version);
+        }
+        if (taggedImageName == null) {
+            String message = String.format("Could not tag the shared Docker image build %s with the version %s. "
+                    + "The image no longer exists.", dockerImageName, version);
+            LOG.error(message);
+            throw new CarbonKernelHandlerException(message);
+        }
+        return taggedImageName;
+    }
+
+    public String tagImage(String imageId, String creator, String dockerArtifactName, String version)
+            throws CarbonKernelHandlerException {
+        return imageHandler.tagImage(imageId, creator, dockerArtifactName, version);
+    }
+
+    public String getImageId(String dockerImageName) throws CarbonKernelHandlerException {
+        return imageHandler.getImageId(dockerImageName);
+    }
+
+    public List<Image> getExistingImages(String creator, String dockerArtifactName, String version)
+            throws CarbonKernelHandlerException {
+        return imageHandler.getExistingImages(creator, dockerArtifactName, version);
+    }
+
+    public List<String> getExistingImageTags(String creator, String dockerArtifactName, String version)
+            throws CarbonKernelHandlerException {
+        return imageHandler.getExistingImageTags(creator, dockerArtifactName, version);
+    }
+
+    public boolean waitForImage(String dockerImageName, long timeoutInMilliseconds)
+            throws CarbonKernelHandlerException {
+        return imageHandler.waitForImage(dockerImageName, timeoutInMilliseconds);
+    }
+
+    public String removeImage(String creator, String deployedArtifactName, String version)
+            throws CarbonKernelHandlerException {
+        return imageHandler.removeImage(creator, deployedArtifactName, version);
+    }
+
+    /**
+     * returns the number of builds waiting to be run
+     *
+     * @return the number of builds waiting to be run
+     */
+    public int getQueueDepth() {
+        return buildExecutor.getQueue().size();
+    }
+
+    public int getActiveBuildCount() {
+        return buildExecutor.getActiveCount();
+    }
+
+    public long getCompletedBuildCount() {
+        return completedBuildCount.get();
+    }
+
+    public long getCoalescedBuildCount() {
+        return coalescedBuildCount.get();
+    }
+
+    public long getRejectedBuildCount() {
+        return rejectedBuildCount.get();
+    }
+
+    public long getAverageWaitTimeInMilliseconds() {
+        long completed = completedBuildCount.get();
+        return (completed == 0) ? 0 : (totalWaitTime.get() / completed);
+    }
+
+    public long getMaximumWaitTimeInMilliseconds() {
+        return maximumWaitTime.get();
+    }
+
+    public long getAverageBuildTimeInMilliseconds() {
+        long completed = completedBuildCount.get();
+        return (completed == 0) ? 0 : (totalBuildTime.get() / completed);
+    }
+
+    public long getMaximumBuildTimeInMilliseconds() {
+        return maximumBuildTime.get();
+    }
+
+    public String toString() {
+        return String.format("Docker build scheduler [queued] %d [active] %d [completed] %d [coalesced] %d "
+                        + "[rejected] %d [average-wait] %d ms [average-build] %d ms", getQueueDepth(),
+                getActiveBuildCount(), getCompletedBuildCount(), getCoalescedBuildCount(), getRejectedBuildCount(),
+                getAverageWaitTimeInMilliseconds(), getAverageBuildTimeInMilliseconds());
+    }
+
+    private static void updateMaximum(AtomicLong maximum, long value) {
+        long current = maximum.get();
+        while ((value > current) && (!maximum.compareAndSet(current, value))) {
+            current = maximum.get();
+        }
+    }
+
+    /**
+     * a queued build, ordered by its priority and then by its arrival
+     */
+    private class BuildTask extends FutureTask<String> implements Comparable<BuildTask> {
+        // Docker image version of the request which queued the build
+        private final String version;
+        private final BuildPriority priority;
+        private final long sequenceNumber;
+        private final String flightKey;
+        private final long queuedTime = System.currentTimeMillis();
+        private long startTime;
+
+        BuildTask(Callable<String> build, String version, BuildPriority priority, long sequenceNumber,
+                String flightKey) {
+            super(build);
+            this.version = version;
+            this.priority = priority;
+            this.sequenceNumber = sequenceNumber;
+            this.flightKey = flightKey;
+        }
+
+        public void run() {
+            startTime = System.currentTimeMillis();
+            long waitTime = startTime - queuedTime;
+            totalWaitTime.addAndGet(waitTime);
+            updateMaximum(maximumWaitTime, waitTime);
+            pendingBuilds.decrementAndGet();
+            super.run();
+        }
+
+        protected void done() {
+            if (flightKey != null) {
+                inFlightBuilds.remove(flightKey, this);
+            }
+            if (startTime > 0) {
+                long buildTime = System.currentTimeMillis() - startTime;
+                totalBuildTime.addAndGet(buildTime);
+                updateMaximum(maximumBuildTime, buildTime);
+                completedBuildCount.incrementAndGet();
+            }
+        }
+
+        public int compareTo(BuildTask other) {
+            int priorityOrder = priority.compareTo(other.priority);
+            if (priorityOrder != 0) {
+                return priorityOrder;
+            }
+            return Long.compare(sequenceNumber, other.sequenceNumber);
+        }
+    }
+}
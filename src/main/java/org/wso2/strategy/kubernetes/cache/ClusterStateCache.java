@@ -0,0 +1,461 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.kubernetes.cache;
+
+import io.fabric8.kubernetes.api.KubernetesClient;
+import io.fabric8.kubernetes.api.Watcher;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodList;
+import io.fabric8.kubernetes.api.model.ReplicationController;
+import io.fabric8.kubernetes.api.model.ReplicationControllerList;
+import io.fabric8.kubernetes.api.model.Service;
+import io.fabric8.kubernetes.api.model.ServiceList;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.wso2.strategy.kubernetes.cache.interfaces.IClusterStateCache;
+import org.wso2.strategy.kubernetes.components.pod.PodHandler;
+import org.wso2.strategy.kubernetes.components.pod.interfaces.IPodHandler;
+import org.wso2.strategy.kubernetes.configuration.KubernetesClientBuilder;
+import org.wso2.strategy.kubernetes.configuration.KubernetesRestClient;
+import org.wso2.strategy.kubernetes.constants.KubernetesConstantsExtended;
+import org.wso2.strategy.miscellaneous.exception.CarbonKernelHandlerException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * a Java class which implements the IClusterStateCache interface using one initial listing of the
+ * replication controllers, services and pods, kept current by Kubernetes watch streams
+ * <p>
+ * The API server ends the watches after the resync interval. A watch which ends, for that or any other reason,
+ * is re-established by listing and watching all entities again, after a delay which grows while the watches keep
+ * ending shortly after they were opened.
+ */
+public class ClusterStateCache implements IClusterStateCache {
+    private final KubernetesClient client;
+    private final String kubernetesURI;
+    // serves the pod reads which bypass the cache, with the label selector evaluated by the API server
+    private final IPodHandler podHandler;
+    private final boolean strictReadThrough;
+    private final long resyncIntervalInMilliseconds;
+
+    private final Map<String, ReplicationController> replicationControllers = new ConcurrentHashMap<>();
+    private final Map<String, Service> services = new ConcurrentHashMap<>();
+    private final Map<String, Pod> pods = new ConcurrentHashMap<>();
+    // names of entities locally written to, which are read from the API server until their watch event arrives
+    private final Set<String> outdatedReplicationControllers = Collections
+            .newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final Set<String> outdatedServices = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    // time of the last successful listing or watch health check
+    private final AtomicLong lastConfirmationTime = new AtomicLong(-1);
+    private volatile boolean synchronizedState;
+
+    private final List<ResourceWatch<?>> watches = new ArrayList<>();
+    private ScheduledExecutorService resyncExecutor;
+    private ScheduledFuture<?> pendingResynchronization;
+    private long resynchronizationDelay = MINIMUM_RESYNCHRONIZATION_DELAY_IN_MILLISECONDS;
+
+    private static final String REPLICATION_CONTROLLERS_RESOURCE = "replicationcontrollers";
+    private static final String SERVICES_RESOURCE = "services";
+    private static final String PODS_RESOURCE = "pods";
+    private static final long MINIMUM_RESYNCHRONIZATION_DELAY_IN_MILLISECONDS = 1000;
+    // a watch open for at least this long is considered to have ended normally, resetting the delay
+    private static final long HEALTHY_WATCH_DURATION_IN_MILLISECONDS = 60000;
+    private static final long WATCH_HEALTH_CHECK_INTERVAL_IN_MILLISECONDS = 5000;
+    private static final Logger LOG = LogManager.getLogger(ClusterStateCache.class);
+
+    public ClusterStateCache(String kubernetesURI) throws CarbonKernelHandlerException {
+        this(kubernetesURI, Boolean.getBoolean(KubernetesConstantsExtended.CACHE_STRICT_READ_THROUGH_PROPERTY),
+                Long.getLong(KubernetesConstantsExtended.CACHE_RESYNC_INTERVAL_PROPERTY,
+                        KubernetesConstantsExtended.DEFAULT_CACHE_RESYNC_INTERVAL_IN_MILLISECONDS));
+    }
+
+    public ClusterStateCache(String kubernetesURI, boolean strictReadThrough, long resyncIntervalInMilliseconds)
+            throws CarbonKernelHandlerException {
+        client = KubernetesClientBuilder.buildKubernetesClient(kubernetesURI);
+        this.kubernetesURI = kubernetesURI;
+        podHandler = new PodHandler(kubernetesURI);
+        this.strictReadThrough = strictReadThrough;
+        this.resyncIntervalInMilliseconds = resyncIntervalInMilliseconds;
+    }
+
+    public synchronized void start() throws CarbonKernelHandlerException {
+        if (strictReadThrough) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Kubernetes cluster state cache runs in strict read-through mode. Watches not started.");
+            }
+            return;
+        }
+        if (resyncExecutor == null) {
+            resyncExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "cluster-state-cache-resync");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            resyncExecutor.scheduleWithFixedDelay(new Runnable() {
+                public void run() {
+                    checkWatches();
+                }
+            }, WATCH_HEALTH_CHECK_INTERVAL_IN_MILLISECONDS, WATCH_HEALTH_CHECK_INTERVAL_IN_MILLISECONDS,
+                    TimeUnit.MILLISECONDS);
+        }
+        try {
+            synchronize();
+        } catch (CarbonKernelHandlerException exception) {
+            scheduleResynchronization();
+            throw exception;
+        }
+    }
+
+    public synchronized void stop() {
+        if (resyncExecutor != null) {
+            resyncExecutor.shutdownNow();
+            resyncExecutor = null;
+            pendingResynchronization = null;
+        }
+        stopWatches();
+        synchronizedState = false;
+    }
+
+    public ReplicationController getReplicationController(String controllerName, boolean readThrough) {
+        if (controllerName == null) {
+            return null;
+        }
+        if (readThrough || !isSynchronized() || outdatedReplicationControllers.contains(controllerName)) {
+            missCount.incrementAndGet();
+            ReplicationController controller = client.getReplicationController(controllerName);
+            if (isSynchronized()) {
+                outdatedReplicationControllers.remove(controllerName);
+                store(replicationControllers, controllerName, controller);
+            }
+            return controller;
+        }
+        hitCount.incrementAndGet();
+        return replicationControllers.get(controllerName);
+    }
+
+    public Service getService(String serviceId, boolean readThrough) {
+        if (serviceId == null) {
+            return null;
+        }
+        if (readThrough || !isSynchronized() || outdatedServices.contains(serviceId)) {
+            missCount.incrementAndGet();
+            Service service = client.getService(serviceId);
+            if (isSynchronized()) {
+                outdatedServices.remove(serviceId);
+                store(services, serviceId, service);
+            }
+            return service;
+        }
+        hitCount.incrementAndGet();
+        return services.get(serviceId);
+    }
+
+    public List<Service> getServices(boolean readThrough) {
+        if (readThrough || !isSynchronized()) {
+            missCount.incrementAndGet();
+            ServiceList serviceList = client.getServices();
+            if ((serviceList != null) && (serviceList.getItems() != null)) {
+                return serviceList.getItems();
+            } else {
+                return new ArrayList<>();
+            }
+        }
+        hitCount.incrementAndGet();
+        return new ArrayList<>(services.values());
+    }
+
+    public List<Pod> getPods(Map<String, String> selector, boolean readThrough)
+            throws CarbonKernelHandlerException {
+        if (readThrough || !isSynchronized()) {
+            missCount.incrementAndGet();
+            return podHandler.getPods(selector);
+        }
+        hitCount.incrementAndGet();
+        List<Pod> matchingPods = new ArrayList<>();
+        for (Pod pod : pods.values()) {
+            if (matchesSelector(pod, selector)) {
+                matchingPods.add(pod);
+            }
+        }
+        return matchingPods;
+    }
+
+    public void invalidateReplicationController(String controllerName) {
+        if (controllerName != null) {
+            outdatedReplicationControllers.add(controllerName);
+        }
+    }
+
+    public void invalidateService(String serviceId) {
+        if (serviceId != null) {
+            outdatedServices.add(serviceId);
+        }
+    }
+
+    public boolean isSynchronized() {
+        return synchronizedState && !strictReadThrough;
+    }
+
+    public long getStalenessInMilliseconds() {
+        long lastConfirmation = lastConfirmationTime.get();
+        if (lastConfirmation < 0) {
+            return -1;
+        } else {
+            return System.currentTimeMillis() - lastConfirmation;
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * re-lists all replication controllers, services and pods and restarts the watches from
+     * the resource versions of the listings
+     *
+     * @throws CarbonKernelHandlerException
+     */
+    private synchronized void synchronize() throws CarbonKernelHandlerException {
+        stopWatches();
+        synchronizedState = false;
+        try {
+            ReplicationControllerList controllerList = client.getReplicationControllers();
+            replaceAll(replicationControllers, controllerList.getItems());
+            watch(REPLICATION_CONTROLLERS_RESOURCE, controllerList.getMetadata().getResourceVersion(),
+                    ReplicationController.class,
+                    new CacheWatcher<ReplicationController>(replicationControllers, outdatedReplicationControllers));
+
+            ServiceList serviceList = client.getServices();
+            replaceAll(services, serviceList.getItems());
+            watch(SERVICES_RESOURCE, serviceList.getMetadata().getResourceVersion(), Service.class,
+                    new CacheWatcher<Service>(services, outdatedServices));
+
+            PodList podList = client.getPods();
+            replaceAll(pods, podList.getItems());
+            watch(PODS_RESOURCE, podList.getMetadata().getResourceVersion(), Pod.class,
+                    new CacheWatcher<Pod>(pods, null));
+
+            outdatedReplicationControllers.clear();
+            outdatedServices.clear();
+            lastConfirmationTime.set(System.currentTimeMillis());
+            synchronizedState = true;
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(String.format("Synchronized the Kubernetes cluster state cache [replication-controllers] "
+                        + "%d [services] %d [pods] %d", replicationControllers.size(), services.size(), pods.size()));
+            }
+        } catch (Exception exception) {
+            stopWatches();
+            String message = "Could not synchronize the Kubernetes cluster state cache. Reads are served by the "
+                    + "API server.";
+            LOG.error(message, exception);
+            throw new CarbonKernelHandlerException(message, exception);
+        }
+    }
+
+    /**
+     * starts watching a resource collection from the resource version of its listing, the API server ending
+     * the watch after the resync interval
+     */
+    private <T extends HasMetadata> void watch(String resource, String resourceVersion, Class<T> entityType,
+            CacheWatcher<T> watcher) {
+        ResourceWatch<T> watch = new ResourceWatch<>(kubernetesURI,
+                KubernetesRestClient.getResourcePath(KubernetesConstantsExtended.DEFAULT_NAMESPACE, resource),
+                resourceVersion, Math.max(1, resyncIntervalInMilliseconds / 1000),
+                Integer.getInteger(KubernetesConstantsExtended.CLIENT_CONNECT_TIMEOUT_PROPERTY,
+                        KubernetesConstantsExtended.DEFAULT_CLIENT_CONNECT_TIMEOUT_IN_MILLISECONDS), entityType,
+                watcher, new ResourceWatch.CloseListener() {
+            public void watchClosed(long openDurationInMilliseconds) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug(String.format("Kubernetes watch closed after %d ms. Re-listing the cluster state.",
+                            openDurationInMilliseconds));
+                }
+                onWatchEnded(openDurationInMilliseconds);
+            }
+        });
+        watches.add(watch);
+        watch.start();
+    }
+
+    private void resynchronize() {
+        synchronized (this) {
+            pendingResynchronization = null;
+        }
+        try {
+            synchronize();
+        } catch (CarbonKernelHandlerException exception) {
+            // already logged, reads fall back to the API server until the next attempt succeeds
+            scheduleResynchronization();
+        }
+    }
+
+    /**
+     * re-lists and re-watches the cluster state after a watch has ended or reported an error
+     */
+    private synchronized void onWatchEnded(long openDurationInMilliseconds) {
+        synchronizedState = false;
+        if (openDurationInMilliseconds >= HEALTHY_WATCH_DURATION_IN_MILLISECONDS) {
+            resynchronizationDelay = MINIMUM_RESYNCHRONIZATION_DELAY_IN_MILLISECONDS;
+        }
+        scheduleResynchronization();
+    }
+
+    /**
+     * schedules a single re-synchronization after the current delay, which is doubled up to the resync interval
+     * for the next one
+     */
+    private synchronized void scheduleResynchronization() {
+        if ((resyncExecutor == null) || resyncExecutor.isShutdown() || (pendingResynchronization != null)) {
+            return;
+        }
+        pendingResynchronization = resyncExecutor.schedule(new Runnable() {
+            public void run() {
+                resynchronize();
+            }
+        }, resynchronizationDelay, TimeUnit.MILLISECONDS);
+        resynchronizationDelay = Math.max(MINIMUM_RESYNCHRONIZATION_DELAY_IN_MILLISECONDS,
+                Math.min(resyncIntervalInMilliseconds, resynchronizationDelay * 2));
+    }
+
+    /**
+     * confirms the cache to be current while all of its watches are receiving, and re-synchronizes it if a
+     * watch has ended unnoticed
+     */
+    private synchronized void checkWatches() {
+        if (!synchronizedState) {
+            scheduleResynchronization();
+            return;
+        }
+        for (ResourceWatch<?> watch : watches) {
+            if (!watch.isReceiving()) {
+                // still connecting, or ended without its close being reported yet
+                return;
+            }
+        }
+        lastConfirmationTime.set(System.currentTimeMillis());
+    }
+
+    private void stopWatches() {
+        for (ResourceWatch<?> watch : watches) {
+            watch.close();
+        }
+        watches.clear();
+    }
+
+    private static <T extends HasMetadata> void replaceAll(Map<String, T> cache, List<T> entities) {
+        cache.clear();
+        if (entities != null) {
+            for (T entity : entities) {
+                cache.put(entity.getMetadata().getName(), entity);
+            }
+        }
+    }
+
+    /**
+     * stores an entity read from the API server, unless the cache already holds a newer version of it
+     */
+    private static <T extends HasMetadata> void store(Map<String, T> cache, String name, T entity) {
+        if (entity == null) {
+            cache.remove(name);
+        } else {
+            T current = cache.get(name);
+            if ((current == null) || (compareResourceVersions(entity, current) >= 0)) {
+                cache.put(name, entity);
+            }
+        }
+    }
+
+    private static int compareResourceVersions(HasMetadata first, HasMetadata second) {
+        try {
+            long firstVersion = Long.parseLong(first.getMetadata().getResourceVersion());
+            long secondVersion = Long.parseLong(second.getMetadata().getResourceVersion());
+            return (firstVersion < secondVersion) ? -1 : ((firstVersion == secondVersion) ? 0 : 1);
+        } catch (NumberFormatException exception) {
+            // resource versions are opaque to clients, the most recently read entity is assumed to be newer
+            return 1;
+        }
+    }
+
+    private static boolean matchesSelector(Pod pod, Map<String, String> selector) {
+        if ((selector == null) || (selector.isEmpty())) {
+            return true;
+        }
+        Map<String, String> labels = pod.getMetadata().getLabels();
+        if (labels == null) {
+            return false;
+        }
+        for (Map.Entry<String, String> selectorEntry : selector.entrySet()) {
+            if (!selectorEntry.getValue().equals(labels.get(selectorEntry.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * applies the watch events of one Kubernetes entity kind to its cache
+     */
+    private class CacheWatcher<T extends HasMetadata> implements Watcher<T> {
+        private final Map<String, T> cache;
+        private final Set<String> outdatedEntities;
+
+        CacheWatcher(Map<String, T> cache, Set<String> outdatedEntities) {
+            this.cache = cache;
+            this.outdatedEntities = outdatedEntities;
+        }
+
+        public void eventReceived(Action action, T entity) {
+            if (action == Action.ERROR) {
+                LOG.warn("Kubernetes watch reported an error. Reads are served by the API server until the next "
+                        + "cluster state cache synchronization.");
+                onWatchEnded(0);
+                return;
+            }
+            if ((entity == null) || (entity.getMetadata() == null)) {
+                return;
+            }
+            String name = entity.getMetadata().getName();
+            if (action == Action.DELETED) {
+                cache.remove(name);
+            } else {
+                cache.put(name, entity);
+            }
+            if (outdatedEntities != null) {
+                outdatedEntities.remove(name);
+            }
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.kubernetes.cache;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.fabric8.kubernetes.api.Watcher;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+
+/**
+ * a watch of one Kubernetes resource collection over a plain HTTP stream, passing each event to a watcher on a
+ * background thread until the stream ends or the watch is closed
+ * <p>
+ * The API server ends the watch after the requested timeout, and a connection on which nothing has been read
+ * for somewhat longer is considered dead. Either way the close listener is told, unless the watch was closed
+ * locally, so that the watch can be re-established.
+ */
+class ResourceWatch<T extends HasMetadata> implements Closeable {
+    private final String watchURL;
+    private final Class<T> entityType;
+    private final Watcher<T> watcher;
+    private final CloseListener closeListener;
+    private final int connectTimeoutInMilliseconds;
+    private final int readTimeoutInMilliseconds;
+    private final ObjectMapper objectMapper;
+    // guards the connection against a concurrent close, so that no connection is opened after the close
+    private final Object connectionLock = new Object();
+    private HttpURLConnection connection;
+    private boolean closed;
+    // true while the event stream is open, i.e. no event is being missed
+    private volatile boolean receiving;
+    private volatile long openTime = -1;
+
+    private static final String API_PATH = "/api/v1";
+    private static final String CHARSET = "UTF-8";
+    // time the read timeout exceeds the watch timeout by, as the API server ends the watch itself
+    private static final int READ_TIMEOUT_MARGIN_IN_MILLISECONDS = 30000;
+    private static final Logger LOG = LogManager.getLogger(ResourceWatch.class);
+
+    /**
+     * @param kubernetesURI                URI of the Kubernetes API server
+     * @param resourcePath                 API path of the resource collection relative to /api/v1
+     * @param resourceVersion              resource version of the listing the watch continues from
+     * @param timeoutInSeconds             time after which the API server ends the watch
+     * @param connectTimeoutInMilliseconds timeout of connecting to the API server
+     * @param entityType                   type of the watched entities
+     * @param watcher                      watcher of each event
+     * @param closeListener                notified when the watch ends other than by a call to close
+     */
+    ResourceWatch(String kubernetesURI, String resourcePath, String resourceVersion, long timeoutInSeconds,
+            int connectTimeoutInMilliseconds, Class<T> entityType, Watcher<T> watcher, CloseListener closeListener) {
+        String endpoint = kubernetesURI;
+        if (endpoint.endsWith("/")) {
+            endpoint = endpoint.substring(0, endpoint.length() - 1);
+        }
+        String url = endpoint + API_PATH + resourcePath + "?watch=true&timeoutSeconds=" + timeoutInSeconds;
+        if (resourceVersion != null) {
+            try {
+                url += "&resourceVersion=" + URLEncoder.encode(resourceVersion, CHARSET);
+            } catch (IOException exception) {
+                // UTF-8 is always supported
+                throw new IllegalStateException(exception);
+            }
+        }
+        watchURL = url;
+        this.entityType = entityType;
+        this.watcher = watcher;
+        this.closeListener = closeListener;
+        this.connectTimeoutInMilliseconds = connectTimeoutInMilliseconds;
+        readTimeoutInMilliseconds = (int) Math.min(Integer.MAX_VALUE,
+                (timeoutInSeconds * 1000) + READ_TIMEOUT_MARGIN_IN_MILLISECONDS);
+        objectMapper = new ObjectMapper();
+        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+
+    /**
+     * starts receiving the events on a daemon thread
+     */
+    void start() {
+        Thread watchThread = new Thread(new Runnable() {
+            public void run() {
+                receive();
+            }
+        }, "kubernetes-watch-" + entityType.getSimpleName());
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+
+    /**
+     * returns true while the events are being received, i.e. from the time the event stream is open until it
+     * ends or the watch is closed
+     *
+     * @return true while the events are being received, else false
+     */
+    boolean isReceiving() {
+        return receiving;
+    }
+
+    private void receive() {
+        boolean closedLocally = false;
+        try {
+            HttpURLConnection watchConnection = (HttpURLConnection) new URL(watchURL).openConnection();
+            watchConnection.setConnectTimeout(connectTimeoutInMilliseconds);
+            watchConnection.setReadTimeout(readTimeoutInMilliseconds);
+            synchronized (connectionLock) {
+                if (closed) {
+                    return;
+                }
+                connection = watchConnection;
+            }
+            try (InputStream events = watchConnection.getInputStream()) {
+                openTime = System.currentTimeMillis();
+                receiving = true;
+                MappingIterator<JsonNode> eventIterator = objectMapper.reader(JsonNode.class).readValues(events);
+                while ((!isClosed()) && eventIterator.hasNextValue()) {
+                    handle(eventIterator.nextValue());
+                }
+            }
+        } catch (IOException exception) {
+            if (!isClosed()) {
+                LOG.warn(String.format("Kubernetes watch of %s ended.", entityType.getSimpleName()), exception);
+            }
+        } catch (RuntimeException exception) {
+            LOG.error(String.format("Kubernetes watch of %s ended as an event could not be handled.",
+                    entityType.getSimpleName()), exception);
+        } finally {
+            receiving = false;
+            closedLocally = isClosed();
+        }
+        if (!closedLocally) {
+            long openDuration = (openTime < 0) ? 0 : (System.currentTimeMillis() - openTime);
+            closeListener.watchClosed(openDuration);
+        }
+    }
+
+    private void handle(JsonNode event) throws IOException {
+        Watcher.Action action;
+        try {
+            action = Watcher.Action.valueOf(event.path("type").asText());
+        } catch (IllegalArgumentException exception) {
+            LOG.warn(String.format("Ignoring the Kubernetes watch event of the unknown type %s.",
+                    event.path("type").asText()));
+            return;
+        }
+        T entity = null;
+        // the object of an error event is a status rather than a watched entity
+        if ((action != Watcher.Action.ERROR) && event.has("object")) {
+            entity = objectMapper.treeToValue(event.get("object"), entityType);
+        }
+        watcher.eventReceived(action, entity);
+    }
+
+    private boolean isClosed() {
+        synchronized (connectionLock) {
+            return closed;
+        }
+    }
+
+    public void close() {
+        HttpURLConnection currentConnection;
+        synchronized (connectionLock) {
+            closed = true;
+            currentConnection = connection;
+        }
+        receiving = false;
+        if (currentConnection != null) {
+            currentConnection.disconnect();
+        }
+    }
+
+    /**
+     * notified when a watch ends other than by a call to close
+     */
+    interface CloseListener {
+        /**
+         * @param openDurationInMilliseconds time the event stream had been open for, 0 if it never opened
+         */
+        void watchClosed(long openDurationInMilliseconds);
+    }
+}
@@ -0,0 +1,124 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.kubernetes.cache.interfaces;
+
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.ReplicationController;
+import io.fabric8.kubernetes.api.model.Service;
+import org.wso2.strategy.miscellaneous.exception.CarbonKernelHandlerException;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A Java interface for an in-memory view of the Kubernetes cluster state, which serves
+ * replication controller, service and pod reads without an API server round trip
+ */
+public interface IClusterStateCache {
+    /**
+     * fills the cache with an initial listing and starts watching for subsequent changes
+     *
+     * @throws CarbonKernelHandlerException
+     */
+    void start() throws CarbonKernelHandlerException;
+
+    /**
+     * stops the watches and the periodic re-synchronization of the cache
+     */
+    void stop();
+
+    /**
+     * returns a replication controller corresponding to the controller name
+     *
+     * @param controllerName name of the replication controller
+     * @param readThrough    if true, the API server is queried directly regardless of the cache state
+     * @return a replication controller corresponding to the controller name, null if there is no such controller
+     */
+    ReplicationController getReplicationController(String controllerName, boolean readThrough);
+
+    /**
+     * returns a service corresponding to the service id
+     *
+     * @param serviceId   id of the service
+     * @param readThrough if true, the API server is queried directly regardless of the cache state
+     * @return a service corresponding to the service id, null if there is no such service
+     */
+    Service getService(String serviceId, boolean readThrough);
+
+    /**
+     * returns the services currently known to the cache
+     *
+     * @param readThrough if true, the API server is queried directly regardless of the cache state
+     * @return the services currently known to the cache
+     */
+    List<Service> getServices(boolean readThrough);
+
+    /**
+     * returns the pods whose labels match all of the specified selector entries
+     *
+     * @param selector    label selector of the pods
+     * @param readThrough if true, the API server is queried directly regardless of the cache state
+     * @return the pods whose labels match all of the specified selector entries
+     * @throws CarbonKernelHandlerException
+     */
+    List<Pod> getPods(Map<String, String> selector, boolean readThrough) throws CarbonKernelHandlerException;
+
+    /**
+     * marks the cached replication controller as outdated after a local write, so that the next read of it
+     * goes to the API server until the corresponding watch event has been received
+     *
+     * @param controllerName name of the replication controller
+     */
+    void invalidateReplicationController(String controllerName);
+
+    /**
+     * marks the cached service as outdated after a local write, so that the next read of it
+     * goes to the API server until the corresponding watch event has been received
+     *
+     * @param serviceId id of the service
+     */
+    void invalidateService(String serviceId);
+
+    /**
+     * returns true if the cache has been filled and its watches are active, else false
+     *
+     * @return true if the cache has been filled and its watches are active, else false
+     */
+    boolean isSynchronized();
+
+    /**
+     * returns the time elapsed since the cache was last confirmed to be current, by a listing or by a health check
+     * finding all of its watches open
+     *
+     * @return the time elapsed since the cache was last confirmed to be current, in milliseconds, -1 if the cache
+     * has never been synchronized
+     */
+    long getStalenessInMilliseconds();
+
+    /**
+     * returns the number of reads served from the cache
+     *
+     * @return the number of reads served from the cache
+     */
+    long getHitCount();
+
+    /**
+     * returns the number of reads which had to query the API server
+     *
+     * @return the number of reads which had to query the API server
+     */
+    long getMissCount();
+}
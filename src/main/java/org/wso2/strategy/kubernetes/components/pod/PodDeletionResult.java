@@ -0,0 +1,69 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.kubernetes.components.pod;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * a Java class which aggregates the outcomes of a set of concurrent pod deletions
+ */
+public class PodDeletionResult {
+    private final List<String> deletedPods = new ArrayList<>();
+    // pod name to the reason of its deletion failure
+    private final Map<String, String> failedPods = new LinkedHashMap<>();
+    private long elapsedTimeInMilliseconds;
+
+    synchronized void addDeletedPod(String podName) {
+        deletedPods.add(podName);
+    }
+
+    synchronized void addFailedPod(String podName, String reason) {
+        failedPods.put(podName, reason);
+    }
+
+    synchronized boolean isRecorded(String podName) {
+        return deletedPods.contains(podName) || failedPods.containsKey(podName);
+    }
+
+    void setElapsedTimeInMilliseconds(long elapsedTimeInMilliseconds) {
+        this.elapsedTimeInMilliseconds = elapsedTimeInMilliseconds;
+    }
+
+    public synchronized List<String> getDeletedPods() {
+        return Collections.unmodifiableList(new ArrayList<>(deletedPods));
+    }
+
+    public synchronized Map<String, String> getFailedPods() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(failedPods));
+    }
+
+    public synchronized boolean isSuccessful() {
+        return failedPods.isEmpty();
+    }
+
+    public long getElapsedTimeInMilliseconds() {
+        return elapsedTimeInMilliseconds;
+    }
+
+    public synchronized String toString() {
+        return String.format("Pod deletion [deleted] %d [failed] %d [elapsed] %d ms %s", deletedPods.size(),
+                failedPods.size(), elapsedTimeInMilliseconds, failedPods.isEmpty() ? "" : failedPods.toString());
+    }
+}
@@ -0,0 +1,116 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.kubernetes.components.pod;
+
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodList;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.wso2.strategy.kubernetes.components.pod.interfaces.IPodHandler;
+import org.wso2.strategy.kubernetes.configuration.KubernetesClientBuilder;
+import org.wso2.strategy.kubernetes.configuration.KubernetesRestClient;
+import org.wso2.strategy.kubernetes.constants.KubernetesConstantsExtended;
+import org.wso2.strategy.miscellaneous.exception.CarbonKernelHandlerException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A Java class which implements the IPodHandler interface
+ */
+public class PodHandler implements IPodHandler {
+    private final KubernetesRestClient client;
+    private final String namespace;
+    private final ExecutorService deletionExecutor;
+
+    private static final String PODS_RESOURCE = "pods";
+    private static final Logger LOG = LogManager.getLogger(PodHandler.class);
+
+    public PodHandler(String kubernetesURI) throws CarbonKernelHandlerException {
+        this(KubernetesClientBuilder.buildRestClient(kubernetesURI), KubernetesConstantsExtended.DEFAULT_NAMESPACE,
+                Integer.getInteger(KubernetesConstantsExtended.POD_DELETION_PARALLELISM_PROPERTY,
+                        KubernetesConstantsExtended.DEFAULT_POD_DELETION_PARALLELISM));
+    }
+
+    public PodHandler(KubernetesRestClient client, String namespace, int parallelism) {
+        this.client = client;
+        this.namespace = namespace;
+        final AtomicInteger threadCount = new AtomicInteger();
+        deletionExecutor = Executors.newFixedThreadPool(Math.max(1, parallelism), new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "pod-deletion-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    public List<Pod> getPods(Map<String, String> selector) throws CarbonKernelHandlerException {
+        String path = KubernetesRestClient.getResourcePath(namespace, PODS_RESOURCE);
+        if ((selector != null) && (!selector.isEmpty())) {
+            path += "?labelSelector=" + KubernetesRestClient.toLabelSelector(selector);
+        }
+        PodList podList = client.get(path, PodList.class);
+        if ((podList != null) && (podList.getItems() != null)) {
+            return podList.getItems();
+        } else {
+            return new ArrayList<>();
+        }
+    }
+
+    public PodDeletionResult deletePods(List<Pod> pods) {
+        final long startTime = System.currentTimeMillis();
+        final PodDeletionResult result = new PodDeletionResult();
+        List<Callable<Void>> deletions = new ArrayList<>();
+        for (final Pod pod : pods) {
+            deletions.add(new Callable<Void>() {
+                public Void call() {
+                    String podName = pod.getMetadata().getName();
+                    try {
+                        client.delete(KubernetesRestClient.getResourcePath(namespace, PODS_RESOURCE) + "/" + podName);
+                        result.addDeletedPod(podName);
+                    } catch (CarbonKernelHandlerException exception) {
+                        LOG.error(String.format("Could not delete the pod[pod-identifier]: %s", podName), exception);
+                        result.addFailedPod(podName, exception.getMessage());
+                    }
+                    return null;
+                }
+            });
+        }
+        try {
+            deletionExecutor.invokeAll(deletions);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            LOG.error("Interrupted while deleting pods.", exception);
+            for (Pod pod : pods) {
+                if (!result.isRecorded(pod.getMetadata().getName())) {
+                    result.addFailedPod(pod.getMetadata().getName(), "Interrupted before deletion.");
+                }
+            }
+        }
+        result.setElapsedTimeInMilliseconds(System.currentTimeMillis() - startTime);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(result.toString());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,45 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.kubernetes.components.pod.interfaces;
+
+import io.fabric8.kubernetes.api.model.Pod;
+import org.wso2.strategy.kubernetes.components.pod.PodDeletionResult;
+import org.wso2.strategy.miscellaneous.exception.CarbonKernelHandlerException;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A Java interface for pod handling operations
+ */
+public interface IPodHandler {
+    /**
+     * returns the pods whose labels match all of the selector entries, filtered by the API server
+     *
+     * @param selector label selector of the pods
+     * @return the pods whose labels match all of the selector entries
+     * @throws CarbonKernelHandlerException
+     */
+    List<Pod> getPods(Map<String, String> selector) throws CarbonKernelHandlerException;
+
+    /**
+     * deletes the specified pods concurrently, with a bounded number of deletions in flight
+     *
+     * @param pods pods to be deleted
+     * @return the aggregated outcome of the individual pod deletions
+     */
+    PodDeletionResult deletePods(List<Pod> pods);
+}
@@ -0,0 +1,158 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.kubernetes.components.replication_controller;
+
+import io.fabric8.kubernetes.api.model.ReplicationController;
+import org.wso2.strategy.kubernetes.components.replication_controller.interfaces.IReplicationControllerHandler;
+import org.wso2.strategy.miscellaneous.exception.CarbonKernelHandlerException;
+import org.wso2.strategy.miscellaneous.metrics.MetricsRegistry;
+
+/**
+ * an IReplicationControllerHandler which records the latency and outcome of each call to the replication
+ * controller handler it decorates, as the total stage of the replication-controller.method-name operation
+ */
+public class InstrumentedReplicationControllerHandler implements IReplicationControllerHandler {
+    private final IReplicationControllerHandler replicationControllerHandler;
+    private final MetricsRegistry metrics;
+
+    private static final String CREATE_REPLICATION_CONTROLLER = "replication-controller.createReplicationController";
+    private static final String GET_REPLICATION_CONTROLLER = "replication-controller.getReplicationController";
+    private static final String GET_NO_OF_REPLICAS = "replication-controller.getNoOfReplicas";
+    private static final String UPDATE_NO_OF_REPLICAS = "replication-controller.updateNoOfReplicas";
+    private static final String UPDATE_IMAGE = "replication-controller.updateImage";
+    private static final String ROLLING_UPDATE = "replication-controller.rollingUpdate";
+    private static final String DELETE_REPLICA_PODS = "replication-controller.deleteReplicaPods";
+    private static final String DELETE_REPLICATION_CONTROLLER = "replication-controller.deleteReplicationController";
+
+    public InstrumentedReplicationControllerHandler(IReplicationControllerHandler replicationControllerHandler,
+            MetricsRegistry metrics) {
+        this.replicationControllerHandler = replicationControllerHandler;
+        this.metrics = metrics;
+    }
+
+    public void createReplicationController(String controllerName, String podLabel, String dockerImageName,
+            int numberOfReplicas) throws CarbonKernelHandlerException {
+        long startTime = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            replicationControllerHandler
+                    .createReplicationController(controllerName, podLabel, dockerImageName, numberOfReplicas);
+            succeeded = true;
+        } finally {
+            metrics.getOperation(CREATE_REPLICATION_CONTROLLER).getTotal().record(startTime, succeeded);
+        }
+    }
+
+    public ReplicationController getReplicationController(String controllerName) {
+        long startTime = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            ReplicationController replicationController = replicationControllerHandler
+                    .getReplicationController(controllerName);
+            succeeded = true;
+            return replicationController;
+        } finally {
+            metrics.getOperation(GET_REPLICATION_CONTROLLER).getTotal().record(startTime, succeeded);
+        }
+    }
+
+    public ReplicationController getReplicationController(String controllerName, boolean readThrough) {
+        long startTime = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            ReplicationController replicationController = replicationControllerHandler
+                    .getReplicationController(controllerName, readThrough);
+            succeeded = true;
+            return replicationController;
+        } finally {
+            metrics.getOperation(GET_REPLICATION_CONTROLLER).getTotal().record(startTime, succeeded);
+        }
+    }
+
+    public int getNoOfReplicas(String controllerName) throws CarbonKernelHandlerException {
+        long startTime = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            int replicas = replicationControllerHandler.getNoOfReplicas(controllerName);
+            succeeded = true;
+            return replicas;
+        } finally {
+            metrics.getOperation(GET_NO_OF_REPLICAS).getTotal().record(startTime, succeeded);
+        }
+    }
+
+    public void updateNoOfReplicas(String controllerName, int newReplicas) throws CarbonKernelHandlerException {
+        long startTime = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            replicationControllerHandler.updateNoOfReplicas(controllerName, newReplicas);
+            succeeded = true;
+        } finally {
+            metrics.getOperation(UPDATE_NO_OF_REPLICAS).getTotal().record(startTime, succeeded);
+        }
+    }
+
+    public void updateImage(String controllerName, String dockerImage) throws CarbonKernelHandlerException {
+        long startTime = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            replicationControllerHandler.updateImage(controllerName, dockerImage);
+            succeeded = true;
+        } finally {
+            metrics.getOperation(UPDATE_IMAGE).getTotal().record(startTime, succeeded);
+        }
+    }
+
+    public RollingUpdateReport rollingUpdate(String controllerName, String dockerImageName,
+            RollingUpdateConfiguration configuration) throws CarbonKernelHandlerException {
+        long startTime = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            RollingUpdateReport report = replicationControllerHandler
+                    .rollingUpdate(controllerName, dockerImageName, configuration);
+            succeeded = true;
+            return report;
+        } finally {
+            metrics.getOperation(ROLLING_UPDATE).getTotal().record(startTime, succeeded);
+        }
+    }
+
+    public void deleteReplicaPods(String controllerName, String creator, String podArtifactName)
+            throws CarbonKernelHandlerException {
+        long startTime = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            replicationControllerHandler.deleteReplicaPods(controllerName, creator, podArtifactName);
+            succeeded = true;
+        } finally {
+            metrics.getOperation(DELETE_REPLICA_PODS).getTotal().record(startTime, succeeded);
+        }
+    }
+
+    public ReplicationController deleteReplicationController(String controllerName)
+            throws CarbonKernelHandlerException {
+        long startTime = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            ReplicationController replicationController = replicationControllerHandler
+                    .deleteReplicationController(controllerName);
+            succeeded = true;
+            return replicationController;
+        } finally {
+            metrics.getOperation(DELETE_REPLICATION_CONTROLLER).getTotal().record(startTime, succeeded);
+        }
+    }
+}
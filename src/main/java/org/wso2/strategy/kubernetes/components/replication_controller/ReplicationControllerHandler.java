@@ -17,10 +17,13 @@ package org.wso2.strategy.kubernetes.components.replication_controller;
 
 import io.fabric8.kubernetes.api.KubernetesClient;
 import io.fabric8.kubernetes.api.KubernetesFactory;
-import io.fabric8.kubernetes.api.KubernetesHelper;
 import io.fabric8.kubernetes.api.model.*;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.wso2.strategy.kubernetes.cache.interfaces.IClusterStateCache;
+import org.wso2.strategy.kubernetes.components.pod.PodDeletionResult;
+import org.wso2.strategy.kubernetes.components.pod.PodHandler;
+import org.wso2.strategy.kubernetes.components.pod.interfaces.IPodHandler;
 import org.wso2.strategy.kubernetes.components.replication_controller.interfaces.IReplicationControllerHandler;
 import org.wso2.strategy.kubernetes.configuration.KubernetesClientBuilder;
 import org.wso2.strategy.kubernetes.constants.KubernetesConstantsExtended;
@@ -36,17 +39,34 @@ import java.util.Map;
  */
 public class ReplicationControllerHandler implements IReplicationControllerHandler {
     private final KubernetesClient client;
+    // cluster state cache serving the reads, null if every read has to query the API server
+    private final IClusterStateCache clusterStateCache;
+    // changes the replica count and the image with single PATCH requests
+    private final ReplicationControllerPatcher patcher;
+    private final RollingUpdater rollingUpdater;
+    private final IPodHandler podHandler;
     private static final Logger LOG = LogManager.getLogger(ReplicationControllerHandler.class);
 
     public ReplicationControllerHandler(String kubernetesURI) throws CarbonKernelHandlerException {
-        client = KubernetesClientBuilder.buildDockerClient(kubernetesURI);
+        this(kubernetesURI, null);
+    }
+
+    public ReplicationControllerHandler(String kubernetesURI, IClusterStateCache clusterStateCache)
+            throws CarbonKernelHandlerException {
+        client = KubernetesClientBuilder.buildKubernetesClient(kubernetesURI);
+        this.clusterStateCache = clusterStateCache;
+        patcher = new ReplicationControllerPatcher(KubernetesClientBuilder.buildRestClient(kubernetesURI), client,
+                clusterStateCache, Integer.getInteger(KubernetesConstantsExtended.UPDATE_MAX_ATTEMPTS_PROPERTY,
+                        KubernetesConstantsExtended.DEFAULT_UPDATE_MAX_ATTEMPTS));
+        podHandler = new PodHandler(kubernetesURI);
+        rollingUpdater = new RollingUpdater(client, podHandler, clusterStateCache, patcher);
     }
 
     public void createReplicationController(String controllerName, String podLabel, String dockerImageName,
             int numberOfReplicas) throws CarbonKernelHandlerException {
         try {
             if ((controllerName != null) && (podLabel != null) && (dockerImageName != null)) {
-                ReplicationController controller = client.getReplicationController(controllerName);
+                ReplicationController controller = readReplicationController(controllerName, false);
                 if (controller == null) {
                     if (LOG.isDebugEnabled()) {
                         String message = String.format("Creating Kubernetes replication controller"
@@ -54,46 +74,16 @@ public class ReplicationControllerHandler implements IReplicationControllerHandl
                                 controllerName, podLabel, dockerImageName);
                         LOG.debug(message);
                     }
-                    ReplicationController replicationController = new ReplicationController();
-
-                    replicationController.setApiVersion(ReplicationController.ApiVersion.V_1);
-                    replicationController.setKind(KubernetesConstantsExtended.REPLICATION_CONTROLLER_COMPONENT_KIND);
-
-                    ObjectMeta metadata = new ObjectMeta();
-                    metadata.setName(controllerName);
-                    replicationController.setMetadata(metadata);
-
-                    ReplicationControllerSpec replicationControllerSpec = new ReplicationControllerSpec();
-                    replicationControllerSpec.setReplicas(numberOfReplicas);
-
-                    PodTemplateSpec podTemplateSpec = new PodTemplateSpec();
-                    PodSpec podSpec = new PodSpec();
-
-                    List<Container> podContainers = new ArrayList<>();
-                    Container container = new Container();
-                    container.setImage(dockerImageName);
-                    container.setName(podLabel);
-                    podContainers.add(container);
-                    podSpec.setContainers(podContainers);
-
-                    podTemplateSpec.setSpec(podSpec);
-
-                    Map<String, String> selectors = new HashMap<>();
-                    selectors.put(KubernetesConstantsExtended.LABEL_NAME, podLabel);
-
-                    ObjectMeta tempMeta = new ObjectMeta();
-                    tempMeta.setLabels(selectors);
-                    podTemplateSpec.setMetadata(tempMeta);
-
-                    replicationControllerSpec.setTemplate(podTemplateSpec);
-                    replicationControllerSpec.setSelector(selectors);
-                    replicationController.setSpec(replicationControllerSpec);
+                    ReplicationController replicationController = buildReplicationController(controllerName,
+                            podLabel, podLabel, dockerImageName, numberOfReplicas,
+                            RollingUpdater.generateDeploymentLabelValue(dockerImageName));
 
                     /*
                         creates a replication controller using the specified
                         replication controller entity
                      */
                     client.createReplicationController(replicationController, "default");
+                    invalidate(controllerName);
                     if (LOG.isDebugEnabled()) {
                         String message = String.format("Created Kubernetes replication controller"
                                         + " [controller-name] %s [pod-label] %s " + "[pod-Docker-image-name] %s",
@@ -116,8 +106,12 @@ public class ReplicationControllerHandler implements IReplicationControllerHandl
     }
 
     public ReplicationController getReplicationController(String controllerName) {
+        return getReplicationController(controllerName, false);
+    }
+
+    public ReplicationController getReplicationController(String controllerName, boolean readThrough) {
         if (controllerName != null) {
-            return client.getReplicationController(controllerName);
+            return readReplicationController(controllerName, readThrough);
         } else {
             return null;
         }
@@ -125,7 +119,7 @@ public class ReplicationControllerHandler implements IReplicationControllerHandl
 
     public int getNoOfReplicas(String controllerName) throws CarbonKernelHandlerException {
         if (controllerName != null) {
-            ReplicationController replicationController = client.getReplicationController(controllerName);
+            ReplicationController replicationController = readReplicationController(controllerName, false);
             if (replicationController != null) {
                 return replicationController.getSpec().getReplicas();
             } else {
@@ -139,15 +133,8 @@ public class ReplicationControllerHandler implements IReplicationControllerHandl
 
     public void updateNoOfReplicas(String controllerName, int newReplicas) throws CarbonKernelHandlerException {
         if (controllerName != null) {
-            ReplicationController replicationController = client.getReplicationController(controllerName);
             try {
-                if (replicationController != null) {
-                    ReplicationControllerSpec spec = replicationController.getSpec();
-                    if (spec.getReplicas() != newReplicas) {
-                        spec.setReplicas(newReplicas);
-                        client.updateReplicationController(controllerName, replicationController);
-                    }
-                }
+                patcher.patchReplicas(controllerName, newReplicas);
             } catch (Exception exception) {
                 String message = String
                         .format("Could not update the replication controller[rc-identifier]: " + "%s", controllerName);
@@ -162,18 +149,9 @@ public class ReplicationControllerHandler implements IReplicationControllerHandl
 
     public void updateImage(String controllerName, String dockerImageName) throws CarbonKernelHandlerException {
         if (controllerName != null) {
-            ReplicationController replicationController = client.getReplicationController(controllerName);
-            final int imageIndex = 0;
             try {
-                if (replicationController != null) {
-                    if (dockerImageName != null) {
-                        List<Container> podContainers = replicationController.getSpec().getTemplate().getSpec()
-                                .getContainers();
-                        if ((podContainers != null) && (podContainers.size() > 0)) {
-                            podContainers.get(imageIndex).setImage(dockerImageName);
-                        }
-                        client.updateReplicationController(controllerName, replicationController);
-                    }
+                if (dockerImageName != null) {
+                    patcher.patchImage(controllerName, dockerImageName);
                 }
             } catch (Exception exception) {
                 String message = String
@@ -187,6 +165,20 @@ public class ReplicationControllerHandler implements IReplicationControllerHandl
         }
     }
 
+    public RollingUpdateReport rollingUpdate(String controllerName, String dockerImageName,
+            RollingUpdateConfiguration configuration) throws CarbonKernelHandlerException {
+        if ((controllerName != null) && (dockerImageName != null)) {
+            RollingUpdateReport report = rollingUpdater.update(controllerName, dockerImageName, configuration);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(report.toString());
+            }
+            return report;
+        } else {
+            String message = "Replication controller id and Docker Image name cannot be null.";
+            throw new CarbonKernelHandlerException(message);
+        }
+    }
+
     public void deleteReplicaPods(String controllerName, String creator, String podArtifactName)
             throws CarbonKernelHandlerException {
         try {
@@ -196,10 +188,12 @@ public class ReplicationControllerHandler implements IReplicationControllerHandl
                     if (LOG.isDebugEnabled()) {
                         LOG.debug("Deleting Kubernetes replica pods.");
                     }
-                    List<Pod> replicaPods = KubernetesHelper
-                            .getPodsForReplicationController(controller, client.getPods().getItems());
-                    for (Pod pod : replicaPods) {
-                        client.deletePod(pod);
+                    List<Pod> replicaPods = podHandler.getPods(controller.getSpec().getSelector());
+                    PodDeletionResult result = podHandler.deletePods(replicaPods);
+                    if (!result.isSuccessful()) {
+                        String message = String.format("Could not delete all replica pods. %s", result);
+                        LOG.error(message);
+                        throw new CarbonKernelHandlerException(message);
                     }
                     if (LOG.isDebugEnabled()) {
                         LOG.debug("Deleted Kubernetes replica pods.");
@@ -224,7 +218,7 @@ public class ReplicationControllerHandler implements IReplicationControllerHandl
     public ReplicationController deleteReplicationController(String controllerName)
             throws CarbonKernelHandlerException {
         if (controllerName != null) {
-            ReplicationController replicationController = client.getReplicationController(controllerName);
+            ReplicationController replicationController = readReplicationController(controllerName, false);
             try {
                 if (replicationController != null) {
                     if (LOG.isDebugEnabled()) {
@@ -232,6 +226,7 @@ public class ReplicationControllerHandler implements IReplicationControllerHandl
                                 controllerName));
                     }
                     client.deleteReplicationController(controllerName);
+                    invalidate(controllerName);
                     if (LOG.isDebugEnabled()) {
                         LOG.debug(String.format("Deleted Kubernetes replication controller" + " [rc-name] %s",
                                 controllerName));
@@ -249,4 +244,69 @@ public class ReplicationControllerHandler implements IReplicationControllerHandl
             throw new CarbonKernelHandlerException(message);
         }
     }
+
+    /**
+     * returns a replication controller entity whose pods are selected by both their name and deployment labels
+     *
+     * @param controllerName   name of the replication controller
+     * @param podLabel         value for pod name label
+     * @param containerName    name of the pod container
+     * @param dockerImageName  the name of the Docker image to be deployed
+     * @param numberOfReplicas number of pod replicas to be created
+     * @param deployment       value for pod deployment label
+     * @return a replication controller entity
+     */
+    static ReplicationController buildReplicationController(String controllerName, String podLabel,
+            String containerName, String dockerImageName, int numberOfReplicas, String deployment) {
+        ReplicationController replicationController = new ReplicationController();
+
+        replicationController.setApiVersion(ReplicationController.ApiVersion.V_1);
+        replicationController.setKind(KubernetesConstantsExtended.REPLICATION_CONTROLLER_COMPONENT_KIND);
+
+        ObjectMeta metadata = new ObjectMeta();
+        metadata.setName(controllerName);
+        replicationController.setMetadata(metadata);
+
+        ReplicationControllerSpec replicationControllerSpec = new ReplicationControllerSpec();
+        replicationControllerSpec.setReplicas(numberOfReplicas);
+
+        PodTemplateSpec podTemplateSpec = new PodTemplateSpec();
+        PodSpec podSpec = new PodSpec();
+
+        List<Container> podContainers = new ArrayList<>();
+        Container container = new Container();
+        container.setImage(dockerImageName);
+        container.setName(containerName);
+        podContainers.add(container);
+        podSpec.setContainers(podContainers);
+
+        podTemplateSpec.setSpec(podSpec);
+
+        Map<String, String> selectors = new HashMap<>();
+        selectors.put(KubernetesConstantsExtended.LABEL_NAME, podLabel);
+        selectors.put(KubernetesConstantsExtended.DEPLOYMENT_LABEL, deployment);
+
+        ObjectMeta tempMeta = new ObjectMeta();
+        tempMeta.setLabels(selectors);
+        podTemplateSpec.setMetadata(tempMeta);
+
+        replicationControllerSpec.setTemplate(podTemplateSpec);
+        replicationControllerSpec.setSelector(selectors);
+        replicationController.setSpec(replicationControllerSpec);
+        return replicationController;
+    }
+
+    private ReplicationController readReplicationController(String controllerName, boolean readThrough) {
+        if (clusterStateCache != null) {
+            return clusterStateCache.getReplicationController(controllerName, readThrough);
+        } else {
+            return client.getReplicationController(controllerName);
+        }
+    }
+
+    private void invalidate(String controllerName) {
+        if (clusterStateCache != null) {
+            clusterStateCache.invalidateReplicationController(controllerName);
+        }
+    }
 }
@@ -0,0 +1,234 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.kubernetes.components.replication_controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.fabric8.kubernetes.api.KubernetesClient;
+import io.fabric8.kubernetes.api.model.Container;
+import io.fabric8.kubernetes.api.model.ReplicationController;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.wso2.strategy.kubernetes.cache.interfaces.IClusterStateCache;
+import org.wso2.strategy.kubernetes.configuration.KubernetesRestClient;
+import org.wso2.strategy.kubernetes.constants.KubernetesConstantsExtended;
+import org.wso2.strategy.miscellaneous.exception.CarbonKernelHandlerException;
+import org.wso2.strategy.miscellaneous.exception.ResourceConflictException;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * a Java class which changes single fields of replication controllers with strategic merge PATCH requests,
+ * instead of writing back whole entities
+ * <p>
+ * A patch is made conditional on the resource version of the replication controller held by the cluster state
+ * cache, so that in the common case a change takes a single round trip. If the replication controller has been
+ * changed since, the API server rejects the patch, the latest version is read and the patch is retried a bounded
+ * number of times.
+ */
+class ReplicationControllerPatcher {
+    private final KubernetesRestClient restClient;
+    private final KubernetesClient client;
+    // cluster state cache providing the resource versions, null if patches are sent unconditionally
+    private final IClusterStateCache clusterStateCache;
+    private final int maximumAttempts;
+    private final AtomicLong conflictCount = new AtomicLong();
+
+    private static final String REPLICATION_CONTROLLERS_RESOURCE = "replicationcontrollers";
+    private static final Logger LOG = LogManager.getLogger(ReplicationControllerPatcher.class);
+
+    /**
+     * @param restClient        client sending the patches
+     * @param client            client reading the replication controllers if no cluster state cache is used
+     * @param clusterStateCache cluster state cache providing the resource versions, null if none is used
+     * @param maximumAttempts   maximum number of times a patch is sent if it conflicts with concurrent changes
+     */
+    ReplicationControllerPatcher(KubernetesRestClient restClient, KubernetesClient client,
+            IClusterStateCache clusterStateCache, int maximumAttempts) {
+        this.restClient = restClient;
+        this.client = client;
+        this.clusterStateCache = clusterStateCache;
+        this.maximumAttempts = Math.max(1, maximumAttempts);
+    }
+
+    /**
+     * sets the number of replicas of the specified replication controller
+     *
+     * @param controllerName name of the replication controller
+     * @param replicas       number of replicas
+     * @return true if the replication controller was patched, false if it does not exist
+     * @throws CarbonKernelHandlerException
+     */
+    boolean patchReplicas(String controllerName, final int replicas) throws CarbonKernelHandlerException {
+        // without a cluster state cache the patch is sent unconditionally, as it only changes the replica count
+        return patch(controllerName, read(controllerName, false), new PatchBuilder() {
+            public ObjectNode build(ReplicationController current) {
+                ObjectNode patch = JsonNodeFactory.instance.objectNode();
+                patch.with("spec").put("replicas", replicas);
+                return patch;
+            }
+        });
+    }
+
+    /**
+     * sets the Docker image of the pod container of the specified replication controller
+     *
+     * @param controllerName  name of the replication controller
+     * @param dockerImageName name of the Docker image
+     * @return true if the replication controller was patched, false if it or its pod container does not exist
+     * @throws CarbonKernelHandlerException
+     */
+    boolean patchImage(String controllerName, final String dockerImageName) throws CarbonKernelHandlerException {
+        // the container list is merged by container name, hence the current entity is always required
+        ReplicationController controller = read(controllerName, false);
+        if ((controller == null) && (clusterStateCache == null)) {
+            controller = read(controllerName, true);
+        }
+        return patch(controllerName, controller, new PatchBuilder() {
+            public ObjectNode build(ReplicationController current) {
+                List<Container> containers = current.getSpec().getTemplate().getSpec().getContainers();
+                if ((containers == null) || (containers.isEmpty())) {
+                    return null;
+                }
+                final int imageIndex = 0;
+                ObjectNode patch = JsonNodeFactory.instance.objectNode();
+                ObjectNode container = patch.with("spec").with("template").with("spec").withArray("containers")
+                        .addObject();
+                container.put("name", containers.get(imageIndex).getName());
+                container.put("image", dockerImageName);
+                return patch;
+            }
+        });
+    }
+
+    /**
+     * points the specified replication controller at the pods of another deployment, by setting the deployment
+     * label of its selector and pod template, the Docker image of its pod container and its number of replicas
+     * in a single patch
+     *
+     * @param controllerName  name of the replication controller
+     * @param deployment      deployment label value of the pods to be selected
+     * @param dockerImageName name of the Docker image run by the pods
+     * @param replicas        number of replicas
+     * @return true if the replication controller was patched, false if it or its pod container does not exist
+     * @throws CarbonKernelHandlerException
+     */
+    boolean patchDeployment(String controllerName, final String deployment, final String dockerImageName,
+            final int replicas) throws CarbonKernelHandlerException {
+        // the container list is merged by container name, hence the current entity is always required
+        ReplicationController controller = read(controllerName, true);
+        return patch(controllerName, controller, new PatchBuilder() {
+            public ObjectNode build(ReplicationController current) {
+                if (current == null) {
+                    return null;
+                }
+                List<Container> containers = current.getSpec().getTemplate().getSpec().getContainers();
+                if ((containers == null) || (containers.isEmpty())) {
+                    return null;
+                }
+                final int imageIndex = 0;
+                ObjectNode patch = JsonNodeFactory.instance.objectNode();
+                ObjectNode spec = patch.with("spec");
+                spec.put("replicas", replicas);
+                spec.with("selector").put(KubernetesConstantsExtended.DEPLOYMENT_LABEL, deployment);
+                ObjectNode template = spec.with("template");
+                template.with("metadata").with("labels").put(KubernetesConstantsExtended.DEPLOYMENT_LABEL, deployment);
+                ObjectNode container = template.with("spec").withArray("containers").addObject();
+                container.put("name", containers.get(imageIndex).getName());
+                container.put("image", dockerImageName);
+                return patch;
+            }
+        });
+    }
+
+    long getConflictCount() {
+        return conflictCount.get();
+    }
+
+    /**
+     * sends the patch built for the current replication controller, conditional on its resource version,
+     * re-reading it and rebuilding the patch after each conflict
+     *
+     * @param current current replication controller, null if the patch is to be sent unconditionally
+     */
+    private boolean patch(String controllerName, ReplicationController current, PatchBuilder patchBuilder)
+            throws CarbonKernelHandlerException {
+        String path = KubernetesRestClient.getResourcePath(KubernetesConstantsExtended.DEFAULT_NAMESPACE,
+                REPLICATION_CONTROLLERS_RESOURCE) + "/" + controllerName;
+        for (int attempt = 1; ; attempt++) {
+            if ((current == null) && (clusterStateCache != null)) {
+                return false;
+            }
+            ObjectNode patch = patchBuilder.build(current);
+            if (patch == null) {
+                return false;
+            }
+            if (current != null) {
+                patch.with("metadata").put("resourceVersion", current.getMetadata().getResourceVersion());
+            }
+            try {
+                JsonNode patched = restClient.patch(path, patch, JsonNode.class);
+                invalidate(controllerName);
+                return patched != null;
+            } catch (ResourceConflictException exception) {
+                conflictCount.incrementAndGet();
+                if (attempt >= maximumAttempts) {
+                    String message = String.format("Could not patch the replication controller[rc-identifier]: %s "
+                            + "after %d conflicting attempts.", controllerName, attempt);
+                    LOG.error(message, exception);
+                    throw new CarbonKernelHandlerException(message, exception);
+                }
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug(String.format("Patch of [rc-name] %s conflicted, retrying with its latest version.",
+                            controllerName));
+                }
+                current = read(controllerName, true);
+                if (current == null) {
+                    return false;
+                }
+            }
+        }
+    }
+
+    private ReplicationController read(String controllerName, boolean readThrough) {
+        if (clusterStateCache != null) {
+            return clusterStateCache.getReplicationController(controllerName, readThrough);
+        } else if (readThrough) {
+            return client.getReplicationController(controllerName);
+        } else {
+            return null;
+        }
+    }
+
+    private void invalidate(String controllerName) {
+        if (clusterStateCache != null) {
+            clusterStateCache.invalidateReplicationController(controllerName);
+        }
+    }
+
+    /**
+     * builds the patch of a replication controller from its current state
+     */
+    private interface PatchBuilder {
+        /**
+         * @param current current replication controller, null if unknown
+         * @return the patch, null if the replication controller cannot be patched
+         */
+        ObjectNode build(ReplicationController current);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.kubernetes.components.replication_controller;
+
+import org.wso2.strategy.kubernetes.constants.KubernetesConstantsExtended;
+
+/**
+ * a Java class which holds the settings of a surge-based rolling update
+ */
+public class RollingUpdateConfiguration {
+    // number of pods which may be created above the desired number of replicas
+    private final int maxSurge;
+    // number of pods which may be unavailable below the desired number of replicas
+    private final int maxUnavailable;
+    private final long readinessTimeoutInMilliseconds;
+    private final long pollIntervalInMilliseconds;
+
+    public RollingUpdateConfiguration(int maxSurge, int maxUnavailable, long readinessTimeoutInMilliseconds,
+            long pollIntervalInMilliseconds) {
+        final int minimumSurge = 1;
+        this.maxUnavailable = Math.max(0, maxUnavailable);
+        // at least one of the limits has to be positive for the update to progress
+        if ((maxSurge <= 0) && (this.maxUnavailable == 0)) {
+            this.maxSurge = minimumSurge;
+        } else {
+            this.maxSurge = Math.max(0, maxSurge);
+        }
+        this.readinessTimeoutInMilliseconds = readinessTimeoutInMilliseconds;
+        this.pollIntervalInMilliseconds = pollIntervalInMilliseconds;
+    }
+
+    /**
+     * returns a rolling update configuration read from the Java system properties, using the defaults
+     * for the properties which are not set
+     *
+     * @return a rolling update configuration read from the Java system properties
+     */
+    public static RollingUpdateConfiguration fromSystemProperties() {
+        return new RollingUpdateConfiguration(
+                Integer.getInteger(KubernetesConstantsExtended.ROLLING_UPDATE_MAX_SURGE_PROPERTY,
+                        KubernetesConstantsExtended.DEFAULT_ROLLING_UPDATE_MAX_SURGE),
+                Integer.getInteger(KubernetesConstantsExtended.ROLLING_UPDATE_MAX_UNAVAILABLE_PROPERTY,
+                        KubernetesConstantsExtended.DEFAULT_ROLLING_UPDATE_MAX_UNAVAILABLE),
+                Long.getLong(KubernetesConstantsExtended.ROLLING_UPDATE_READINESS_TIMEOUT_PROPERTY,
+                        KubernetesConstantsExtended.DEFAULT_ROLLING_UPDATE_READINESS_TIMEOUT_IN_MILLISECONDS),
+                Long.getLong(KubernetesConstantsExtended.ROLLING_UPDATE_POLL_INTERVAL_PROPERTY,
+                        KubernetesConstantsExtended.DEFAULT_ROLLING_UPDATE_POLL_INTERVAL_IN_MILLISECONDS));
+    }
+
+    public int getMaxSurge() {
+        return maxSurge;
+    }
+
+    public int getMaxUnavailable() {
+        return maxUnavailable;
+    }
+
+    public long getReadinessTimeoutInMilliseconds() {
+        return readinessTimeoutInMilliseconds;
+    }
+
+    public long getPollIntervalInMilliseconds() {
+        return pollIntervalInMilliseconds;
+    }
+
+    public String toString() {
+        return String.format("[max-surge] %d [max-unavailable] %d [readiness-timeout] %d ms", maxSurge,
+                maxUnavailable, readinessTimeoutInMilliseconds);
+    }
+}
@@ -0,0 +1,123 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.kubernetes.components.replication_controller;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * a Java class which records the progress and the per-batch timings of a rolling update
+ */
+public class RollingUpdateReport {
+    private final String controllerName;
+    private final String dockerImageName;
+    private final List<Batch> batches = new ArrayList<>();
+    private long totalTimeInMilliseconds;
+
+    public RollingUpdateReport(String controllerName, String dockerImageName) {
+        this.controllerName = controllerName;
+        this.dockerImageName = dockerImageName;
+    }
+
+    void addBatch(int newReplicas, int oldReplicas, long scaleUpTime, long readinessTime, long scaleDownTime) {
+        batches.add(new Batch(batches.size() + 1, newReplicas, oldReplicas, scaleUpTime, readinessTime,
+                scaleDownTime));
+    }
+
+    void setTotalTimeInMilliseconds(long totalTimeInMilliseconds) {
+        this.totalTimeInMilliseconds = totalTimeInMilliseconds;
+    }
+
+    public String getControllerName() {
+        return controllerName;
+    }
+
+    public String getDockerImageName() {
+        return dockerImageName;
+    }
+
+    public List<Batch> getBatches() {
+        return Collections.unmodifiableList(batches);
+    }
+
+    public long getTotalTimeInMilliseconds() {
+        return totalTimeInMilliseconds;
+    }
+
+    public String toString() {
+        StringBuilder report = new StringBuilder(String.format(
+                "Rolling update [rc-name] %s [docker-image] %s [batches] %d [total] %d ms", controllerName,
+                dockerImageName, batches.size(), totalTimeInMilliseconds));
+        for (Batch batch : batches) {
+            report.append("\n").append(batch);
+        }
+        return report.toString();
+    }
+
+    /**
+     * timings of a single batch, i.e. one scale up of the new replication controller followed by
+     * one scale down of the old replication controller
+     */
+    public static class Batch {
+        private final int number;
+        private final int newReplicas;
+        private final int oldReplicas;
+        private final long scaleUpTimeInMilliseconds;
+        private final long readinessTimeInMilliseconds;
+        private final long scaleDownTimeInMilliseconds;
+
+        Batch(int number, int newReplicas, int oldReplicas, long scaleUpTimeInMilliseconds,
+                long readinessTimeInMilliseconds, long scaleDownTimeInMilliseconds) {
+            this.number = number;
+            this.newReplicas = newReplicas;
+            this.oldReplicas = oldReplicas;
+            this.scaleUpTimeInMilliseconds = scaleUpTimeInMilliseconds;
+            this.readinessTimeInMilliseconds = readinessTimeInMilliseconds;
+            this.scaleDownTimeInMilliseconds = scaleDownTimeInMilliseconds;
+        }
+
+        public int getNumber() {
+            return number;
+        }
+
+        public int getNewReplicas() {
+            return newReplicas;
+        }
+
+        public int getOldReplicas() {
+            return oldReplicas;
+        }
+
+        public long getScaleUpTimeInMilliseconds() {
+            return scaleUpTimeInMilliseconds;
+        }
+
+        public long getReadinessTimeInMilliseconds() {
+            return readinessTimeInMilliseconds;
+        }
+
+        public long getScaleDownTimeInMilliseconds() {
+            return scaleDownTimeInMilliseconds;
+        }
+
+        public String toString() {
+            return String.format("  batch %d [new-replicas] %d [old-replicas] %d [scale-up] %d ms [readiness] %d ms "
+                            + "[scale-down] %d ms", number, newReplicas, oldReplicas, scaleUpTimeInMilliseconds,
+                    readinessTimeInMilliseconds, scaleDownTimeInMilliseconds);
+        }
+    }
+}
@@ -0,0 +1,365 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.kubernetes.components.replication_controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.hash.Hashing;
+import io.fabric8.kubernetes.api.KubernetesClient;
+import io.fabric8.kubernetes.api.model.Container;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodCondition;
+import io.fabric8.kubernetes.api.model.ReplicationController;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.wso2.strategy.kubernetes.cache.interfaces.IClusterStateCache;
+import org.wso2.strategy.kubernetes.components.pod.interfaces.IPodHandler;
+import org.wso2.strategy.kubernetes.constants.KubernetesConstantsExtended;
+import org.wso2.strategy.miscellaneous.exception.CarbonKernelHandlerException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * performs a surge-based rolling update of a replication controller
+ * <p>
+ * A new replication controller running the new Docker image is scaled up, while the old one is scaled down
+ * in batches bounded by the maximum surge and the maximum number of unavailable pods. Each batch is gated on
+ * the readiness of the new pods. The pods of both controllers carry the same name label, so that the
+ * Kubernetes service keeps routing to both of them, and are told apart by the deployment label.
+ */
+class RollingUpdater {
+    private final KubernetesClient client;
+    // lists the pods with a label selector evaluated by the API server, when no cache is available
+    private final IPodHandler podHandler;
+    // cluster state cache serving the pod reads, null if every read has to query the API server
+    private final IClusterStateCache clusterStateCache;
+    private final ReplicationControllerPatcher patcher;
+
+    private static final String POD_RUNNING_PHASE = "Running";
+    private static final String POD_READY_CONDITION = "Ready";
+    private static final String CONDITION_TRUE_STATUS = "True";
+    // hexadecimal digits of the SHA-256 digest used, 128 bits which keep within the 63 character label value limit
+    private static final int DEPLOYMENT_LABEL_LENGTH = 32;
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final Logger LOG = LogManager.getLogger(RollingUpdater.class);
+
+    RollingUpdater(KubernetesClient client, IPodHandler podHandler, IClusterStateCache clusterStateCache,
+            ReplicationControllerPatcher patcher) {
+        this.client = client;
+        this.podHandler = podHandler;
+        this.clusterStateCache = clusterStateCache;
+        this.patcher = patcher;
+    }
+
+    /**
+     * returns the deployment label value of the pods running the specified Docker image
+     *
+     * @param dockerImageName name of the Docker image
+     * @return the deployment label value of the pods running the specified Docker image
+     */
+    static String generateDeploymentLabelValue(String dockerImageName) {
+        return Hashing.sha256().hashString(dockerImageName, StandardCharsets.UTF_8).toString()
+                .substring(0, DEPLOYMENT_LABEL_LENGTH);
+    }
+
+    RollingUpdateReport update(String controllerName, String dockerImageName,
+            RollingUpdateConfiguration configuration) throws CarbonKernelHandlerException {
+        final long startTime = System.currentTimeMillis();
+        RollingUpdateReport report = new RollingUpdateReport(controllerName, dockerImageName);
+        ReplicationController oldController = readReplicationController(controllerName);
+        if (oldController == null) {
+            String message = String.format("Could not update the replication controller[rc-identifier]: %s. "
+                    + "No such replication controller.", controllerName);
+            LOG.error(message);
+            throw new CarbonKernelHandlerException(message);
+        }
+        Container oldContainer = getContainer(oldController);
+        if (dockerImageName.equals(oldContainer.getImage())) {
+            report.setTotalTimeInMilliseconds(System.currentTimeMillis() - startTime);
+            return report;
+        }
+
+        final int desiredReplicas = oldController.getSpec().getReplicas();
+        final String podLabel = oldController.getSpec().getSelector().get(KubernetesConstantsExtended.LABEL_NAME);
+        final String newDeployment = generateDeploymentLabelValue(dockerImageName);
+        final String newControllerName = controllerName + "-" + newDeployment;
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(String.format("Rolling update of [rc-name] %s to [docker-image] %s %s", controllerName,
+                    dockerImageName, configuration));
+        }
+        try {
+            adoptLegacyPods(oldController);
+            removeLeftoverController(newControllerName, controllerName);
+            client.createReplicationController(ReplicationControllerHandler
+                    .buildReplicationController(newControllerName, podLabel, oldContainer.getName(),
+                            dockerImageName, 0, newDeployment), KubernetesConstantsExtended.DEFAULT_NAMESPACE);
+            invalidate(newControllerName);
+        } catch (Exception exception) {
+            String message = String.format("Could not create the replication controller[rc-identifier]: %s",
+                    newControllerName);
+            LOG.error(message, exception);
+            throw new CarbonKernelHandlerException(message, exception);
+        }
+
+        Map<String, String> newSelector = new HashMap<>();
+        newSelector.put(KubernetesConstantsExtended.LABEL_NAME, podLabel);
+        newSelector.put(KubernetesConstantsExtended.DEPLOYMENT_LABEL, newDeployment);
+        int newReplicas = 0;
+        int oldReplicas = desiredReplicas;
+        try {
+            while ((newReplicas < desiredReplicas) || (oldReplicas > 0)) {
+                long batchStartTime = System.currentTimeMillis();
+                int newTarget = Math.min(desiredReplicas, desiredReplicas + configuration.getMaxSurge() - oldReplicas);
+                if (newTarget > newReplicas) {
+                    scale(newControllerName, newTarget);
+                    newReplicas = newTarget;
+                }
+                long scaleUpTime = System.currentTimeMillis();
+                int readyReplicas = waitForReadyPods(newSelector, newReplicas, configuration);
+                long readinessTime = System.currentTimeMillis();
+
+                int minimumAvailable = desiredReplicas - configuration.getMaxUnavailable();
+                int oldTarget = Math.max(0, Math.min(oldReplicas, minimumAvailable - readyReplicas));
+                if (oldTarget < oldReplicas) {
+                    scale(controllerName, oldTarget);
+                    oldReplicas = oldTarget;
+                }
+                long batchEndTime = System.currentTimeMillis();
+                report.addBatch(newReplicas, oldReplicas, scaleUpTime - batchStartTime, readinessTime - scaleUpTime,
+                        batchEndTime - readinessTime);
+            }
+            replaceController(controllerName, newControllerName, podLabel, oldContainer.getName(), dockerImageName,
+                    desiredReplicas, newDeployment);
+        } catch (CarbonKernelHandlerException exception) {
+            abort(controllerName, newControllerName, desiredReplicas);
+            throw exception;
+        }
+        report.setTotalTimeInMilliseconds(System.currentTimeMillis() - startTime);
+        return report;
+    }
+
+    /**
+     * adds the deployment label to the selector of a replication controller created without one and to its pods,
+     * so that its selector does not overlap with the selector of the new replication controller
+     * <p>
+     * The entities are edited as copies, since the ones read may be shared by the cluster state cache.
+     */
+    private void adoptLegacyPods(ReplicationController cachedController) throws Exception {
+        Map<String, String> selector = cachedController.getSpec().getSelector();
+        if (selector.containsKey(KubernetesConstantsExtended.DEPLOYMENT_LABEL)) {
+            return;
+        }
+        String deployment = generateDeploymentLabelValue(getContainer(cachedController).getImage());
+        for (Pod cachedPod : getPods(selector, true)) {
+            Pod pod = copy(cachedPod, Pod.class);
+            Map<String, String> labels = new HashMap<>(pod.getMetadata().getLabels());
+            labels.put(KubernetesConstantsExtended.DEPLOYMENT_LABEL, deployment);
+            pod.getMetadata().setLabels(labels);
+            client.updatePod(pod.getMetadata().getName(), pod);
+        }
+        Map<String, String> newSelector = new HashMap<>(selector);
+        newSelector.put(KubernetesConstantsExtended.DEPLOYMENT_LABEL, deployment);
+        ReplicationController controller = copy(cachedController, ReplicationController.class);
+        controller.getSpec().setSelector(newSelector);
+        Map<String, String> templateLabels = new HashMap<>(newSelector);
+        controller.getSpec().getTemplate().getMetadata().setLabels(templateLabels);
+        client.updateReplicationController(controller.getMetadata().getName(), controller);
+        invalidate(controller.getMetadata().getName());
+    }
+
+    /**
+     * blocks until the specified number of pods matching the selector are running and ready
+     *
+     * @return the number of ready pods
+     */
+    private int waitForReadyPods(Map<String, String> selector, int expectedReplicas,
+            RollingUpdateConfiguration configuration) throws CarbonKernelHandlerException {
+        long deadline = System.currentTimeMillis() + configuration.getReadinessTimeoutInMilliseconds();
+        try {
+            while (true) {
+                int readyReplicas = 0;
+                for (Pod pod : getPods(selector, false)) {
+                    if (isReady(pod)) {
+                        readyReplicas++;
+                    }
+                }
+                if (readyReplicas >= expectedReplicas) {
+                    return readyReplicas;
+                }
+                if (System.currentTimeMillis() >= deadline) {
+                    String message = String.format("Only %d of %d replica pods became ready within %d ms.",
+                            readyReplicas, expectedReplicas, configuration.getReadinessTimeoutInMilliseconds());
+                    LOG.error(message);
+                    throw new CarbonKernelHandlerException(message);
+                }
+                Thread.sleep(configuration.getPollIntervalInMilliseconds());
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            String message = "Interrupted while waiting for the replica pods to become ready.";
+            LOG.error(message, exception);
+            throw new CarbonKernelHandlerException(message, exception);
+        }
+    }
+
+    /**
+     * hands the pods of the new replication controller over to a replication controller with the original name,
+     * so that the controller can still be looked up by its component identifier
+     * <p>
+     * The original replication controller is repointed at the new pods in place, rather than deleted and
+     * recreated, so that a failure at any point leaves a replication controller with the original name behind.
+     * It is only recreated if it has been removed by another client in the meantime.
+     */
+    private void replaceController(String controllerName, String newControllerName, String podLabel,
+            String containerName, String dockerImageName, int replicas, String deployment)
+            throws CarbonKernelHandlerException {
+        try {
+            if (!patcher.patchDeployment(controllerName, deployment, dockerImageName, replicas)) {
+                LOG.warn(String.format("Replication controller[rc-identifier]: %s disappeared during its rolling "
+                        + "update, recreating it.", controllerName));
+                client.createReplicationController(ReplicationControllerHandler
+                                .buildReplicationController(controllerName, podLabel, containerName, dockerImageName,
+                                        replicas, deployment),
+                        KubernetesConstantsExtended.DEFAULT_NAMESPACE);
+                invalidate(controllerName);
+            }
+        } catch (CarbonKernelHandlerException exception) {
+            throw exception;
+        } catch (Exception exception) {
+            String message = String
+                    .format("Could not replace the replication controller[rc-identifier]: %s", controllerName);
+            LOG.error(message, exception);
+            throw new CarbonKernelHandlerException(message, exception);
+        }
+        // deleting a replication controller through the API leaves its pods running, now also selected by the
+        // repointed original replication controller, hence the update has completed even if the deletion fails
+        try {
+            client.deleteReplicationController(newControllerName);
+            invalidate(newControllerName);
+        } catch (Exception exception) {
+            LOG.warn(String.format("Could not delete the replication controller[rc-identifier]: %s. It is removed "
+                    + "by the next rolling update to the same Docker image.", newControllerName), exception);
+        }
+    }
+
+    /**
+     * removes a replication controller left behind by an interrupted rolling update to the same Docker image,
+     * which would otherwise block the creation of the new replication controller
+     * <p>
+     * Its pods are kept if the original replication controller already selects them, and scaled down otherwise.
+     */
+    private void removeLeftoverController(String newControllerName, String controllerName) throws Exception {
+        ReplicationController leftover = readReplicationController(newControllerName);
+        if (leftover == null) {
+            return;
+        }
+        LOG.warn(String.format("Removing the replication controller[rc-identifier]: %s left behind by an "
+                + "interrupted rolling update.", newControllerName));
+        ReplicationController original = readReplicationController(controllerName);
+        if ((original == null) || (!leftover.getSpec().getSelector().equals(original.getSpec().getSelector()))) {
+            scale(newControllerName, 0);
+        }
+        client.deleteReplicationController(newControllerName);
+        invalidate(newControllerName);
+    }
+
+    /**
+     * restores the old replication controller and removes the new one after a failed rolling update
+     */
+    private void abort(String controllerName, String newControllerName, int desiredReplicas) {
+        LOG.warn(String.format("Aborting the rolling update of [rc-name] %s.", controllerName));
+        try {
+            if (!patcher.patchReplicas(controllerName, desiredReplicas)) {
+                // the new pods are kept, as they are the only ones left serving the component
+                LOG.error(String.format("Could not restore the replication controller[rc-identifier]: %s. No such "
+                        + "replication controller, keeping [rc-name] %s.", controllerName, newControllerName));
+                return;
+            }
+            scale(newControllerName, 0);
+            client.deleteReplicationController(newControllerName);
+            invalidate(newControllerName);
+        } catch (Exception exception) {
+            LOG.error(String.format("Could not restore the replication controller[rc-identifier]: %s",
+                    controllerName), exception);
+        }
+    }
+
+    private void scale(String controllerName, int replicas) throws CarbonKernelHandlerException {
+        try {
+            patcher.patchReplicas(controllerName, replicas);
+        } catch (Exception exception) {
+            String message = String
+                    .format("Could not scale the replication controller[rc-identifier]: %s", controllerName);
+            LOG.error(message, exception);
+            throw new CarbonKernelHandlerException(message, exception);
+        }
+    }
+
+    private static boolean isReady(Pod pod) {
+        if ((pod.getStatus() == null) || (!POD_RUNNING_PHASE.equals(pod.getStatus().getPhase()))) {
+            return false;
+        }
+        List<PodCondition> conditions = pod.getStatus().getConditions();
+        if (conditions != null) {
+            for (PodCondition condition : conditions) {
+                if (POD_READY_CONDITION.equals(condition.getType())) {
+                    return CONDITION_TRUE_STATUS.equals(condition.getStatus());
+                }
+            }
+        }
+        return true;
+    }
+
+    private static Container getContainer(ReplicationController controller) {
+        final int imageIndex = 0;
+        return controller.getSpec().getTemplate().getSpec().getContainers().get(imageIndex);
+    }
+
+    private ReplicationController readReplicationController(String controllerName) {
+        if (clusterStateCache != null) {
+            return clusterStateCache.getReplicationController(controllerName, true);
+        } else {
+            return client.getReplicationController(controllerName);
+        }
+    }
+
+    private List<Pod> getPods(Map<String, String> selector, boolean readThrough)
+            throws CarbonKernelHandlerException {
+        if (clusterStateCache != null) {
+            return clusterStateCache.getPods(selector, readThrough);
+        } else {
+            return podHandler.getPods(selector);
+        }
+    }
+
+    /**
+     * returns a deep copy of a Kubernetes entity, made by a round trip through its JSON representation
+     * <p>
+     * ObjectMapper.convertValue is not used, as it returns the entity itself if it already is of the target type.
+     */
+    private static <T> T copy(T entity, Class<T> type) throws IOException {
+        return OBJECT_MAPPER.readValue(OBJECT_MAPPER.writeValueAsBytes(entity), type);
+    }
+
+    private void invalidate(String controllerName) {
+        if (clusterStateCache != null) {
+            clusterStateCache.invalidateReplicationController(controllerName);
+        }
+    }
+}
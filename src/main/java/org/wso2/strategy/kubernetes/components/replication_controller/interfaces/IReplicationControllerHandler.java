@@ -16,6 +16,8 @@
 package org.wso2.strategy.kubernetes.components.replication_controller.interfaces;
 
 import io.fabric8.kubernetes.api.model.ReplicationController;
+import org.wso2.strategy.kubernetes.components.replication_controller.RollingUpdateConfiguration;
+import org.wso2.strategy.kubernetes.components.replication_controller.RollingUpdateReport;
 import org.wso2.strategy.miscellaneous.exception.CarbonKernelHandlerException;
 
 /**
@@ -42,6 +44,16 @@ public interface IReplicationControllerHandler {
      */
     ReplicationController getReplicationController(String controllerName);
 
+    /**
+     * returns a replication controller corresponding to the controller name
+     *
+     * @param controllerName name of the replication controller
+     * @param readThrough    if true, the replication controller is read from the API server instead of the
+     *                       cluster state cache
+     * @return a replication controller corresponding to the controller name
+     */
+    ReplicationController getReplicationController(String controllerName, boolean readThrough);
+
     /**
      * returns the number of replica pods that has been already deployed
      *
@@ -69,6 +81,19 @@ public interface IReplicationControllerHandler {
      */
     void updateImage(String controllerName, String dockerImage) throws CarbonKernelHandlerException;
 
+    /**
+     * replaces the pods of a specified replication controller with pods running a new Docker image, in batches
+     * bounded by the maximum surge and the maximum number of unavailable pods
+     *
+     * @param controllerName  name of the replication controller
+     * @param dockerImageName new Docker image
+     * @param configuration   batch size and readiness settings of the rolling update
+     * @return the per-batch timings of the rolling update
+     * @throws CarbonKernelHandlerException
+     */
+    RollingUpdateReport rollingUpdate(String controllerName, String dockerImageName,
+            RollingUpdateConfiguration configuration) throws CarbonKernelHandlerException;
+
     /**
      * a utility method which deletes pods generated by a replication controller with similar pod base name
      *
@@ -0,0 +1,112 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.kubernetes.components.service;
+
+import io.fabric8.kubernetes.api.model.Service;
+import org.wso2.strategy.kubernetes.components.service.interfaces.IServiceHandler;
+import org.wso2.strategy.miscellaneous.exception.CarbonKernelHandlerException;
+import org.wso2.strategy.miscellaneous.metrics.MetricsRegistry;
+
+/**
+ * an IServiceHandler which records the latency and outcome of each call to the service handler it decorates,
+ * as the total stage of the service.method-name operation
+ */
+public class InstrumentedServiceHandler implements IServiceHandler {
+    private final IServiceHandler serviceHandler;
+    private final MetricsRegistry metrics;
+
+    private static final String CREATE_SERVICE = "service.createService";
+    private static final String GET_SERVICE = "service.getService";
+    private static final String GET_CLUSTER_IP = "service.getClusterIP";
+    private static final String GET_NODE_PORT_IP = "service.getNodePortIP";
+    private static final String DELETE_SERVICE = "service.deleteService";
+
+    public InstrumentedServiceHandler(IServiceHandler serviceHandler, MetricsRegistry metrics) {
+        this.serviceHandler = serviceHandler;
+        this.metrics = metrics;
+    }
+
+    public void createService(String serviceId, String serviceName) throws CarbonKernelHandlerException {
+        long startTime = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            serviceHandler.createService(serviceId, serviceName);
+            succeeded = true;
+        } finally {
+            metrics.getOperation(CREATE_SERVICE).getTotal().record(startTime, succeeded);
+        }
+    }
+
+    public Service getService(String serviceId) throws CarbonKernelHandlerException {
+        long startTime = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            Service service = serviceHandler.getService(serviceId);
+            succeeded = true;
+            return service;
+        } finally {
+            metrics.getOperation(GET_SERVICE).getTotal().record(startTime, succeeded);
+        }
+    }
+
+    public Service getService(String serviceId, boolean readThrough) throws CarbonKernelHandlerException {
+        long startTime = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            Service service = serviceHandler.getService(serviceId, readThrough);
+            succeeded = true;
+            return service;
+        } finally {
+            metrics.getOperation(GET_SERVICE).getTotal().record(startTime, succeeded);
+        }
+    }
+
+    public String getClusterIP(String serviceId) throws CarbonKernelHandlerException {
+        long startTime = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            String clusterIP = serviceHandler.getClusterIP(serviceId);
+            succeeded = true;
+            return clusterIP;
+        } finally {
+            metrics.getOperation(GET_CLUSTER_IP).getTotal().record(startTime, succeeded);
+        }
+    }
+
+    public String getNodePortIP(String serviceId) throws CarbonKernelHandlerException {
+        long startTime = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            String nodePortIP = serviceHandler.getNodePortIP(serviceId);
+            succeeded = true;
+            return nodePortIP;
+        } finally {
+            metrics.getOperation(GET_NODE_PORT_IP).getTotal().record(startTime, succeeded);
+        }
+    }
+
+    public Service deleteService(String serviceId) throws CarbonKernelHandlerException {
+        long startTime = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            Service service = serviceHandler.deleteService(serviceId);
+            succeeded = true;
+            return service;
+        } finally {
+            metrics.getOperation(DELETE_SERVICE).getTotal().record(startTime, succeeded);
+        }
+    }
+}
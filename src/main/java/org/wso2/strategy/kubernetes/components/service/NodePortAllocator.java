@@ -0,0 +1,318 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.kubernetes.components.service;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.wso2.strategy.kubernetes.constants.KubernetesConstantsExtended;
+import org.wso2.strategy.miscellaneous.exception.CarbonKernelHandlerException;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * a Java class which allocates the NodePorts of a Kubernetes cluster from a bitmap holding a bit per port. Ports
+ * are allocated and released with compare-and-set operations on the word holding their bit, so that concurrent
+ * allocations only share a read lock, which reconciliation takes exclusively. Allocation is next-fit, so that a
+ * freed port is reused only once the search has wrapped around the NodePort range. Each changed word is written
+ * through to a memory-mapped file, which is kept locked against other processes for the lifetime of the allocator.
+ */
+public class NodePortAllocator {
+    // one bit per port, the lowest bit of the first word standing for the lowest port
+    private final AtomicLongArray words;
+    private final MappedByteBuffer mappedWords;
+    private final FileLock fileLock;
+    // port offset from which the next allocation starts searching, so that freed ports are not reused right away
+    private final AtomicInteger nextPortOffset = new AtomicInteger();
+    // per port, the reconciliation epoch in which its service was confirmed, PENDING until then
+    private final AtomicLongArray confirmationEpochs = new AtomicLongArray(PORT_COUNT);
+    private final AtomicLong reconciliationEpoch = new AtomicLong();
+    private final ReadWriteLock reconciliationLock = new ReentrantReadWriteLock();
+    private final AtomicInteger allocatedPortCount = new AtomicInteger();
+    private final String fileName;
+
+    private static final int LOWEST_PORT = KubernetesConstantsExtended.NODE_PORT_LOWER_LIMIT + 1;
+    private static final int PORT_COUNT = KubernetesConstantsExtended.NODE_PORT_UPPER_LIMIT - LOWEST_PORT + 1;
+    private static final int WORD_COUNT = (PORT_COUNT + Long.SIZE - 1) / Long.SIZE;
+    private static final int WORD_SIZE_IN_BYTES = Long.SIZE / Byte.SIZE;
+    private static final long PENDING = Long.MAX_VALUE;
+    // a file lock is held by the whole process, hence a single allocator per file
+    private static final ConcurrentMap<String, NodePortAllocator> ALLOCATORS = new ConcurrentHashMap<>();
+    private static final Logger LOG = LogManager.getLogger(NodePortAllocator.class);
+
+    private NodePortAllocator(String fileName) throws CarbonKernelHandlerException {
+        this.fileName = fileName;
+        words = new AtomicLongArray(WORD_COUNT);
+        try {
+            FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                fileLock = channel.tryLock();
+            } catch (OverlappingFileLockException exception) {
+                channel.close();
+                throw new IOException("The file is locked within this process.", exception);
+            }
+            if (fileLock == null) {
+                channel.close();
+                String message = String
+                        .format("NodePort allocation file %s is in use by another process.", fileName);
+                LOG.error(message);
+                throw new CarbonKernelHandlerException(message);
+            }
+            // a file of any other size predates the bitmap format and is superseded by the live services
+            boolean valid = (channel.size() == WORD_COUNT * WORD_SIZE_IN_BYTES);
+            if (!valid) {
+                channel.truncate(0);
+            }
+            mappedWords = channel.map(FileChannel.MapMode.READ_WRITE, 0, WORD_COUNT * WORD_SIZE_IN_BYTES);
+            for (int index = 0; index < WORD_COUNT; index++) {
+                long word = valid ? (mappedWords.getLong(index * WORD_SIZE_IN_BYTES) & getValidBits(index)) : 0;
+                words.set(index, word);
+                allocatedPortCount.addAndGet(Long.bitCount(word));
+                if (!valid) {
+                    mappedWords.putLong(index * WORD_SIZE_IN_BYTES, 0);
+                }
+            }
+        } catch (IOException exception) {
+            String message = String.format("Could not open the NodePort allocation file %s.", fileName);
+            LOG.error(message, exception);
+            throw new CarbonKernelHandlerException(message, exception);
+        }
+    }
+
+    /**
+     * returns the allocator persisted in the specified file, creating it on first use
+     *
+     * @param fileName file holding the NodePort bitmap of a Kubernetes cluster
+     * @return the allocator persisted in the specified file
+     * @throws CarbonKernelHandlerException if the file cannot be opened or is locked by another process
+     */
+    public static NodePortAllocator forFile(String fileName) throws CarbonKernelHandlerException {
+        NodePortAllocator allocator = ALLOCATORS.get(fileName);
+        if (allocator == null) {
+            synchronized (ALLOCATORS) {
+                allocator = ALLOCATORS.get(fileName);
+                if (allocator == null) {
+                    allocator = new NodePortAllocator(fileName);
+                    ALLOCATORS.put(fileName, allocator);
+                }
+            }
+        }
+        return allocator;
+    }
+
+    /**
+     * allocates a free NodePort, which is pending until confirmed
+     *
+     * @return the allocated NodePort
+     * @throws CarbonKernelHandlerException if every NodePort is allocated
+     */
+    public int allocate() throws CarbonKernelHandlerException {
+        int startOffset = nextPortOffset.get();
+        int startIndex = startOffset / Long.SIZE;
+        // ports below the start offset in its word are searched last, once the search has wrapped around
+        long startMask = -1L << (startOffset % Long.SIZE);
+        reconciliationLock.readLock().lock();
+        try {
+            for (int step = 0; step <= WORD_COUNT; step++) {
+                int index = (startIndex + step) % WORD_COUNT;
+                long searchedBits = getValidBits(index);
+                if (step == 0) {
+                    searchedBits &= startMask;
+                } else if (step == WORD_COUNT) {
+                    searchedBits &= ~startMask;
+                }
+                long word = words.get(index);
+                long free = ~word & searchedBits;
+                while (free != 0) {
+                    long bit = Long.lowestOneBit(free);
+                    if (words.compareAndSet(index, word, word | bit)) {
+                        int offset = (index * Long.SIZE) + Long.numberOfTrailingZeros(bit);
+                        confirmationEpochs.set(offset, PENDING);
+                        allocatedPortCount.incrementAndGet();
+                        nextPortOffset.set((offset + 1) % PORT_COUNT);
+                        persist(index);
+                        return LOWEST_PORT + offset;
+                    }
+                    word = words.get(index);
+                    free = ~word & searchedBits;
+                }
+            }
+        } finally {
+            reconciliationLock.readLock().unlock();
+        }
+        String message = "No NodePort is available for allocation.";
+        LOG.error(message);
+        throw new CarbonKernelHandlerException(message);
+    }
+
+    /**
+     * confirms that the service of an allocated NodePort exists on the Kubernetes cluster, from when on a
+     * reconciliation which does not find the port frees it
+     *
+     * @param port allocated NodePort
+     */
+    public void confirm(int port) {
+        if ((port >= LOWEST_PORT) && (port < LOWEST_PORT + PORT_COUNT)) {
+            confirmationEpochs.set(port - LOWEST_PORT, reconciliationEpoch.get());
+        }
+    }
+
+    /**
+     * releases an allocated NodePort, ignoring ports outside the NodePort range and ports not allocated
+     *
+     * @param port NodePort to be released
+     */
+    public void release(int port) {
+        reconciliationLock.readLock().lock();
+        try {
+            if (setBit(port, false)) {
+                allocatedPortCount.decrementAndGet();
+            }
+        } finally {
+            reconciliationLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * starts a reconciliation, to be called before listing the NodePorts in use
+     *
+     * @return the epoch of the reconciliation, to be passed to {@link #reconcile(long, Collection)}
+     */
+    public long startReconciliation() {
+        return reconciliationEpoch.incrementAndGet();
+    }
+
+    /**
+     * replaces the allocations with the specified ports, e.g. the NodePorts of the services found on the
+     * Kubernetes cluster, which frees the ports of services deleted other than through this allocator. Ports
+     * whose services were not confirmed before the reconciliation started, and hence may be missing from the
+     * listing, are kept allocated.
+     *
+     * @param epoch epoch returned by {@link #startReconciliation()} before the ports were listed
+     * @param ports NodePorts in use
+     */
+    public void reconcile(long epoch, Collection<Integer> ports) {
+        long[] liveWords = new long[WORD_COUNT];
+        for (Integer port : ports) {
+            if ((port != null) && (port >= LOWEST_PORT) && (port < LOWEST_PORT + PORT_COUNT)) {
+                int offset = port - LOWEST_PORT;
+                liveWords[offset / Long.SIZE] |= (1L << (offset % Long.SIZE));
+            }
+        }
+        reconciliationLock.writeLock().lock();
+        try {
+            for (int index = 0; index < WORD_COUNT; index++) {
+                long previous = words.get(index);
+                long reconciled = liveWords[index];
+                long unlisted = previous & ~reconciled;
+                while (unlisted != 0) {
+                    long bit = Long.lowestOneBit(unlisted);
+                    int offset = (index * Long.SIZE) + Long.numberOfTrailingZeros(bit);
+                    if (confirmationEpochs.get(offset) >= epoch) {
+                        reconciled |= bit;
+                    }
+                    unlisted &= ~bit;
+                }
+                words.set(index, reconciled);
+                allocatedPortCount.addAndGet(Long.bitCount(reconciled) - Long.bitCount(previous));
+                persist(index);
+            }
+        } finally {
+            reconciliationLock.writeLock().unlock();
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(String.format("Reconciled the NodePort allocations with %d ports in use. %s", ports.size(),
+                    this));
+        }
+    }
+
+    public boolean isAllocated(int port) {
+        if ((port < LOWEST_PORT) || (port >= LOWEST_PORT + PORT_COUNT)) {
+            return false;
+        }
+        int offset = port - LOWEST_PORT;
+        return (words.get(offset / Long.SIZE) & (1L << (offset % Long.SIZE))) != 0;
+    }
+
+    public int getAllocatedPortCount() {
+        return allocatedPortCount.get();
+    }
+
+    public int getFreePortCount() {
+        return PORT_COUNT - allocatedPortCount.get();
+    }
+
+    public String toString() {
+        return String.format("NodePort allocation [file] %s [allocated] %d [free] %d", fileName,
+                getAllocatedPortCount(), getFreePortCount());
+    }
+
+    /**
+     * sets or clears the bit of the specified port
+     *
+     * @return true if the bit changed
+     */
+    private boolean setBit(int port, boolean allocated) {
+        if ((port < LOWEST_PORT) || (port >= LOWEST_PORT + PORT_COUNT)) {
+            return false;
+        }
+        int offset = port - LOWEST_PORT;
+        int index = offset / Long.SIZE;
+        long bit = 1L << (offset % Long.SIZE);
+        while (true) {
+            long word = words.get(index);
+            if (((word & bit) != 0) == allocated) {
+                return false;
+            }
+            if (words.compareAndSet(index, word, allocated ? (word | bit) : (word & ~bit))) {
+                persist(index);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * writes the current value of a word through to the mapped file. The value is read within the monitor, so
+     * that the last write of a word always carries every preceding change to it.
+     */
+    private void persist(int index) {
+        synchronized (mappedWords) {
+            mappedWords.putLong(index * WORD_SIZE_IN_BYTES, words.get(index));
+        }
+    }
+
+    /**
+     * returns the mask of the bits of a word which stand for ports within the NodePort range
+     */
+    private static long getValidBits(int index) {
+        int bitsInWord = Math.min(Long.SIZE, PORT_COUNT - (index * Long.SIZE));
+        return (bitsInWord == Long.SIZE) ? -1L : ((1L << bitsInWord) - 1);
+    }
+}
@@ -15,38 +15,64 @@
 */
 package org.wso2.strategy.kubernetes.components.service;
 
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import io.fabric8.kubernetes.api.KubernetesHelper;
 import io.fabric8.kubernetes.api.model.Service;
+import io.fabric8.kubernetes.api.model.ServiceList;
+import io.fabric8.kubernetes.api.model.ServicePort;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.apache.stratos.kubernetes.client.KubernetesApiClient;
-import org.apache.stratos.kubernetes.client.KubernetesConstants;
-import org.apache.stratos.kubernetes.client.interfaces.KubernetesAPIClientInterface;
+import org.wso2.strategy.kubernetes.cache.interfaces.IClusterStateCache;
 import org.wso2.strategy.kubernetes.components.service.interfaces.IServiceHandler;
+import org.wso2.strategy.kubernetes.configuration.KubernetesClientBuilder;
+import org.wso2.strategy.kubernetes.configuration.KubernetesRestClient;
 import org.wso2.strategy.kubernetes.constants.KubernetesConstantsExtended;
 import org.wso2.strategy.miscellaneous.exception.CarbonKernelHandlerException;
-import org.wso2.strategy.miscellaneous.helper.CarbonKernelHandlerHelper;
-import org.wso2.strategy.miscellaneous.io.FileInputSingletonDataThread;
 
 import java.net.InetAddress;
 import java.util.ArrayList;
 import java.util.List;
 
 public class ServiceHandler implements IServiceHandler {
-    // holds the next available, valid port allocation for NodePort
-    private static int nodePortValue;
-    private final KubernetesAPIClientInterface client;
+    // allocates the NodePorts of the services of the Kubernetes cluster
+    private final NodePortAllocator nodePortAllocator;
+    // shares its connection pool with the other handlers of the same Kubernetes API server
+    private final KubernetesRestClient client;
+    // cluster state cache serving the reads, null if every read has to query the API server
+    private final IClusterStateCache clusterStateCache;
+    private static final String SERVICES_RESOURCE = "services";
     private static final Logger LOG = LogManager.getLogger(ServiceHandler.class);
 
-    public ServiceHandler(String kubernetesURI) {
-        client = new KubernetesApiClient(kubernetesURI);
-        setInitNodePortValue();
+    public ServiceHandler(String kubernetesURI) throws CarbonKernelHandlerException {
+        this(kubernetesURI, null);
+    }
+
+    public ServiceHandler(String kubernetesURI, IClusterStateCache clusterStateCache)
+            throws CarbonKernelHandlerException {
+        this(kubernetesURI, clusterStateCache, KubernetesConstantsExtended.NODE_PORT_ALLOCATION_FILENAME);
+    }
+
+    /**
+     * @param kubernetesURI              URL of the Kubernetes API server
+     * @param clusterStateCache          cluster state cache serving the reads, null if every read has to query
+     *                                   the API server
+     * @param nodePortAllocationFileName file holding the NodePort allocations, which has to differ between
+     *                                   Kubernetes clusters
+     * @throws CarbonKernelHandlerException
+     */
+    public ServiceHandler(String kubernetesURI, IClusterStateCache clusterStateCache,
+            String nodePortAllocationFileName) throws CarbonKernelHandlerException {
+        client = KubernetesClientBuilder.buildRestClient(kubernetesURI);
+        this.clusterStateCache = clusterStateCache;
+        nodePortAllocator = NodePortAllocator.forFile(nodePortAllocationFileName);
+        reconcileNodePorts();
     }
 
     public void createService(String serviceId, String serviceName) throws CarbonKernelHandlerException {
         if (serviceId != null) {
             try {
-                Service service = client.getService(serviceId);
+                Service service = readService(serviceId, false);
                 if (service == null) {
                     if (LOG.isDebugEnabled()) {
                         String message = String
@@ -54,27 +80,21 @@ public class ServiceHandler implements IServiceHandler {
                                         serviceId, serviceName);
                         LOG.debug(message);
                     }
-                    client.createService(serviceId, serviceName, nodePortValue, KubernetesConstants.NODE_PORT,
-                            KubernetesConstantsExtended.SERVICE_PORT_NAME,
-                            KubernetesConstantsExtended.CONTAINER_EXPOSED_PORT,
-                            KubernetesConstantsExtended.SESSION_AFFINITY_CONFIG);
+                    int nodePort = nodePortAllocator.allocate();
+                    try {
+                        client.post(getServicesPath(), buildService(serviceId, serviceName, nodePort), Service.class);
+                    } catch (CarbonKernelHandlerException exception) {
+                        nodePortAllocator.release(nodePort);
+                        throw exception;
+                    }
+                    nodePortAllocator.confirm(nodePort);
+                    invalidate(serviceId);
                     if (LOG.isDebugEnabled()) {
                         String message = String
                                 .format("Created Kubernetes service" + " [service-ID] %s [service-name] %s ", serviceId,
                                         serviceName);
                         LOG.debug(message);
                     }
-                    // changing the NodePort service type port value to the next available port value
-                    if (nodePortValue < (KubernetesConstantsExtended.NODE_PORT_UPPER_LIMIT)) {
-                        nodePortValue++;
-                    } else {
-                        nodePortValue = KubernetesConstantsExtended.NODE_PORT_LOWER_LIMIT + 1;
-                    }
-                    // write the next possible port allocation value to a text file
-                    List<String> output = new ArrayList<>();
-                    output.add("" + nodePortValue);
-                    CarbonKernelHandlerHelper
-                            .writeToFile(KubernetesConstantsExtended.NODE_PORT_ALLOCATION_FILENAME, output);
                 }
             } catch (Exception exception) {
                 String message = String.format("Could not create the service[service-identifier]: " + "%s", serviceId);
@@ -86,10 +106,14 @@ public class ServiceHandler implements IServiceHandler {
     }
 
     public Service getService(String serviceId) throws CarbonKernelHandlerException {
+        return getService(serviceId, false);
+    }
+
+    public Service getService(String serviceId, boolean readThrough) throws CarbonKernelHandlerException {
         Service service;
         if (serviceId != null) {
             try {
-                service = client.getService(serviceId);
+                service = readService(serviceId, readThrough);
             } catch (Exception exception) {
                 String message = String.format("Could not create the service[service-identifier]: " + "%s", serviceId);
                 LOG.error(message, exception);
@@ -105,7 +129,7 @@ public class ServiceHandler implements IServiceHandler {
     public String getClusterIP(String serviceId) throws CarbonKernelHandlerException {
         if (serviceId != null) {
             try {
-                Service service = client.getService(serviceId);
+                Service service = readService(serviceId, false);
                 if (service != null) {
                     return KubernetesHelper.getServiceURL(service);
                 } else {
@@ -127,7 +151,7 @@ public class ServiceHandler implements IServiceHandler {
         if (serviceId != null) {
             int nodePort;
             try {
-                Service service = client.getService(serviceId);
+                Service service = readService(serviceId, false);
                 final int portIndex = 0;
                 if (service != null) {
                     nodePort = service.getSpec().getPorts().get(portIndex).getNodePort();
@@ -154,13 +178,18 @@ public class ServiceHandler implements IServiceHandler {
         if (serviceId != null) {
             Service service;
             try {
-                service = client.getService(serviceId);
+                service = readService(serviceId, false);
                 if (service != null) {
                     if (LOG.isDebugEnabled()) {
                         String message = String.format("Deleting Kubernetes service" + " [service-ID] %s", serviceId);
                         LOG.debug(message);
                     }
-                    client.deleteService(serviceId);
+                    if (client.delete(getServicesPath() + "/" + serviceId)) {
+                        for (Integer nodePort : getNodePorts(service)) {
+                            nodePortAllocator.release(nodePort);
+                        }
+                    }
+                    invalidate(serviceId);
                     if (LOG.isDebugEnabled()) {
                         String message = String.format("Deleted Kubernetes service" + " [service-ID] %s", serviceId);
                         LOG.debug(message);
@@ -178,19 +207,91 @@ public class ServiceHandler implements IServiceHandler {
         }
     }
 
+    private Service readService(String serviceId, boolean readThrough) throws Exception {
+        if (clusterStateCache != null) {
+            return clusterStateCache.getService(serviceId, readThrough);
+        } else {
+            return client.get(getServicesPath() + "/" + serviceId, Service.class);
+        }
+    }
+
     /**
-     * reads in the next available NodePort service type, port allocation value and assigns
-     * the value to nodePortValue-ServiceHandler class member variable
+     * returns a NodePort service entity which exposes the container port of the pods labelled with the
+     * specified service name
+     *
+     * @param serviceId   name of the service
+     * @param serviceName value of the name label of the pods selected
+     * @param nodePort    port allocated for the service on each node
+     * @return the service entity
      */
-    private void setInitNodePortValue() {
-        FileInputSingletonDataThread fileInput = new FileInputSingletonDataThread(
-                KubernetesConstantsExtended.NODE_PORT_ALLOCATION_FILENAME);
-        fileInput.run();
-        List<String> input = fileInput.getFileContent();
-        if (input.size() > 0) {
-            nodePortValue = Integer.parseInt(input.get(0));
-        } else {
-            nodePortValue = KubernetesConstantsExtended.NODE_PORT_LOWER_LIMIT + 1;
+    static ObjectNode buildService(String serviceId, String serviceName, int nodePort) {
+        ObjectNode service = JsonNodeFactory.instance.objectNode();
+        service.put("kind", "Service");
+        service.put("apiVersion", "v1");
+        service.with("metadata").put("name", serviceId);
+        service.with("metadata").with("labels").put(KubernetesConstantsExtended.LABEL_NAME, serviceName);
+        ObjectNode spec = service.with("spec");
+        spec.put("type", KubernetesConstantsExtended.NODE_PORT_SERVICE_TYPE);
+        spec.put("sessionAffinity", KubernetesConstantsExtended.SESSION_AFFINITY_CONFIG);
+        spec.with("selector").put(KubernetesConstantsExtended.LABEL_NAME, serviceName);
+        ObjectNode port = spec.withArray("ports").addObject();
+        port.put("name", KubernetesConstantsExtended.SERVICE_PORT_NAME);
+        port.put("port", KubernetesConstantsExtended.CONTAINER_EXPOSED_PORT);
+        port.put("targetPort", KubernetesConstantsExtended.CONTAINER_EXPOSED_PORT);
+        port.put("nodePort", nodePort);
+        return service;
+    }
+
+    private static String getServicesPath() {
+        return KubernetesRestClient.getResourcePath(KubernetesConstantsExtended.DEFAULT_NAMESPACE, SERVICES_RESOURCE);
+    }
+
+    private void invalidate(String serviceId) {
+        if (clusterStateCache != null) {
+            clusterStateCache.invalidateService(serviceId);
+        }
+    }
+
+    /**
+     * replaces the NodePort allocations with the NodePorts of the services found on the Kubernetes cluster, or
+     * keeps the persisted allocations if the services cannot be listed
+     */
+    private void reconcileNodePorts() {
+        try {
+            // ports confirmed from here on may be missing from the listing, hence are kept by the reconciliation
+            long epoch = nodePortAllocator.startReconciliation();
+            List<Service> services;
+            if (clusterStateCache != null) {
+                services = clusterStateCache.getServices(true);
+            } else {
+                ServiceList serviceList = client.get(getServicesPath(), ServiceList.class);
+                services = (serviceList != null) ? serviceList.getItems() : null;
+            }
+            if (services == null) {
+                LOG.warn(String.format("No services were listed to reconcile the NodePort allocations. %s",
+                        nodePortAllocator));
+                return;
+            }
+            List<Integer> nodePorts = new ArrayList<>();
+            for (Service service : services) {
+                nodePorts.addAll(getNodePorts(service));
+            }
+            nodePortAllocator.reconcile(epoch, nodePorts);
+        } catch (Exception exception) {
+            LOG.warn(String.format("Could not list the services to reconcile the NodePort allocations. %s",
+                    nodePortAllocator), exception);
+        }
+    }
+
+    private static List<Integer> getNodePorts(Service service) {
+        List<Integer> nodePorts = new ArrayList<>();
+        if ((service.getSpec() != null) && (service.getSpec().getPorts() != null)) {
+            for (ServicePort port : service.getSpec().getPorts()) {
+                if (port.getNodePort() != null) {
+                    nodePorts.add(port.getNodePort());
+                }
+            }
         }
+        return nodePorts;
     }
 }
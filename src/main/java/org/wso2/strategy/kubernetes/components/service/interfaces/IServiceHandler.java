@@ -37,6 +37,16 @@ public interface IServiceHandler {
      */
     Service getService(String serviceId) throws CarbonKernelHandlerException;
 
+    /**
+     * returns a service corresponding to the service id
+     *
+     * @param serviceId   id of the service
+     * @param readThrough if true, the service is read from the API server instead of the cluster state cache
+     * @return a service corresponding to the service id
+     * @throws CarbonKernelHandlerException
+     */
+    Service getService(String serviceId, boolean readThrough) throws CarbonKernelHandlerException;
+
     /**
      * returns access URL String value of the Cluster IP service specified by the service ID
      *
@@ -21,25 +21,59 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.wso2.strategy.miscellaneous.exception.CarbonKernelHandlerException;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 public class KubernetesClientBuilder {
-    private static KubernetesClient KUBERNETES_CLIENT;
+    // one client of each kind, and hence one keep-alive connection pool, per Kubernetes API server
+    private static final ConcurrentMap<String, KubernetesClient> KUBERNETES_CLIENTS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, KubernetesRestClient> REST_CLIENTS = new ConcurrentHashMap<>();
 
     private static final Logger LOG = LogManager.getLogger(KubernetesClientBuilder.class);
 
-    public static KubernetesClient buildDockerClient(String kubernetesEndPointUrl) throws CarbonKernelHandlerException {
+    public static KubernetesClient buildKubernetesClient(String kubernetesEndPointUrl)
+            throws CarbonKernelHandlerException {
         /*
-        implements the singleton design pattern on the KubernetesClient instance
+        lazily creates a single KubernetesClient instance per endpoint, safely under concurrent first use
          */
-        if (KUBERNETES_CLIENT == null) {
-            if (kubernetesEndPointUrl != null) {
-                KUBERNETES_CLIENT = new KubernetesClient(new KubernetesFactory(kubernetesEndPointUrl));
-            } else {
-                String message = "Could not create the Kubernetes Client instance.";
-                LOG.error(message);
-                throw new CarbonKernelHandlerException(message);
+        checkEndpoint(kubernetesEndPointUrl);
+        KubernetesClient kubernetesClient = KUBERNETES_CLIENTS.get(kubernetesEndPointUrl);
+        if (kubernetesClient == null) {
+            synchronized (KUBERNETES_CLIENTS) {
+                kubernetesClient = KUBERNETES_CLIENTS.get(kubernetesEndPointUrl);
+                if (kubernetesClient == null) {
+                    kubernetesClient = new KubernetesClient(new KubernetesFactory(kubernetesEndPointUrl));
+                    KUBERNETES_CLIENTS.put(kubernetesEndPointUrl, kubernetesClient);
+                }
             }
         }
+        return kubernetesClient;
+    }
 
-        return KUBERNETES_CLIENT;
+    public static KubernetesRestClient buildRestClient(String kubernetesEndPointUrl)
+            throws CarbonKernelHandlerException {
+        /*
+        lazily creates a single KubernetesRestClient instance per endpoint, safely under concurrent first use
+         */
+        checkEndpoint(kubernetesEndPointUrl);
+        KubernetesRestClient restClient = REST_CLIENTS.get(kubernetesEndPointUrl);
+        if (restClient == null) {
+            synchronized (REST_CLIENTS) {
+                restClient = REST_CLIENTS.get(kubernetesEndPointUrl);
+                if (restClient == null) {
+                    restClient = new KubernetesRestClient(kubernetesEndPointUrl);
+                    REST_CLIENTS.put(kubernetesEndPointUrl, restClient);
+                }
+            }
+        }
+        return restClient;
+    }
+
+    private static void checkEndpoint(String kubernetesEndPointUrl) throws CarbonKernelHandlerException {
+        if (kubernetesEndPointUrl == null) {
+            String message = "Could not create the Kubernetes Client instance.";
+            LOG.error(message);
+            throw new CarbonKernelHandlerException(message);
+        }
     }
 }
@@ -0,0 +1,286 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.kubernetes.configuration;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPatch;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.wso2.strategy.kubernetes.constants.KubernetesConstantsExtended;
+import org.wso2.strategy.miscellaneous.exception.CarbonKernelHandlerException;
+import org.wso2.strategy.miscellaneous.exception.ResourceConflictException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLEncoder;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * a thread-safe JSON over HTTP client for the Kubernetes v1 API, used for the requests which the
+ * fabric8 Kubernetes client does not support, such as label selector queries
+ * <p>
+ * Requests share a pool of keep-alive connections, of which the ones left idle for longer than the idle timeout
+ * are closed in the background. Use KubernetesClientBuilder to share a single instance per API server.
+ */
+public class KubernetesRestClient implements Closeable {
+    private final String apiEndpoint;
+    private final ObjectMapper objectMapper;
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final ScheduledFuture<?> idleConnectionEviction;
+
+    private static final String API_PATH = "/api/v1";
+    private static final String CHARSET = "UTF-8";
+    private static final int HTTP_NOT_FOUND = 404;
+    private static final int HTTP_CONFLICT = 409;
+    private static final ContentType STRATEGIC_MERGE_PATCH = ContentType
+            .create("application/strategic-merge-patch+json", CHARSET);
+    private static final long MINIMUM_EVICTION_INTERVAL_IN_MILLISECONDS = 1000;
+    // closes the idle connections of every client's pool
+    private static final ScheduledExecutorService CONNECTION_EVICTOR = Executors
+            .newSingleThreadScheduledExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "kubernetes-connection-evictor");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    public KubernetesRestClient(String kubernetesURI) {
+        this(kubernetesURI, Integer.getInteger(KubernetesConstantsExtended.CLIENT_POOL_SIZE_PROPERTY,
+                        KubernetesConstantsExtended.DEFAULT_CLIENT_POOL_SIZE),
+                Integer.getInteger(KubernetesConstantsExtended.CLIENT_CONNECT_TIMEOUT_PROPERTY,
+                        KubernetesConstantsExtended.DEFAULT_CLIENT_CONNECT_TIMEOUT_IN_MILLISECONDS),
+                Integer.getInteger(KubernetesConstantsExtended.CLIENT_READ_TIMEOUT_PROPERTY,
+                        KubernetesConstantsExtended.DEFAULT_CLIENT_READ_TIMEOUT_IN_MILLISECONDS),
+                Long.getLong(KubernetesConstantsExtended.CLIENT_IDLE_TIMEOUT_PROPERTY,
+                        KubernetesConstantsExtended.DEFAULT_CLIENT_IDLE_TIMEOUT_IN_MILLISECONDS));
+    }
+
+    public KubernetesRestClient(String kubernetesURI, int poolSize, int connectTimeoutInMilliseconds,
+            int readTimeoutInMilliseconds, final long idleTimeoutInMilliseconds) {
+        if (kubernetesURI.endsWith("/")) {
+            apiEndpoint = kubernetesURI.substring(0, kubernetesURI.length() - 1) + API_PATH;
+        } else {
+            apiEndpoint = kubernetesURI + API_PATH;
+        }
+        objectMapper = new ObjectMapper();
+        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        // all requests of this client share a single route, i.e. the API server
+        connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(Math.max(1, poolSize));
+        connectionManager.setDefaultMaxPerRoute(Math.max(1, poolSize));
+        RequestConfig requestConfig = RequestConfig.custom().setConnectTimeout(connectTimeoutInMilliseconds)
+                .setConnectionRequestTimeout(connectTimeoutInMilliseconds).setSocketTimeout(readTimeoutInMilliseconds)
+                .build();
+        httpClient = HttpClients.custom().setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig).build();
+        long evictionInterval = Math.max(MINIMUM_EVICTION_INTERVAL_IN_MILLISECONDS, idleTimeoutInMilliseconds / 2);
+        idleConnectionEviction = CONNECTION_EVICTOR.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                connectionManager.closeExpiredConnections();
+                connectionManager.closeIdleConnections(idleTimeoutInMilliseconds, TimeUnit.MILLISECONDS);
+            }
+        }, evictionInterval, evictionInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * returns the Kubernetes API path of a namespaced resource collection
+     *
+     * @param namespace namespace of the resources
+     * @param resource  plural resource name, e.g. pods
+     * @return the Kubernetes API path of a namespaced resource collection
+     */
+    public static String getResourcePath(String namespace, String resource) {
+        return "/namespaces/" + namespace + "/" + resource;
+    }
+
+    /**
+     * returns the label selector query parameter value matching all of the specified labels
+     *
+     * @param selector labels to be matched
+     * @return the URL encoded label selector query parameter value
+     * @throws CarbonKernelHandlerException
+     */
+    public static String toLabelSelector(Map<String, String> selector) throws CarbonKernelHandlerException {
+        StringBuilder labelSelector = new StringBuilder();
+        try {
+            for (Map.Entry<String, String> label : selector.entrySet()) {
+                if (labelSelector.length() > 0) {
+                    labelSelector.append(",");
+                }
+                labelSelector.append(label.getKey()).append("=").append(label.getValue());
+            }
+            return URLEncoder.encode(labelSelector.toString(), CHARSET);
+        } catch (IOException exception) {
+            throw new CarbonKernelHandlerException("Could not encode the label selector.", exception);
+        }
+    }
+
+    /**
+     * sends a GET request and maps the JSON response to the specified type
+     *
+     * @param path         API path relative to /api/v1, including any query string
+     * @param responseType type of the response entity
+     * @param <T>          type of the response entity
+     * @return the response entity, null if the resource does not exist
+     * @throws CarbonKernelHandlerException
+     */
+    public <T> T get(String path, Class<T> responseType) throws CarbonKernelHandlerException {
+        return execute(new HttpGet(apiEndpoint + path), path, responseType);
+    }
+
+    /**
+     * sends a POST request with the specified entity as its JSON body and maps the JSON response to the
+     * specified type
+     *
+     * @param path         API path relative to /api/v1
+     * @param entity       entity to be created
+     * @param responseType type of the response entity
+     * @param <T>          type of the response entity
+     * @return the created entity, null if the resource collection does not exist
+     * @throws CarbonKernelHandlerException
+     */
+    public <T> T post(String path, Object entity, Class<T> responseType) throws CarbonKernelHandlerException {
+        HttpPost request = new HttpPost(apiEndpoint + path);
+        try {
+            request.setEntity(
+                    new ByteArrayEntity(objectMapper.writeValueAsBytes(entity), ContentType.APPLICATION_JSON));
+        } catch (IOException exception) {
+            throw new CarbonKernelHandlerException(String.format("Could not serialize the entity of POST %s.", path),
+                    exception);
+        }
+        return execute(request, path, responseType);
+    }
+
+    /**
+     * sends a strategic merge PATCH request, which changes only the fields present in the specified patch. If
+     * the patch holds a metadata.resourceVersion, the request only succeeds if the resource still has that version.
+     *
+     * @param path         API path relative to /api/v1
+     * @param patch        fields to be changed
+     * @param responseType type of the response entity
+     * @param <T>          type of the response entity
+     * @return the patched entity, null if the resource does not exist
+     * @throws ResourceConflictException    if the resource version does not match
+     * @throws CarbonKernelHandlerException
+     */
+    public <T> T patch(String path, Object patch, Class<T> responseType) throws CarbonKernelHandlerException {
+        HttpPatch request = new HttpPatch(apiEndpoint + path);
+        try {
+            request.setEntity(new ByteArrayEntity(objectMapper.writeValueAsBytes(patch), STRATEGIC_MERGE_PATCH));
+        } catch (IOException exception) {
+            throw new CarbonKernelHandlerException(String.format("Could not serialize the entity of PATCH %s.", path),
+                    exception);
+        }
+        return execute(request, path, responseType);
+    }
+
+    /**
+     * sends a DELETE request
+     *
+     * @param path API path relative to /api/v1
+     * @return true if the resource was deleted, false if it did not exist
+     * @throws CarbonKernelHandlerException
+     */
+    public boolean delete(String path) throws CarbonKernelHandlerException {
+        HttpDelete request = new HttpDelete(apiEndpoint + path);
+        request.setHeader("Accept", "application/json");
+        try (CloseableHttpResponse response = httpClient.execute(request)) {
+            try {
+                int status = response.getStatusLine().getStatusCode();
+                if (status == HTTP_NOT_FOUND) {
+                    return false;
+                }
+                checkStatus("DELETE", path, status);
+                return true;
+            } finally {
+                EntityUtils.consumeQuietly(response.getEntity());
+            }
+        } catch (IOException exception) {
+            throw new CarbonKernelHandlerException(String.format("Kubernetes API request DELETE %s failed.", path),
+                    exception);
+        }
+    }
+
+    /**
+     * closes the pooled connections, after which the client cannot be used
+     */
+    public void close() throws IOException {
+        idleConnectionEviction.cancel(false);
+        httpClient.close();
+    }
+
+    /**
+     * sends a request, releasing its connection back to the pool once the response has been read
+     *
+     * @return the response entity mapped to the response type, null if the resource does not exist
+     */
+    private <T> T execute(HttpRequestBase request, String path, Class<T> responseType)
+            throws CarbonKernelHandlerException {
+        request.setHeader("Accept", "application/json");
+        try (CloseableHttpResponse response = httpClient.execute(request)) {
+            HttpEntity entity = response.getEntity();
+            try {
+                int status = response.getStatusLine().getStatusCode();
+                if (status == HTTP_NOT_FOUND) {
+                    return null;
+                }
+                checkStatus(request.getMethod(), path, status);
+                try (InputStream content = entity.getContent()) {
+                    return objectMapper.readValue(content, responseType);
+                }
+            } finally {
+                // a fully consumed response keeps the connection alive for reuse
+                EntityUtils.consumeQuietly(entity);
+            }
+        } catch (IOException exception) {
+            throw new CarbonKernelHandlerException(
+                    String.format("Kubernetes API request %s %s failed.", request.getMethod(), path), exception);
+        }
+    }
+
+    private static void checkStatus(String method, String path, int status) throws CarbonKernelHandlerException {
+        if (status == HTTP_CONFLICT) {
+            throw new ResourceConflictException(
+                    String.format("Kubernetes API request %s %s conflicted with a concurrent change.", method, path));
+        }
+        final int successRangeStart = 200;
+        final int successRangeEnd = 300;
+        if ((status < successRangeStart) || (status >= successRangeEnd)) {
+            throw new CarbonKernelHandlerException(
+                    String.format("Kubernetes API request %s %s failed with HTTP status %d.", method, path, status));
+        }
+    }
+}
@@ -18,10 +18,44 @@ package org.wso2.strategy.kubernetes.constants;
 public class KubernetesConstantsExtended {
     public static final String REPLICATION_CONTROLLER_COMPONENT_KIND = "ReplicationController";
     public static final String LABEL_NAME = "name";
+    public static final String DEPLOYMENT_LABEL = "deployment";
     public static final int NODE_PORT_LOWER_LIMIT = 30000;
     public static final int NODE_PORT_UPPER_LIMIT = 32767;
     public static final int CONTAINER_EXPOSED_PORT = 9443;
-    public static final String NODE_PORT_ALLOCATION_FILENAME = "NodePortAllocation.txt";
+    public static final String NODE_PORT_ALLOCATION_FILENAME = "NodePortAllocation.bitmap";
     public static final String SESSION_AFFINITY_CONFIG = "None";
     public static final String SERVICE_PORT_NAME = "http-1";
+    public static final String DEFAULT_NAMESPACE = "default";
+    public static final String CACHE_STRICT_READ_THROUGH_PROPERTY = "kubernetes.cache.strict-read-through";
+    public static final String CACHE_RESYNC_INTERVAL_PROPERTY = "kubernetes.cache.resync-interval";
+    public static final long DEFAULT_CACHE_RESYNC_INTERVAL_IN_MILLISECONDS = 300000;
+    public static final String ROLLING_UPDATE_MAX_SURGE_PROPERTY = "kubernetes.rolling-update.max-surge";
+    public static final int DEFAULT_ROLLING_UPDATE_MAX_SURGE = 1;
+    public static final String ROLLING_UPDATE_MAX_UNAVAILABLE_PROPERTY = "kubernetes.rolling-update.max-unavailable";
+    public static final int DEFAULT_ROLLING_UPDATE_MAX_UNAVAILABLE = 0;
+    public static final String ROLLING_UPDATE_READINESS_TIMEOUT_PROPERTY =
+            "kubernetes.rolling-update.readiness-timeout";
+    public static final long DEFAULT_ROLLING_UPDATE_READINESS_TIMEOUT_IN_MILLISECONDS = 300000;
+    public static final String ROLLING_UPDATE_POLL_INTERVAL_PROPERTY = "kubernetes.rolling-update.poll-interval";
+    public static final long DEFAULT_ROLLING_UPDATE_POLL_INTERVAL_IN_MILLISECONDS = 1000;
+    public static final String POD_DELETION_PARALLELISM_PROPERTY = "kubernetes.pod-deletion.parallelism";
+    public static final int DEFAULT_POD_DELETION_PARALLELISM = 8;
+    public static final String NODE_PORT_SERVICE_TYPE = "NodePort";
+    public static final String CLIENT_POOL_SIZE_PROPERTY = "kubernetes.client.pool-size";
+    public static final int DEFAULT_CLIENT_POOL_SIZE = 20;
+    public static final String CLIENT_CONNECT_TIMEOUT_PROPERTY = "kubernetes.client.connect-timeout";
+    public static final int DEFAULT_CLIENT_CONNECT_TIMEOUT_IN_MILLISECONDS = 5000;
+    public static final String CLIENT_READ_TIMEOUT_PROPERTY = "kubernetes.client.read-timeout";
+    public static final int DEFAULT_CLIENT_READ_TIMEOUT_IN_MILLISECONDS = 30000;
+    public static final String CLIENT_IDLE_TIMEOUT_PROPERTY = "kubernetes.client.idle-timeout";
+    public static final long DEFAULT_CLIENT_IDLE_TIMEOUT_IN_MILLISECONDS = 30000;
+    public static final String SHARDS_PROPERTY = "kubernetes.shards";
+    public static final String SHARD_CAPACITY_PROPERTY = "kubernetes.shard.capacity";
+    // each tenant service takes one NodePort of its cluster
+    public static final int DEFAULT_SHARD_CAPACITY = NODE_PORT_UPPER_LIMIT - NODE_PORT_LOWER_LIMIT;
+    public static final String DEFAULT_SHARD_NAME = "default";
+    public static final int SHARD_VIRTUAL_NODE_COUNT = 128;
+    public static final String SHARD_PLACEMENT_FILENAME = "ShardPlacements.txt";
+    public static final String UPDATE_MAX_ATTEMPTS_PROPERTY = "kubernetes.update.max-attempts";
+    public static final int DEFAULT_UPDATE_MAX_ATTEMPTS = 5;
 }
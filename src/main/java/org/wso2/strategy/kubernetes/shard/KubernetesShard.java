@@ -0,0 +1,114 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.kubernetes.shard;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.wso2.strategy.kubernetes.cache.ClusterStateCache;
+import org.wso2.strategy.kubernetes.cache.interfaces.IClusterStateCache;
+import org.wso2.strategy.kubernetes.components.replication_controller.InstrumentedReplicationControllerHandler;
+import org.wso2.strategy.kubernetes.components.replication_controller.ReplicationControllerHandler;
+import org.wso2.strategy.kubernetes.components.replication_controller.interfaces.IReplicationControllerHandler;
+import org.wso2.strategy.kubernetes.components.service.InstrumentedServiceHandler;
+import org.wso2.strategy.kubernetes.components.service.ServiceHandler;
+import org.wso2.strategy.kubernetes.components.service.interfaces.IServiceHandler;
+import org.wso2.strategy.kubernetes.constants.KubernetesConstantsExtended;
+import org.wso2.strategy.miscellaneous.exception.CarbonKernelHandlerException;
+import org.wso2.strategy.miscellaneous.metrics.MetricsRegistry;
+
+/**
+ * a Java class which represents one of the Kubernetes clusters the tenants are spread across, along with the
+ * handlers of its components
+ */
+public class KubernetesShard {
+    private final String name;
+    private final String kubernetesURI;
+    private final int capacity;
+    private final IClusterStateCache clusterStateCache;
+    private final IReplicationControllerHandler replicationControllerHandler;
+    private final IServiceHandler serviceHandler;
+
+    private static final Logger LOG = LogManager.getLogger(KubernetesShard.class);
+
+    /**
+     * @param name          unique name of the shard
+     * @param kubernetesURI URL of the Kubernetes API server of the cluster
+     * @param capacity      maximum number of tenants deployed on the cluster
+     * @throws CarbonKernelHandlerException
+     */
+    public KubernetesShard(String name, String kubernetesURI, int capacity) throws CarbonKernelHandlerException {
+        this.name = name;
+        this.kubernetesURI = kubernetesURI;
+        this.capacity = capacity;
+        ClusterStateCache cache = new ClusterStateCache(kubernetesURI);
+        try {
+            cache.start();
+        } catch (CarbonKernelHandlerException exception) {
+            LOG.warn(String.format("Kubernetes cluster state cache of shard %s is unavailable. Reads are served by "
+                    + "the API server.", name));
+        }
+        clusterStateCache = cache;
+        // the calls to the components of all shards are recorded together
+        replicationControllerHandler = new InstrumentedReplicationControllerHandler(
+                new ReplicationControllerHandler(kubernetesURI, clusterStateCache), MetricsRegistry.getInstance());
+        serviceHandler = new InstrumentedServiceHandler(
+                new ServiceHandler(kubernetesURI, clusterStateCache, getNodePortAllocationFileName(name)),
+                MetricsRegistry.getInstance());
+    }
+
+    /**
+     * returns the file holding the NodePort allocations of the specified shard, which for the default shard
+     * is the one used before sharding
+     *
+     * @param name name of the shard
+     * @return the file holding the NodePort allocations of the shard
+     */
+    static String getNodePortAllocationFileName(String name) {
+        if (KubernetesConstantsExtended.DEFAULT_SHARD_NAME.equals(name)) {
+            return KubernetesConstantsExtended.NODE_PORT_ALLOCATION_FILENAME;
+        } else {
+            return "NodePortAllocation-" + name + ".bitmap";
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getKubernetesURI() {
+        return kubernetesURI;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public IClusterStateCache getClusterStateCache() {
+        return clusterStateCache;
+    }
+
+    public IReplicationControllerHandler getReplicationControllerHandler() {
+        return replicationControllerHandler;
+    }
+
+    public IServiceHandler getServiceHandler() {
+        return serviceHandler;
+    }
+
+    public String toString() {
+        return String.format("%s [kubernetes-url] %s [capacity] %d", name, kubernetesURI, capacity);
+    }
+}
@@ -0,0 +1,298 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.kubernetes.shard;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.wso2.strategy.kubernetes.constants.KubernetesConstantsExtended;
+import org.wso2.strategy.miscellaneous.exception.CarbonKernelHandlerException;
+import org.wso2.strategy.miscellaneous.helper.CarbonKernelHandlerHelper;
+import org.wso2.strategy.miscellaneous.io.FileInputKeyValueDataThread;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * a Java class which routes each tenant, by its Kubernetes component identifier, to one of several Kubernetes
+ * clusters
+ * <p>
+ * A tenant is placed on the first shard with spare capacity, walking clockwise around a consistent hash ring
+ * from the hash of its component identifier, so that adding a shard only moves the placement of the tenants
+ * hashed next to it. Placements are persisted and kept until the tenant is removed or rebalanced. Tenants
+ * without a placement, e.g. those deployed before sharding was configured, are looked up on the default shard.
+ */
+public class ShardRouter {
+    private final Map<String, KubernetesShard> shards = new LinkedHashMap<>();
+    private final KubernetesShard defaultShard;
+    // hash of each virtual node to its shard
+    private final NavigableMap<Long, KubernetesShard> ring = new TreeMap<>();
+    // component identifier to the name of the shard it is placed on, guarded by this
+    private final Map<String, String> placements = new HashMap<>();
+    private final Map<String, Integer> tenantCounts = new HashMap<>();
+    private final String storeFileName;
+
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+    private static final Logger LOG = LogManager.getLogger(ShardRouter.class);
+
+    /**
+     * @param shards           Kubernetes shards, of which the first one is the default shard
+     * @param virtualNodeCount number of points each shard takes on the hash ring
+     * @param storeFileName    file in which the placements are persisted
+     */
+    public ShardRouter(List<KubernetesShard> shards, int virtualNodeCount, String storeFileName) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one Kubernetes shard is required.");
+        }
+        for (KubernetesShard shard : shards) {
+            this.shards.put(shard.getName(), shard);
+            tenantCounts.put(shard.getName(), 0);
+            for (int virtualNode = 0; virtualNode < Math.max(1, virtualNodeCount); virtualNode++) {
+                ring.put(hash(shard.getName() + "#" + virtualNode), shard);
+            }
+        }
+        defaultShard = shards.get(0);
+        this.storeFileName = storeFileName;
+        FileInputKeyValueDataThread inputThread = new FileInputKeyValueDataThread(storeFileName);
+        inputThread.run();
+        for (Map.Entry<String, String> placement : inputThread.getFileContent().entrySet()) {
+            if (this.shards.containsKey(placement.getValue())) {
+                placements.put(placement.getKey(), placement.getValue());
+                tenantCounts.put(placement.getValue(), tenantCounts.get(placement.getValue()) + 1);
+            } else {
+                LOG.warn(String.format("Kubernetes shard %s of %s is no longer configured. It is looked up on the "
+                        + "default shard.", placement.getValue(), placement.getKey()));
+            }
+        }
+    }
+
+    /**
+     * returns a router over the shards configured by the system properties, in addition to the default shard
+     * of the specified Kubernetes API server
+     *
+     * @param kubernetesURI URL of the Kubernetes API server of the default shard
+     * @return a router over the configured shards
+     * @throws CarbonKernelHandlerException
+     */
+    public static ShardRouter fromSystemProperties(String kubernetesURI) throws CarbonKernelHandlerException {
+        List<KubernetesShard> shards = new ArrayList<>();
+        shards.add(new KubernetesShard(KubernetesConstantsExtended.DEFAULT_SHARD_NAME, kubernetesURI,
+                getCapacity(KubernetesConstantsExtended.DEFAULT_SHARD_NAME)));
+        String shardURLs = System.getProperty(KubernetesConstantsExtended.SHARDS_PROPERTY);
+        if (shardURLs != null) {
+            for (String shardDefinition : shardURLs.split(",")) {
+                String[] nameAndURL = shardDefinition.trim().split("=", 2);
+                if (nameAndURL.length != 2) {
+                    String message = String.format("Invalid Kubernetes shard definition: %s.", shardDefinition);
+                    LOG.error(message);
+                    throw new CarbonKernelHandlerException(message);
+                }
+                String name = nameAndURL[0].trim();
+                String shardURI = nameAndURL[1].trim();
+                if (!shardURI.equals(kubernetesURI)) {
+                    shards.add(new KubernetesShard(name, shardURI, getCapacity(name)));
+                }
+            }
+        }
+        return new ShardRouter(shards, KubernetesConstantsExtended.SHARD_VIRTUAL_NODE_COUNT,
+                KubernetesConstantsExtended.SHARD_PLACEMENT_FILENAME);
+    }
+
+    /**
+     * returns the shard the specified component is placed on, the default shard if it has no placement
+     *
+     * @param componentIdentifier Kubernetes component identifier of the tenant
+     * @return the shard the specified component is placed on
+     */
+    public synchronized KubernetesShard getShard(String componentIdentifier) {
+        String shardName = placements.get(componentIdentifier);
+        if (shardName != null) {
+            return shards.get(shardName);
+        } else {
+            return defaultShard;
+        }
+    }
+
+    /**
+     * places the specified component, unless already placed, on the first shard with spare capacity from its
+     * position on the hash ring
+     *
+     * @param componentIdentifier Kubernetes component identifier of the tenant
+     * @return the shard the component is placed on
+     * @throws CarbonKernelHandlerException if no shard has spare capacity
+     */
+    public synchronized KubernetesShard place(String componentIdentifier) throws CarbonKernelHandlerException {
+        String shardName = placements.get(componentIdentifier);
+        if (shardName != null) {
+            return shards.get(shardName);
+        }
+        for (KubernetesShard shard : getRingOrder(componentIdentifier)) {
+            if (hasCapacity(shard)) {
+                setPlacement(componentIdentifier, shard);
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug(String.format("Placed %s on Kubernetes shard %s.", componentIdentifier, shard));
+                }
+                return shard;
+            }
+        }
+        String message = String.format("No Kubernetes shard has capacity for %s.", componentIdentifier);
+        LOG.error(message);
+        throw new CarbonKernelHandlerException(message);
+    }
+
+    /**
+     * moves the placement of the specified component to the specified shard
+     *
+     * @param componentIdentifier Kubernetes component identifier of the tenant
+     * @param shardName           name of the shard to place the component on
+     * @throws CarbonKernelHandlerException if the shard is unknown or has no spare capacity
+     */
+    public synchronized void movePlacement(String componentIdentifier, String shardName)
+            throws CarbonKernelHandlerException {
+        KubernetesShard shard = getShardByName(shardName);
+        if (shard == getShard(componentIdentifier) && placements.containsKey(componentIdentifier)) {
+            return;
+        }
+        if (!hasCapacity(shard)) {
+            String message = String.format("Kubernetes shard %s has no capacity for %s.", shardName,
+                    componentIdentifier);
+            LOG.error(message);
+            throw new CarbonKernelHandlerException(message);
+        }
+        removePlacement(componentIdentifier);
+        setPlacement(componentIdentifier, shard);
+    }
+
+    /**
+     * releases the placement of the specified component, e.g. after it has been removed
+     *
+     * @param componentIdentifier Kubernetes component identifier of the tenant
+     */
+    public synchronized void release(String componentIdentifier) {
+        if (removePlacement(componentIdentifier)) {
+            persist();
+        }
+    }
+
+    /**
+     * returns the shard with the specified name
+     *
+     * @param shardName name of the shard
+     * @return the shard with the specified name
+     * @throws CarbonKernelHandlerException if no such shard is configured
+     */
+    public KubernetesShard getShardByName(String shardName) throws CarbonKernelHandlerException {
+        KubernetesShard shard = shards.get(shardName);
+        if (shard == null) {
+            String message = String.format("Unknown Kubernetes shard: %s.", shardName);
+            LOG.error(message);
+            throw new CarbonKernelHandlerException(message);
+        }
+        return shard;
+    }
+
+    public KubernetesShard getDefaultShard() {
+        return defaultShard;
+    }
+
+    public Collection<KubernetesShard> getShards() {
+        return Collections.unmodifiableCollection(shards.values());
+    }
+
+    public synchronized int getTenantCount(String shardName) {
+        Integer tenantCount = tenantCounts.get(shardName);
+        if (tenantCount != null) {
+            return tenantCount;
+        } else {
+            return 0;
+        }
+    }
+
+    public synchronized String toString() {
+        StringBuilder router = new StringBuilder(String.format("Kubernetes shards [shards] %d [tenants] %d",
+                shards.size(), placements.size()));
+        for (KubernetesShard shard : shards.values()) {
+            router.append("\n  ").append(shard).append(" [tenants] ").append(tenantCounts.get(shard.getName()));
+        }
+        return router.toString();
+    }
+
+    /**
+     * returns the distinct shards in the order met walking clockwise around the hash ring from the position
+     * of the specified component
+     */
+    private List<KubernetesShard> getRingOrder(String componentIdentifier) {
+        long position = hash(componentIdentifier);
+        Set<KubernetesShard> order = new LinkedHashSet<>();
+        for (KubernetesShard shard : ring.tailMap(position, true).values()) {
+            order.add(shard);
+            if (order.size() == shards.size()) {
+                return new ArrayList<>(order);
+            }
+        }
+        order.addAll(ring.headMap(position, false).values());
+        return new ArrayList<>(order);
+    }
+
+    private boolean hasCapacity(KubernetesShard shard) {
+        return tenantCounts.get(shard.getName()) < shard.getCapacity();
+    }
+
+    private void setPlacement(String componentIdentifier, KubernetesShard shard) {
+        placements.put(componentIdentifier, shard.getName());
+        tenantCounts.put(shard.getName(), tenantCounts.get(shard.getName()) + 1);
+        persist();
+    }
+
+    private boolean removePlacement(String componentIdentifier) {
+        String shardName = placements.remove(componentIdentifier);
+        if (shardName != null) {
+            tenantCounts.put(shardName, tenantCounts.get(shardName) - 1);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    private void persist() {
+        List<String> output = new ArrayList<>();
+        for (Map.Entry<String, String> placement : placements.entrySet()) {
+            output.add(placement.getKey() + "=" + placement.getValue());
+        }
+        CarbonKernelHandlerHelper.writeToFile(storeFileName, output);
+    }
+
+    private static int getCapacity(String shardName) {
+        return Integer.getInteger(KubernetesConstantsExtended.SHARD_CAPACITY_PROPERTY + "." + shardName,
+                Integer.getInteger(KubernetesConstantsExtended.SHARD_CAPACITY_PROPERTY,
+                        KubernetesConstantsExtended.DEFAULT_SHARD_CAPACITY));
+    }
+
+    private static long hash(String key) {
+        return HASH_FUNCTION.hashString(key, StandardCharsets.UTF_8).asLong();
+    }
+}
@@ -15,12 +15,10 @@
 */
 package org.wso2.strategy.miscellaneous.helper;
 
-import org.wso2.strategy.miscellaneous.io.FileOutputThread;
+import org.wso2.strategy.miscellaneous.io.StateFileWriter;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
 import java.util.List;
+import java.util.concurrent.Future;
 
 /**
  * a Java class which consists of various application specific utility methods
@@ -66,66 +64,14 @@ public class CarbonKernelHandlerHelper {
     }
 
     /**
-     * utility method which writes content to an external file
+     * utility method which writes content to an external file, without blocking on the disk. The file is
+     * replaced atomically by the state file writer, together with the other writes to it issued meanwhile.
      *
      * @param filePath path to the file to which content are to be written
      * @param data     content to be written to the file
+     * @return a future which completes once the content is committed to the file
      */
-    public static void writeToFile(String filePath, List<String> data) {
-        FileOutputThread outputThread = new FileOutputThread(filePath, data);
-        outputThread.run();
-    }
-
-    /**
-     * compares two deployed artifact version builds and indicates which version should come before and after
-     *
-     * @param buildIdentifierOne artifact version build one
-     * @param buildIdentifierTwo artifact version build two
-     * @return indicates which version should come before and after
-     * @throws ParseException
-     */
-    public static int compareBuildVersions(String buildIdentifierOne, String buildIdentifierTwo) throws ParseException {
-        final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-        int result;
-        String[] buildIdentifierOneSplit = buildIdentifierOne.split("-");
-        String[] buildIdentifierTwoSplit = buildIdentifierTwo.split("-");
-        final int artifactIndex = 0;
-        final int yearIndex = 1;
-        final int monthIndex = 2;
-        final int dayIndex = 3;
-        final int timeIndex = 4;
-
-        String identifierOne = buildIdentifierOneSplit[artifactIndex];
-        Date identifierOneDate = dateFormat
-                .parse(buildIdentifierOneSplit[yearIndex] + "-" + buildIdentifierOneSplit[monthIndex] + "-"
-                        + buildIdentifierOneSplit[dayIndex]);
-
-        String identifierTwo = buildIdentifierTwoSplit[artifactIndex];
-        Date identifierTwoDate = dateFormat
-                .parse(buildIdentifierTwoSplit[yearIndex] + "-" + buildIdentifierTwoSplit[monthIndex] + "-"
-                        + buildIdentifierTwoSplit[dayIndex]);
-
-        if (identifierOne.compareTo(identifierTwo) < 0) {
-            result = -1;
-        } else if (identifierOne.compareTo(identifierTwo) > 0) {
-            result = 1;
-        } else {
-            if (identifierOneDate.before(identifierTwoDate)) {
-                result = -1;
-            } else if (identifierOneDate.after(identifierTwoDate)) {
-                result = 1;
-            } else {
-                long identifierOneTime = Long.parseLong(buildIdentifierOneSplit[timeIndex]);
-                long identifierTwoTime = Long.parseLong(buildIdentifierTwoSplit[timeIndex]);
-                if (identifierOneTime < identifierTwoTime) {
-                    result = -1;
-                } else if (identifierOneTime > identifierTwoTime) {
-                    result = 1;
-                } else {
-                    result = 0;
-                }
-            }
-        }
-        return result;
+    public static Future<Void> writeToFile(String filePath, List<String> data) {
+        return StateFileWriter.getInstance().write(filePath, data);
     }
 }
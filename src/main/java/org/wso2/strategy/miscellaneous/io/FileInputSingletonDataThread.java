@@ -40,6 +40,8 @@ public class FileInputSingletonDataThread implements Runnable {
     }
 
     public void run() {
+        // reads the content of the writes to the file issued so far
+        StateFileWriter.getInstance().awaitWrites(fileName);
         try {
             FileInput input = new FileInput();
             input.openFile(fileName);
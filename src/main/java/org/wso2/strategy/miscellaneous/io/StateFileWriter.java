@@ -0,0 +1,257 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.miscellaneous.io;
+
+import com.google.common.util.concurrent.SettableFuture;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * a Java class which writes the state files of the application on a dedicated writer thread, so that callers
+ * do not block on the disk.
+ * <p>
+ * A write replaces the whole content of a file. Writes to the same file issued within the group commit window,
+ * or while the previous group is being committed, are coalesced so that only the latest content is written. Each
+ * file is replaced atomically: the content is written and forced to a temporary file in the same directory,
+ * which is then renamed over the file, so that a crash leaves either the previous or the new content.
+ */
+public class StateFileWriter {
+    private final long groupCommitWindow;
+    // latest content of each file with a write not yet committed, by file name
+    private final Map<String, PendingWrite> pendingWrites = new HashMap<>();
+    // writes of the group being committed
+    private final Map<String, PendingWrite> committingWrites = new HashMap<>();
+    private final AtomicLong writeCount = new AtomicLong();
+    private final AtomicLong commitCount = new AtomicLong();
+
+    private static volatile StateFileWriter instance;
+    private static final String GROUP_COMMIT_WINDOW_PROPERTY = "carbon.io.group-commit-window";
+    private static final long DEFAULT_GROUP_COMMIT_WINDOW_IN_MILLISECONDS = 5;
+    private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+    private static final Logger LOG = LogManager.getLogger(StateFileWriter.class);
+
+    private StateFileWriter(long groupCommitWindow) {
+        this.groupCommitWindow = groupCommitWindow;
+        Thread writer = new Thread(new Runnable() {
+            public void run() {
+                writeContinuously();
+            }
+        }, "state-file-writer");
+        writer.setDaemon(true);
+        writer.start();
+        // the writes issued before the JVM exits are committed
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            public void run() {
+                flush();
+            }
+        }, "state-file-writer-shutdown"));
+    }
+
+    /**
+     * returns the writer shared by the application, starting its writer thread on first use
+     *
+     * @return the writer shared by the application
+     */
+    public static StateFileWriter getInstance() {
+        if (instance == null) {
+            synchronized (StateFileWriter.class) {
+                if (instance == null) {
+                    instance = new StateFileWriter(Long.getLong(GROUP_COMMIT_WINDOW_PROPERTY,
+                            DEFAULT_GROUP_COMMIT_WINDOW_IN_MILLISECONDS));
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * schedules the replacement of the content of a file with the specified lines
+     *
+     * @param fileName name of the file
+     * @param data     lines to be written to the file
+     * @return a future which completes once the content, or content written later, is committed to the file
+     */
+    public synchronized Future<Void> write(String fileName, List<String> data) {
+        writeCount.incrementAndGet();
+        PendingWrite pendingWrite = pendingWrites.get(fileName);
+        if (pendingWrite == null) {
+            pendingWrite = new PendingWrite();
+            pendingWrites.put(fileName, pendingWrite);
+            notifyAll();
+        }
+        pendingWrite.content = (data != null) ? new ArrayList<>(data) : new ArrayList<String>();
+        return pendingWrite.committed;
+    }
+
+    /**
+     * waits until the writes issued to the specified file so far are committed, so that a subsequent read sees
+     * their content
+     *
+     * @param fileName name of the file
+     */
+    public void awaitWrites(String fileName) {
+        List<Future<Void>> writes = new ArrayList<>();
+        synchronized (this) {
+            if (pendingWrites.containsKey(fileName)) {
+                writes.add(pendingWrites.get(fileName).committed);
+            }
+            if (committingWrites.containsKey(fileName)) {
+                writes.add(committingWrites.get(fileName).committed);
+            }
+        }
+        await(writes);
+    }
+
+    /**
+     * waits until every write issued so far is committed
+     */
+    public void flush() {
+        List<Future<Void>> writes = new ArrayList<>();
+        synchronized (this) {
+            for (PendingWrite pendingWrite : pendingWrites.values()) {
+                writes.add(pendingWrite.committed);
+            }
+            for (PendingWrite pendingWrite : committingWrites.values()) {
+                writes.add(pendingWrite.committed);
+            }
+        }
+        await(writes);
+    }
+
+    public long getWriteCount() {
+        return writeCount.get();
+    }
+
+    /**
+     * @return the number of file replacements, which is lower than the number of writes by the writes coalesced
+     */
+    public long getCommitCount() {
+        return commitCount.get();
+    }
+
+    public String toString() {
+        return String.format("State file writer [writes] %d [commits] %d [window] %d ms", getWriteCount(),
+                getCommitCount(), groupCommitWindow);
+    }
+
+    private void writeContinuously() {
+        while (true) {
+            try {
+                synchronized (this) {
+                    while (pendingWrites.isEmpty()) {
+                        wait();
+                    }
+                }
+                // gathers the writes to the same files issued shortly after the first one
+                Thread.sleep(groupCommitWindow);
+                synchronized (this) {
+                    committingWrites.putAll(pendingWrites);
+                    pendingWrites.clear();
+                }
+                for (Map.Entry<String, PendingWrite> write : committingWrites.entrySet()) {
+                    commit(write.getKey(), write.getValue());
+                }
+                synchronized (this) {
+                    committingWrites.clear();
+                }
+            } catch (InterruptedException exception) {
+                LOG.warn("The state file writer was interrupted.", exception);
+            }
+        }
+    }
+
+    private void commit(String fileName, PendingWrite pendingWrite) {
+        try {
+            replace(Paths.get(fileName).toAbsolutePath(), pendingWrite.content);
+            commitCount.incrementAndGet();
+            pendingWrite.committed.set(null);
+        } catch (IOException | RuntimeException exception) {
+            String message = String.format("Could not output data to the external file %s.", fileName);
+            LOG.error(message, exception);
+            pendingWrite.committed.setException(exception);
+        }
+    }
+
+    private static void replace(Path filePath, List<String> content) throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (String line : content) {
+            text.append(line).append(System.lineSeparator());
+        }
+        // a uniquely named temporary file, so that neither a concurrent writer nor a file left by a crash is reused
+        Path temporaryPath = Files
+                .createTempFile(filePath.getParent(), filePath.getFileName() + ".", TEMPORARY_FILE_SUFFIX);
+        try {
+            try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.WRITE)) {
+                ByteBuffer bytes = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+                channel.force(true);
+            }
+            Files.move(temporaryPath, filePath, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException exception) {
+            Files.deleteIfExists(temporaryPath);
+            throw exception;
+        }
+        // makes the rename durable, where the platform allows a directory to be forced
+        try (FileChannel directory = FileChannel.open(filePath.getParent(), StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException exception) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(String.format("Could not force the directory of %s.", filePath), exception);
+            }
+        }
+    }
+
+    private static void await(List<Future<Void>> writes) {
+        for (Future<Void> write : writes) {
+            try {
+                write.get();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException exception) {
+                // logged by the writer thread
+            }
+        }
+    }
+
+    /**
+     * latest content of a file to be written and the future completed once it is committed
+     */
+    private static class PendingWrite {
+        private List<String> content;
+        private final SettableFuture<Void> committed = SettableFuture.create();
+    }
+}
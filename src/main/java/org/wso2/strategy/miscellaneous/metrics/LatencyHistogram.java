@@ -0,0 +1,128 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.miscellaneous.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * a latency histogram with fixed, exponentially growing buckets, which may be recorded into from many threads
+ * without locking or allocating
+ * <p>
+ * The first bucket holds the latencies up to 100 microseconds and each further bucket doubles the upper bound of
+ * the previous one, up to about 7 minutes. Longer latencies fall into a last, unbounded bucket.
+ */
+public class LatencyHistogram {
+    private final AtomicLongArray bucketCounts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalLatency = new AtomicLong();
+    private final AtomicLong maximumLatency = new AtomicLong();
+
+    private static final long FIRST_BUCKET_UPPER_BOUND_IN_NANOSECONDS = 100000;
+    // 23 bounded buckets followed by the unbounded one
+    private static final int BUCKET_COUNT = 24;
+
+    /**
+     * @param latencyInNanoseconds latency to be recorded, negative latencies are recorded as zero
+     */
+    public void record(long latencyInNanoseconds) {
+        long latency = Math.max(0, latencyInNanoseconds);
+        bucketCounts.incrementAndGet(getBucketIndex(latency));
+        totalLatency.addAndGet(latency);
+        long current = maximumLatency.get();
+        while ((latency > current) && (!maximumLatency.compareAndSet(current, latency))) {
+            current = maximumLatency.get();
+        }
+    }
+
+    /**
+     * @return the number of recorded latencies
+     */
+    public long getCount() {
+        long count = 0;
+        for (int index = 0; index < BUCKET_COUNT; index++) {
+            count += bucketCounts.get(index);
+        }
+        return count;
+    }
+
+    /**
+     * @param index index of the bucket, from 0 to getBucketCount() - 1
+     * @return the number of recorded latencies which fall into the bucket
+     */
+    public long getCount(int index) {
+        return bucketCounts.get(index);
+    }
+
+    public long getTotalLatencyInNanoseconds() {
+        return totalLatency.get();
+    }
+
+    public long getMaximumLatencyInNanoseconds() {
+        return maximumLatency.get();
+    }
+
+    /**
+     * returns an estimate of a latency percentile, i.e. the upper bound of the bucket holding the percentile,
+     * or the maximum recorded latency if it is lower
+     *
+     * @param fraction percentile as a fraction, e.g. 0.99 for the 99th percentile
+     * @return the estimated percentile in nanoseconds, 0 if no latency was recorded
+     */
+    public long getPercentileInNanoseconds(double fraction) {
+        long[] counts = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int index = 0; index < BUCKET_COUNT; index++) {
+            counts[index] = bucketCounts.get(index);
+            count += counts[index];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * count));
+        long cumulativeCount = 0;
+        int index = 0;
+        while ((index < BUCKET_COUNT - 1) && (cumulativeCount + counts[index] < rank)) {
+            cumulativeCount += counts[index];
+            index++;
+        }
+        return Math.min(getUpperBoundInNanoseconds(index), maximumLatency.get());
+    }
+
+    /**
+     * @return the number of buckets, including the unbounded one
+     */
+    public static int getBucketCount() {
+        return BUCKET_COUNT;
+    }
+
+    /**
+     * @param index index of the bucket, from 0 to getBucketCount() - 1
+     * @return the inclusive upper bound of the bucket, Long.MAX_VALUE for the unbounded bucket
+     */
+    public static long getUpperBoundInNanoseconds(int index) {
+        return (index < BUCKET_COUNT - 1) ? (FIRST_BUCKET_UPPER_BOUND_IN_NANOSECONDS << index) : Long.MAX_VALUE;
+    }
+
+    static int getBucketIndex(long latencyInNanoseconds) {
+        if (latencyInNanoseconds <= FIRST_BUCKET_UPPER_BOUND_IN_NANOSECONDS) {
+            return 0;
+        }
+        // the bucket index is the bit length of the latency in units of the first bucket's upper bound
+        int index = Long.SIZE - Long.numberOfLeadingZeros((latencyInNanoseconds - 1)
+                / FIRST_BUCKET_UPPER_BOUND_IN_NANOSECONDS);
+        return Math.min(index, BUCKET_COUNT - 1);
+    }
+}
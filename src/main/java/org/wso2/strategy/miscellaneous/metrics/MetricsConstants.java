@@ -0,0 +1,26 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.miscellaneous.metrics;
+
+public class MetricsConstants {
+    public static final String JMX_ENABLED_PROPERTY = "carbon.metrics.jmx.enabled";
+    public static final String JMX_DOMAIN = "org.wso2.strategy";
+    public static final String PROMETHEUS_PORT_PROPERTY = "carbon.metrics.prometheus.port";
+    public static final String PROMETHEUS_PATH = "/metrics";
+    public static final String TOTAL_STAGE = "total";
+    public static final String LATENCY_METRIC = "carbon_operation_duration_seconds";
+    public static final String OUTCOME_METRIC = "carbon_operation_calls_total";
+}
@@ -0,0 +1,146 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.miscellaneous.metrics;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.wso2.strategy.miscellaneous.exception.CarbonKernelHandlerException;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * holds the latency and outcome metrics of the orchestration operations, by operation and stage
+ * <p>
+ * Each stage is registered as an MXBean named org.wso2.strategy:type=OperationMetrics,operation=...,stage=...
+ * unless JMX is disabled through carbon.metrics.jmx.enabled, and all of them may be scraped in the Prometheus text
+ * format from the endpoint started by startPrometheusEndpoint.
+ */
+public class MetricsRegistry {
+    // MBean server the stages are registered with, null if JMX is disabled
+    private final MBeanServer mBeanServer;
+    private final ConcurrentMap<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+    private PrometheusEndpoint prometheusEndpoint;
+
+    private static final Logger LOG = LogManager.getLogger(MetricsRegistry.class);
+    private static final MetricsRegistry INSTANCE = new MetricsRegistry(
+            Boolean.parseBoolean(System.getProperty(MetricsConstants.JMX_ENABLED_PROPERTY, "true")));
+
+    /**
+     * @param jmxEnabled true to register the stages with the platform MBean server, else false
+     */
+    public MetricsRegistry(boolean jmxEnabled) {
+        if (jmxEnabled) {
+            mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        } else {
+            mBeanServer = null;
+        }
+    }
+
+    /**
+     * @return the registry shared by the handlers of this process
+     */
+    public static MetricsRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param operation name of the operation, e.g. carbon.deploy
+     * @return the metrics of the operation, created if it has not been used before
+     */
+    public OperationMetrics getOperation(String operation) {
+        OperationMetrics operationMetrics = operations.get(operation);
+        if (operationMetrics == null) {
+            OperationMetrics createdOperationMetrics = new OperationMetrics(operation, this);
+            operationMetrics = operations.putIfAbsent(operation, createdOperationMetrics);
+            if (operationMetrics == null) {
+                operationMetrics = createdOperationMetrics;
+            }
+        }
+        return operationMetrics;
+    }
+
+    /**
+     * @return the metrics of all stages of all operations, ordered by operation and stage
+     */
+    public List<StageMetrics> getStages() {
+        List<StageMetrics> stages = new ArrayList<>();
+        for (OperationMetrics operationMetrics : operations.values()) {
+            stages.addAll(operationMetrics.getStages());
+        }
+        Collections.sort(stages, new Comparator<StageMetrics>() {
+            public int compare(StageMetrics first, StageMetrics second) {
+                int operationOrder = first.getOperation().compareTo(second.getOperation());
+                return (operationOrder != 0) ? operationOrder : first.getStage().compareTo(second.getStage());
+            }
+        });
+        return stages;
+    }
+
+    /**
+     * starts serving the metrics in the Prometheus text format, unless an endpoint of this registry is serving
+     * them already
+     *
+     * @param port port to listen on, on all interfaces
+     * @throws CarbonKernelHandlerException if the endpoint could not be started
+     */
+    public synchronized void startPrometheusEndpoint(int port) throws CarbonKernelHandlerException {
+        if (prometheusEndpoint == null) {
+            PrometheusEndpoint endpoint = new PrometheusEndpoint(this, port);
+            endpoint.start();
+            prometheusEndpoint = endpoint;
+        }
+    }
+
+    /**
+     * stops the Prometheus endpoint of this registry, if started
+     */
+    public synchronized void stopPrometheusEndpoint() {
+        if (prometheusEndpoint != null) {
+            prometheusEndpoint.stop();
+            prometheusEndpoint = null;
+        }
+    }
+
+    /**
+     * registers a newly created stage with the MBean server. A stage which cannot be registered is still
+     * recorded into and served by the Prometheus endpoint.
+     */
+    void register(StageMetrics stageMetrics) {
+        if (mBeanServer == null) {
+            return;
+        }
+        try {
+            ObjectName name = new ObjectName(String.format("%s:type=OperationMetrics,operation=%s,stage=%s",
+                    MetricsConstants.JMX_DOMAIN, ObjectName.quote(stageMetrics.getOperation()),
+                    ObjectName.quote(stageMetrics.getStage())));
+            if (!mBeanServer.isRegistered(name)) {
+                mBeanServer.registerMBean(stageMetrics, name);
+            }
+        } catch (JMException exception) {
+            LOG.warn(String.format("Could not register the metrics of %s/%s with JMX.", stageMetrics.getOperation(),
+                    stageMetrics.getStage()), exception);
+        }
+    }
+}
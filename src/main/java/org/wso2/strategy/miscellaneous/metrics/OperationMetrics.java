@@ -0,0 +1,83 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.miscellaneous.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * the metrics of the stages of an orchestration operation, including the total stage which covers the operation
+ * as a whole
+ * <p>
+ * The stages are created on their first use. Once created, looking a stage up and recording into it allocates
+ * nothing, as long as the stage names are constants.
+ */
+public class OperationMetrics {
+    private final String operation;
+    private final MetricsRegistry registry;
+    private final ConcurrentMap<String, StageMetrics> stages = new ConcurrentHashMap<>();
+
+    OperationMetrics(String operation, MetricsRegistry registry) {
+        this.operation = operation;
+        this.registry = registry;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * @param stage name of the stage
+     * @return the metrics of the stage, created if it has not been used before
+     */
+    public StageMetrics getStage(String stage) {
+        StageMetrics stageMetrics = stages.get(stage);
+        if (stageMetrics == null) {
+            StageMetrics createdStageMetrics = new StageMetrics(operation, stage);
+            stageMetrics = stages.putIfAbsent(stage, createdStageMetrics);
+            if (stageMetrics == null) {
+                stageMetrics = createdStageMetrics;
+                registry.register(stageMetrics);
+            }
+        }
+        return stageMetrics;
+    }
+
+    /**
+     * @return the metrics of the operation as a whole
+     */
+    public StageMetrics getTotal() {
+        return getStage(MetricsConstants.TOTAL_STAGE);
+    }
+
+    /**
+     * records a run of a stage which started at the specified time and ends now
+     *
+     * @param stage                  name of the stage
+     * @param startTimeInNanoseconds System.nanoTime() at the start of the stage
+     * @param succeeded              true if the stage succeeded, else false
+     * @return System.nanoTime() at the end of the stage, i.e. the start time of a following stage
+     */
+    public long record(String stage, long startTimeInNanoseconds, boolean succeeded) {
+        return getStage(stage).record(startTimeInNanoseconds, succeeded);
+    }
+
+    List<StageMetrics> getStages() {
+        return new ArrayList<>(stages.values());
+    }
+}
@@ -0,0 +1,155 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.miscellaneous.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.wso2.strategy.miscellaneous.exception.CarbonKernelHandlerException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * serves the metrics of a registry over HTTP in the Prometheus text exposition format, as a latency histogram
+ * in seconds and a success and failure counter per operation and stage
+ */
+public class PrometheusEndpoint {
+    private final MetricsRegistry registry;
+    private final int port;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final double NANOSECONDS_PER_SECOND = 1e9;
+    private static final Logger LOG = LogManager.getLogger(PrometheusEndpoint.class);
+
+    public PrometheusEndpoint(MetricsRegistry registry, int port) {
+        this.registry = registry;
+        this.port = port;
+    }
+
+    public synchronized void start() throws CarbonKernelHandlerException {
+        if (server != null) {
+            return;
+        }
+        try {
+            server = HttpServer.create(new InetSocketAddress(port), 0);
+        } catch (IOException exception) {
+            String message = String.format("Could not start the Prometheus metrics endpoint on port %d.", port);
+            LOG.error(message, exception);
+            throw new CarbonKernelHandlerException(message, exception);
+        }
+        executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "prometheus-endpoint");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        server.setExecutor(executor);
+        server.createContext(MetricsConstants.PROMETHEUS_PATH, new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    byte[] content = render(registry.getStages()).getBytes(StandardCharsets.UTF_8);
+                    exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+                    exchange.sendResponseHeaders(200, content.length);
+                    try (OutputStream responseBody = exchange.getResponseBody()) {
+                        responseBody.write(content);
+                    }
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        server.start();
+        LOG.info(String.format("Serving the operation metrics at http://localhost:%d%s.",
+                server.getAddress().getPort(), MetricsConstants.PROMETHEUS_PATH));
+    }
+
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+            executor = null;
+        }
+    }
+
+    /**
+     * @return the port the endpoint listens on, e.g. when started on port 0, or -1 if it is not started
+     */
+    public synchronized int getPort() {
+        return (server != null) ? server.getAddress().getPort() : -1;
+    }
+
+    /**
+     * renders the metrics of the specified stages in the Prometheus text exposition format
+     *
+     * @param stages metrics of the stages, ordered by operation and stage
+     * @return the rendered metrics
+     */
+    public static String render(List<StageMetrics> stages) {
+        StringBuilder text = new StringBuilder();
+        text.append("# HELP ").append(MetricsConstants.LATENCY_METRIC)
+                .append(" Latency of the orchestration operations, by operation and stage.\n");
+        text.append("# TYPE ").append(MetricsConstants.LATENCY_METRIC).append(" histogram\n");
+        for (StageMetrics stage : stages) {
+            String labels = getLabels(stage);
+            LatencyHistogram histogram = stage.getHistogram();
+            long cumulativeCount = 0;
+            for (int index = 0; index < LatencyHistogram.getBucketCount(); index++) {
+                cumulativeCount += histogram.getCount(index);
+                long upperBound = LatencyHistogram.getUpperBoundInNanoseconds(index);
+                String bound = (upperBound == Long.MAX_VALUE) ? "+Inf"
+                        : String.valueOf(upperBound / NANOSECONDS_PER_SECOND);
+                text.append(MetricsConstants.LATENCY_METRIC).append("_bucket{").append(labels).append(",le=\"")
+                        .append(bound).append("\"} ").append(cumulativeCount).append('\n');
+            }
+            text.append(MetricsConstants.LATENCY_METRIC).append("_sum{").append(labels).append("} ")
+                    .append(histogram.getTotalLatencyInNanoseconds() / NANOSECONDS_PER_SECOND).append('\n');
+            text.append(MetricsConstants.LATENCY_METRIC).append("_count{").append(labels).append("} ")
+                    .append(cumulativeCount).append('\n');
+        }
+        text.append("# HELP ").append(MetricsConstants.OUTCOME_METRIC)
+                .append(" Calls of the orchestration operations, by operation, stage and outcome.\n");
+        text.append("# TYPE ").append(MetricsConstants.OUTCOME_METRIC).append(" counter\n");
+        for (StageMetrics stage : stages) {
+            String labels = getLabels(stage);
+            text.append(MetricsConstants.OUTCOME_METRIC).append('{').append(labels).append(",outcome=\"success\"} ")
+                    .append(stage.getSuccessCount()).append('\n');
+            text.append(MetricsConstants.OUTCOME_METRIC).append('{').append(labels).append(",outcome=\"failure\"} ")
+                    .append(stage.getFailureCount()).append('\n');
+        }
+        return text.toString();
+    }
+
+    private static String getLabels(StageMetrics stage) {
+        return "operation=\"" + escape(stage.getOperation()) + "\",stage=\"" + escape(stage.getStage()) + "\"";
+    }
+
+    private static String escape(String labelValue) {
+        return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,103 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.miscellaneous.metrics;
+
+import org.wso2.strategy.miscellaneous.metrics.interfaces.IStageMetrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * the latency histogram and the success and failure counts of a stage of an orchestration operation
+ */
+public class StageMetrics implements IStageMetrics {
+    private final String operation;
+    private final String stage;
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private final AtomicLong successCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+
+    private static final double NANOSECONDS_PER_MILLISECOND = 1000000.0;
+
+    public StageMetrics(String operation, String stage) {
+        this.operation = operation;
+        this.stage = stage;
+    }
+
+    /**
+     * records a run of the stage which started at the specified time and ends now
+     *
+     * @param startTimeInNanoseconds System.nanoTime() at the start of the stage
+     * @param succeeded              true if the stage succeeded, else false
+     * @return System.nanoTime() at the end of the stage, i.e. the start time of a following stage
+     */
+    public long record(long startTimeInNanoseconds, boolean succeeded) {
+        long endTime = System.nanoTime();
+        histogram.record(endTime - startTimeInNanoseconds);
+        if (succeeded) {
+            successCount.incrementAndGet();
+        } else {
+            failureCount.incrementAndGet();
+        }
+        return endTime;
+    }
+
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    public long getSuccessCount() {
+        return successCount.get();
+    }
+
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    public double getMeanLatencyInMilliseconds() {
+        long count = histogram.getCount();
+        return (count > 0) ? histogram.getTotalLatencyInNanoseconds() / NANOSECONDS_PER_MILLISECOND / count : 0;
+    }
+
+    public double getMaximumLatencyInMilliseconds() {
+        return histogram.getMaximumLatencyInNanoseconds() / NANOSECONDS_PER_MILLISECOND;
+    }
+
+    public double get50thPercentileLatencyInMilliseconds() {
+        return histogram.getPercentileInNanoseconds(0.5) / NANOSECONDS_PER_MILLISECOND;
+    }
+
+    public double get99thPercentileLatencyInMilliseconds() {
+        return histogram.getPercentileInNanoseconds(0.99) / NANOSECONDS_PER_MILLISECOND;
+    }
+
+    public double get999thPercentileLatencyInMilliseconds() {
+        return histogram.getPercentileInNanoseconds(0.999) / NANOSECONDS_PER_MILLISECOND;
+    }
+
+    public String toString() {
+        return String.format("%s/%s [successes] %d [failures] %d [mean] %.2f ms [p99] %.2f ms [max] %.2f ms",
+                operation, stage, getSuccessCount(), getFailureCount(), getMeanLatencyInMilliseconds(),
+                get99thPercentileLatencyInMilliseconds(), getMaximumLatencyInMilliseconds());
+    }
+}
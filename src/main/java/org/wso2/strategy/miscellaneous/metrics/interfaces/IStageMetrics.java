@@ -0,0 +1,49 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.miscellaneous.metrics.interfaces;
+
+import javax.management.MXBean;
+
+/**
+ * the management interface of the latency and outcome figures of a stage of an orchestration operation,
+ * exposed over JMX
+ */
+@MXBean
+public interface IStageMetrics {
+    /**
+     * @return name of the operation, e.g. carbon.deploy
+     */
+    String getOperation();
+
+    /**
+     * @return name of the stage of the operation, e.g. build, or total for the operation as a whole
+     */
+    String getStage();
+
+    long getSuccessCount();
+
+    long getFailureCount();
+
+    double getMeanLatencyInMilliseconds();
+
+    double getMaximumLatencyInMilliseconds();
+
+    double get50thPercentileLatencyInMilliseconds();
+
+    double get99thPercentileLatencyInMilliseconds();
+
+    double get999thPercentileLatencyInMilliseconds();
+}
@@ -0,0 +1,142 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.carbon;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+import org.wso2.strategy.miscellaneous.exception.CarbonKernelHandlerException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * a Java class which tests the parsing of build versions and the packing of their build time into a long
+ */
+public class BuildVersionTest {
+    private static final int MAXIMUM_YEAR = (1 << 27) - 1;
+    private static final int MILLIS_PER_DAY = 24 * 60 * 60 * 1000;
+
+    @Test
+    public void packedBuildTimeRoundTrips() throws Exception {
+        DateTime dateTime = new DateTime(2015, 9, 30, 13, 45, 12, 345, DateTimeZone.UTC);
+        BuildVersion created = BuildVersion.create("5.0.0", dateTime);
+
+        BuildVersion parsed = BuildVersion.parse("tenant/wso2carbon:" + created.getTag());
+
+        assertEquals(created, parsed);
+        assertEquals("5.0.0", parsed.getRelease());
+        assertEquals(created.getBuildTime(), parsed.getBuildTime());
+        assertBuildTime(parsed, 2015, 9, 30, dateTime.getMillisOfDay());
+    }
+
+    @Test
+    public void packsTheLargestFieldsWithoutOverflow() throws Exception {
+        BuildVersion buildVersion = BuildVersion
+                .parse(String.format("5.0.0-%d-12-31-%d", MAXIMUM_YEAR, MILLIS_PER_DAY - 1));
+
+        assertTrue(buildVersion.getBuildTime() > 0);
+        assertBuildTime(buildVersion, MAXIMUM_YEAR, 12, 31, MILLIS_PER_DAY - 1);
+    }
+
+    @Test
+    public void keepsReleasesWithHyphens() throws Exception {
+        BuildVersion buildVersion = BuildVersion.parse("localhost:5000/tenant/wso2carbon:5.0.0-m1-2015-9-1-0");
+
+        assertEquals("5.0.0-m1", buildVersion.getRelease());
+        assertEquals("5.0.0-m1-2015-9-1-0", buildVersion.getTag());
+    }
+
+    @Test
+    public void ordersByReleaseAndBuildTime() throws Exception {
+        List<String> orderedTags = Arrays.asList("5.0.0-2014-12-31-86399999", "5.0.0-2015-1-1-0",
+                "5.0.0-2015-1-1-1", "5.0.0-2015-1-2-0", "5.0.0-2015-2-1-0", "5.0.0-2015-10-1-0",
+                "5.1.0-2010-1-1-0");
+        List<BuildVersion> buildVersions = new ArrayList<>();
+        for (String tag : orderedTags) {
+            buildVersions.add(BuildVersion.parse(tag));
+        }
+        Collections.shuffle(buildVersions, new Random(1));
+
+        Collections.sort(buildVersions);
+
+        List<String> sortedTags = new ArrayList<>();
+        for (BuildVersion buildVersion : buildVersions) {
+            sortedTags.add(buildVersion.getTag());
+        }
+        assertEquals(orderedTags, sortedTags);
+    }
+
+    @Test
+    public void packedBuildTimesFollowTheBuildDates() throws Exception {
+        Random random = new Random(1);
+        long latestInstant = new DateTime(2100, 1, 1, 0, 0, DateTimeZone.UTC).getMillis();
+        for (int comparison = 0; comparison < 10000; comparison++) {
+            DateTime first = new DateTime((long) (random.nextDouble() * latestInstant), DateTimeZone.UTC);
+            DateTime second = new DateTime((long) (random.nextDouble() * latestInstant), DateTimeZone.UTC);
+            long firstBuildTime = BuildVersion.create("5.0.0", first).getBuildTime();
+            long secondBuildTime = BuildVersion.create("5.0.0", second).getBuildTime();
+            assertEquals(first + " and " + second, Integer.signum(first.compareTo(second)),
+                    Long.signum(firstBuildTime - secondBuildTime));
+        }
+    }
+
+    @Test
+    public void rejectsOutOfRangeFields() {
+        String[] tags = { "5.0.0-2015-0-1-0", "5.0.0-2015-13-1-0", "5.0.0-2015-9-0-0", "5.0.0-2015-9-32-0",
+                "5.0.0-2015-9-1-" + MILLIS_PER_DAY, "5.0.0-" + (MAXIMUM_YEAR + 1) + "-9-1-0" };
+        for (String tag : tags) {
+            assertRejected(tag);
+        }
+    }
+
+    @Test
+    public void rejectsMalformedVersions() {
+        String[] tags = { "5.0.0", "5.0.0-2015-9-1", "2015-9-1-0", "5.0.0-2015-9-1-noon",
+                "5.0.0-2015-9-1-99999999999" };
+        for (String tag : tags) {
+            assertRejected(tag);
+        }
+    }
+
+    private static void assertRejected(String tag) {
+        try {
+            BuildVersion.parse(tag);
+            fail("Parsed the invalid build version " + tag);
+        } catch (CarbonKernelHandlerException expected) {
+            // the build version is invalid
+        }
+    }
+
+    /**
+     * asserts the fields of a packed build time, which holds the year, month, day of month and millisecond of
+     * day from the most to the least significant bits
+     */
+    private static void assertBuildTime(BuildVersion buildVersion, int year, int month, int day, int millisOfDay) {
+        long buildTime = buildVersion.getBuildTime();
+        assertEquals(year, buildTime >>> 36);
+        assertEquals(month, (buildTime >>> 32) & 0xF);
+        assertEquals(day, (buildTime >>> 27) & 0x1F);
+        assertEquals(millisOfDay, buildTime & ((1 << 27) - 1));
+    }
+}
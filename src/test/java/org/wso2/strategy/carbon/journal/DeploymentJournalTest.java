@@ -0,0 +1,159 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.carbon.journal;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * a Java class which tests the replay of the deployment journal, including journals whose last record was torn
+ * or corrupted by a crash
+ */
+public class DeploymentJournalTest {
+    private Path journalPath;
+
+    @Before
+    public void createJournalFile() throws Exception {
+        journalPath = Files.createTempFile("deployment-journal-", ".log");
+    }
+
+    @After
+    public void deleteJournalFile() throws Exception {
+        Files.deleteIfExists(journalPath);
+    }
+
+    @Test
+    public void replaysRecordedOperations() throws Exception {
+        DeploymentJournal journal = openJournal();
+        deploy(journal, "tenant1", "image:1");
+        journal.recordStarted(JournalEntry.Operation.SCALE, "tenant1", null, null, null, 3);
+
+        DeploymentJournal replayed = openJournal();
+
+        TenantDeploymentState state = replayed.getState("tenant1");
+        assertNotNull(state);
+        assertEquals("image:1", state.getDockerImageName());
+        List<JournalEntry> incompleteOperations = replayed.getIncompleteOperations();
+        assertEquals(1, incompleteOperations.size());
+        assertEquals(JournalEntry.Operation.SCALE, incompleteOperations.get(0).getOperation());
+        assertEquals(3, incompleteOperations.get(0).getReplicas());
+    }
+
+    @Test
+    public void dropsTornLastRecord() throws Exception {
+        DeploymentJournal journal = openJournal();
+        deploy(journal, "tenant1", "image:1");
+        JournalEntry started = journal.recordStarted(JournalEntry.Operation.DEPLOY, "tenant2", "5.0.0",
+                "kernel.zip", null, 1);
+        long validLength = Files.size(journalPath);
+        journal.recordOutcome(started, JournalEntry.Phase.COMPLETED, "image:2");
+        // a crash in the middle of appending the last record
+        truncate(Files.size(journalPath) - 3);
+
+        DeploymentJournal replayed = openJournal();
+
+        assertNotNull(replayed.getState("tenant1"));
+        assertNull(replayed.getState("tenant2"));
+        List<JournalEntry> incompleteOperations = replayed.getIncompleteOperations();
+        assertEquals(1, incompleteOperations.size());
+        assertEquals("tenant2", incompleteOperations.get(0).getTenant());
+        assertEquals(validLength, Files.size(journalPath));
+    }
+
+    @Test
+    public void dropsTornRecordHeader() throws Exception {
+        DeploymentJournal journal = openJournal();
+        deploy(journal, "tenant1", "image:1");
+        long validLength = Files.size(journalPath);
+        journal.recordStarted(JournalEntry.Operation.REMOVE, "tenant1", null, null, null, 0);
+        truncate(validLength + 5);
+
+        DeploymentJournal replayed = openJournal();
+
+        assertNotNull(replayed.getState("tenant1"));
+        assertTrue(replayed.getIncompleteOperations().isEmpty());
+        assertEquals(validLength, Files.size(journalPath));
+    }
+
+    @Test
+    public void dropsRecordWithChecksumMismatch() throws Exception {
+        DeploymentJournal journal = openJournal();
+        deploy(journal, "tenant1", "image:1");
+        long validLength = Files.size(journalPath);
+        journal.recordStarted(JournalEntry.Operation.REMOVE, "tenant1", null, null, null, 0);
+        corruptLastByte();
+
+        DeploymentJournal replayed = openJournal();
+
+        assertNotNull(replayed.getState("tenant1"));
+        assertTrue(replayed.getIncompleteOperations().isEmpty());
+        assertEquals(validLength, Files.size(journalPath));
+    }
+
+    @Test
+    public void appendsAfterTheValidPrefix() throws Exception {
+        DeploymentJournal journal = openJournal();
+        deploy(journal, "tenant1", "image:1");
+        journal.recordStarted(JournalEntry.Operation.REMOVE, "tenant1", null, null, null, 0);
+        corruptLastByte();
+
+        deploy(openJournal(), "tenant2", "image:2");
+        DeploymentJournal replayed = openJournal();
+
+        assertNotNull(replayed.getState("tenant1"));
+        assertNotNull(replayed.getState("tenant2"));
+        assertTrue(replayed.getIncompleteOperations().isEmpty());
+    }
+
+    private DeploymentJournal openJournal() throws Exception {
+        return new DeploymentJournal(journalPath.toString());
+    }
+
+    private static void deploy(DeploymentJournal journal, String tenant, String dockerImageName) throws Exception {
+        JournalEntry started = journal.recordStarted(JournalEntry.Operation.DEPLOY, tenant, "5.0.0", "kernel.zip",
+                null, 1);
+        journal.recordOutcome(started, JournalEntry.Phase.COMPLETED, dockerImageName);
+    }
+
+    private void truncate(long length) throws Exception {
+        try (FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.WRITE)) {
+            channel.truncate(length);
+        }
+    }
+
+    private void corruptLastByte() throws Exception {
+        try (FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer lastByte = ByteBuffer.allocate(1);
+            channel.read(lastByte, channel.size() - 1);
+            lastByte.put(0, (byte) ~lastByte.get(0));
+            lastByte.rewind();
+            channel.write(lastByte, channel.size() - 1);
+        }
+    }
+}
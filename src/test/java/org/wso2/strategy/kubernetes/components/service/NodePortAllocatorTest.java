@@ -0,0 +1,202 @@
+/*
+* Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.strategy.kubernetes.components.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.wso2.strategy.kubernetes.constants.KubernetesConstantsExtended;
+import org.wso2.strategy.miscellaneous.exception.CarbonKernelHandlerException;
+
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * a Java class which tests the NodePort allocation from the memory-mapped bitmap
+ */
+public class NodePortAllocatorTest {
+    private Path directory;
+
+    private static final int PORT_COUNT =
+            KubernetesConstantsExtended.NODE_PORT_UPPER_LIMIT - KubernetesConstantsExtended.NODE_PORT_LOWER_LIMIT;
+
+    @Before
+    public void createDirectory() throws Exception {
+        directory = Files.createTempDirectory("node-port-allocator-");
+    }
+
+    @After
+    public void deleteDirectory() throws Exception {
+        // the allocators keep their files mapped and locked, which a JVM on Linux allows to be deleted
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(directory);
+    }
+
+    @Test
+    public void allocatesDistinctPortsConcurrently() throws Exception {
+        final NodePortAllocator allocator = NodePortAllocator.forFile(getFileName("concurrent.bitmap"));
+        final int threadCount = 8;
+        final int allocationsPerThread = 200;
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        List<Future<List<Integer>>> allocations = new ArrayList<>();
+        try {
+            for (int thread = 0; thread < threadCount; thread++) {
+                allocations.add(executor.submit(new Callable<List<Integer>>() {
+                    public List<Integer> call() throws Exception {
+                        start.await();
+                        List<Integer> ports = new ArrayList<>();
+                        for (int allocation = 0; allocation < allocationsPerThread; allocation++) {
+                            ports.add(allocator.allocate());
+                        }
+                        return ports;
+                    }
+                }));
+            }
+            start.countDown();
+            Set<Integer> ports = new HashSet<>();
+            for (Future<List<Integer>> allocation : allocations) {
+                ports.addAll(allocation.get());
+            }
+            assertEquals(threadCount * allocationsPerThread, ports.size());
+            assertEquals(threadCount * allocationsPerThread, allocator.getAllocatedPortCount());
+            for (int port : ports) {
+                assertTrue(allocator.isAllocated(port));
+                assertTrue(port > KubernetesConstantsExtended.NODE_PORT_LOWER_LIMIT);
+                assertTrue(port <= KubernetesConstantsExtended.NODE_PORT_UPPER_LIMIT);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void allocatesEveryPortBeforeFailing() throws Exception {
+        NodePortAllocator allocator = NodePortAllocator.forFile(getFileName("exhausted.bitmap"));
+        Set<Integer> ports = new HashSet<>();
+        for (int allocation = 0; allocation < PORT_COUNT; allocation++) {
+            ports.add(allocator.allocate());
+        }
+        assertEquals(PORT_COUNT, ports.size());
+        assertEquals(0, allocator.getFreePortCount());
+        try {
+            allocator.allocate();
+            fail("Allocated a NodePort beyond the NodePort range.");
+        } catch (CarbonKernelHandlerException expected) {
+            // every NodePort is allocated
+        }
+    }
+
+    @Test
+    public void reconciliationKeepsPortsNotConfirmedBeforeItStarted() throws Exception {
+        NodePortAllocator allocator = NodePortAllocator.forFile(getFileName("reconcile.bitmap"));
+        int pendingPort = allocator.allocate();
+        int deletedPort = allocator.allocate();
+        int listedPort = allocator.allocate();
+        allocator.confirm(deletedPort);
+        allocator.confirm(listedPort);
+        long epoch = allocator.startReconciliation();
+        // created while the services were listed, hence possibly missing from the listing
+        int concurrentPort = allocator.allocate();
+        allocator.confirm(concurrentPort);
+
+        allocator.reconcile(epoch, Collections.singletonList(listedPort));
+
+        assertTrue("a pending port is kept", allocator.isAllocated(pendingPort));
+        assertTrue("a port confirmed during the reconciliation is kept", allocator.isAllocated(concurrentPort));
+        assertTrue("a listed port is kept", allocator.isAllocated(listedPort));
+        assertFalse("a port confirmed before, but not listed, is freed", allocator.isAllocated(deletedPort));
+        assertEquals(3, allocator.getAllocatedPortCount());
+    }
+
+    @Test
+    public void reconciliationAllocatesListedPorts() throws Exception {
+        NodePortAllocator allocator = NodePortAllocator.forFile(getFileName("listed.bitmap"));
+        int firstPort = KubernetesConstantsExtended.NODE_PORT_LOWER_LIMIT + 1;
+        int lastPort = KubernetesConstantsExtended.NODE_PORT_UPPER_LIMIT;
+        int outOfRangePort = KubernetesConstantsExtended.NODE_PORT_LOWER_LIMIT;
+
+        allocator.reconcile(allocator.startReconciliation(), Arrays.asList(firstPort, lastPort, outOfRangePort));
+
+        assertTrue(allocator.isAllocated(firstPort));
+        assertTrue(allocator.isAllocated(lastPort));
+        assertFalse(allocator.isAllocated(outOfRangePort));
+        assertEquals(2, allocator.getAllocatedPortCount());
+    }
+
+    @Test
+    public void remappedFileHoldsTheAllocations() throws Exception {
+        Path file = directory.resolve("persisted.bitmap");
+        NodePortAllocator allocator = NodePortAllocator.forFile(file.toString());
+        Set<Integer> ports = new HashSet<>();
+        for (int allocation = 0; allocation < 100; allocation++) {
+            ports.add(allocator.allocate());
+        }
+        int releasedPort = ports.iterator().next();
+        allocator.release(releasedPort);
+        ports.remove(releasedPort);
+        int lastPort = KubernetesConstantsExtended.NODE_PORT_UPPER_LIMIT;
+        allocator.reconcile(allocator.startReconciliation(), Collections.singletonList(lastPort));
+        ports.add(lastPort);
+
+        // the allocator of a file lives as long as the process, hence a copy of the file is mapped afresh
+        Path copy = directory.resolve("persisted-copy.bitmap");
+        Files.copy(file, copy);
+        NodePortAllocator remapped = NodePortAllocator.forFile(copy.toString());
+
+        assertEquals(ports.size(), remapped.getAllocatedPortCount());
+        for (int port : ports) {
+            assertTrue(remapped.isAllocated(port));
+        }
+        assertFalse(remapped.isAllocated(releasedPort));
+    }
+
+    @Test
+    public void fileOfAnotherFormatIsReset() throws Exception {
+        Path file = directory.resolve("legacy.bitmap");
+        Files.write(file, "30001\n30002\n".getBytes("UTF-8"));
+
+        NodePortAllocator allocator = NodePortAllocator.forFile(file.toString());
+
+        assertEquals(0, allocator.getAllocatedPortCount());
+        assertEquals(PORT_COUNT, allocator.getFreePortCount());
+    }
+
+    private String getFileName(String name) {
+        return directory.resolve(name).toString();
+    }
+}